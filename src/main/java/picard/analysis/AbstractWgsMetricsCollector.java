@@ -88,6 +88,15 @@ public abstract class AbstractWgsMetricsCollector<T extends AbstractRecordAndOff
      * The number of processed genomic bases
      */
     protected long counter = 0;
+    /**
+     * Reads with a lower mapping quality are ignored by this collector. This is 0 unless the collector evaluates
+     * a filter profile of its own, as the read filters of the locus iterator already apply MINIMUM_MAPPING_QUALITY.
+     */
+    protected int minimumMappingQuality;
+    /**
+     * Minimum base quality for a base to contribute coverage, or null to use MINIMUM_BASE_QUALITY of collectWgsMetrics
+     */
+    private final Integer minimumBaseQuality;
 
     /**
      * Creates a collector and initializes the inner data structures
@@ -96,6 +105,19 @@ public abstract class AbstractWgsMetricsCollector<T extends AbstractRecordAndOff
      * @param coverageCap       coverage cap
      */
     AbstractWgsMetricsCollector(CollectWgsMetrics collectWgsMetrics, final int coverageCap, final IntervalList intervals) {
+        this(collectWgsMetrics, coverageCap, intervals, 0, null);
+    }
+
+    /**
+     * Creates a collector for a filter profile whose thresholds differ from those of collectWgsMetrics
+     *
+     * @param collectWgsMetrics     CollectWgsMetrics, that creates this collector
+     * @param coverageCap           coverage cap
+     * @param minimumMappingQuality reads with a lower mapping quality are ignored
+     * @param minimumBaseQuality    minimum base quality for a base to contribute coverage, or null to use that of collectWgsMetrics
+     */
+    AbstractWgsMetricsCollector(CollectWgsMetrics collectWgsMetrics, final int coverageCap, final IntervalList intervals,
+                                final int minimumMappingQuality, final Integer minimumBaseQuality) {
         if (coverageCap <= 0) {
             throw new IllegalArgumentException("Coverage cap must be positive.");
         }
@@ -106,6 +128,23 @@ public abstract class AbstractWgsMetricsCollector<T extends AbstractRecordAndOff
         this.coverageCap    = coverageCap;
         this.intervals      = intervals;
         this.usingStopAfter = collectWgsMetrics.STOP_AFTER > 0;
+        this.minimumMappingQuality = minimumMappingQuality;
+        this.minimumBaseQuality = minimumBaseQuality;
+    }
+
+    /**
+     * Makes this collector ignore reads below the given mapping quality, for when the read filters let through reads
+     * that other filter profiles count
+     */
+    void setMinimumMappingQuality(final int minimumMappingQuality) {
+        this.minimumMappingQuality = minimumMappingQuality;
+    }
+
+    /**
+     * @return minimum base quality for a base to contribute coverage
+     */
+    int getMinimumBaseQuality() {
+        return minimumBaseQuality != null ? minimumBaseQuality : collectWgsMetrics.MINIMUM_BASE_QUALITY;
     }
 
     /**
@@ -116,6 +155,21 @@ public abstract class AbstractWgsMetricsCollector<T extends AbstractRecordAndOff
      */
     public abstract void addInfo(final AbstractLocusInfo<T> info, final ReferenceSequence ref, boolean referenceBaseN);
 
+    /**
+     * Accumulates the depths of one locus whose bases were already filtered and counted elsewhere,
+     * as done by {@link picard.analysis.BlockWgsMetricsProcessor}
+     * @param highQualityDepth depth of bases passing all filters, not yet capped
+     * @param unfilteredDepth  depth of all but quality 2 bases, at most the coverage cap
+     */
+    void addLocus(final int highQualityDepth, final int unfilteredDepth) {
+        final int cappedDepth = Math.min(highQualityDepth, coverageCap);
+        if (cappedDepth < highQualityDepth) {
+            basesExcludedByCapping += highQualityDepth - coverageCap;
+        }
+        highQualityDepthHistogramArray[cappedDepth]++;
+        unfilteredDepthHistogramArray[unfilteredDepth]++;
+    }
+
     /**
      * Adds collected metrics and depth histogram to file
      * @param file MetricsFile for result of collector's work
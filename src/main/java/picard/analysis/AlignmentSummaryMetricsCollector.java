@@ -412,7 +412,7 @@ public class AlignmentSummaryMetricsCollector extends SAMRecordAndReferenceMulti
                 long mismatchCount = 0;
                 long hqMismatchCount = 0;
 
-                for (final AlignmentBlock alignmentBlock : record.getAlignmentBlocks()) {
+                for (final AlignmentBlock alignmentBlock : recordFeatures.getAlignmentBlocks(record)) {
                     final int readIndex = alignmentBlock.getReadStart() - 1;
                     final int refIndex = alignmentBlock.getReferenceStart() - 1;
                     final int length = alignmentBlock.getLength();
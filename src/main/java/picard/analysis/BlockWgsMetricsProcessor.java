@@ -0,0 +1,376 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.analysis;
+
+import htsjdk.samtools.AlignmentBlock;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.metrics.MetricsFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.ProgressLogger;
+import htsjdk.samtools.util.ReferenceSequenceMask;
+import htsjdk.samtools.util.SequenceUtil;
+import picard.PicardException;
+import picard.filter.CountingFilter;
+import picard.filter.CountingPairedFilter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.LongStream;
+
+/**
+ * Implementation of {@link picard.analysis.WgsMetricsProcessor} that accumulates depth directly from the
+ * alignment blocks of the (already filtered) records, without building an {@link htsjdk.samtools.util.AbstractLocusInfo}
+ * per locus.
+ * <p>
+ * High quality depth is kept as a difference array over a sliding window of the current contig: each run of
+ * consecutive bases of a block that pass the base quality and overlap checks is added with one increment at its
+ * start and one decrement past its end. Unfiltered depth is counted base by base, since each such base also goes
+ * into the base quality histogram. A locus is final once the records reach a later start position, at which point
+ * the prefix sum gives its depth and it is handed to the collector. The window grows as needed, so there is no
+ * assumption about read length.
+ * <p>
+ * Bases of a read that overlap its mate are counted only once, for whichever of the pair comes first in the file.
+ */
+public class BlockWgsMetricsProcessor implements WgsMetricsProcessor {
+    /**
+     * Initial number of loci held in the window, grown when a record reaches beyond it
+     */
+    private static final int INITIAL_WINDOW_LENGTH = 1 << 16;
+    /**
+     * Source of filtered, coordinate sorted records
+     */
+    private final Iterator<SAMRecord> records;
+    private final SAMSequenceDictionary dictionary;
+    /**
+     * Mask of the loci for which metrics are collected
+     */
+    private final ReferenceSequenceMask mask;
+    private final ReferenceSequenceFileWalker refWalker;
+    /**
+     * Accumulates the per-locus depths and holds the per-base counts
+     */
+    private final AbstractWgsMetricsCollector<?> collector;
+    private final ProgressLogger progress;
+    private final int minimumBaseQuality;
+
+    private final Log log = Log.getInstance(BlockWgsMetricsProcessor.class);
+
+    /**
+     * Difference array of high quality depth; index 0 represents {@link #windowStart}
+     */
+    private int[] highQualityDepthDiff = new int[INITIAL_WINDOW_LENGTH];
+    /**
+     * Unfiltered depth (capped at the coverage cap); index 0 represents {@link #windowStart}
+     */
+    private int[] unfilteredDepth = new int[INITIAL_WINDOW_LENGTH];
+    private int windowStart;
+    /**
+     * The first locus of the current contig that has not been handed to the collector yet
+     */
+    private int nextLocus;
+    /**
+     * Running sum of {@link #highQualityDepthDiff} up to nextLocus - 1
+     */
+    private int highQualityDepth;
+
+    private int contigIndex = -1;
+    private String contigName;
+    private byte[] refBases;
+
+    private long counter = 0;
+    private boolean stopped = false;
+
+    /**
+     * Reads whose mate has not been seen yet but is expected to overlap them, by read name
+     */
+    private final Map<String, PendingRead> pendingMates = new HashMap<>();
+    private final PriorityQueue<PendingRead> pendingByMateStart = new PriorityQueue<>(Comparator.comparingInt(p -> p.mateStart));
+
+    /**
+     * @param records    filtered, coordinate sorted records
+     * @param dictionary sequence dictionary of the records
+     * @param mask       loci over which metrics are collected
+     * @param refWalker  over processed reference file
+     * @param collector  input {@link picard.analysis.AbstractWgsMetricsCollector}
+     * @param progress   logger
+     */
+    public BlockWgsMetricsProcessor(final Iterator<SAMRecord> records,
+                                    final SAMSequenceDictionary dictionary,
+                                    final ReferenceSequenceMask mask,
+                                    final ReferenceSequenceFileWalker refWalker,
+                                    final AbstractWgsMetricsCollector<?> collector,
+                                    final ProgressLogger progress) {
+        this.records = records;
+        this.dictionary = dictionary;
+        this.mask = mask;
+        this.refWalker = refWalker;
+        this.collector = collector;
+        this.progress = progress;
+        this.minimumBaseQuality = collector.getMinimumBaseQuality();
+    }
+
+    /**
+     * Method reads all the records, accumulates depth from their alignment blocks and hands every locus to the collector.
+     */
+    @Override
+    public void processFile() {
+        while (records.hasNext() && !stopped) {
+            final SAMRecord rec = records.next();
+            if (rec.getReadUnmappedFlag() || rec.getReadFailsVendorQualityCheckFlag()) {
+                continue;
+            }
+            addRecord(rec);
+        }
+        advanceToContig(dictionary.size());
+        // check that we added the same number of bases to the raw coverage histogram and the base quality histograms
+        final long sumBaseQ = Arrays.stream(collector.unfilteredBaseQHistogramArray).sum();
+        final long sumDepthHisto = LongStream.rangeClosed(0, collector.coverageCap).map(i -> (i * collector.unfilteredDepthHistogramArray[(int) i])).sum();
+        if (sumBaseQ != sumDepthHisto) {
+            log.error("Coverage and baseQ distributions contain different amount of bases!");
+        }
+    }
+
+    @Override
+    public void addToMetricsFile(final MetricsFile<WgsMetrics, Integer> file,
+                                 final boolean includeBQHistogram,
+                                 final CountingFilter dupeFilter,
+                                 final CountingFilter adapterFilter,
+                                 final CountingFilter mapqFilter,
+                                 final CountingPairedFilter pairFilter) {
+        collector.addToMetricsFile(file, includeBQHistogram, dupeFilter, adapterFilter, mapqFilter, pairFilter);
+    }
+
+    private void addRecord(final SAMRecord rec) {
+        if (rec.getReferenceIndex() != contigIndex) {
+            if (rec.getReferenceIndex() < contigIndex) {
+                throw new PicardException("Input is not coordinate sorted at read " + rec.getReadName());
+            }
+            advanceToContig(rec.getReferenceIndex());
+        }
+        if (rec.getAlignmentStart() < nextLocus) {
+            throw new PicardException("Input is not coordinate sorted at read " + rec.getReadName());
+        }
+        finalizeLoci(rec.getAlignmentStart());
+        if (stopped) {
+            return;
+        }
+
+        // mates that should have started by now were filtered out, they will not be seen
+        while (!pendingByMateStart.isEmpty() && pendingByMateStart.peek().mateStart < rec.getAlignmentStart()) {
+            final PendingRead stale = pendingByMateStart.poll();
+            pendingMates.remove(stale.readName, stale);
+        }
+
+        final byte[] qualities = rec.getBaseQualities();
+        if (qualities.length == 0) {
+            return;
+        }
+        final byte[] bases = rec.getReadBases();
+        ensureCapacity(rec.getAlignmentEnd() + 1);
+
+        final PendingRead mate = pendingMates.remove(rec.getReadName());
+        if (mate != null) {
+            pendingByMateStart.remove(mate);
+        }
+
+        for (final AlignmentBlock block : rec.getAlignmentBlocks()) {
+            final int refStart = block.getReferenceStart();
+            final int readStart = block.getReadStart() - 1;
+            int runStart = -1;
+            for (int i = 0; i < block.getLength(); i++) {
+                final int position = refStart + i;
+                final int offset = readStart + i;
+                boolean counted = false;
+                // loci outside the mask are never handed to the collector, so neither are their bases
+                if (mask.get(contigIndex, position) && !SequenceUtil.isNoCall(refBases[position - 1])) {
+                    final byte quality = qualities[offset];
+                    if (quality <= 2) {
+                        collector.basesExcludedByBaseq++;
+                    } else {
+                        final int index = position - windowStart;
+                        if (unfilteredDepth[index] < collector.coverageCap) {
+                            collector.unfilteredBaseQHistogramArray[quality]++;
+                            unfilteredDepth[index]++;
+                        }
+                        if (quality < minimumBaseQuality || SequenceUtil.isNoCall(bases[offset])) {
+                            collector.basesExcludedByBaseq++;
+                        } else if (mate != null && mate.getQuality(position) >= minimumBaseQuality) {
+                            collector.basesExcludedByOverlap++;
+                        } else {
+                            counted = true;
+                        }
+                    }
+                }
+                if (counted) {
+                    if (runStart < 0) runStart = position;
+                } else if (runStart >= 0) {
+                    addRange(runStart, position);
+                    runStart = -1;
+                }
+            }
+            if (runStart >= 0) {
+                addRange(runStart, refStart + block.getLength());
+            }
+        }
+
+        if (mate == null && mayOverlapMate(rec)) {
+            final PendingRead pending = new PendingRead(rec);
+            pendingMates.put(pending.readName, pending);
+            pendingByMateStart.add(pending);
+        }
+    }
+
+    /**
+     * @return true if the mate of this read is still to come and starts within this read
+     */
+    private static boolean mayOverlapMate(final SAMRecord rec) {
+        return rec.getReadPairedFlag() &&
+                !rec.getMateUnmappedFlag() &&
+                rec.getMateReferenceIndex().equals(rec.getReferenceIndex()) &&
+                rec.getMateAlignmentStart() >= rec.getAlignmentStart() &&
+                rec.getMateAlignmentStart() <= rec.getAlignmentEnd();
+    }
+
+    /**
+     * Adds one to the high quality depth of the loci in [start, end)
+     */
+    private void addRange(final int start, final int end) {
+        highQualityDepthDiff[start - windowStart]++;
+        highQualityDepthDiff[end - windowStart]--;
+    }
+
+    /**
+     * Makes sure that the window holds the given locus, first by dropping the loci that are already final and
+     * then by growing the arrays.
+     */
+    private void ensureCapacity(final int locus) {
+        if (locus - windowStart < highQualityDepthDiff.length) {
+            return;
+        }
+        final int skipLength = nextLocus - windowStart;
+        final int keepLength = highQualityDepthDiff.length - skipLength;
+        System.arraycopy(highQualityDepthDiff, skipLength, highQualityDepthDiff, 0, keepLength);
+        System.arraycopy(unfilteredDepth, skipLength, unfilteredDepth, 0, keepLength);
+        Arrays.fill(highQualityDepthDiff, keepLength, highQualityDepthDiff.length, 0);
+        Arrays.fill(unfilteredDepth, keepLength, unfilteredDepth.length, 0);
+        windowStart = nextLocus;
+
+        if (locus - windowStart >= highQualityDepthDiff.length) {
+            final int newLength = Math.max(2 * highQualityDepthDiff.length, locus - windowStart + 1);
+            highQualityDepthDiff = Arrays.copyOf(highQualityDepthDiff, newLength);
+            unfilteredDepth = Arrays.copyOf(unfilteredDepth, newLength);
+        }
+    }
+
+    /**
+     * Hands all the loci of the current contig before the given one to the collector.
+     */
+    private void finalizeLoci(final int end) {
+        final int lastLocus = Math.min(end, refBases.length + 1);
+        for (; nextLocus < lastLocus && !stopped; nextLocus++) {
+            final int index = nextLocus - windowStart;
+            highQualityDepth += highQualityDepthDiff[index];
+            final int unfiltered = unfilteredDepth[index];
+            highQualityDepthDiff[index] = 0;
+            unfilteredDepth[index] = 0;
+
+            if (!mask.get(contigIndex, nextLocus) || SequenceUtil.isNoCall(refBases[nextLocus - 1])) {
+                continue;
+            }
+            collector.addLocus(highQualityDepth, unfiltered);
+            progress.record(contigName, nextLocus);
+            if (collector.isTimeToStop(++counter)) {
+                stopped = true;
+            } else {
+                collector.setCounter(counter);
+            }
+        }
+    }
+
+    /**
+     * Finishes the current contig and every contig before the given one, which have no records at all.
+     */
+    private void advanceToContig(final int newContigIndex) {
+        if (contigIndex >= 0) {
+            finalizeLoci(Integer.MAX_VALUE);
+        }
+        for (int i = contigIndex + 1; i < newContigIndex && !stopped; i++) {
+            startContig(i);
+            finalizeLoci(Integer.MAX_VALUE);
+        }
+        if (newContigIndex < dictionary.size()) {
+            startContig(newContigIndex);
+        }
+    }
+
+    private void startContig(final int newContigIndex) {
+        contigIndex = newContigIndex;
+        contigName = dictionary.getSequence(newContigIndex).getSequenceName();
+        refBases = refWalker.get(newContigIndex).getBases();
+        Arrays.fill(highQualityDepthDiff, 0);
+        Arrays.fill(unfilteredDepth, 0);
+        windowStart = 1;
+        nextLocus = 1;
+        highQualityDepth = 0;
+        pendingMates.clear();
+        pendingByMateStart.clear();
+    }
+
+    /**
+     * The base qualities of a read along the reference, kept until its mate is seen.
+     */
+    private static class PendingRead {
+        private final String readName;
+        private final int start;
+        private final int mateStart;
+        /**
+         * Base quality at each reference position from start, or -1 where the read has no aligned base
+         */
+        private final byte[] qualities;
+
+        PendingRead(final SAMRecord rec) {
+            this.readName = rec.getReadName();
+            this.start = rec.getAlignmentStart();
+            this.mateStart = rec.getMateAlignmentStart();
+            this.qualities = new byte[rec.getAlignmentEnd() - start + 1];
+            Arrays.fill(qualities, (byte) -1);
+            final byte[] readQualities = rec.getBaseQualities();
+            for (final AlignmentBlock block : rec.getAlignmentBlocks()) {
+                System.arraycopy(readQualities, block.getReadStart() - 1, qualities, block.getReferenceStart() - start, block.getLength());
+            }
+        }
+
+        byte getQuality(final int position) {
+            final int index = position - start;
+            return index >= 0 && index < qualities.length ? qualities[index] : -1;
+        }
+    }
+}
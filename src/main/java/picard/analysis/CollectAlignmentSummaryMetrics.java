@@ -166,6 +166,7 @@ public class CollectAlignmentSummaryMetrics extends SinglePassSamProgram {
 
         collector = new AlignmentSummaryMetricsCollector(METRIC_ACCUMULATION_LEVEL, header.getReadGroups(), COLLECT_ALIGNMENT_INFORMATION,
                 ADAPTER_SEQUENCE, MAX_INSERT_SIZE, EXPECTED_PAIR_ORIENTATIONS, IS_BISULFITE_SEQUENCED);
+        collector.setRecordFeatureCache(recordFeatures);
     }
 
     @Override protected void acceptRead(final SAMRecord rec, final ReferenceSequence ref) {
@@ -140,6 +140,14 @@ public class CollectGcBiasMetrics extends SinglePassSamProgram {
             "allows to gain two plots per level at the same time: one is the usual one and the other excludes duplicates.")
     public boolean ALSO_IGNORE_DUPLICATES = false;
 
+    @Argument(shortName = "GC_INDEX", doc = "A GC window index built with CreateGcWindowIndex for this reference and " +
+            "SCAN_WINDOW_SIZE. If given, the reference window GC content is read from it rather than recalculated from " +
+            "the whole reference.", optional = true)
+    public File GC_WINDOW_INDEX;
+
+    // Open for the lifetime of the run when GC_WINDOW_INDEX is given
+    private GcWindowIndex gcWindowIndex;
+
     // Calculates GcBiasMetrics for all METRIC_ACCUMULATION_LEVELs provided
     private GcBiasMetricsCollector multiCollector;
 
@@ -169,11 +177,19 @@ public class CollectGcBiasMetrics extends SinglePassSamProgram {
         IOUtil.assertFileIsWritable(SUMMARY_OUTPUT);
         IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
 
-        //Calculate windowsByGc for the reference sequence
-        final int[] windowsByGc = GcBiasUtils.calculateRefWindowsByGc(BINS, REFERENCE_SEQUENCE, SCAN_WINDOW_SIZE);
+        //Calculate windowsByGc for the reference sequence, or load it from the precomputed index
+        final int[] windowsByGc;
+        if (GC_WINDOW_INDEX != null) {
+            gcWindowIndex = GcWindowIndex.open(GC_WINDOW_INDEX);
+            gcWindowIndex.validate(header.getSequenceDictionary(), SCAN_WINDOW_SIZE);
+            windowsByGc = gcWindowIndex.getWindowsByGc();
+        } else {
+            windowsByGc = GcBiasUtils.calculateRefWindowsByGc(BINS, REFERENCE_SEQUENCE, SCAN_WINDOW_SIZE);
+        }
 
         //Delegate actual collection to GcBiasMetricCollector
-        multiCollector = new GcBiasMetricsCollector(METRIC_ACCUMULATION_LEVEL, windowsByGc, header.getReadGroups(), SCAN_WINDOW_SIZE, IS_BISULFITE_SEQUENCED, ALSO_IGNORE_DUPLICATES);
+        multiCollector = new GcBiasMetricsCollector(METRIC_ACCUMULATION_LEVEL, windowsByGc, header.getReadGroups(), SCAN_WINDOW_SIZE, IS_BISULFITE_SEQUENCED, ALSO_IGNORE_DUPLICATES, gcWindowIndex);
+        multiCollector.setRecordFeatureCache(recordFeatures);
     }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -190,6 +206,7 @@ public class CollectGcBiasMetrics extends SinglePassSamProgram {
     @Override
     protected void finish() {
         multiCollector.finish();
+        if (gcWindowIndex != null) gcWindowIndex.close();
         writeResultsToFiles();
     }
 
@@ -149,6 +149,7 @@ public class CollectInsertSizeMetrics extends SinglePassSamProgram {
         //Delegate actual collection to InsertSizeMetricCollector
         multiCollector = new InsertSizeMetricsCollector(METRIC_ACCUMULATION_LEVEL, header.getReadGroups(), MINIMUM_PCT,
                 HISTOGRAM_WIDTH, MIN_HISTOGRAM_WIDTH, DEVIATIONS, INCLUDE_DUPLICATES);
+        multiCollector.setRecordFeatureCache(recordFeatures);
     }
 
     @Override protected void acceptRead(final SAMRecord record, final ReferenceSequence ref) {
@@ -189,6 +189,11 @@ public class CollectQualityYieldMetrics extends SinglePassSamProgram {
             }
         }
 
+        /** Adds what another collector has accumulated to this one.  Neither collector may have been finished. */
+        public void merge(final QualityYieldMetricsCollector other) {
+            metrics.merge(other.metrics);
+        }
+
         public void finish() {
             metrics.Q20_EQUIVALENT_YIELD = metrics.Q20_EQUIVALENT_YIELD / 20;
             metrics.PF_Q20_EQUIVALENT_YIELD = metrics.PF_Q20_EQUIVALENT_YIELD / 20;
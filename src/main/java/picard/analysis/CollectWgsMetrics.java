@@ -27,6 +27,8 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.filter.AggregateFilter;
+import htsjdk.samtools.filter.FilteringSamIterator;
 import htsjdk.samtools.filter.SamRecordFilter;
 import htsjdk.samtools.filter.SecondaryAlignmentFilter;
 import htsjdk.samtools.metrics.MetricsFile;
@@ -40,22 +42,23 @@ import htsjdk.samtools.util.Histogram;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.IntervalList;
+import htsjdk.samtools.util.IntervalListReferenceSequenceMask;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
+import htsjdk.samtools.util.ReferenceSequenceMask;
 import htsjdk.samtools.util.SamLocusIterator;
 import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.samtools.util.WholeGenomeReferenceSequenceMask;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.ArgumentCollection;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
+import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.argumentcollections.IntervalArgumentCollection;
 import picard.cmdline.programgroups.DiagnosticsAndQCProgramGroup;
-import picard.filter.CountingAdapterFilter;
-import picard.filter.CountingDuplicateFilter;
 import picard.filter.CountingFilter;
-import picard.filter.CountingMapQFilter;
 import picard.filter.CountingPairedFilter;
 
 import java.io.File;
@@ -145,6 +148,18 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
     @Argument(doc = "Average read length in the file. Default is 150.", optional = true)
     public int READ_LENGTH = 150;
 
+    @Argument(doc = "If true, depth is accumulated directly from the alignment blocks of the reads rather than locus by locus. " +
+            "Reads of any length are handled, so READ_LENGTH is ignored.")
+    public boolean USE_BLOCK_ALGORITHM = false;
+
+    @Argument(doc = "Additional filter profiles to collect metrics for in the same pass over the input, each of the form " +
+            "MINIMUM_MAPPING_QUALITY,MINIMUM_BASE_QUALITY,COVERAGE_CAP,OUTPUT. The metrics of each profile are written to its " +
+            "own OUTPUT, e.g. '0,3,100000,raw_wgs_metrics.txt' additionally collects metrics with no mapping quality filter, " +
+            "a minimum base quality of 3 and a coverage cap of 100000.  LOCUS_ACCUMULATION_CAP is raised to the largest " +
+            "COVERAGE_CAP of all the profiles if it is lower.",
+            optional = true)
+    public List<String> ADDITIONAL_PROFILE = new ArrayList<>();
+
     protected File INTERVALS = null;
 
     private SAMFileHeader header = null;
@@ -156,6 +171,25 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
         return true;
     }
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        final List<String> errors = new ArrayList<>();
+        if (USE_BLOCK_ALGORITHM && !ADDITIONAL_PROFILE.isEmpty()) {
+            errors.add("ADDITIONAL_PROFILE cannot be used with USE_BLOCK_ALGORITHM.");
+        }
+        for (final String profile : ADDITIONAL_PROFILE) {
+            try {
+                WgsMetricsFilterProfile.parse(profile);
+            } catch (final PicardException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        if (!errors.isEmpty()) {
+            return errors.toArray(new String[errors.size()]);
+        }
+        return super.customCommandLineValidation();
+    }
+
     /**
      * @return An interval argument collection to be used for this tool. Subclasses can override this
      * to provide an argument collection with alternative arguments or argument annotations.
@@ -196,18 +230,27 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
         if (THEORETICAL_SENSITIVITY_OUTPUT != null) {
             IOUtil.assertFileIsWritable(THEORETICAL_SENSITIVITY_OUTPUT);
         }
+        final List<WgsMetricsFilterProfile> profiles = new ArrayList<>();
+        for (final String profile : ADDITIONAL_PROFILE) {
+            profiles.add(WgsMetricsFilterProfile.parse(profile));
+            IOUtil.assertFileIsWritable(profiles.get(profiles.size() - 1).output);
+        }
 
-        // it doesn't make sense for the locus accumulation cap to be lower than the coverage cap
-        if (LOCUS_ACCUMULATION_CAP < COVERAGE_CAP) {
-            log.warn("Setting the LOCUS_ACCUMULATION_CAP to be equal to the COVERAGE_CAP (" + COVERAGE_CAP + ") because it should not be lower");
-            LOCUS_ACCUMULATION_CAP = COVERAGE_CAP;
+        // it doesn't make sense for the locus accumulation cap to be lower than the coverage cap of any profile,
+        // since they all share the one locus iterator
+        int coverageCap = COVERAGE_CAP;
+        for (final WgsMetricsFilterProfile profile : profiles) {
+            coverageCap = Math.max(coverageCap, profile.coverageCap);
+        }
+        if (LOCUS_ACCUMULATION_CAP < coverageCap) {
+            log.warn("Setting the LOCUS_ACCUMULATION_CAP to be equal to the largest COVERAGE_CAP (" + coverageCap + ") because it should not be lower");
+            LOCUS_ACCUMULATION_CAP = coverageCap;
         }
 
         // Setup all the inputs
         final ProgressLogger progress = new ProgressLogger(log, 10000000, "Processed", "loci");
         final ReferenceSequenceFileWalker refWalker = new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE);
         final SamReader in = getSamReader();
-        final AbstractLocusIterator iterator = getLocusIterator(in);
 
         // Verify the sequence dictionaries match
         if (!this.header.getSequenceDictionary().isEmpty()) {
@@ -215,30 +258,60 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
         }
 
         final List<SamRecordFilter> filters = new ArrayList<>();
-        final CountingFilter adapterFilter = new CountingAdapterFilter();
-        final CountingFilter mapqFilter = new CountingMapQFilter(MINIMUM_MAPPING_QUALITY);
-        final CountingFilter dupeFilter = new CountingDuplicateFilter();
-        final CountingPairedFilter pairFilter = new CountingPairedFilter();
-        // The order in which filters are added matters!
+        final WgsMetricsFilterProfile primaryProfile = new WgsMetricsFilterProfile(MINIMUM_MAPPING_QUALITY, MINIMUM_BASE_QUALITY, COVERAGE_CAP, OUTPUT);
+        final CountingFilter adapterFilter = primaryProfile.adapterFilter;
+        final CountingFilter mapqFilter = primaryProfile.mapqFilter;
+        final CountingFilter dupeFilter = primaryProfile.dupeFilter;
+        final CountingPairedFilter pairFilter = primaryProfile.pairFilter;
         filters.add(new SecondaryAlignmentFilter()); // Not a counting filter because we never want to count reads twice
-        filters.add(adapterFilter);
-        filters.add(mapqFilter);
-        filters.add(dupeFilter);
-        if (!COUNT_UNPAIRED) {
-            filters.add(pairFilter);
+        if (profiles.isEmpty()) {
+            filters.addAll(primaryProfile.getFilters(COUNT_UNPAIRED));
+        } else {
+            // let a read through if any profile counts it; each collector then drops the reads its own profile filters out
+            final List<List<SamRecordFilter>> chains = new ArrayList<>();
+            chains.add(primaryProfile.getFilters(COUNT_UNPAIRED));
+            for (final WgsMetricsFilterProfile profile : profiles) {
+                chains.add(profile.getFilters(COUNT_UNPAIRED));
+            }
+            filters.add(new WgsMetricsFilterProfile.AnyChainPassesFilter(chains));
         }
-        iterator.setSamFilters(filters);
-        iterator.setMappingQualityScoreCutoff(0); // Handled separately because we want to count bases
-        iterator.setIncludeNonPfReads(false);
 
-        final AbstractWgsMetricsCollector<?> collector = getCollector(COVERAGE_CAP, getIntervalsToExamine());
-        final WgsMetricsProcessor processor = getWgsMetricsProcessor(progress, refWalker, iterator, collector);
+        final IntervalList intervalsToExamine = getIntervalsToExamine();
+        final AbstractWgsMetricsCollector<?> collector = getCollector(COVERAGE_CAP, intervalsToExamine);
+        final List<AbstractWgsMetricsCollector<?>> profileCollectors = new ArrayList<>();
+        if (!profiles.isEmpty()) {
+            collector.setMinimumMappingQuality(MINIMUM_MAPPING_QUALITY);
+            for (final WgsMetricsFilterProfile profile : profiles) {
+                profileCollectors.add(getProfileCollector(profile, intervalsToExamine));
+            }
+        }
+        final WgsMetricsProcessor processor;
+        if (USE_BLOCK_ALGORITHM) {
+            processor = new BlockWgsMetricsProcessor(new FilteringSamIterator(in.iterator(), new AggregateFilter(filters)),
+                    this.header.getSequenceDictionary(), getReferenceSequenceMask(), refWalker, collector, progress);
+        } else {
+            final AbstractLocusIterator iterator = getLocusIterator(in);
+            iterator.setSamFilters(filters);
+            iterator.setMappingQualityScoreCutoff(0); // Handled separately because we want to count bases
+            iterator.setIncludeNonPfReads(false);
+            final List<AbstractWgsMetricsCollector<?>> collectors = new ArrayList<>();
+            collectors.add(collector);
+            collectors.addAll(profileCollectors);
+            processor = getWgsMetricsProcessor(progress, refWalker, iterator, collectors);
+        }
         processor.processFile();
 
         final MetricsFile<WgsMetrics, Integer> out = getMetricsFile();
         processor.addToMetricsFile(out, INCLUDE_BQ_HISTOGRAM, dupeFilter, adapterFilter, mapqFilter, pairFilter);
         out.write(OUTPUT);
 
+        for (int i = 0; i < profiles.size(); i++) {
+            final WgsMetricsFilterProfile profile = profiles.get(i);
+            final MetricsFile<WgsMetrics, Integer> profileOut = getMetricsFile();
+            profileCollectors.get(i).addToMetricsFile(profileOut, INCLUDE_BQ_HISTOGRAM, profile.dupeFilter, profile.adapterFilter, profile.mapqFilter, profile.pairFilter);
+            profileOut.write(profile.output);
+        }
+
         if (THEORETICAL_SENSITIVITY_OUTPUT != null) {
             // Write out theoretical sensitivity results.
             final MetricsFile<TheoreticalSensitivityMetrics, ?> theoreticalSensitivityMetrics = getMetricsFile();
@@ -251,10 +324,11 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
         return 0;
     }
 
+    @SuppressWarnings("unchecked")
     private <T extends AbstractRecordAndOffset> WgsMetricsProcessorImpl<T> getWgsMetricsProcessor(
             ProgressLogger progress, ReferenceSequenceFileWalker refWalker,
-            AbstractLocusIterator<T, AbstractLocusInfo<T>> iterator, AbstractWgsMetricsCollector<T> collector) {
-        return new WgsMetricsProcessorImpl<>(iterator, refWalker, collector, progress);
+            AbstractLocusIterator<T, AbstractLocusInfo<T>> iterator, List<? extends AbstractWgsMetricsCollector<?>> collectors) {
+        return new WgsMetricsProcessorImpl<>(iterator, refWalker, (List<AbstractWgsMetricsCollector<T>>) (List<?>) collectors, progress);
     }
 
     /** Gets the intervals over which we will calculate metrics. */
@@ -273,6 +347,14 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
         return intervals;
     }
 
+    /** Gets the mask of the loci over which {@link BlockWgsMetricsProcessor} will calculate metrics. */
+    protected ReferenceSequenceMask getReferenceSequenceMask() {
+        if (INTERVALS != null) {
+            return new IntervalListReferenceSequenceMask(IntervalList.fromFile(INTERVALS).uniqued());
+        }
+        return new WholeGenomeReferenceSequenceMask(this.header);
+    }
+
     /** This method should only be called after {@link #getSamReader()} is called. */
     protected SAMFileHeader getSamFileHeader() {
         if (this.header == null) throw new IllegalStateException("getSamFileHeader() was called but this.header is null");
@@ -395,12 +477,29 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
                 new WgsMetricsCollector(this, coverageCap, intervals);
     }
 
+    /**
+     * Creates the collector for an additional filter profile, of the same kind as {@link #getCollector(int, IntervalList)}.
+     *
+     * @param profile   the filter thresholds of this collector
+     * @param intervals the intervals over which metrics are collected.
+     */
+    protected AbstractWgsMetricsCollector getProfileCollector(final WgsMetricsFilterProfile profile, final IntervalList intervals) {
+        return USE_FAST_ALGORITHM ?
+                new FastWgsMetricsCollector(this, profile.coverageCap, intervals, profile.minimumMappingQuality, profile.minimumBaseQuality) :
+                new WgsMetricsCollector(this, profile.coverageCap, intervals, profile.minimumMappingQuality, profile.minimumBaseQuality);
+    }
+
     protected static class WgsMetricsCollector extends AbstractWgsMetricsCollector<SamLocusIterator.RecordAndOffset> {
 
         public WgsMetricsCollector(final CollectWgsMetrics metrics, final int coverageCap, final IntervalList intervals) {
             super(metrics, coverageCap, intervals);
         }
 
+        public WgsMetricsCollector(final CollectWgsMetrics metrics, final int coverageCap, final IntervalList intervals,
+                                   final int minimumMappingQuality, final Integer minimumBaseQuality) {
+            super(metrics, coverageCap, intervals, minimumMappingQuality, minimumBaseQuality);
+        }
+
         @Override
         public void addInfo(final AbstractLocusInfo<SamLocusIterator.RecordAndOffset> info, final ReferenceSequence ref, boolean referenceBaseN) {
 
@@ -413,6 +512,7 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
             int unfilteredDepth = 0;
 
             for (final SamLocusIterator.RecordAndOffset recs : info.getRecordAndOffsets()) {
+                if (recs.getRecord().getMappingQuality() < minimumMappingQuality) continue;
                 if (recs.getBaseQuality() <= 2) { ++basesExcludedByBaseq;   continue; }
 
                 // we add to the base quality histogram any bases that have quality > 2
@@ -422,7 +522,7 @@ static final String USAGE_DETAILS = "<p>This tool collects metrics about the fra
                     unfilteredDepth++;
                 }
 
-                if (recs.getBaseQuality() < collectWgsMetrics.MINIMUM_BASE_QUALITY ||
+                if (recs.getBaseQuality() < getMinimumBaseQuality() ||
                         SequenceUtil.isNoCall(recs.getReadBase())) {
                     ++basesExcludedByBaseq;
                     continue;
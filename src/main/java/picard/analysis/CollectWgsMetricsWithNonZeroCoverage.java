@@ -205,6 +205,12 @@ public class CollectWgsMetricsWithNonZeroCoverage extends CollectWgsMetrics {
         return this.collector;
     }
 
+    @Override
+    protected WgsMetricsCollector getProfileCollector(final WgsMetricsFilterProfile profile, final IntervalList intervals) {
+        return new WgsMetricsWithNonZeroCoverageCollector(this, profile.coverageCap, intervals,
+                profile.minimumMappingQuality, profile.minimumBaseQuality);
+    }
+
     protected class WgsMetricsWithNonZeroCoverageCollector extends WgsMetricsCollector {
         Histogram<Integer> highQualityDepthHistogram;
         Histogram<Integer> highQualityDepthHistogramNonZero;
@@ -214,6 +220,12 @@ public class CollectWgsMetricsWithNonZeroCoverage extends CollectWgsMetrics {
             super(metrics, coverageCap, intervals);
         }
 
+        public WgsMetricsWithNonZeroCoverageCollector(final CollectWgsMetricsWithNonZeroCoverage metrics,
+                                                      final int coverageCap, final IntervalList intervals,
+                                                      final int minimumMappingQuality, final Integer minimumBaseQuality) {
+            super(metrics, coverageCap, intervals, minimumMappingQuality, minimumBaseQuality);
+        }
+
         @Override
         public void addToMetricsFile(final MetricsFile<WgsMetrics, Integer> file,
                                      final boolean includeBQHistogram,
@@ -88,7 +88,20 @@ public class FastWgsMetricsCollector extends AbstractWgsMetricsCollector<EdgingR
      * @param coverageCap       coverage cap
      */
     public FastWgsMetricsCollector(CollectWgsMetrics collectWgsMetrics, int coverageCap, final IntervalList intervals) {
-        super(collectWgsMetrics, coverageCap, intervals);
+        this(collectWgsMetrics, coverageCap, intervals, 0, null);
+    }
+
+    /**
+     * Creates a collector for a filter profile whose thresholds differ from those of collectWgsMetrics
+     *
+     * @param collectWgsMetrics     CollectWgsMetrics, that creates this collector
+     * @param coverageCap           coverage cap
+     * @param minimumMappingQuality reads with a lower mapping quality are ignored
+     * @param minimumBaseQuality    minimum base quality for a base to contribute coverage
+     */
+    public FastWgsMetricsCollector(CollectWgsMetrics collectWgsMetrics, int coverageCap, final IntervalList intervals,
+                                   final int minimumMappingQuality, final Integer minimumBaseQuality) {
+        super(collectWgsMetrics, coverageCap, intervals, minimumMappingQuality, minimumBaseQuality);
         this.previousSequenceIndex = -1;
         this.counterManager = new CounterManager(collectWgsMetrics.READ_LENGTH * ARRAY_SIZE_PER_READ_LENGTH, collectWgsMetrics.READ_LENGTH);
         this.pileupSize = counterManager.newCounter();
@@ -99,6 +112,9 @@ public class FastWgsMetricsCollector extends AbstractWgsMetricsCollector<EdgingR
     public void addInfo(final AbstractLocusInfo<EdgingRecordAndOffset> info, final ReferenceSequence ref, boolean referenceBaseN) {
         prepareCollector(info);
         for (final EdgingRecordAndOffset record : info.getRecordAndOffsets()) {
+            if (record.getRecord().getMappingQuality() < minimumMappingQuality) {
+                continue;
+            }
             final String readName = record.getReadName();
             Optional<Set<EdgingRecordAndOffset>> recordsAndOffsetsForName = Optional.ofNullable((Set<EdgingRecordAndOffset>)readsNames.get(readName));
             if (record.getType() == EdgingRecordAndOffset.Type.BEGIN) {
@@ -138,7 +154,7 @@ public class FastWgsMetricsCollector extends AbstractWgsMetricsCollector<EdgingR
                     unfilteredBaseQHistogramArray[quality]++;
                     unfilteredDepthSize.increment(index);
                 }
-                if (quality < collectWgsMetrics.MINIMUM_BASE_QUALITY || SequenceUtil.isNoCall(bases[i + record.getOffset()])){
+                if (quality < getMinimumBaseQuality() || SequenceUtil.isNoCall(bases[i + record.getOffset()])){
                     basesExcludedByBaseq++;
                 } else {
                     final int bsq = excludeByQuality(recordsAndOffsetsForName, index);
@@ -186,7 +202,7 @@ public class FastWgsMetricsCollector extends AbstractWgsMetricsCollector<EdgingR
         int bsq = 0;
         for (EdgingRecordAndOffset recordAndOffset : setForName) {
             if (position - recordAndOffset.getRefPos() >= recordAndOffset.getLength()
-                    || recordAndOffset.getBaseQuality(position) < collectWgsMetrics.MINIMUM_BASE_QUALITY) {
+                    || recordAndOffset.getBaseQuality(position) < getMinimumBaseQuality()) {
                 bsq++;
             }
         }
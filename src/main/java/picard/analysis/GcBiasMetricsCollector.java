@@ -30,12 +30,12 @@ import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.QualityUtil;
-import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
 import picard.metrics.GcBiasMetrics;
 import picard.metrics.MultiLevelCollector;
 import picard.metrics.PerUnitMetricCollector;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -56,9 +56,11 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     private boolean ignoreDuplicates;
 
     //will hold the relevant gc information per contig
-    private byte [] gc = null;
+    private ByteBuffer gc = null;
     private int referenceIndex = -1;
     private byte [] refBases = null;
+    //precomputed reference window GC, or null to compute it per contig from the reference bases
+    private final GcWindowIndex gcWindowIndex;
     private static final Log log = Log.getInstance(GcBiasMetricsCollector.class);
 
     public GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final int[] windowsByGc,
@@ -70,6 +72,18 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     public GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final int[] windowsByGc,
                                   final List<SAMReadGroupRecord> samRgRecords, final int scanWindowSize,
                                   final boolean bisulfite, final boolean ignoreDuplicates) {
+        this(accumulationLevels, windowsByGc, samRgRecords, scanWindowSize, bisulfite, ignoreDuplicates, null);
+    }
+
+    /////////////////////////////////////////////////////////////////////////////
+    // If gcWindowIndex is non-null the per contig window GC is read from it
+    // instead of being recalculated from the reference bases.
+    /////////////////////////////////////////////////////////////////////////////
+    public GcBiasMetricsCollector(final Set<MetricAccumulationLevel> accumulationLevels, final int[] windowsByGc,
+                                  final List<SAMReadGroupRecord> samRgRecords, final int scanWindowSize,
+                                  final boolean bisulfite, final boolean ignoreDuplicates,
+                                  final GcWindowIndex gcWindowIndex) {
+        this.gcWindowIndex = gcWindowIndex;
         this.scanWindowSize = scanWindowSize;
         this.bisulfite = bisulfite;
         this.windowsByGc = windowsByGc;
@@ -146,9 +160,13 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
                     final ReferenceSequence ref = args.getRef();
                     refBases = ref.getBases();
                     StringUtil.toUpperCase(refBases);
-                    final int refLength = refBases.length;
-                    final int lastWindowStart = refLength - scanWindowSize;
-                    gc = GcBiasUtils.calculateAllGcs(refBases, lastWindowStart, scanWindowSize);
+                    if (gcWindowIndex != null) {
+                        gc = gcWindowIndex.getGcs(rec.getReferenceIndex());
+                    } else {
+                        final int refLength = refBases.length;
+                        final int lastWindowStart = refLength - scanWindowSize;
+                        gc = ByteBuffer.wrap(GcBiasUtils.calculateAllGcs(refBases, lastWindowStart, scanWindowSize));
+                    }
                     referenceIndex = rec.getReferenceIndex();
                 }
 
@@ -376,18 +394,17 @@ public class GcBiasMetricsCollector extends MultiLevelCollector<GcBiasMetrics, I
     //Adds each read to the appropriate gcObj which is determined in acceptRecord above
     //Also calculates values for calculating GC Bias at each level
     /////////////////////////////////////////////////////////////////////////////
-     private void addRead(final GcObject gcObj, final SAMRecord rec, final String group, final byte[] gc, final byte[] refBases) {
+     private void addRead(final GcObject gcObj, final SAMRecord rec, final String group, final ByteBuffer gc, final byte[] refBases) {
         if (!rec.getReadPairedFlag() || rec.getFirstOfPairFlag()) ++gcObj.totalClusters;
         final int pos = rec.getReadNegativeStrandFlag() ? rec.getAlignmentEnd() - scanWindowSize : rec.getAlignmentStart();
         ++gcObj.totalAlignedReads;
         if (pos > 0) {
-            final int windowGc = gc[pos];
+            final int windowGc = gc.get(pos);
             if (windowGc >= 0) {
                 ++gcObj.readsByGc[windowGc];
                 gcObj.basesByGc[windowGc] += rec.getReadLength();
                 gcObj.errorsByGc[windowGc] +=
-                        SequenceUtil.countMismatches(rec, refBases, bisulfite) +
-                                SequenceUtil.countInsertedBases(rec) + SequenceUtil.countDeletedBases(rec);
+                        recordFeatures.getMismatchCount(rec, refBases, bisulfite) + recordFeatures.getIndelBaseCount(rec);
             }
         }
         if (gcObj.group == null) {
@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.analysis;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.samtools.util.StringUtil;
+import picard.PicardException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A precomputed, memory-mapped index of the per-window GC content of a reference sequence, for a single
+ * scan window size.  Holds both the genome-wide histogram of windows by GC (as produced by
+ * {@link GcBiasUtils#calculateRefWindowsByGc(int, File, int)}) and, for every contig, the per-position
+ * window GC array (as produced by {@link GcBiasUtils#calculateAllGcs(byte[], int, int)}), so that
+ * {@link CollectGcBiasMetrics} does not have to re-scan the whole reference for every input.
+ *
+ * The file is laid out as a magic number, the per-contig GC arrays back to back, and then a trailer
+ * holding the window size, the reference MD5, the contig names/lengths/MD5s/offsets and the histogram.
+ * The last eight bytes of the file hold the offset of the trailer.  Contig arrays are mapped lazily,
+ * so concurrent jobs against the same index share it through the page cache.
+ */
+public class GcWindowIndex implements Closeable {
+    /** The conventional file extension for GC window index files. */
+    public static final String FILE_EXTENSION = ".gcwin";
+
+    private static final int MAGIC = 0x47435749; // "GCWI"
+    private static final int VERSION = 1;
+    private static final int BINS = 101;
+
+    private static final Log log = Log.getInstance(GcWindowIndex.class);
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final int windowSize;
+    private final String referenceMd5;
+    private final List<ContigEntry> contigs;
+    private final int[] windowsByGc;
+    private final ByteBuffer[] mappedGcs;
+
+    private static class ContigEntry {
+        final String name;
+        final int length;
+        final String md5;
+        final long offset;
+
+        ContigEntry(final String name, final int length, final String md5, final long offset) {
+            this.name = name;
+            this.length = length;
+            this.md5 = md5;
+            this.offset = offset;
+        }
+    }
+
+    private GcWindowIndex(final File file, final RandomAccessFile raf, final int windowSize, final String referenceMd5,
+                          final List<ContigEntry> contigs, final int[] windowsByGc) {
+        this.file = file;
+        this.raf = raf;
+        this.windowSize = windowSize;
+        this.referenceMd5 = referenceMd5;
+        this.contigs = contigs;
+        this.windowsByGc = windowsByGc;
+        this.mappedGcs = new ByteBuffer[contigs.size()];
+    }
+
+    /**
+     * Scans the reference once, computing the window GC for every position of every contig, and writes
+     * the resulting index to the output file.
+     */
+    public static void build(final File referenceSequence, final int windowSize, final File output) {
+        IOUtil.assertFileIsReadable(referenceSequence);
+        IOUtil.assertFileIsWritable(output);
+        if (windowSize < 1) throw new PicardException("Window size must be positive: " + windowSize);
+
+        final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(referenceSequence);
+        final int[] windowsByGc = new int[BINS];
+        final List<ContigEntry> contigs = new ArrayList<>();
+        final StringBuilder contigMd5s = new StringBuilder();
+
+        try (final RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+            out.setLength(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            ReferenceSequence ref;
+            while ((ref = refFile.nextSequence()) != null) {
+                final byte[] refBases = ref.getBases();
+                StringUtil.toUpperCase(refBases);
+                final int lastWindowStart = refBases.length - windowSize;
+                final byte[] gc = GcBiasUtils.calculateAllGcs(refBases, lastWindowStart, windowSize);
+
+                // Same windows as GcBiasUtils.calculateRefWindowsByGc
+                for (int i = 1; i < lastWindowStart; ++i) {
+                    if (gc[i] >= 0) windowsByGc[gc[i]]++;
+                }
+
+                final String md5 = SequenceUtil.calculateMD5String(refBases);
+                contigMd5s.append(md5);
+                contigs.add(new ContigEntry(ref.getName(), refBases.length, md5, out.getFilePointer()));
+                out.write(gc);
+                log.info("Computed window GC for " + ref.getName());
+            }
+
+            final long trailerOffset = out.getFilePointer();
+            out.writeInt(windowSize);
+            out.writeUTF(SequenceUtil.calculateMD5String(StringUtil.stringToBytes(contigMd5s.toString())));
+            out.writeInt(contigs.size());
+            for (final ContigEntry contig : contigs) {
+                out.writeUTF(contig.name);
+                out.writeInt(contig.length);
+                out.writeUTF(contig.md5);
+                out.writeLong(contig.offset);
+            }
+            for (final int count : windowsByGc) {
+                out.writeInt(count);
+            }
+            out.writeLong(trailerOffset);
+        } catch (final IOException e) {
+            throw new PicardException("Error writing GC window index " + output.getAbsolutePath(), e);
+        } finally {
+            CloserUtil.close(refFile);
+        }
+    }
+
+    /** Opens an existing index.  Contig arrays are not read until {@link #getGcs(int)} is called. */
+    public static GcWindowIndex open(final File indexFile) {
+        IOUtil.assertFileIsReadable(indexFile);
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(indexFile, "r");
+            if (raf.length() < 16 || raf.readInt() != MAGIC) {
+                throw new PicardException(indexFile.getAbsolutePath() + " is not a GC window index.");
+            }
+            final int version = raf.readInt();
+            if (version != VERSION) {
+                throw new PicardException("Unsupported GC window index version " + version + " in " + indexFile.getAbsolutePath());
+            }
+
+            raf.seek(raf.length() - 8);
+            raf.seek(raf.readLong());
+            final int windowSize = raf.readInt();
+            final String referenceMd5 = raf.readUTF();
+            final int nContigs = raf.readInt();
+            final List<ContigEntry> contigs = new ArrayList<>(nContigs);
+            for (int i = 0; i < nContigs; ++i) {
+                contigs.add(new ContigEntry(raf.readUTF(), raf.readInt(), raf.readUTF(), raf.readLong()));
+            }
+            final int[] windowsByGc = new int[BINS];
+            for (int i = 0; i < BINS; ++i) {
+                windowsByGc[i] = raf.readInt();
+            }
+            return new GcWindowIndex(indexFile, raf, windowSize, referenceMd5, Collections.unmodifiableList(contigs), windowsByGc);
+        } catch (final IOException e) {
+            CloserUtil.close(raf);
+            throw new PicardException("Error reading GC window index " + indexFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Checks that this index was built with the given window size against a reference that matches the
+     * given sequence dictionary (names, lengths and, where the dictionary has them, M5 tags).
+     */
+    public void validate(final SAMSequenceDictionary dictionary, final int scanWindowSize) {
+        if (scanWindowSize != windowSize) {
+            throw new PicardException("GC window index " + file.getAbsolutePath() + " was built with window size " +
+                    windowSize + " but " + scanWindowSize + " was requested.");
+        }
+        if (dictionary.size() != contigs.size()) {
+            throw new PicardException("GC window index " + file.getAbsolutePath() + " has " + contigs.size() +
+                    " contigs but the sequence dictionary has " + dictionary.size() + ".");
+        }
+        for (final SAMSequenceRecord rec : dictionary.getSequences()) {
+            final ContigEntry contig = contigs.get(rec.getSequenceIndex());
+            if (!contig.name.equals(rec.getSequenceName()) || contig.length != rec.getSequenceLength()) {
+                throw new PicardException("GC window index " + file.getAbsolutePath() + " does not match the sequence " +
+                        "dictionary at contig " + rec.getSequenceName() + ".");
+            }
+            final String m5 = rec.getAttribute(SAMSequenceRecord.MD5_TAG);
+            if (m5 != null && !m5.equalsIgnoreCase(contig.md5)) {
+                throw new PicardException("GC window index " + file.getAbsolutePath() + " has MD5 " + contig.md5 +
+                        " for contig " + contig.name + " but the sequence dictionary has " + m5 + ".");
+            }
+        }
+    }
+
+    /** The scan window size this index was built with. */
+    public int getWindowSize() { return windowSize; }
+
+    /** An MD5 over the MD5s of all the contigs of the reference this index was built from. */
+    public String getReferenceMd5() { return referenceMd5; }
+
+    /** The number of windows in the whole reference at each GC, from 0 to 100. */
+    public int[] getWindowsByGc() { return windowsByGc.clone(); }
+
+    /**
+     * The window GC for every position of the given contig, holding the same values as the array GcBiasUtils.calculateAllGcs
+     * returns.  The buffer is a read-only mapping of the index, made the first time the contig is asked for and shared
+     * by later calls, so it must only be read with absolute gets.
+     */
+    public synchronized ByteBuffer getGcs(final int contigIndex) {
+        if (mappedGcs[contigIndex] == null) {
+            final ContigEntry contig = contigs.get(contigIndex);
+            try {
+                mappedGcs[contigIndex] = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, contig.offset, contig.length + 1L);
+            } catch (final IOException e) {
+                throw new PicardException("Error mapping contig " + contig.name + " from GC window index " + file.getAbsolutePath(), e);
+            }
+        }
+        return mappedGcs[contigIndex];
+    }
+
+    @Override
+    public void close() {
+        CloserUtil.close(raf);
+    }
+}
@@ -43,6 +43,8 @@ import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.argumentcollections.OutputArgumentCollection;
 import picard.cmdline.argumentcollections.RequiredOutputArgumentCollection;
+import picard.metrics.SAMRecordFeatureCache;
+import picard.reference.ReferenceCache;
 
 import java.io.File;
 import java.util.Arrays;
@@ -77,6 +79,12 @@ public abstract class SinglePassSamProgram extends CommandLineProgram {
 
     private static final Log log = Log.getInstance(SinglePassSamProgram.class);
 
+    /**
+     * Per-record derived features, shared by all the programs run over the same traversal. Set before setup()
+     * is called, so subclasses can hand it on to their collectors.
+     */
+    protected SAMRecordFeatureCache recordFeatures = new SAMRecordFeatureCache();
+
     /**
      * Set the reference File.
      */
@@ -111,7 +119,10 @@ public abstract class SinglePassSamProgram extends CommandLineProgram {
             walker = null;
         } else {
             IOUtil.assertFileIsReadable(referenceSequence);
-            walker = new ReferenceSequenceFileWalker(referenceSequence);
+            // collectors are handed whole contigs, in coordinate order, so the cache is walked like the FASTA but without parsing it
+            final ReferenceCache referenceCache = ReferenceCache.forReference(referenceSequence);
+            walker = referenceCache == null ? new ReferenceSequenceFileWalker(referenceSequence) :
+                    new ReferenceSequenceFileWalker(referenceCache.newReferenceSequenceFile());
 
             if (!in.getFileHeader().getSequenceDictionary().isEmpty()) {
                 SequenceUtil.assertSequenceDictionariesEqual(in.getFileHeader().getSequenceDictionary(),
@@ -135,10 +146,12 @@ public abstract class SinglePassSamProgram extends CommandLineProgram {
 
         // Call the abstract setup method!
         boolean anyUseNoRefReads = false;
+        final SAMRecordFeatureCache recordFeatures = new SAMRecordFeatureCache();
         for (final SinglePassSamProgram program : programs) {
             if (program.OUTPUT == null) {
                 program.OUTPUT = program.output.getOutputFile();
             }
+            program.recordFeatures = recordFeatures;
             program.setup(in.getFileHeader(), input);
             anyUseNoRefReads = anyUseNoRefReads || program.usesNoRefReads();
         }
@@ -176,6 +189,11 @@ public abstract class SinglePassSamProgram extends CommandLineProgram {
         for (final SinglePassSamProgram program : programs) {
             program.finish();
         }
+
+        if (recordFeatures.getHits() + recordFeatures.getMisses() > 0) {
+            log.info(String.format("Shared per-record features: %d computed, %d reused (%.1f%% reused).",
+                    recordFeatures.getMisses(), recordFeatures.getHits(), 100 * recordFeatures.getHitRate()));
+        }
     }
 
     /** Can be overridden and set to false if the section of unmapped reads at the end of the file isn't needed. */
@@ -33,6 +33,7 @@ import picard.PicardException;
 import picard.util.MathUtil;
 
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -49,6 +50,19 @@ public class TheoreticalSensitivity {
     private static final int LARGE_NUMBER_OF_DRAWS = 10; // The number of draws at which we believe a Gaussian approximation to sum random variables.
     private static final double DEPTH_BIN_WIDTH = 0.01; // Minimal fraction of depth histogram to use when integrating theoretical sensitivity.  This ensures we don't calculate theoretical sensitivity at every depth, which would be computationally expensive.
     private static final int RANDOM_SEED = 51;
+    private static final int MAX_MEMOIZED_SENSITIVITIES = 100000; // Bounds the memory used by the cache of sensitivities at constant depth.
+
+    /**
+     * Sensitivities at constant depth that have already been simulated. The simulation is deterministic for a
+     * given random seed, so results can be reused across calls and across samples that share a quality histogram.
+     */
+    private static final Map<ConstantDepthKey, Double> constantDepthSensitivities = Collections.synchronizedMap(
+            new LinkedHashMap<ConstantDepthKey, Double>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<ConstantDepthKey, Double> eldest) {
+                    return size() > MAX_MEMOIZED_SENSITIVITIES;
+                }
+            });
 
     /**
      * @param depthDistribution   the probability of depth n is depthDistribution[n] for n = 0, 1. . . N - 1
@@ -249,6 +263,22 @@ public class TheoreticalSensitivity {
             return 0.0;
         }
 
+        final ConstantDepthKey key = new ConstantDepthKey(depth, qualityHistogram, logOddsThreshold, sampleSize, alleleFraction, randomSeed);
+        final Double memoized = constantDepthSensitivities.get(key);
+        if (memoized != null) {
+            return memoized;
+        }
+        final double sensitivity = simulateSensitivityAtConstantDepth(depth, qualityHistogram, logOddsThreshold, sampleSize, alleleFraction, randomSeed);
+        constantDepthSensitivities.put(key, sensitivity);
+        return sensitivity;
+    }
+
+    /**
+     * Runs the simulation behind {@link #sensitivityAtConstantDepth(int, Histogram, double, int, double, long)}.
+     */
+    @VisibleForTesting
+    static double simulateSensitivityAtConstantDepth(final int depth, final Histogram<Integer> qualityHistogram, final double logOddsThreshold, final int sampleSize, final double alleleFraction, final long randomSeed) {
+
         final RouletteWheel qualityRW = new RouletteWheel(trimDistribution(normalizeHistogram(qualityHistogram)));
         final Random randomNumberGenerator = new Random(randomSeed);
         final RandomGenerator rg = new Well19937c(randomSeed);
@@ -327,10 +357,11 @@ public class TheoreticalSensitivity {
 
         final double[] depthDistribution = normalizeHistogram(depthHistogram);
 
-        // Integrate sensitivity over depth distribution
-        double sensitivity = 0.0;
+        // Bin the depth distribution, then simulate the bins in parallel. Each depth seeds its own random
+        // number generators, so the result does not depend on the order in which the bins are simulated.
+        final List<Integer> binDepths = new ArrayList<>();
+        final List<Double> binProbabilities = new ArrayList<>();
         int currentDepth = 0;
-        double right = 0;
         while (currentDepth < depthDistribution.length) {
             double deltaDepthProbability = 0.0;
             // Accumulate a portion of the depth distribution to compute theoretical sensitivity over.
@@ -344,10 +375,20 @@ public class TheoreticalSensitivity {
                 deltaDepthProbability += depthDistribution[currentDepth];
                 currentDepth++;
             }
-            // Calculate sensitivity for a particular depth, and use trapezoid rule to integrate sensitivity.
+            binDepths.add(currentDepth);
+            binProbabilities.add(deltaDepthProbability);
+        }
+        final double[] binSensitivities = binDepths.parallelStream()
+                .mapToDouble(depth -> sensitivityAtConstantDepth(depth, qualityHistogram, logOddsThreshold, sampleSize, alleleFraction))
+                .toArray();
+
+        // Integrate sensitivity over depth distribution using the trapezoid rule.
+        double sensitivity = 0.0;
+        double right = 0;
+        for (int i = 0; i < binSensitivities.length; i++) {
             final double left = right;
-            right = sensitivityAtConstantDepth(currentDepth, qualityHistogram, logOddsThreshold, sampleSize, alleleFraction);
-            sensitivity += deltaDepthProbability * (left + right) / 2.0;
+            right = binSensitivities[i];
+            sensitivity += binProbabilities.get(i) * (left + right) / 2.0;
         }
         return sensitivity;
     }
@@ -388,21 +429,75 @@ public class TheoreticalSensitivity {
     public static List<TheoreticalSensitivityMetrics> calculateSensitivities(final int simulationSize,
                                               final Histogram<Integer> depthHistogram, final Histogram<Integer> baseQHistogram, final List<Double> alleleFractions) {
 
-        final List<TheoreticalSensitivityMetrics> metricsOverVariousAlleleFractions = new ArrayList<>();
         final double logOddsThreshold = 6.2; // This threshold is used because it is the value used for MuTect2.
 
-        // For each allele fraction in alleleFractions calculate theoretical sensitivity and add the results
-        // to the histogram sensitivityHistogram.
-        for (final double alleleFraction : alleleFractions) {
+        // For each allele fraction in alleleFractions calculate theoretical sensitivity, in parallel and in order.
+        return alleleFractions.parallelStream().map(alleleFraction -> {
             final TheoreticalSensitivityMetrics theoreticalSensitivityMetrics = new TheoreticalSensitivityMetrics();
             theoreticalSensitivityMetrics.ALLELE_FRACTION = alleleFraction;
             theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY = TheoreticalSensitivity.theoreticalSensitivity(depthHistogram, baseQHistogram, simulationSize, logOddsThreshold, alleleFraction);
             theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY_Q = QualityUtil.getPhredScoreFromErrorProbability((1 - theoreticalSensitivityMetrics.THEORETICAL_SENSITIVITY));
             theoreticalSensitivityMetrics.SAMPLE_SIZE = simulationSize;
             theoreticalSensitivityMetrics.LOG_ODDS_THRESHOLD = logOddsThreshold;
-            metricsOverVariousAlleleFractions.add(theoreticalSensitivityMetrics);
+            return theoreticalSensitivityMetrics;
+        }).collect(Collectors.toList());
+    }
+
+    @VisibleForTesting
+    static int memoizedSensitivityCount() {
+        return constantDepthSensitivities.size();
+    }
+
+    @VisibleForTesting
+    static void clearMemoizedSensitivities() {
+        constantDepthSensitivities.clear();
+    }
+
+    /**
+     * Key of a memoized sensitivity at constant depth. The quality histogram is held by value, as (quality, count) pairs.
+     */
+    private static class ConstantDepthKey {
+        private final int depth;
+        private final long[] qualityCounts;
+        private final double logOddsThreshold;
+        private final int sampleSize;
+        private final double alleleFraction;
+        private final long randomSeed;
+        private final int hashCode;
+
+        ConstantDepthKey(final int depth, final Histogram<Integer> qualityHistogram, final double logOddsThreshold,
+                         final int sampleSize, final double alleleFraction, final long randomSeed) {
+            this.depth = depth;
+            this.logOddsThreshold = logOddsThreshold;
+            this.sampleSize = sampleSize;
+            this.alleleFraction = alleleFraction;
+            this.randomSeed = randomSeed;
+
+            qualityCounts = new long[2 * qualityHistogram.size()];
+            int i = 0;
+            for (final Integer quality : qualityHistogram.keySet()) {
+                qualityCounts[i++] = quality;
+                qualityCounts[i++] = Double.doubleToLongBits(qualityHistogram.get(quality).getValue());
+            }
+            hashCode = Objects.hash(depth, Arrays.hashCode(qualityCounts), logOddsThreshold, sampleSize, alleleFraction, randomSeed);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ConstantDepthKey)) return false;
+            final ConstantDepthKey that = (ConstantDepthKey) o;
+            return depth == that.depth &&
+                    sampleSize == that.sampleSize &&
+                    randomSeed == that.randomSeed &&
+                    Double.compare(logOddsThreshold, that.logOddsThreshold) == 0 &&
+                    Double.compare(alleleFraction, that.alleleFraction) == 0 &&
+                    Arrays.equals(qualityCounts, that.qualityCounts);
         }
 
-        return metricsOverVariousAlleleFractions;
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
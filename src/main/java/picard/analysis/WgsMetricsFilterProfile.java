@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.analysis;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.filter.AggregateFilter;
+import htsjdk.samtools.filter.SamRecordFilter;
+import picard.PicardException;
+import picard.filter.CountingAdapterFilter;
+import picard.filter.CountingDuplicateFilter;
+import picard.filter.CountingFilter;
+import picard.filter.CountingMapQFilter;
+import picard.filter.CountingPairedFilter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One set of the read and base filters of CollectWgsMetrics (MINIMUM_MAPPING_QUALITY, MINIMUM_BASE_QUALITY and
+ * COVERAGE_CAP), together with the file its metrics are written to and the counting filters that track the bases it
+ * excludes. Several profiles can be evaluated against the same pileup by {@link WgsMetricsProcessorImpl}.
+ */
+public class WgsMetricsFilterProfile {
+    final int minimumMappingQuality;
+    final int minimumBaseQuality;
+    final int coverageCap;
+    final File output;
+
+    final CountingFilter adapterFilter = new CountingAdapterFilter();
+    final CountingFilter mapqFilter;
+    final CountingFilter dupeFilter = new CountingDuplicateFilter();
+    final CountingPairedFilter pairFilter = new CountingPairedFilter();
+
+    public WgsMetricsFilterProfile(final int minimumMappingQuality, final int minimumBaseQuality, final int coverageCap, final File output) {
+        if (coverageCap <= 0) {
+            throw new PicardException("Coverage cap must be positive.");
+        }
+        this.minimumMappingQuality = minimumMappingQuality;
+        this.minimumBaseQuality = minimumBaseQuality;
+        this.coverageCap = coverageCap;
+        this.output = output;
+        this.mapqFilter = new CountingMapQFilter(minimumMappingQuality);
+    }
+
+    /**
+     * Parses a profile of the form MINIMUM_MAPPING_QUALITY,MINIMUM_BASE_QUALITY,COVERAGE_CAP,OUTPUT.
+     */
+    public static WgsMetricsFilterProfile parse(final String spec) {
+        final String[] fields = spec.split(",", 4);
+        if (fields.length != 4) {
+            throw new PicardException("Filter profile '" + spec + "' is not of the form MINIMUM_MAPPING_QUALITY,MINIMUM_BASE_QUALITY,COVERAGE_CAP,OUTPUT");
+        }
+        try {
+            return new WgsMetricsFilterProfile(Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()),
+                    Integer.parseInt(fields[2].trim()), new File(fields[3].trim()));
+        } catch (final NumberFormatException e) {
+            throw new PicardException("Filter profile '" + spec + "' is not of the form MINIMUM_MAPPING_QUALITY,MINIMUM_BASE_QUALITY,COVERAGE_CAP,OUTPUT", e);
+        }
+    }
+
+    /**
+     * @return the counting filters of this profile, in the order CollectWgsMetrics applies them
+     */
+    List<SamRecordFilter> getFilters(final boolean countUnpaired) {
+        final List<SamRecordFilter> filters = new ArrayList<>();
+        // The order in which filters are added matters!
+        filters.add(adapterFilter);
+        filters.add(mapqFilter);
+        filters.add(dupeFilter);
+        if (!countUnpaired) {
+            filters.add(pairFilter);
+        }
+        return filters;
+    }
+
+    /**
+     * A filter that lets a read through if any of the given filter chains does. Every chain sees every read,
+     * so that the counting filters of each profile count exactly what they would count on their own.
+     */
+    static class AnyChainPassesFilter implements SamRecordFilter {
+        private final List<AggregateFilter> chains = new ArrayList<>();
+
+        AnyChainPassesFilter(final List<List<SamRecordFilter>> chains) {
+            for (final List<SamRecordFilter> chain : chains) {
+                this.chains.add(new AggregateFilter(chain));
+            }
+        }
+
+        @Override
+        public boolean filterOut(final SAMRecord record) {
+            boolean filteredOut = true;
+            for (final AggregateFilter chain : chains) {
+                if (!chain.filterOut(record)) {
+                    filteredOut = false;
+                }
+            }
+            return filteredOut;
+        }
+
+        @Override
+        public boolean filterOut(final SAMRecord first, final SAMRecord second) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
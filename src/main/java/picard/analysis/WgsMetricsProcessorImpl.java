@@ -36,6 +36,8 @@ import picard.filter.CountingFilter;
 import picard.filter.CountingPairedFilter;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.stream.LongStream;
 
 /**
@@ -52,6 +54,10 @@ public class WgsMetricsProcessorImpl<T extends AbstractRecordAndOffset> implemen
      * Accumulates the data from iterator
      */
     private final AbstractWgsMetricsCollector<T> collector;
+    /**
+     * All the collectors fed from the iterator, one per filter profile; the first is {@link #collector}
+     */
+    private final List<AbstractWgsMetricsCollector<T>> collectors;
     /**
      * ReferenceWalker for a processed reference sequence
      */
@@ -73,8 +79,29 @@ public class WgsMetricsProcessorImpl<T extends AbstractRecordAndOffset> implemen
             ReferenceSequenceFileWalker refWalker,
             AbstractWgsMetricsCollector<T> collector,
             ProgressLogger progress) {
+        this(iterator, refWalker, Collections.singletonList(collector), progress);
+    }
+
+    /**
+     * Creates a processor that feeds every locus to several collectors, each evaluating its own filter profile, so that
+     * several sets of metrics are collected in a single traversal of the input. The iterator must let through every read
+     * that any of the collectors counts. Stopping and {@link #addToMetricsFile} follow the first collector.
+     *
+     * @param iterator   input {@link htsjdk.samtools.util.AbstractLocusIterator}
+     * @param refWalker  over processed reference file
+     * @param collectors input {@link picard.analysis.AbstractWgsMetricsCollector}s, at least one
+     * @param progress   logger
+     */
+    public WgsMetricsProcessorImpl(AbstractLocusIterator<T, AbstractLocusInfo<T>> iterator,
+            ReferenceSequenceFileWalker refWalker,
+            List<AbstractWgsMetricsCollector<T>> collectors,
+            ProgressLogger progress) {
+        if (collectors.isEmpty()) {
+            throw new IllegalArgumentException("At least one collector is required.");
+        }
         this.iterator = iterator;
-        this.collector = collector;
+        this.collectors = collectors;
+        this.collector = collectors.get(0);
         this.refWalker = refWalker;
         this.progress = progress;
     }
@@ -90,7 +117,9 @@ public class WgsMetricsProcessorImpl<T extends AbstractRecordAndOffset> implemen
             final AbstractLocusInfo<T> info = iterator.next();
             final ReferenceSequence ref = refWalker.get(info.getSequenceIndex());
             boolean referenceBaseN = collector.isReferenceBaseN(info.getPosition(), ref);
-            collector.addInfo(info, ref, referenceBaseN);
+            for (final AbstractWgsMetricsCollector<T> profileCollector : collectors) {
+                profileCollector.addInfo(info, ref, referenceBaseN);
+            }
             if (referenceBaseN) {
                 continue;
             }
@@ -99,13 +128,17 @@ public class WgsMetricsProcessorImpl<T extends AbstractRecordAndOffset> implemen
             if (collector.isTimeToStop(++counter)) {
                 break;
             }
-            collector.setCounter(counter);
+            for (final AbstractWgsMetricsCollector<T> profileCollector : collectors) {
+                profileCollector.setCounter(counter);
+            }
         }
         // check that we added the same number of bases to the raw coverage histogram and the base quality histograms
-        final long sumBaseQ = Arrays.stream(collector.unfilteredBaseQHistogramArray).sum();
-        final long sumDepthHisto = LongStream.rangeClosed(0, collector.coverageCap).map(i -> (i * collector.unfilteredDepthHistogramArray[(int) i])).sum();
-        if (sumBaseQ != sumDepthHisto) {
-            log.error("Coverage and baseQ distributions contain different amount of bases!");
+        for (final AbstractWgsMetricsCollector<T> profileCollector : collectors) {
+            final long sumBaseQ = Arrays.stream(profileCollector.unfilteredBaseQHistogramArray).sum();
+            final long sumDepthHisto = LongStream.rangeClosed(0, profileCollector.coverageCap).map(i -> (i * profileCollector.unfilteredDepthHistogramArray[(int) i])).sum();
+            if (sumBaseQ != sumDepthHisto) {
+                log.error("Coverage and baseQ distributions contain different amount of bases!");
+            }
         }
     }
 
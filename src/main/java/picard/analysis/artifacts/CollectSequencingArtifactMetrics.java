@@ -258,7 +258,7 @@ static final String USAGE_DETAILS = "<p>This tool examines two sources of sequen
         }
 
         // iterate over aligned positions
-        for (final AlignmentBlock block : rec.getAlignmentBlocks()) {
+        for (final AlignmentBlock block : recordFeatures.getAlignmentBlocks(rec)) {
             for (int offset = 0; offset < block.getLength(); offset++) {
                 // remember, these are 1-based!
                 final int readPos = block.getReadStart() + offset;
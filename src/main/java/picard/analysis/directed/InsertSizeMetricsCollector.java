@@ -56,7 +56,7 @@ public class InsertSizeMetricsCollector extends MultiLevelCollector<InsertSizeMe
     @Override
     protected InsertSizeCollectorArgs makeArg(SAMRecord samRecord, ReferenceSequence refSeq) {
         final int insertSize = Math.abs(samRecord.getInferredInsertSize());
-        final SamPairUtil.PairOrientation orientation = SamPairUtil.getPairOrientation(samRecord);
+        final SamPairUtil.PairOrientation orientation = recordFeatures.getPairOrientation(samRecord);
 
         return new InsertSizeCollectorArgs(insertSize, orientation);
     }
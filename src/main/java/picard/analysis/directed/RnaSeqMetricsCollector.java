@@ -184,7 +184,7 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
             }
 
             final Collection<Gene> overlappingGenes                  = geneOverlapDetector.getOverlaps(readInterval);
-            final List<AlignmentBlock> alignmentBlocks               = rec.getAlignmentBlocks();
+            final List<AlignmentBlock> alignmentBlocks               = recordFeatures.getAlignmentBlocks(rec);
             boolean overlapsExon = false;
 
             for (final AlignmentBlock alignmentBlock : alignmentBlocks) {
@@ -278,7 +278,7 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
                             final Cigar mateCigar         = SAMUtils.getMateCigar(rec);
                             final int mateReferenceLength = (mateCigar == null) ? rec.getReadLength() : mateCigar.getReferenceLength();
                             final int mateAlignmentEnd    =  CoordMath.getEnd(rec.getMateAlignmentStart(), mateReferenceLength);
-                            properOrientation    = SamPairUtil.getPairOrientation(rec) == SamPairUtil.PairOrientation.FR;
+                            properOrientation    = recordFeatures.getPairOrientation(rec) == SamPairUtil.PairOrientation.FR;
                             leftMostAlignedBase  = Math.min(rec.getAlignmentStart(), rec.getMateAlignmentStart());
                             rightMostAlignedBase = Math.max(rec.getAlignmentEnd(), mateAlignmentEnd);
                         }
@@ -302,11 +302,7 @@ public class RnaSeqMetricsCollector extends SAMRecordMultiLevelCollector<RnaSeqM
         }
 
         protected int getNumAlignedBases(SAMRecord rec) {
-            int numAlignedBases = 0;
-            for (final AlignmentBlock alignmentBlock : rec.getAlignmentBlocks()) {
-                numAlignedBases += alignmentBlock.getLength();
-            }
-            return numAlignedBases;
+            return recordFeatures.getAlignedBaseCount(rec);
         }
 
         public void finish() {
@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.filter;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.filter.SamRecordFilter;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import picard.PicardException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Filters records by whether their read names are in a list of names, like htsjdk's ReadNameFilter, but holding
+ * the list as a sorted array of 64-bit hashes of the names, searched by bisection, rather than as a set of strings.
+ * That takes eight bytes per name however long the names are, so lists of hundreds of millions of names fit in a few
+ * gigabytes of heap.
+ *
+ * The first whitespace-delimited word of each non-blank line of the file is a read name.  A read name which is not in
+ * the list is taken as being in it only if its hash matches that of a name which is: with N names in the list, this
+ * happens to about one read in 2^64/N, one in 37 billion for a list of 500 million names.
+ */
+public class ReadNameHashFilter implements SamRecordFilter {
+    private static final Log log = Log.getInstance(ReadNameHashFilter.class);
+
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final boolean includeReads;
+    private long[] hashes = new long[1 << 16];
+    private int size = 0;
+
+    /**
+     * @param readNameFile the file of read names, one per line
+     * @param includeReads whether to keep the reads whose names are in the file, rather than those whose names are not
+     */
+    public ReadNameHashFilter(final File readNameFile, final boolean includeReads) {
+        this.includeReads = includeReads;
+        IOUtil.assertFileIsReadable(readNameFile);
+        try (final BufferedReader reader = IOUtil.openFileForBufferedReading(readNameFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String trimmed = line.trim();
+                if (!trimmed.isEmpty()) {
+                    add(hash(trimmed.split("\\s+", 2)[0]));
+                }
+            }
+        } catch (final IOException e) {
+            throw new PicardException("Error reading read names from " + readNameFile.getAbsolutePath(), e);
+        }
+
+        Arrays.parallelSort(hashes, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; ++i) {
+            if (distinct == 0 || hashes[i] != hashes[distinct - 1]) {
+                hashes[distinct++] = hashes[i];
+            }
+        }
+        size = distinct;
+        hashes = Arrays.copyOf(hashes, size);
+        log.info("Loaded " + size + " distinct read names from " + readNameFile.getAbsolutePath());
+    }
+
+    private void add(final long hash) {
+        if (size == hashes.length) {
+            if (size == MAX_ARRAY_LENGTH) {
+                throw new PicardException("Too many read names: at most " + MAX_ARRAY_LENGTH + " are supported.");
+            }
+            hashes = Arrays.copyOf(hashes, (int) Math.min(2L * size, MAX_ARRAY_LENGTH));
+        }
+        hashes[size++] = hash;
+    }
+
+    /** Whether the name is in the list, barring a hash collision. */
+    public boolean contains(final String readName) {
+        return Arrays.binarySearch(hashes, 0, size, hash(readName)) >= 0;
+    }
+
+    @Override
+    public boolean filterOut(final SAMRecord record) {
+        return contains(record.getReadName()) != includeReads;
+    }
+
+    @Override
+    public boolean filterOut(final SAMRecord first, final SAMRecord second) {
+        return filterOut(first) || filterOut(second);
+    }
+
+    /** FNV-1a over the characters of the name, followed by the SplitMix64 finalizer so every bit of the hash is mixed. */
+    private static long hash(final String readName) {
+        long h = SEED;
+        for (int i = 0; i < readName.length(); ++i) {
+            h = (h ^ readName.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
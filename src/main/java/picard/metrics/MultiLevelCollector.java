@@ -74,6 +74,14 @@ public abstract class MultiLevelCollector<METRIC_TYPE extends MetricBase, Histog
     //these will be listed in the order in which their children would be added to a metric file
     private List<Distributor> outputOrderedDistributors;
 
+    //Per-record derived features, possibly shared with other collectors that see the same records
+    protected SAMRecordFeatureCache recordFeatures = new SAMRecordFeatureCache();
+
+    /** Share a per-record feature cache with other collectors fed the same records, so features are computed once per record. */
+    public void setRecordFeatureCache(final SAMRecordFeatureCache recordFeatures) {
+        this.recordFeatures = recordFeatures;
+    }
+
     //Convert the current SAMRecord and the ReferenceSequence for that record into an ARGTYPE object
     //see accept record for use
     protected abstract ARGTYPE makeArg(final SAMRecord samRec, final ReferenceSequence refSeq);
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.metrics;
+
+import htsjdk.samtools.AlignmentBlock;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamPairUtil;
+import htsjdk.samtools.util.SequenceUtil;
+
+import java.util.List;
+
+/**
+ * Lazily computes, and remembers, per-record derived features (alignment blocks, aligned base count, pair
+ * orientation, mismatch and indel counts) for the record currently being processed.  A single cache is shared
+ * between all the collectors fed by one traversal, e.g. the programs run by CollectMultipleMetrics, so each
+ * feature is computed at most once per record no matter how many collectors or accumulation levels use it.
+ *
+ * The cache holds the features of a single record, identified by reference, and resets itself as soon as it
+ * is asked about a different record.  It is not thread-safe.
+ */
+public class SAMRecordFeatureCache {
+    private SAMRecord record;
+
+    private List<AlignmentBlock> alignmentBlocks;
+    private int alignedBaseCount = -1;
+    private SamPairUtil.PairOrientation pairOrientation;
+    private int indelBaseCount = -1;
+
+    // Mismatches depend on the reference bases and on whether bisulfite conversions count, so remember each variant
+    private byte[] mismatchRefBases;
+    private int mismatchCount = -1;
+    private int bisulfiteMismatchCount = -1;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /** The alignment blocks of the record, as returned by {@link SAMRecord#getAlignmentBlocks()}. */
+    public List<AlignmentBlock> getAlignmentBlocks(final SAMRecord rec) {
+        reset(rec);
+        if (alignmentBlocks != null) {
+            ++hits;
+        } else {
+            ++misses;
+            alignmentBlocks = rec.getAlignmentBlocks();
+        }
+        return alignmentBlocks;
+    }
+
+    /** The total length of the alignment blocks of the record. */
+    public int getAlignedBaseCount(final SAMRecord rec) {
+        reset(rec);
+        if (alignedBaseCount >= 0) {
+            ++hits;
+        } else {
+            ++misses;
+            if (alignmentBlocks == null) {
+                alignmentBlocks = rec.getAlignmentBlocks();
+            }
+            int count = 0;
+            for (final AlignmentBlock block : alignmentBlocks) {
+                count += block.getLength();
+            }
+            alignedBaseCount = count;
+        }
+        return alignedBaseCount;
+    }
+
+    /** The pair orientation of the record, as returned by {@link SamPairUtil#getPairOrientation(SAMRecord)}. */
+    public SamPairUtil.PairOrientation getPairOrientation(final SAMRecord rec) {
+        reset(rec);
+        if (pairOrientation != null) {
+            ++hits;
+        } else {
+            ++misses;
+            pairOrientation = SamPairUtil.getPairOrientation(rec);
+        }
+        return pairOrientation;
+    }
+
+    /** The number of mismatches of the record against the given reference bases, as from {@link SequenceUtil#countMismatches(SAMRecord, byte[], boolean)}. */
+    public int getMismatchCount(final SAMRecord rec, final byte[] refBases, final boolean bisulfiteSequence) {
+        reset(rec);
+        if (refBases != mismatchRefBases) {
+            mismatchRefBases = refBases;
+            mismatchCount = -1;
+            bisulfiteMismatchCount = -1;
+        }
+
+        final int cached = bisulfiteSequence ? bisulfiteMismatchCount : mismatchCount;
+        if (cached >= 0) {
+            ++hits;
+            return cached;
+        }
+
+        ++misses;
+        final int count = SequenceUtil.countMismatches(rec, refBases, bisulfiteSequence);
+        if (bisulfiteSequence) {
+            bisulfiteMismatchCount = count;
+        } else {
+            mismatchCount = count;
+        }
+        return count;
+    }
+
+    /** The number of inserted plus deleted bases in the alignment of the record. */
+    public int getIndelBaseCount(final SAMRecord rec) {
+        reset(rec);
+        if (indelBaseCount >= 0) {
+            ++hits;
+        } else {
+            ++misses;
+            indelBaseCount = SequenceUtil.countInsertedBases(rec) + SequenceUtil.countDeletedBases(rec);
+        }
+        return indelBaseCount;
+    }
+
+    /** The number of requests answered from the cache. */
+    public long getHits() { return hits; }
+
+    /** The number of requests that had to be computed. */
+    public long getMisses() { return misses; }
+
+    /** The fraction of requests answered from the cache, or 0 if there were none. */
+    public double getHitRate() {
+        final long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    private void reset(final SAMRecord rec) {
+        if (rec == record) return;
+        record = rec;
+        alignmentBlocks = null;
+        alignedBaseCount = -1;
+        pairOrientation = null;
+        indelBaseCount = -1;
+        mismatchRefBases = null;
+        mismatchCount = -1;
+        bisulfiteMismatchCount = -1;
+    }
+}
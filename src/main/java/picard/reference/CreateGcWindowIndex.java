@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.reference;
+
+import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import picard.analysis.GcWindowIndex;
+import picard.cmdline.CommandLineProgram;
+import picard.cmdline.StandardOptionDefinitions;
+import picard.cmdline.programgroups.ReferenceProgramGroup;
+
+import java.io.File;
+
+/**
+ * A tool to precompute the reference window GC content used by CollectGcBiasMetrics.
+ */
+@CommandLineProgramProperties(
+        summary = CreateGcWindowIndex.USAGE_SUMMARY + CreateGcWindowIndex.USAGE_DETAILS,
+        oneLineSummary = CreateGcWindowIndex.USAGE_SUMMARY,
+        programGroup = ReferenceProgramGroup.class
+)
+@DocumentedFeature
+public class CreateGcWindowIndex extends CommandLineProgram {
+    static final String USAGE_SUMMARY = "Creates a GC window index of a fasta file for use by CollectGcBiasMetrics.";
+
+    static final String USAGE_DETAILS = "This tool scans a FASTA-formatted reference once and records the GC content of " +
+            "every scanning window of the given size, along with the genome-wide number of windows at each GC. " +
+            "Passing the resulting file to CollectGcBiasMetrics as GC_WINDOW_INDEX (with the same WINDOW_SIZE) saves it " +
+            "from recalculating the reference GC content on every run.<br />" +
+            "<h4>Usage example:</h4>" +
+            "<pre>" +
+            "java -jar picard.jar CreateGcWindowIndex \\<br />" +
+            "      R=reference_sequence.fasta \\<br />" +
+            "      O=reference_sequence.100" + GcWindowIndex.FILE_EXTENSION +
+            "</pre>" +
+            "<hr />"
+            ;
+
+    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME, doc = "The GC window index file to write.")
+    public File OUTPUT;
+
+    @Argument(shortName = "WINDOW_SIZE", doc = "The size of the scanning windows on the reference genome. Must match the " +
+            "SCAN_WINDOW_SIZE given to CollectGcBiasMetrics.")
+    public int SCAN_WINDOW_SIZE = 100;
+
+    @Override
+    protected boolean requiresReference() {
+        return true;
+    }
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (SCAN_WINDOW_SIZE < 1) {
+            return new String[]{"SCAN_WINDOW_SIZE must be positive."};
+        }
+        return super.customCommandLineValidation();
+    }
+
+    @Override
+    protected int doWork() {
+        IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
+        IOUtil.assertFileIsWritable(OUTPUT);
+
+        GcWindowIndex.build(REFERENCE_SEQUENCE, SCAN_WINDOW_SIZE, OUTPUT);
+        return 0;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.reference;
+
+import htsjdk.samtools.util.IOUtil;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import picard.cmdline.CommandLineProgram;
+import picard.cmdline.programgroups.ReferenceProgramGroup;
+
+/**
+ * A tool to build the memory-mapped reference cache used by tools that recompute tags or walk the reference.
+ */
+@CommandLineProgramProperties(
+        summary = CreateReferenceCache.USAGE_SUMMARY + CreateReferenceCache.USAGE_DETAILS,
+        oneLineSummary = CreateReferenceCache.USAGE_SUMMARY,
+        programGroup = ReferenceProgramGroup.class
+)
+@DocumentedFeature
+public class CreateReferenceCache extends CommandLineProgram {
+    static final String USAGE_SUMMARY = "Creates a memory-mapped cache of the bases of a fasta file.";
+
+    static final String USAGE_DETAILS = "This tool reads a FASTA-formatted reference once and writes its bases, one byte per base, " +
+            "to a file next to it named after the FASTA with the extension " + ReferenceCache.FILE_EXTENSION + ". When that file exists, " +
+            "and the FASTA has not changed since it was built, MergeBamAlignment, SetNmMdAndUqTags and LiftoverVcf look up just the " +
+            "bases around each read or variant in the memory-mapped cache, in any order, and CollectSamErrorMetrics and the single-pass " +
+            "metrics programs (e.g. CollectMultipleMetrics) read whole contigs from it instead of parsing the FASTA. The cache is shared " +
+            "between concurrent jobs through the page cache. Rebuild it after changing the FASTA.<br />" +
+            "<h4>Usage example:</h4>" +
+            "<pre>" +
+            "java -jar picard.jar CreateReferenceCache \\<br />" +
+            "      R=reference_sequence.fasta" +
+            "</pre>" +
+            "<hr />"
+            ;
+
+    @Override
+    protected boolean requiresReference() {
+        return true;
+    }
+
+    @Override
+    protected int doWork() {
+        IOUtil.assertFileIsReadable(REFERENCE_SEQUENCE);
+
+        ReferenceCache.build(REFERENCE_SEQUENCE);
+        return 0;
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.reference;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import picard.PicardException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped copy of the bases of a FASTA reference, kept in a sidecar file next to the FASTA (see {@link #cacheFileFor(File)})
+ * and built once by {@link CreateReferenceCache}.  Each contig is stored as one byte per base, exactly as read from the FASTA, so any
+ * stretch of any contig can be reached at random and without parsing through {@link #getBases(int, int, int)}, which views the
+ * mapped cache without copying it.  Tools that look up the bases around each read or variant use it that way, so their lookups
+ * cost the same in whatever order the contigs are visited; tools that hand whole contigs to code that needs a
+ * {@link ReferenceSequence} can still read them through {@link #newReferenceSequenceFile()}, which copies each contig they ask for.
+ *
+ * The whole cache is mapped when it is opened, in as few mappings as fit the contigs, and its file is closed straight away; the
+ * mappings are released when the cache and every buffer viewing it have been garbage collected.  Opened caches are shared by every
+ * user in the process, and through the page cache by every process using the same reference.
+ *
+ * The cache is taken to be up to date when the FASTA has the size, modification time and checksum of sampled blocks (see
+ * {@link #sampleChecksum(File)}) it had when the cache was built.  That is checked each time the cache is asked for, and a cache that
+ * has gone out of date, or whose file has been rebuilt, is dropped from the shared caches.  A change to the FASTA that keeps its size
+ * and modification time and misses every sampled block is not detected, so run {@link #build(File)} again after changing a FASTA.
+ */
+public class ReferenceCache {
+    /** The extension appended to the FASTA file name to name its cache. */
+    public static final String FILE_EXTENSION = ".refcache";
+
+    private static final int MAGIC = 0x52454643; // "REFC"
+    private static final int VERSION = 2;
+
+    /** The number and size of the blocks of the FASTA read to checksum it. */
+    private static final int SAMPLE_BLOCKS = 64;
+    private static final int SAMPLE_BLOCK_SIZE = 4096;
+
+    private static final Log log = Log.getInstance(ReferenceCache.class);
+
+    /** The caches opened in this process, by cache file path.  Caches found to be out of date or rebuilt are removed. */
+    private static final Map<String, ReferenceCache> openCaches = new ConcurrentHashMap<>();
+
+    private final File file;
+    /** The size and modification time of the cache file when it was opened. */
+    private final long fileLength;
+    private final long fileLastModified;
+    private final SAMSequenceDictionary dictionary;
+    /** The read-only mappings of the cache, and for each contig the mapping holding it and its offset there. */
+    private final ByteBuffer[] regions;
+    private final int[] contigRegions;
+    private final int[] contigOffsets;
+    /** The size, modification time and sampled checksum of the FASTA when the cache was built. */
+    private final long fastaLength;
+    private final long fastaLastModified;
+    private final long fastaChecksum;
+
+    private ReferenceCache(final File file, final long fileLength, final long fileLastModified, final SAMSequenceDictionary dictionary,
+                           final ByteBuffer[] regions, final int[] contigRegions, final int[] contigOffsets,
+                           final long fastaLength, final long fastaLastModified, final long fastaChecksum) {
+        this.file = file;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.dictionary = dictionary;
+        this.regions = regions;
+        this.contigRegions = contigRegions;
+        this.contigOffsets = contigOffsets;
+        this.fastaLength = fastaLength;
+        this.fastaLastModified = fastaLastModified;
+        this.fastaChecksum = fastaChecksum;
+    }
+
+    /** The cache file of the given FASTA. */
+    public static File cacheFileFor(final File fasta) {
+        return new File(fasta.getPath() + FILE_EXTENSION);
+    }
+
+    /**
+     * Reads the FASTA once and writes its cache.  The cache is written to a temporary file that is then moved into place, so
+     * that concurrent jobs never see a partial cache.
+     */
+    public static void build(final File fasta) {
+        IOUtil.assertFileIsReadable(fasta);
+        final File output = cacheFileFor(fasta);
+        IOUtil.assertFileIsWritable(output);
+
+        final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta);
+        final List<String> names = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+        File tmp = null;
+        try {
+            tmp = File.createTempFile(output.getName(), ".tmp", output.getAbsoluteFile().getParentFile());
+            try (final RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                ReferenceSequence ref;
+                while ((ref = refFile.nextSequence()) != null) {
+                    names.add(ref.getName());
+                    lengths.add(ref.length());
+                    offsets.add(out.getFilePointer());
+                    out.write(ref.getBases());
+                    log.info("Cached " + ref.getName());
+                }
+
+                final long trailerOffset = out.getFilePointer();
+                out.writeLong(fasta.length());
+                out.writeLong(fasta.lastModified());
+                out.writeLong(sampleChecksum(fasta));
+                out.writeInt(names.size());
+                for (int i = 0; i < names.size(); ++i) {
+                    out.writeUTF(names.get(i));
+                    out.writeInt(lengths.get(i));
+                    out.writeLong(offsets.get(i));
+                }
+                out.writeLong(trailerOffset);
+            }
+            Files.move(tmp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            throw new PicardException("Error writing reference cache " + output.getAbsolutePath(), e);
+        } finally {
+            CloserUtil.close(refFile);
+            if (tmp != null && tmp.exists() && !tmp.delete()) {
+                log.warn("Could not delete " + tmp.getAbsolutePath());
+            }
+        }
+    }
+
+    /**
+     * Returns the process-wide cache of the given FASTA, opening it if this is the first request for it or its file has been
+     * rebuilt since it was opened, or null if the FASTA has no cache or its cache is out of date.
+     */
+    public static ReferenceCache forReference(final File fasta) {
+        final File cacheFile = cacheFileFor(fasta);
+        final String path = cacheFile.getAbsolutePath();
+        if (!cacheFile.exists()) {
+            openCaches.remove(path);
+            return null;
+        }
+
+        final ReferenceCache cache;
+        try {
+            cache = openCaches.compute(path, (key, opened) -> opened != null && opened.isSameFile() ? opened : open(fasta, cacheFile));
+        } catch (final PicardException e) {
+            log.warn(e, "Ignoring unusable reference cache " + path);
+            return null;
+        }
+        if (cache.isCurrentFor(fasta)) return cache;
+
+        // forget it, so that its mappings are released once its current users are done with it
+        openCaches.remove(path, cache);
+        return null;
+    }
+
+    /**
+     * A CRC32 of 64 blocks of 4 KiB spread evenly through the file, from its first
+     * byte to its last (or of the whole file, if it is smaller).  Cheap enough to check each time a cache is used, and catches most
+     * rewrites of a FASTA that keep its size and modification time.
+     */
+    static long sampleChecksum(final File fasta) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] block = new byte[SAMPLE_BLOCK_SIZE];
+        try (final RandomAccessFile in = new RandomAccessFile(fasta, "r")) {
+            final long length = in.length();
+            final long blocks = Math.min(SAMPLE_BLOCKS, (length + SAMPLE_BLOCK_SIZE - 1) / SAMPLE_BLOCK_SIZE);
+            for (long i = 0; i < blocks; ++i) {
+                final long start = blocks == 1 ? 0 : i * (length - SAMPLE_BLOCK_SIZE) / (blocks - 1);
+                final int size = (int) Math.min(SAMPLE_BLOCK_SIZE, length - start);
+                in.seek(start);
+                in.readFully(block, 0, size);
+                crc.update(block, 0, size);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static ReferenceCache open(final File fasta, final File cacheFile) {
+        try (final RandomAccessFile raf = new RandomAccessFile(cacheFile, "r")) {
+            final long fileLength = raf.length();
+            final long fileLastModified = cacheFile.lastModified();
+            if (fileLength < 16 || raf.readInt() != MAGIC) {
+                throw new PicardException(cacheFile.getAbsolutePath() + " is not a reference cache.");
+            }
+            final int version = raf.readInt();
+            if (version != VERSION) {
+                throw new PicardException("Unsupported reference cache version " + version + " in " + cacheFile.getAbsolutePath() +
+                        ". Rebuild it with CreateReferenceCache.");
+            }
+
+            raf.seek(fileLength - 8);
+            raf.seek(raf.readLong());
+            final long fastaLength = raf.readLong();
+            final long fastaLastModified = raf.readLong();
+            final long fastaChecksum = raf.readLong();
+            final int nContigs = raf.readInt();
+            final List<SAMSequenceRecord> sequences = new ArrayList<>(nContigs);
+            final long[] offsets = new long[nContigs];
+            for (int i = 0; i < nContigs; ++i) {
+                sequences.add(new SAMSequenceRecord(raf.readUTF(), raf.readInt()));
+                offsets[i] = raf.readLong();
+            }
+
+            // contigs are stored one after the other, so consecutive contigs share a mapping for as long as they fit in one
+            final List<ByteBuffer> regions = new ArrayList<>();
+            final int[] contigRegions = new int[nContigs];
+            final int[] contigOffsets = new int[nContigs];
+            int first = 0;
+            for (int i = 0; i <= nContigs; ++i) {
+                if (i == nContigs || (i > first && offsets[i] + sequences.get(i).getSequenceLength() - offsets[first] > Integer.MAX_VALUE)) {
+                    if (i > first) {
+                        final long end = offsets[i - 1] + sequences.get(i - 1).getSequenceLength();
+                        regions.add(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, offsets[first], end - offsets[first]));
+                    }
+                    first = i;
+                }
+                if (i < nContigs) {
+                    contigRegions[i] = regions.size();
+                    contigOffsets[i] = (int) (offsets[i] - offsets[first]);
+                }
+            }
+
+            return new ReferenceCache(cacheFile, fileLength, fileLastModified, dictionaryOf(fasta, sequences),
+                    regions.toArray(new ByteBuffer[0]), contigRegions, contigOffsets, fastaLength, fastaLastModified, fastaChecksum);
+        } catch (final IOException | RuntimeException e) {
+            if (e instanceof PicardException) throw (PicardException) e;
+            throw new PicardException("Error reading reference cache " + cacheFile.getAbsolutePath(), e);
+        }
+    }
+
+    /** Uses the FASTA's own sequence dictionary, if it has one, so that dictionary checks see exactly what they would without the cache. */
+    private static SAMSequenceDictionary dictionaryOf(final File fasta, final List<SAMSequenceRecord> sequences) {
+        final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta);
+        try {
+            final SAMSequenceDictionary dictionary = refFile.getSequenceDictionary();
+            if (dictionary != null) {
+                if (dictionary.size() != sequences.size()) {
+                    throw new PicardException("Reference cache of " + fasta.getAbsolutePath() + " does not match its sequence dictionary.");
+                }
+                for (int i = 0; i < sequences.size(); ++i) {
+                    final SAMSequenceRecord rec = dictionary.getSequence(i);
+                    if (!rec.getSequenceName().equals(sequences.get(i).getSequenceName()) ||
+                            rec.getSequenceLength() != sequences.get(i).getSequenceLength()) {
+                        throw new PicardException("Reference cache of " + fasta.getAbsolutePath() + " does not match its sequence " +
+                                "dictionary at contig " + rec.getSequenceName() + ".");
+                    }
+                }
+                return dictionary;
+            }
+            return new SAMSequenceDictionary(sequences);
+        } finally {
+            CloserUtil.close(refFile);
+        }
+    }
+
+    /** Whether the cache file is still the one that was opened, rather than having been rebuilt since. */
+    private boolean isSameFile() {
+        return file.length() == fileLength && file.lastModified() == fileLastModified;
+    }
+
+    /** Whether the FASTA has the size, modification time and sampled checksum it had when the cache was built. */
+    private boolean isCurrentFor(final File fasta) {
+        try {
+            if (fasta.length() == fastaLength && fasta.lastModified() == fastaLastModified && sampleChecksum(fasta) == fastaChecksum) {
+                return true;
+            }
+        } catch (final IOException e) {
+            log.warn(e, "Could not read " + fasta.getAbsolutePath());
+        }
+        log.warn("Ignoring reference cache " + file.getAbsolutePath() + " because " + fasta.getAbsolutePath() + " has changed since it was built.");
+        return false;
+    }
+
+    /** The sequence dictionary of the cached reference. */
+    public SAMSequenceDictionary getSequenceDictionary() { return dictionary; }
+
+    /** A read-only view of all the bases of the given contig, sharing the mapped cache.  Safe to call from several threads. */
+    public ByteBuffer getBases(final int contigIndex) {
+        final ByteBuffer bases = regions[contigRegions[contigIndex]].duplicate();
+        bases.position(contigOffsets[contigIndex]);
+        bases.limit(contigOffsets[contigIndex] + dictionary.getSequence(contigIndex).getSequenceLength());
+        return bases.slice();
+    }
+
+    /** A read-only view of the bases of the given contig from start to stop (1-based, inclusive), sharing the mapped cache. */
+    public ByteBuffer getBases(final int contigIndex, final int start, final int stop) {
+        final ByteBuffer bases = getBases(contigIndex);
+        if (start < 1 || stop < start - 1 || stop > bases.limit()) {
+            throw new IllegalArgumentException("Invalid range " + start + "-" + stop + " of contig " + dictionary.getSequence(contigIndex).getSequenceName());
+        }
+        bases.position(start - 1);
+        bases.limit(stop);
+        return bases.slice();
+    }
+
+    /** A copy of the given contig. */
+    public ReferenceSequence getSequence(final int contigIndex) {
+        return getSubsequence(contigIndex, 1, dictionary.getSequence(contigIndex).getSequenceLength());
+    }
+
+    /** A copy of the bases of the given contig from start to stop (1-based, inclusive). */
+    public ReferenceSequence getSubsequence(final int contigIndex, final int start, final int stop) {
+        final byte[] bases = new byte[stop - start + 1];
+        getBases(contigIndex, start, stop).get(bases);
+        return new ReferenceSequence(dictionary.getSequence(contigIndex).getSequenceName(), contigIndex, bases);
+    }
+
+    /**
+     * Returns a new {@link ReferenceSequenceFile} reading from this cache.  Each has its own position for {@link ReferenceSequenceFile#nextSequence()},
+     * and closing it leaves the shared cache as it is.
+     */
+    public ReferenceSequenceFile newReferenceSequenceFile() {
+        return new ReferenceSequenceFile() {
+            private int nextContig = 0;
+
+            @Override
+            public SAMSequenceDictionary getSequenceDictionary() {
+                return dictionary;
+            }
+
+            @Override
+            public ReferenceSequence nextSequence() {
+                return nextContig < dictionary.size() ? getSequence(nextContig++) : null;
+            }
+
+            @Override
+            public void reset() {
+                nextContig = 0;
+            }
+
+            @Override
+            public boolean isIndexed() {
+                return true;
+            }
+
+            @Override
+            public ReferenceSequence getSequence(final String contig) {
+                return ReferenceCache.this.getSequence(contigIndex(contig));
+            }
+
+            @Override
+            public ReferenceSequence getSubsequenceAt(final String contig, final long start, final long stop) {
+                return getSubsequence(contigIndex(contig), (int) start, (int) stop);
+            }
+
+            @Override
+            public void close() {
+                // the cache is shared by the whole process
+            }
+
+            @Override
+            public String toString() {
+                return file.getAbsolutePath();
+            }
+        };
+    }
+
+    private int contigIndex(final String contig) {
+        final int index = dictionary.getSequenceIndex(contig);
+        if (index < 0) throw new PicardException("Contig " + contig + " is not in reference cache " + file.getAbsolutePath());
+        return index;
+    }
+}
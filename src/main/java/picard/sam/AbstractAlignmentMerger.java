@@ -38,9 +38,16 @@ import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
 import htsjdk.samtools.util.CigarUtil;
 import picard.PicardException;
+import picard.reference.ReferenceCache;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract class that coordinates the general task of taking in a set of alignment information,
@@ -73,7 +80,12 @@ public abstract class AbstractAlignmentMerger {
     static final String HARD_CLIPPED_BASES_TAG = "XB";
     static final String HARD_CLIPPED_BASE_QUALITIES_TAG = "XQ";
 
-    private int crossSpeciesReads = 0;
+    /** The number of read units (a read or read pair and its alignments) merged together by a worker thread. */
+    static final int MERGE_BATCH_SIZE = 1000;
+    /** The number of coordinate sorted records whose NM, MD and UQ tags are recomputed together by a worker thread. */
+    static final int TAG_FIXING_BATCH_SIZE = 10000;
+
+    private final AtomicInteger crossSpeciesReads = new AtomicInteger(0);
 
     private final Log log = Log.getInstance(AbstractAlignmentMerger.class);
     private final ProgressLogger progress = new ProgressLogger(this.log, 1000000, "Merged", "records");
@@ -81,6 +93,8 @@ public abstract class AbstractAlignmentMerger {
     private final File unmappedBamFile;
     private final File targetBamFile;
     private ReferenceSequenceFileWalker refSeq = null;
+    /** The reference cache, if the reference has an up to date one, from which tags are recomputed instead of walking the reference. */
+    private final ReferenceCache referenceCache;
     private final boolean clipAdapters;
     private final boolean bisulfiteSequence;
     private SAMProgramRecord programRecord;
@@ -105,6 +119,7 @@ public abstract class AbstractAlignmentMerger {
     private boolean unmapContaminantReads = false;
     private UnmappingReadStrategy unmappingReadsStrategy = UnmappingReadStrategy.DO_NOT_CHANGE;
     private boolean addPGTagToReads = true;
+    private int threads = 1;
 
 
     private final SamRecordFilter alignmentFilter = new SamRecordFilter() {
@@ -157,6 +172,105 @@ public abstract class AbstractAlignmentMerger {
         }
     }
 
+    /** A read or read pair from the unmapped BAM and its alignments, if any, together with the records merging them produced. */
+    private static final class MergeUnit {
+        final SAMRecord rec;
+        final SAMRecord secondOfPair;
+        /** The alignments of the read or pair, or null if it has none, in which case its records are written as they are. */
+        final HitsForInsert hits;
+        final boolean unmapDueToContaminant;
+        final List<SAMRecord> merged = new ArrayList<>();
+        int aligned = 0;
+        int unmapped = 0;
+
+        MergeUnit(final SAMRecord rec, final SAMRecord secondOfPair, final HitsForInsert hits, final boolean unmapDueToContaminant) {
+            this.rec = rec;
+            this.secondOfPair = secondOfPair;
+            this.hits = hits;
+            this.unmapDueToContaminant = unmapDueToContaminant;
+        }
+    }
+
+    /**
+     * Merges {@link MergeUnit}s and hands their records to a {@link Sink} in the order the units were added.  With more than one thread,
+     * units are merged in batches on a pool of worker threads while the caller carries on pairing reads with their alignments, and
+     * batches are handed to the sink in the order they were submitted, so the sink sees exactly the records a single thread would give it.
+     */
+    private final class MergeQueue {
+        private final Sink sink;
+        private final ExecutorService executor;
+        private final Deque<Future<List<MergeUnit>>> inFlight = new ArrayDeque<>();
+        private List<MergeUnit> batch = new ArrayList<>(MERGE_BATCH_SIZE);
+        int aligned = 0;
+        int unmapped = 0;
+
+        MergeQueue(final Sink sink) {
+            this.sink = sink;
+            this.executor = threads > 1 ? new ThreadPoolExecutorWithExceptions(threads) : null;
+        }
+
+        void add(final MergeUnit unit) {
+            if (executor == null) {
+                if (unit.hits != null) mergeUnit(unit);
+                write(unit);
+                return;
+            }
+
+            batch.add(unit);
+            if (batch.size() >= MERGE_BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        /** Waits for all the added units to be merged and written to the sink. */
+        void finish() {
+            if (!batch.isEmpty()) {
+                submitBatch();
+            }
+            while (!inFlight.isEmpty()) {
+                getResult(inFlight.poll()).forEach(this::write);
+            }
+        }
+
+        void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        private void submitBatch() {
+            final List<MergeUnit> toMerge = batch;
+            batch = new ArrayList<>(MERGE_BATCH_SIZE);
+            inFlight.add(executor.submit(() -> {
+                for (final MergeUnit unit : toMerge) {
+                    if (unit.hits != null) mergeUnit(unit);
+                }
+                return toMerge;
+            }));
+            while (inFlight.size() > 2 * threads) {
+                getResult(inFlight.poll()).forEach(this::write);
+            }
+        }
+
+        private void write(final MergeUnit unit) {
+            if (unit.hits == null) {
+                // No matching read from alignedIterator -- just output reads as is.
+                sink.add(unit.rec);
+                ++unmapped;
+                if (unit.secondOfPair != null) {
+                    sink.add(unit.secondOfPair);
+                    ++unmapped;
+                }
+            } else {
+                for (final SAMRecord rec : unit.merged) {
+                    addIfNotFiltered(sink, rec);
+                }
+                aligned += unit.aligned;
+                unmapped += unit.unmapped;
+            }
+        }
+    }
+
     public enum UnmappingReadStrategy {
         // Leave on record, and copy to tag
         COPY_TO_TAG(false, true, true),
@@ -287,7 +401,10 @@ public abstract class AbstractAlignmentMerger {
         this.targetBamFile = targetBamFile;
         this.referenceFasta = referenceFasta;
 
-        this.refSeq = new ReferenceSequenceFileWalker(referenceFasta);
+        this.referenceCache = ReferenceCache.forReference(referenceFasta);
+        if (this.referenceCache == null) {
+            this.refSeq = new ReferenceSequenceFileWalker(referenceFasta);
+        }
 
         this.clipAdapters = clipAdapters;
         this.bisulfiteSequence = bisulfiteSequence;
@@ -343,6 +460,16 @@ public abstract class AbstractAlignmentMerger {
         this.maxRecordsInRam = maxRecordsInRam;
     }
 
+    /**
+     * Sets the number of threads used to merge.  With more than one, reads are paired with their alignments on the calling thread while
+     * a pool of worker threads transfers the alignment information and clips them, and recomputes the NM, MD and UQ tags of the
+     * coordinate sorted output.  The output is identical whatever the number of threads.
+     */
+    public void setThreads(final int threads) {
+        if (threads < 1) throw new IllegalArgumentException("The number of threads must be at least 1.");
+        this.threads = threads;
+    }
+
     /**
      * Set addPGTagToReads. If true, the PG will be added to reads when applicable. If false, the PG tag will not be added.
      * Default is true
@@ -374,9 +501,6 @@ public abstract class AbstractAlignmentMerger {
         final CloseableIterator<SAMRecord> unmappedIterator = unmappedSam.iterator();
         this.header.setReadGroups(unmappedSam.getFileHeader().getReadGroups());
 
-        int aligned = 0;
-        int unmapped = 0;
-
         // Get the aligned records and set up the first one
         alignedIterator = new MultiHitAlignedReadIterator(new FilteringSamIterator(getQuerynameSortedAlignedRecords(), alignmentFilter), primaryAlignmentSelectionStrategy);
 
@@ -414,158 +538,58 @@ public abstract class AbstractAlignmentMerger {
             sink = new Sink(writer);
         }
 
-        while (unmappedIterator.hasNext()) {
-            // Load next unaligned read or read pair.
-            final SAMRecord rec = unmappedIterator.next();
-
-            rec.setHeader(this.header);
-            maybeSetPgTag(rec);
-
-            final SAMRecord secondOfPair;
-            if (rec.getReadPairedFlag()) {
-                secondOfPair = unmappedIterator.next();
-                secondOfPair.setHeader(this.header);
-                maybeSetPgTag(secondOfPair);
-
-                // Validate that paired reads arrive as first of pair followed by second of pair
-                if (!rec.getReadName().equals(secondOfPair.getReadName()))
-                    throw new PicardException("Second read from pair not found in unmapped bam: " + rec.getReadName() + ", " + secondOfPair.getReadName());
-
-                if (!rec.getFirstOfPairFlag())
-                    throw new PicardException("First record in unmapped bam is not first of pair: " + rec.getReadName());
-                if (!secondOfPair.getReadPairedFlag())
-                    throw new PicardException("Second record in unmapped bam is not marked as paired: " + secondOfPair.getReadName());
-                if (!secondOfPair.getSecondOfPairFlag())
-                    throw new PicardException("Second record in unmapped bam is not second of pair: " + secondOfPair.getReadName());
-            } else {
-                secondOfPair = null;
-            }
-
-            // See if there are alignments for current unaligned read or read pair.
-            if (nextAligned != null && rec.getReadName().equals(nextAligned.getReadName())) {
-                // If there are multiple alignments for a read (pair), then the unaligned SAMRecord must be cloned
-                // before copying info from the aligned record to the unaligned.
-                final boolean clone = nextAligned.numHits() > 1 || nextAligned.hasSupplementalHits();
-                SAMRecord r1Primary = null, r2Primary = null;
+        final MergeQueue mergeQueue = new MergeQueue(sink);
+        try {
+            while (unmappedIterator.hasNext()) {
+                // Load next unaligned read or read pair.
+                final SAMRecord rec = unmappedIterator.next();
 
-                // by this point there should be a single chosen primary alignment, which we will use to determine whether the read is contaminant.
-                // this must be done before the main iteration, since secondary / supplementary alignments will be affected by the primary.
-                final boolean unmapDueToContaminant = this.unmapContaminantReads && isContaminant(nextAligned);
+                rec.setHeader(this.header);
+                maybeSetPgTag(rec);
 
+                final SAMRecord secondOfPair;
                 if (rec.getReadPairedFlag()) {
-                    for (int i = 0; i < nextAligned.numHits(); ++i) {
-                        // firstAligned or secondAligned may be null, if there wasn't an alignment for the end,
-                        // or if the alignment was rejected by ignoreAlignment.
-                        final SAMRecord firstAligned = nextAligned.getFirstOfPair(i);
-                        final SAMRecord secondAligned = nextAligned.getSecondOfPair(i);
-
-                        final boolean isPrimaryAlignment = (firstAligned != null && !firstAligned.isSecondaryOrSupplementary()) ||
-                                (secondAligned != null && !secondAligned.isSecondaryOrSupplementary());
-
-                        final SAMRecord firstToWrite;
-                        final SAMRecord secondToWrite;
-                        if (clone) {
-                            firstToWrite = clone(rec);
-                            secondToWrite = clone(secondOfPair);
-                        } else {
-                            firstToWrite = rec;
-                            secondToWrite = secondOfPair;
-                        }
-
-                        // If these are the primary alignments then stash them for use on any supplemental alignments
-                        if (isPrimaryAlignment) {
-                            r1Primary = firstToWrite;
-                            r2Primary = secondToWrite;
-                        }
-
-                        transferAlignmentInfoToPairedRead(firstToWrite, secondToWrite, firstAligned, secondAligned, unmapDueToContaminant, clone);
-
-                        // Only write unmapped read when it has the mate info from the primary alignment.
-                        // this avoids the scenario of having multiple unmapped reads with the same name & pair flags
-                        if (!firstToWrite.getReadUnmappedFlag() || isPrimaryAlignment) {
-                            addIfNotFiltered(sink, firstToWrite);
-                            if (firstToWrite.getReadUnmappedFlag()) {
-                                ++unmapped;
-                            } else {
-                                ++aligned;
-                            }
-                        }
-                        if (!secondToWrite.getReadUnmappedFlag() || isPrimaryAlignment) {
-                            addIfNotFiltered(sink, secondToWrite);
-                            if (!secondToWrite.getReadUnmappedFlag()) {
-                                ++aligned;
-                            } else {
-                                ++unmapped;
-                            }
-                        }
-                    }
+                    secondOfPair = unmappedIterator.next();
+                    secondOfPair.setHeader(this.header);
+                    maybeSetPgTag(secondOfPair);
+
+                    // Validate that paired reads arrive as first of pair followed by second of pair
+                    if (!rec.getReadName().equals(secondOfPair.getReadName()))
+                        throw new PicardException("Second read from pair not found in unmapped bam: " + rec.getReadName() + ", " + secondOfPair.getReadName());
+
+                    if (!rec.getFirstOfPairFlag())
+                        throw new PicardException("First record in unmapped bam is not first of pair: " + rec.getReadName());
+                    if (!secondOfPair.getReadPairedFlag())
+                        throw new PicardException("Second record in unmapped bam is not marked as paired: " + secondOfPair.getReadName());
+                    if (!secondOfPair.getSecondOfPairFlag())
+                        throw new PicardException("Second record in unmapped bam is not second of pair: " + secondOfPair.getReadName());
+                } else {
+                    secondOfPair = null;
+                }
 
-                    // Take all of the supplemental reads which had been stashed and add them (as appropriate) to sorted
-                    for (final boolean isRead1 : new boolean[]{true, false}) {
-                        final List<SAMRecord> supplementals = isRead1 ? nextAligned.getSupplementalFirstOfPairOrFragment() : nextAligned.getSupplementalSecondOfPair();
-                        final SAMRecord sourceRec = isRead1 ? rec : secondOfPair;
-                        final SAMRecord matePrimary = isRead1 ? r2Primary : r1Primary;
-
-                        for (final SAMRecord supp : supplementals) {
-                            final SAMRecord out = clone(sourceRec);
-                            transferAlignmentInfoToFragment(out, supp, unmapDueToContaminant, clone);
-                            if (matePrimary != null) SamPairUtil.setMateInformationOnSupplementalAlignment(out, matePrimary, addMateCigar);
-                            // don't write supplementary reads that were unmapped by transferAlignmentInfoToFragment
-                            if (!out.getReadUnmappedFlag()) {
-                                addIfNotFiltered(sink, out);
-                                ++aligned;
-                            } else {
-                                ++unmapped;
-                            }
-                        }
-                    }
+                // See if there are alignments for current unaligned read or read pair.
+                if (nextAligned != null && rec.getReadName().equals(nextAligned.getReadName())) {
+                    // by this point there should be a single chosen primary alignment, which we will use to determine whether the read is contaminant.
+                    // this must be done before the main iteration, since secondary / supplementary alignments will be affected by the primary.
+                    final boolean unmapDueToContaminant = this.unmapContaminantReads && isContaminant(nextAligned);
+                    mergeQueue.add(new MergeUnit(rec, secondOfPair, nextAligned, unmapDueToContaminant));
+                    nextAligned = nextAligned();
                 } else {
-                    for (int i = 0; i < nextAligned.numHits(); ++i) {
-                        final SAMRecord recToWrite = clone ? clone(rec) : rec;
-                        final boolean isPrimary = !nextAligned.getFragment(i).isSecondaryOrSupplementary();
-                        transferAlignmentInfoToFragment(recToWrite, nextAligned.getFragment(i), unmapDueToContaminant, clone);
-                        // Only write unmapped read if it was originally the primary.
-                        // this avoids the scenario of having multiple unmapped reads with the same name & pair flags
-                        if (!recToWrite.getReadUnmappedFlag() || isPrimary) {
-                            addIfNotFiltered(sink, recToWrite);
-                        }
-                        if (recToWrite.getReadUnmappedFlag()) {
-                            ++unmapped;
-                        } else {
-                            ++aligned;
-                        }
+                    // There was no alignment for this read or read pair.
+                    if (nextAligned != null &&
+                            SAMRecordQueryNameComparator.compareReadNames(rec.getReadName(), nextAligned.getReadName()) > 0) {
+                        throw new IllegalStateException("Aligned record iterator (" + nextAligned.getReadName() +
+                                ") is behind the unmapped reads (" + rec.getReadName() + ")");
                     }
-                    // Take all of the supplemental reads which had been stashed and add them (as appropriate) to sorted
-                    for (final SAMRecord supplementalRec : nextAligned.getSupplementalFirstOfPairOrFragment()) {
-                        final SAMRecord recToWrite = clone(rec);
-                        transferAlignmentInfoToFragment(recToWrite, supplementalRec, unmapDueToContaminant, clone);
-                        // don't write supplementary reads that were unmapped by transferAlignmentInfoToFragment
-                        if (!recToWrite.getReadUnmappedFlag()) {
-                            addIfNotFiltered(sink, recToWrite);
-                            ++aligned;
-                        } else {
-                            ++unmapped;
-                        }
-                    }
-                }
-                nextAligned = nextAligned();
-            } else {
-                // There was no alignment for this read or read pair.
-                if (nextAligned != null &&
-                        SAMRecordQueryNameComparator.compareReadNames(rec.getReadName(), nextAligned.getReadName()) > 0) {
-                    throw new IllegalStateException("Aligned record iterator (" + nextAligned.getReadName() +
-                            ") is behind the unmapped reads (" + rec.getReadName() + ")");
-                }
-                // No matching read from alignedIterator -- just output reads as is.
-                if (!alignedReadsOnly) {
-                    sink.add(rec);
-                    ++unmapped;
-                    if (secondOfPair != null) {
-                        sink.add(secondOfPair);
-                        ++unmapped;
+                    // No matching read from alignedIterator -- just output reads as is.
+                    if (!alignedReadsOnly) {
+                        mergeQueue.add(new MergeUnit(rec, secondOfPair, null, false));
                     }
                 }
             }
+            mergeQueue.finish();
+        } finally {
+            mergeQueue.close();
         }
         unmappedIterator.close();
         if (alignedIterator.hasNext()) {
@@ -581,19 +605,209 @@ public abstract class AbstractAlignmentMerger {
             writer.setProgressLogger(new ProgressLogger(log, (int) 1e7, "Wrote", "records from a sorting collection"));
             final ProgressLogger finalProgress = new ProgressLogger(log, 10000000, "Written in coordinate order to output", "records");
 
-            for (final SAMRecord rec : sink.sorter) {
-                if (!rec.getReadUnmappedFlag() && refSeq != null) {
-                    fixNmMdAndUq(rec, refSeq, bisulfiteSequence);
+            if (threads > 1) {
+                writeWithParallelTagFixing(sink.sorter, writer, finalProgress);
+            } else {
+                for (final SAMRecord rec : sink.sorter) {
+                    if (!rec.getReadUnmappedFlag()) {
+                        if (referenceCache != null) {
+                            fixNmMdAndUq(rec, referenceCache, bisulfiteSequence);
+                        } else if (refSeq != null) {
+                            fixNmMdAndUq(rec, refSeq, bisulfiteSequence);
+                        }
+                    }
+                    writer.addAlignment(rec);
+                    finalProgress.record(rec);
                 }
-                writer.addAlignment(rec);
-                finalProgress.record(rec);
             }
             writer.close();
             sink.sorter.cleanup();
         }
 
         CloserUtil.close(unmappedSam);
-        log.info("Wrote " + aligned + " alignment records and " + (alignedReadsOnly ? 0 : unmapped) + " unmapped reads.");
+        log.info("Wrote " + mergeQueue.aligned + " alignment records and " + (alignedReadsOnly ? 0 : mergeQueue.unmapped) + " unmapped reads.");
+    }
+
+    /**
+     * Copies the alignments of a read or read pair from the unmapped BAM into (clones of) its records, collecting the records to write
+     * in {@link MergeUnit#merged}.  Only touches the records of the unit, so may be called on any thread.
+     */
+    private void mergeUnit(final MergeUnit unit) {
+        final SAMRecord rec = unit.rec;
+        final SAMRecord secondOfPair = unit.secondOfPair;
+        final HitsForInsert hits = unit.hits;
+        final boolean unmapDueToContaminant = unit.unmapDueToContaminant;
+
+        // If there are multiple alignments for a read (pair), then the unaligned SAMRecord must be cloned
+        // before copying info from the aligned record to the unaligned.
+        final boolean clone = hits.numHits() > 1 || hits.hasSupplementalHits();
+        SAMRecord r1Primary = null, r2Primary = null;
+
+        if (rec.getReadPairedFlag()) {
+            for (int i = 0; i < hits.numHits(); ++i) {
+                // firstAligned or secondAligned may be null, if there wasn't an alignment for the end,
+                // or if the alignment was rejected by ignoreAlignment.
+                final SAMRecord firstAligned = hits.getFirstOfPair(i);
+                final SAMRecord secondAligned = hits.getSecondOfPair(i);
+
+                final boolean isPrimaryAlignment = (firstAligned != null && !firstAligned.isSecondaryOrSupplementary()) ||
+                        (secondAligned != null && !secondAligned.isSecondaryOrSupplementary());
+
+                final SAMRecord firstToWrite;
+                final SAMRecord secondToWrite;
+                if (clone) {
+                    firstToWrite = clone(rec);
+                    secondToWrite = clone(secondOfPair);
+                } else {
+                    firstToWrite = rec;
+                    secondToWrite = secondOfPair;
+                }
+
+                // If these are the primary alignments then stash them for use on any supplemental alignments
+                if (isPrimaryAlignment) {
+                    r1Primary = firstToWrite;
+                    r2Primary = secondToWrite;
+                }
+
+                transferAlignmentInfoToPairedRead(firstToWrite, secondToWrite, firstAligned, secondAligned, unmapDueToContaminant, clone);
+
+                // Only write unmapped read when it has the mate info from the primary alignment.
+                // this avoids the scenario of having multiple unmapped reads with the same name & pair flags
+                if (!firstToWrite.getReadUnmappedFlag() || isPrimaryAlignment) {
+                    unit.merged.add(firstToWrite);
+                    if (firstToWrite.getReadUnmappedFlag()) {
+                        ++unit.unmapped;
+                    } else {
+                        ++unit.aligned;
+                    }
+                }
+                if (!secondToWrite.getReadUnmappedFlag() || isPrimaryAlignment) {
+                    unit.merged.add(secondToWrite);
+                    if (!secondToWrite.getReadUnmappedFlag()) {
+                        ++unit.aligned;
+                    } else {
+                        ++unit.unmapped;
+                    }
+                }
+            }
+
+            // Take all of the supplemental reads which had been stashed and add them (as appropriate) to sorted
+            for (final boolean isRead1 : new boolean[]{true, false}) {
+                final List<SAMRecord> supplementals = isRead1 ? hits.getSupplementalFirstOfPairOrFragment() : hits.getSupplementalSecondOfPair();
+                final SAMRecord sourceRec = isRead1 ? rec : secondOfPair;
+                final SAMRecord matePrimary = isRead1 ? r2Primary : r1Primary;
+
+                for (final SAMRecord supp : supplementals) {
+                    final SAMRecord out = clone(sourceRec);
+                    transferAlignmentInfoToFragment(out, supp, unmapDueToContaminant, clone);
+                    if (matePrimary != null) SamPairUtil.setMateInformationOnSupplementalAlignment(out, matePrimary, addMateCigar);
+                    // don't write supplementary reads that were unmapped by transferAlignmentInfoToFragment
+                    if (!out.getReadUnmappedFlag()) {
+                        unit.merged.add(out);
+                        ++unit.aligned;
+                    } else {
+                        ++unit.unmapped;
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < hits.numHits(); ++i) {
+                final SAMRecord recToWrite = clone ? clone(rec) : rec;
+                final boolean isPrimary = !hits.getFragment(i).isSecondaryOrSupplementary();
+                transferAlignmentInfoToFragment(recToWrite, hits.getFragment(i), unmapDueToContaminant, clone);
+                // Only write unmapped read if it was originally the primary.
+                // this avoids the scenario of having multiple unmapped reads with the same name & pair flags
+                if (!recToWrite.getReadUnmappedFlag() || isPrimary) {
+                    unit.merged.add(recToWrite);
+                }
+                if (recToWrite.getReadUnmappedFlag()) {
+                    ++unit.unmapped;
+                } else {
+                    ++unit.aligned;
+                }
+            }
+            // Take all of the supplemental reads which had been stashed and add them (as appropriate) to sorted
+            for (final SAMRecord supplementalRec : hits.getSupplementalFirstOfPairOrFragment()) {
+                final SAMRecord recToWrite = clone(rec);
+                transferAlignmentInfoToFragment(recToWrite, supplementalRec, unmapDueToContaminant, clone);
+                // don't write supplementary reads that were unmapped by transferAlignmentInfoToFragment
+                if (!recToWrite.getReadUnmappedFlag()) {
+                    unit.merged.add(recToWrite);
+                    ++unit.aligned;
+                } else {
+                    ++unit.unmapped;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the coordinate sorted records, recomputing their NM, MD and UQ tags on a pool of worker threads.  Records are handed out in
+     * batches from a single contig, and are written in their sorted order.  With a reference cache each worker reads just the bases
+     * its records are aligned to; otherwise the contig's bases are read once on this thread, so the reference is still walked in order.
+     */
+    private void writeWithParallelTagFixing(final SortingCollection<SAMRecord> sorted, final SAMFileWriter writer, final ProgressLogger finalProgress) {
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(threads);
+        final Deque<Future<List<SAMRecord>>> inFlight = new ArrayDeque<>();
+        try (final CloseableIterator<SAMRecord> iterator = sorted.iterator()) {
+            List<SAMRecord> batch = new ArrayList<>(TAG_FIXING_BATCH_SIZE);
+            boolean batchHasMappedRecords = false;
+            while (iterator.hasNext() || !batch.isEmpty()) {
+                final SAMRecord rec = iterator.hasNext() ? iterator.next() : null;
+                if (rec != null && (batch.isEmpty() || (batch.size() < TAG_FIXING_BATCH_SIZE &&
+                        rec.getReferenceIndex().equals(batch.get(0).getReferenceIndex())))) {
+                    batch.add(rec);
+                    batchHasMappedRecords |= !rec.getReadUnmappedFlag();
+                    continue;
+                }
+
+                final List<SAMRecord> toFix = batch;
+                final boolean fixFromCache = batchHasMappedRecords && referenceCache != null;
+                final byte[] referenceBases = batchHasMappedRecords && referenceCache == null && refSeq != null ?
+                        refSeq.get(toFix.get(0).getReferenceIndex()).getBases() : null;
+                inFlight.add(executor.submit(() -> {
+                    if (fixFromCache) {
+                        for (final SAMRecord r : toFix) {
+                            if (!r.getReadUnmappedFlag()) fixNmMdAndUq(r, referenceCache, bisulfiteSequence);
+                        }
+                    } else if (referenceBases != null) {
+                        for (final SAMRecord r : toFix) {
+                            if (!r.getReadUnmappedFlag()) fixNmMdAndUq(r, referenceBases, bisulfiteSequence);
+                        }
+                    }
+                    return toFix;
+                }));
+                while (inFlight.size() > 2 * threads || (rec == null && !inFlight.isEmpty())) {
+                    for (final SAMRecord fixed : getResult(inFlight.poll())) {
+                        writer.addAlignment(fixed);
+                        finalProgress.record(fixed);
+                    }
+                }
+
+                batch = new ArrayList<>(TAG_FIXING_BATCH_SIZE);
+                batchHasMappedRecords = false;
+                if (rec != null) {
+                    batch.add(rec);
+                    batchHasMappedRecords = !rec.getReadUnmappedFlag();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Waits for the result of a task, rethrowing whatever it threw. */
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new PicardException("Error merging alignments", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while merging alignments", e);
+        }
     }
 
     /** Calculates and sets the NM, MD, and and UQ tags from the record and the reference
@@ -606,13 +820,73 @@ public abstract class AbstractAlignmentMerger {
      * No return value, modifies the provided record.
      */
     public static void fixNmMdAndUq(final SAMRecord record, final ReferenceSequenceFileWalker refSeqWalker, final boolean isBisulfiteSequence) {
-        final byte[] referenceBases = refSeqWalker.get(record.getReferenceIndex()).getBases();
+        fixNmMdAndUq(record, refSeqWalker.get(record.getReferenceIndex()).getBases(), isBisulfiteSequence);
+    }
+
+    /** Calculates and sets the NM, MD, and and UQ tags from the record and the bases of the contig it is aligned to.
+     *
+     * @param record the record to be fixed
+     * @param referenceBases the bases of the reference sequence the record is aligned to
+     * @param isBisulfiteSequence a flag indicating whether the sequence came from bisulfite-sequencing which would imply a different
+     * calculation of the NM tag.
+     *
+     * No return value, modifies the provided record.
+     */
+    public static void fixNmMdAndUq(final SAMRecord record, final byte[] referenceBases, final boolean isBisulfiteSequence) {
         // only recalculate NM if it isn't bisulfite, since it needs to be treated specially below
         SequenceUtil.calculateMdAndNmTags(record, referenceBases, true, !isBisulfiteSequence);
         if (isBisulfiteSequence) {  // recalculate the NM tag for bisulfite data
             record.setAttribute(SAMTag.NM.name(), SequenceUtil.calculateSamNmTag(record, referenceBases, 0, isBisulfiteSequence));
         }
-        fixUq(record, refSeqWalker, isBisulfiteSequence);
+        fixUq(record, referenceBases, isBisulfiteSequence);
+    }
+
+    /** Calculates and sets the NM, MD and UQ tags from the record and the bases it is aligned to, read from a reference cache.
+     *
+     * @param record the record to be fixed
+     * @param referenceCache the cache of the reference the record is aligned to
+     * @param isBisulfiteSequence a flag indicating whether the sequence came from bisulfite-sequencing which would imply a different
+     * calculation of the NM tag.
+     *
+     * No return value, modifies the provided record.
+     */
+    public static void fixNmMdAndUq(final SAMRecord record, final ReferenceCache referenceCache, final boolean isBisulfiteSequence) {
+        final byte[] referenceBases = alignedReferenceBases(record, referenceCache);
+        final int referenceOffset = record.getAlignmentStart() - 1;
+
+        // SequenceUtil.calculateMdAndNmTags takes the bases of the whole contig, so it is given the alignment moved to the start of the window
+        final SAMRecord aligned = new SAMRecord(null);
+        aligned.setReadBases(record.getReadBases());
+        aligned.setCigar(record.getCigar());
+        aligned.setAlignmentStart(1);
+        SequenceUtil.calculateMdAndNmTags(aligned, referenceBases, true, !isBisulfiteSequence);
+        record.setAttribute(SAMTag.MD.name(), aligned.getAttribute(SAMTag.MD.name()));
+        if (isBisulfiteSequence) {  // recalculate the NM tag for bisulfite data
+            record.setAttribute(SAMTag.NM.name(), SequenceUtil.calculateSamNmTag(record, referenceBases, referenceOffset, isBisulfiteSequence));
+        } else {
+            record.setAttribute(SAMTag.NM.name(), aligned.getAttribute(SAMTag.NM.name()));
+        }
+        if (record.getBaseQualities() != SAMRecord.NULL_QUALS) {
+            record.setAttribute(SAMTag.UQ.name(), SequenceUtil.sumQualitiesOfMismatches(record, referenceBases, referenceOffset, isBisulfiteSequence));
+        }
+    }
+
+    /** Calculates and sets UQ tag from the record and the bases it is aligned to, read from a reference cache. */
+    public static void fixUq(final SAMRecord record, final ReferenceCache referenceCache, final boolean isBisulfiteSequence) {
+        if (record.getBaseQualities() != SAMRecord.NULL_QUALS) {
+            record.setAttribute(SAMTag.UQ.name(), SequenceUtil.sumQualitiesOfMismatches(record, alignedReferenceBases(record, referenceCache),
+                    record.getAlignmentStart() - 1, isBisulfiteSequence));
+        }
+    }
+
+    /** Copies the reference bases from the alignment start to the alignment end of the record, up to the end of its contig. */
+    private static byte[] alignedReferenceBases(final SAMRecord record, final ReferenceCache referenceCache) {
+        final int contigLength = referenceCache.getSequenceDictionary().getSequence(record.getReferenceIndex()).getSequenceLength();
+        final ByteBuffer window = referenceCache.getBases(record.getReferenceIndex(), record.getAlignmentStart(),
+                Math.min(record.getAlignmentEnd(), contigLength));
+        final byte[] bases = new byte[window.remaining()];
+        window.get(bases);
+        return bases;
     }
 
     /** Calculates and sets UQ tag from the record and the reference
@@ -625,7 +899,13 @@ public abstract class AbstractAlignmentMerger {
      */
     public static void fixUq(final SAMRecord record, final ReferenceSequenceFileWalker refSeqWalker, final boolean isBisulfiteSequence) {
         if (record.getBaseQualities() != SAMRecord.NULL_QUALS) {
-            final byte[] referenceBases = refSeqWalker.get(record.getReferenceIndex()).getBases();
+            fixUq(record, refSeqWalker.get(record.getReferenceIndex()).getBases(), isBisulfiteSequence);
+        }
+    }
+
+    /** Calculates and sets UQ tag from the record and the bases of the contig it is aligned to. */
+    public static void fixUq(final SAMRecord record, final byte[] referenceBases, final boolean isBisulfiteSequence) {
+        if (record.getBaseQualities() != SAMRecord.NULL_QUALS) {
             record.setAttribute(SAMTag.UQ.name(), SequenceUtil.sumQualitiesOfMismatches(record, referenceBases, 0, isBisulfiteSequence));
         }
     }
@@ -636,8 +916,8 @@ public abstract class AbstractAlignmentMerger {
     private void addIfNotFiltered(final Sink out, final SAMRecord rec) {
         if (includeSecondaryAlignments || !rec.getNotPrimaryAlignmentFlag()) {
             out.add(rec);
-            if (this.progress.record(rec) && crossSpeciesReads > 0) {
-                log.info(String.format("%d Reads have been unmapped due to being suspected of being Cross-species contamination.", crossSpeciesReads));
+            if (this.progress.record(rec) && crossSpeciesReads.get() > 0) {
+                log.info(String.format("%d Reads have been unmapped due to being suspected of being Cross-species contamination.", crossSpeciesReads.get()));
             }
         }
     }
@@ -687,7 +967,7 @@ public abstract class AbstractAlignmentMerger {
             SAMUtils.makeReadUnmapped(unaligned);
         } else if (isContaminant) {
 
-            crossSpeciesReads++;
+            crossSpeciesReads.incrementAndGet();
 
             if (unmappingReadsStrategy.isPopulateOaTag()) {
                 unaligned.setAttribute(SAMTag.OA.name(), encodeMappingInformation(aligned));
@@ -1091,7 +1371,9 @@ public abstract class AbstractAlignmentMerger {
     protected SAMFileHeader getHeader() { return this.header; }
 
     protected void resetRefSeqFileWalker() {
-        this.refSeq = new ReferenceSequenceFileWalker(referenceFasta);
+        if (this.referenceCache == null) {
+            this.refSeq = new ReferenceSequenceFileWalker(referenceFasta);
+        }
     }
 
     public boolean isClipOverlappingReads() {
@@ -98,6 +98,18 @@ public class CompareSAMs extends CommandLineProgram {
     @ArgumentCollection
     public SAMComparisonArgumentCollection samComparisonArgumentCollection = new SAMComparisonArgumentCollection();
 
+    @Argument(doc = "The number of threads to compare alignments on.  Only used when both inputs are coordinate sorted and indexed, " +
+            "in which case contig ranges are compared in parallel, and ranges whose reads have the same digest in both inputs " +
+            "are counted as matching without comparing the reads one by one.", optional = true)
+    public int THREADS = 1;
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (THREADS < 1) {
+            return new String[]{"THREADS must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
 
 
     /**
@@ -114,7 +126,8 @@ public class CompareSAMs extends CommandLineProgram {
              final SamReader samReader2 = samReaderFactory.open(SAM_FILES.get(1)))
         {
             final SamComparison comparison = new SamComparison(samReader1, samReader2,
-                    SAM_FILES.get(0).getAbsolutePath(), SAM_FILES.get(1).getAbsolutePath(), samComparisonArgumentCollection);
+                    SAM_FILES.get(0).getAbsolutePath(), SAM_FILES.get(1).getAbsolutePath(), samComparisonArgumentCollection,
+                    () -> samReaderFactory.open(SAM_FILES.get(0)), () -> samReaderFactory.open(SAM_FILES.get(1)), THREADS);
             if (OUTPUT != null) {
                 comparison.writeReport(OUTPUT, getDefaultHeaders());
             }
@@ -23,6 +23,7 @@
  */
 package picard.sam;
 
+import htsjdk.samtools.BamFileIoUtils;
 import htsjdk.samtools.DownsamplingIterator;
 import htsjdk.samtools.DownsamplingIteratorFactory;
 import htsjdk.samtools.DownsamplingIteratorFactory.Strategy;
@@ -48,11 +49,13 @@ import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.argumentcollections.ReferenceArgumentCollection;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.sam.util.ContigShards;
 
 import java.io.File;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
@@ -196,6 +199,11 @@ public class DownsampleSam extends CommandLineProgram {
     @Argument(shortName = "M", doc = "The metrics file (of type QualityYieldMetrics) which will contain information about the downsampled file.", optional=true)
     public File METRICS_FILE;
 
+    @Argument(doc = "The number of threads to downsample on.  With more than one, an indexed coordinate-sorted input downsampled " +
+            "with the ConstantMemory strategy to a BAM output is downsampled one contig at a time on this many threads, " +
+            "giving the same records as downsampling it on one.  Other inputs are downsampled on one thread.", optional = true)
+    public int THREADS = 1;
+
     private final Log log = Log.getInstance(DownsampleSam.class);
 
     public static final String RANDOM_SEED_TAG = "rs";
@@ -205,6 +213,9 @@ public class DownsampleSam extends CommandLineProgram {
         if (PROBABILITY < 0 || PROBABILITY > 1)
             return new String[]{"Downsampling requires 0<=PROBABILITY<=1. Found invalid value: " + PROBABILITY};
 
+        if (THREADS < 1)
+            return new String[]{"THREADS must be at least 1."};
+
         return super.customCommandLineValidation();
     }
 
@@ -228,7 +239,8 @@ public class DownsampleSam extends CommandLineProgram {
                     "Drawing a random seed because RANDOM_SEED was not set. Set RANDOM_SEED to %s to reproduce these results in the future.", RANDOM_SEED));
         }
 
-        final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(SamInputResource.of(INPUT));
+        final SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
+        final SamReader in = readerFactory.open(SamInputResource.of(INPUT));
         final SAMFileHeader header = in.getFileHeader().clone();
 
         if (STRATEGY == Strategy.ConstantMemory || STRATEGY == Strategy.Chained) {
@@ -266,23 +278,40 @@ public class DownsampleSam extends CommandLineProgram {
         final SAMProgramRecord pgRecord = getPGRecord(header);
         pgRecord.setAttribute(RANDOM_SEED_TAG, RANDOM_SEED.toString());
         header.addProgramRecord(pgRecord);
-        final SAMFileWriter out = new SAMFileWriterFactory().makeWriter(header, true, OUTPUT, referenceSequence.getReferenceFile());
-        final ProgressLogger progress = new ProgressLogger(log, (int) 1e7, "Wrote");
-        final DownsamplingIterator iterator = DownsamplingIteratorFactory.make(in, STRATEGY, PROBABILITY, ACCURACY, RANDOM_SEED);
         final QualityYieldMetricsCollector metricsCollector = new QualityYieldMetricsCollector(true, false, false);
+        long accepted = 0;
+        long seen = 0;
 
-        while (iterator.hasNext()) {
-            final SAMRecord rec = iterator.next();
-            out.addAlignment(rec);
-            if (METRICS_FILE != null) metricsCollector.acceptRecord(rec, null);
-            progress.record(rec);
+        if (THREADS > 1 && canDownsampleInShards(in)) {
+            // Whether ConstantMemory keeps a read depends only on its name, so each contig can be downsampled on its own.
+            final ContigShards shards = new ContigShards(() -> readerFactory.open(SamInputResource.of(INPUT)), in.getFileHeader(), THREADS);
+            final List<DownsampledShard> downsampledShards = shards.write(header, OUTPUT, TMP_DIR.get(0), CREATE_INDEX, CREATE_MD5_FILE,
+                    (records, writer) -> {
+                        // ProgressLogger is not thread safe, so each shard logs its own progress
+                        final ProgressLogger progress = new ProgressLogger(log, (int) 1e7, "Wrote");
+                        final DownsampledShard shard = new DownsampledShard(
+                                DownsamplingIteratorFactory.make(records, STRATEGY, PROBABILITY, ACCURACY, RANDOM_SEED));
+                        downsample(shard.iterator, writer, shard.metricsCollector, progress);
+                        return shard;
+                    });
+            for (final DownsampledShard shard : downsampledShards) {
+                accepted += shard.iterator.getAcceptedCount();
+                seen += shard.iterator.getSeenCount();
+                metricsCollector.merge(shard.metricsCollector);
+            }
+        } else {
+            final SAMFileWriter out = new SAMFileWriterFactory().makeWriter(header, true, OUTPUT, referenceSequence.getReferenceFile());
+            final DownsamplingIterator iterator = DownsamplingIteratorFactory.make(in, STRATEGY, PROBABILITY, ACCURACY, RANDOM_SEED);
+            downsample(iterator, out, metricsCollector, new ProgressLogger(log, (int) 1e7, "Wrote"));
+            out.close();
+            accepted = iterator.getAcceptedCount();
+            seen = iterator.getSeenCount();
         }
 
-        out.close();
         CloserUtil.close(in);
         final NumberFormat fmt = new DecimalFormat("0.00%");
         log.info("Finished downsampling.");
-        log.info("Kept ", iterator.getAcceptedCount(), " out of ", iterator.getSeenCount(), " reads (", fmt.format(iterator.getAcceptedFraction()), ").");
+        log.info("Kept ", accepted, " out of ", seen, " reads (", fmt.format(seen == 0 ? 0 : accepted / (double) seen), ").");
 
         if (METRICS_FILE != null) {
             final MetricsFile<QualityYieldMetrics, Integer> metricsFile = getMetricsFile();
@@ -294,6 +323,41 @@ public class DownsampleSam extends CommandLineProgram {
         return 0;
     }
 
+    /** Writes the records the iterator keeps, counting them into the metrics collector if there is a metrics file. */
+    private void downsample(final DownsamplingIterator iterator, final SAMFileWriter out,
+                            final QualityYieldMetricsCollector metricsCollector, final ProgressLogger progress) {
+        while (iterator.hasNext()) {
+            final SAMRecord rec = iterator.next();
+            out.addAlignment(rec);
+            if (METRICS_FILE != null) metricsCollector.acceptRecord(rec, null);
+            progress.record(rec);
+        }
+    }
+
+    /**
+     * Whether the input can be downsampled one contig at a time with the same result as reading it from start to end:
+     * ConstantMemory decides on each read by itself, whereas HighAccuracy and Chained depend on the reads seen before.
+     * The shards are concatenated block by block, so the output must also be a BAM.
+     */
+    private boolean canDownsampleInShards(final SamReader in) {
+        if (STRATEGY != Strategy.ConstantMemory || !ContigShards.canShard(in) || !BamFileIoUtils.isBamFile(OUTPUT)) {
+            log.warn("Downsampling on one thread: THREADS only applies to indexed coordinate-sorted inputs downsampled " +
+                    "with the ConstantMemory strategy to a BAM output.");
+            return false;
+        }
+        return true;
+    }
+
+    /** The downsampling of one contig: the iterator holds how many reads were seen and kept. */
+    private static final class DownsampledShard {
+        private final DownsamplingIterator iterator;
+        private final QualityYieldMetricsCollector metricsCollector = new QualityYieldMetricsCollector(true, false, false);
+
+        private DownsampledShard(final DownsamplingIterator iterator) {
+            this.iterator = iterator;
+        }
+    }
+
     @Override
     protected ReferenceArgumentCollection makeReferenceArgumentCollection() {
         // Override to allow "R" to be hijacked for "RANDOM_SEED"
@@ -35,6 +35,7 @@ import htsjdk.samtools.SAMUtils;
 import htsjdk.samtools.fastq.FastqConstants.FastqExtensions;
 import htsjdk.samtools.fastq.FastqReader;
 import htsjdk.samtools.fastq.FastqRecord;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.FastqQualityFormat;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Iso8601Date;
@@ -51,10 +52,18 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.util.AsyncIterator;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
 
 /**
  * Converts a FASTQ file to an unaligned BAM or SAM file.
@@ -228,8 +237,16 @@ public class FastqToSam extends CommandLineProgram {
     @Argument(doc="Allow (and ignore) empty lines")
     public Boolean ALLOW_AND_IGNORE_EMPTY_LINES = false;
 
+    @Argument(doc="The number of threads to use.  With more than one, each FASTQ is decompressed and parsed ahead on its own thread, " +
+            "reads are converted to SAM records in batches on the remaining threads, and the output is encoded and compressed on " +
+            "its own thread.  The output does not depend on the number of threads.", optional = true)
+    public int THREADS = 1;
+
     private static final SolexaQualityConverter solexaQualityConverter = SolexaQualityConverter.getSingleton();
 
+    /** The number of reads (or pairs of reads) converted together by one task when THREADS > 1. */
+    private static final int BATCH_SIZE = 10000;
+
     /**
      * Looks at fastq input(s) and attempts to determine the proper quality format
      *
@@ -316,7 +333,9 @@ public class FastqToSam extends CommandLineProgram {
         IOUtil.assertFileIsWritable(OUTPUT);
 
         final SAMFileHeader header = createSamFileHeader();
-        final SAMFileWriter writer = new SAMFileWriterFactory().makeWriter(header, false, OUTPUT, REFERENCE_SEQUENCE);
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory();
+        if (THREADS > 1) factory.setUseAsyncIo(true);
+        final SAMFileWriter writer = factory.makeWriter(header, false, OUTPUT, REFERENCE_SEQUENCE);
 
         // Set the quality format
         QUALITY_FORMAT = FastqToSam.determineQualityFormat(fileToFastqReader(FASTQ),
@@ -377,7 +396,9 @@ public class FastqToSam extends CommandLineProgram {
      *
      */
     public void makeItSo(final FastqReader reader1, final FastqReader reader2, final SAMFileWriter writer) {
-        final int readCount = (reader2 == null) ?  doUnpaired(reader1, writer) : doPaired(reader1, reader2, writer);
+        final int readCount;
+        if (THREADS > 1) readCount = doThreaded(reader1, reader2, writer);
+        else readCount = (reader2 == null) ?  doUnpaired(reader1, writer) : doPaired(reader1, reader2, writer);
         LOG.info("Processed " + readCount + " fastq reads");
     }
 
@@ -428,6 +449,125 @@ public class FastqToSam extends CommandLineProgram {
         return readCount;
     }
 
+    /**
+     * Converts one or two fastqs using THREADS threads.  Each reader is drained ahead on its own thread, batches
+     * of reads are converted to SAM records on a thread pool, and the batches are written in input order, so the
+     * output is the same as that of {@link #doUnpaired} or {@link #doPaired}.
+     */
+    private int doThreaded(final FastqReader freader1, final FastqReader freader2, final SAMFileWriter writer) {
+        final boolean paired = freader2 != null;
+        final SAMFileHeader header = writer.getFileHeader();
+        final File fastq1 = freader1.getFile();
+        final File fastq2 = paired ? freader2.getFile() : null;
+        final AsyncIterator<FastqRecord> records1 = readAhead(freader1);
+        final AsyncIterator<FastqRecord> records2 = paired ? readAhead(freader2) : null;
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(THREADS);
+        final Deque<Future<List<SAMRecord>>> batches = new ArrayDeque<>();
+        final ProgressLogger progress = new ProgressLogger(LOG);
+
+        int readCount = 0;
+        try {
+            while (records1.hasNext() && (!paired || records2.hasNext())) {
+                final List<FastqRecord> batch1 = new ArrayList<>(BATCH_SIZE);
+                final List<FastqRecord> batch2 = paired ? new ArrayList<>(BATCH_SIZE) : null;
+                while (batch1.size() < BATCH_SIZE && records1.hasNext() && (!paired || records2.hasNext())) {
+                    batch1.add(records1.next());
+                    if (paired) batch2.add(records2.next());
+                }
+                final int firstRecordNumber = readCount + 1;
+                batches.add(executor.submit(() -> createSamRecords(header, batch1, batch2, firstRecordNumber, fastq1, fastq2)));
+                readCount += batch1.size();
+
+                // Write whatever is done, and block on the oldest batch once enough are in flight
+                while (!batches.isEmpty() && (batches.size() > 2 * THREADS || batches.peek().isDone())) {
+                    write(getResult(batches.poll()), writer, progress);
+                }
+            }
+
+            if (paired && (records1.hasNext() || records2.hasNext())) {
+                throw new PicardException("Input paired fastq files must be the same length");
+            }
+
+            while (!batches.isEmpty()) {
+                write(getResult(batches.poll()), writer, progress);
+            }
+        } finally {
+            executor.shutdownNow();
+            records1.close();
+            if (paired) records2.close();
+        }
+
+        return readCount;
+    }
+
+    /** Converts a batch of reads, or of pairs of reads if batch2 is not null, to SAM records in input order. */
+    private List<SAMRecord> createSamRecords(final SAMFileHeader header, final List<FastqRecord> batch1, final List<FastqRecord> batch2,
+                                             final int firstRecordNumber, final File fastq1, final File fastq2) {
+        final List<SAMRecord> records = new ArrayList<>(batch2 == null ? batch1.size() : 2 * batch1.size());
+        for (int i = 0; i < batch1.size(); ++i) {
+            final FastqRecord frec1 = batch1.get(i);
+            if (batch2 == null) {
+                final SAMRecord srec = createSamRecord(header, SequenceUtil.getSamReadNameFromFastqHeader(frec1.getReadHeader()), frec1, false);
+                srec.setReadPairedFlag(false);
+                records.add(srec);
+            } else {
+                final FastqRecord frec2 = batch2.get(i);
+                final int recordNumber = firstRecordNumber + i;
+                final String baseName = getBaseName(
+                        SequenceUtil.getSamReadNameFromFastqHeader(frec1.getReadHeader()),
+                        SequenceUtil.getSamReadNameFromFastqHeader(frec2.getReadHeader()),
+                        str -> error(fastq1, recordNumber, str),
+                        str -> error(fastq2, recordNumber, str));
+
+                final SAMRecord srec1 = createSamRecord(header, baseName, frec1, true);
+                srec1.setFirstOfPairFlag(true);
+                srec1.setSecondOfPairFlag(false);
+                records.add(srec1);
+
+                final SAMRecord srec2 = createSamRecord(header, baseName, frec2, true);
+                srec2.setFirstOfPairFlag(false);
+                srec2.setSecondOfPairFlag(true);
+                records.add(srec2);
+            }
+        }
+        return records;
+    }
+
+    private static void write(final List<SAMRecord> records, final SAMFileWriter writer, final ProgressLogger progress) {
+        for (final SAMRecord rec : records) {
+            writer.addAlignment(rec);
+            progress.record(rec);
+        }
+    }
+
+    /** Waits for the result of a task, rethrowing whatever it threw. */
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new PicardException("Error converting fastq records", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while converting fastq records", e);
+        }
+    }
+
+    /** Reads (and decompresses) the fastq ahead on its own thread.  Closing the iterator does not close the reader. */
+    private static AsyncIterator<FastqRecord> readAhead(final FastqReader reader) {
+        return new AsyncIterator<>(new CloseableIterator<FastqRecord>() {
+            @Override
+            public boolean hasNext() { return reader.hasNext(); }
+
+            @Override
+            public FastqRecord next() { return reader.next(); }
+
+            @Override
+            public void close() { }
+        }, BATCH_SIZE, "FastqToSamReader");
+    }
+
     private FastqReader fileToFastqReader(final File file) {
         return new FastqReader(file, ALLOW_AND_IGNORE_EMPTY_LINES);
     }
@@ -505,11 +645,16 @@ public class FastqToSam extends CommandLineProgram {
      * </ul>
      */
     String getBaseName(final String readName1, final String readName2, final FastqReader freader1, final FastqReader freader2) {
-        String [] toks = getReadNameTokens(readName1, 1, freader1);
+        return getBaseName(readName1, readName2, str -> error(freader1, str), str -> error(freader2, str));
+    }
+
+    /** As above, with the error messages for each read given their location by error1 and error2. */
+    private String getBaseName(final String readName1, final String readName2, final UnaryOperator<String> error1, final UnaryOperator<String> error2) {
+        String [] toks = getReadNameTokens(readName1, 1, error1);
         final String baseName1 = toks[0] ;
         final String num1 = toks[1] ;
 
-        toks = getReadNameTokens(readName2, 2, freader2);
+        toks = getReadNameTokens(readName2, 2, error2);
         final String baseName2 = toks[0] ;
         final String num2 = toks[1];
 
@@ -520,19 +665,19 @@ public class FastqToSam extends CommandLineProgram {
         final boolean num1Blank = StringUtil.isBlank(num1);
         final boolean num2Blank = StringUtil.isBlank(num2);
         if (num1Blank || num2Blank) {
-            if(!num1Blank) throw new PicardException(error(freader1,"Pair 1 number is missing (" +readName1+ "). Both pair numbers must be present or neither."));       //num1 != blank and num2   == blank
-            else if(!num2Blank) throw new PicardException(error(freader2, "Pair 2 number is missing (" +readName2+ "). Both pair numbers must be present or neither.")); //num1 == blank and num =2 != blank
+            if(!num1Blank) throw new PicardException(error1.apply("Pair 1 number is missing (" +readName1+ "). Both pair numbers must be present or neither."));       //num1 != blank and num2   == blank
+            else if(!num2Blank) throw new PicardException(error2.apply("Pair 2 number is missing (" +readName2+ "). Both pair numbers must be present or neither.")); //num1 == blank and num =2 != blank
         } else {
-            if (!num1.equals("1")) throw new PicardException(error(freader1,"Pair 1 number must be 1 ("+readName1+")"));
-            if (!num2.equals("2")) throw new PicardException(error(freader2,"Pair 2 number must be 2 ("+readName2+")"));
+            if (!num1.equals("1")) throw new PicardException(error1.apply("Pair 1 number must be 1 ("+readName1+")"));
+            if (!num2.equals("2")) throw new PicardException(error2.apply("Pair 2 number must be 2 ("+readName2+")"));
         }
 
         return baseName1 ;
     }
 
     /** Breaks up read name into baseName and number separated by the last / */
-    private String [] getReadNameTokens(final String readName, final int pairNum, final FastqReader freader) {
-        if(readName.equals("")) throw new PicardException(error(freader,"Pair read name "+pairNum+" cannot be empty: "+readName));
+    private String [] getReadNameTokens(final String readName, final int pairNum, final UnaryOperator<String> error) {
+        if(readName.equals("")) throw new PicardException(error.apply("Pair read name "+pairNum+" cannot be empty: "+readName));
 
         final int idx = readName.lastIndexOf('/');
         final String[] result = new String[2];
@@ -560,10 +705,16 @@ public class FastqToSam extends CommandLineProgram {
         return str +" at line "+freader.getLineNumber() +" in file "+freader.getFile().getAbsolutePath();
     }
 
+    /** As above, for when the reader has read ahead and only the number of the record is known. */
+    private static String error(final File file, final int recordNumber, final String str) {
+        return str +" at record "+recordNumber +" in file "+file.getAbsolutePath();
+    }
+
     @Override
     protected String[] customCommandLineValidation() {
         if (MIN_Q < 0) return new String[]{"MIN_Q must be >= 0"};
         if (MAX_Q > SAMUtils.MAX_PHRED_SCORE) return new String[]{"MAX_Q must be <= " + SAMUtils.MAX_PHRED_SCORE};
+        if (THREADS < 1) return new String[]{"THREADS must be at least 1"};
         return null;
     }
 }
@@ -39,6 +39,7 @@ import org.broadinstitute.barclay.help.DocumentedFeature;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.filter.ReadNameHashFilter;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -162,7 +163,9 @@ public class FilterSamReads extends CommandLineProgram {
         excludeReadList("Output reads with names *not* contained in READ_LIST_FILE. See READ_LIST_FILE for more detail."),
         includeJavascript("Output reads that have been accepted by the JAVASCRIPT_FILE script, that is, reads for which the value of the script is true. " +
                 "See the JAVASCRIPT_FILE argument for more detail. "),
-        includePairedIntervals("Output reads that overlap with an interval from INTERVAL_LIST (and their mate). INPUT must be coordinate sorted."),
+        includePairedIntervals("Output reads that overlap with an interval from INTERVAL_LIST (and their mate). INPUT must be coordinate sorted. " +
+                "If INPUT is indexed, only the parts of it overlapping the intervals, the positions of the mates of the reads there " +
+                "and the unplaced reads are read, which relies on the mate information of the reads being correct."),
         includeTagValues("Output reads that have a value of tag TAG that is contained in the values for TAG_VALUES"),
         excludeTagValues("Output reads that do not have a value of tag TAG that is contained in the values for TAG_VALUES");
        private final String description;
@@ -184,7 +187,9 @@ public class FilterSamReads extends CommandLineProgram {
     @Argument(doc = "Which filter to use.")
     public Filter FILTER = null;
 
-    @Argument(doc = "File containing reads that will be included in or excluded from the OUTPUT SAM/BAM/CRAM file, when using FILTER=includeReadList or FILTER=excludeReadList.",
+    @Argument(doc = "File containing reads that will be included in or excluded from the OUTPUT SAM/BAM/CRAM file, when using FILTER=includeReadList or FILTER=excludeReadList. " +
+            "The first word of each line is a read name.  Names are held as 64-bit hashes, so a read not in the list matches " +
+            "one in it with a probability of about one in 2^64 divided by the number of names in the list.",
             optional = true,
             shortName = "RLF")
     public File READ_LIST_FILE;
@@ -295,6 +300,93 @@ public class FilterSamReads extends CommandLineProgram {
         return IntervalList.fromFile(intervalFile).getIntervals();
     }
 
+    /**
+     * Returns the records of an indexed, coordinate sorted input which might be kept by an IntervalKeepPairFilter on
+     * the intervals, in the order they are in the input, without reading the rest of it: those overlapping the
+     * intervals, those at the positions given for the mates of these, which is where a read whose mate overlaps the
+     * intervals is, and those with no position.
+     */
+    private CloseableIterator<SAMRecord> queryPairedIntervals(final SamReader reader, final List<Interval> intervals) {
+        final SAMSequenceDictionary dictionary = reader.getFileHeader().getSequenceDictionary();
+        final List<QueryInterval> queryIntervals = new ArrayList<>(intervals.size());
+        for (final Interval interval : intervals) {
+            final int sequenceIndex = dictionary.getSequenceIndex(interval.getContig());
+            if (sequenceIndex != -1) {
+                queryIntervals.add(new QueryInterval(sequenceIndex, interval.getStart(), interval.getEnd()));
+            }
+        }
+        final QueryInterval[] overlapping = QueryInterval.optimizeIntervals(queryIntervals.toArray(new QueryInterval[0]));
+
+        // Only the mates outside the intervals need reading on top of them
+        final List<QueryInterval> mates = new ArrayList<>();
+        try (final SAMRecordIterator iterator = reader.queryOverlapping(overlapping)) {
+            while (iterator.hasNext()) {
+                final SAMRecord rec = iterator.next();
+                if (rec.getReadPairedFlag() && rec.getMateReferenceIndex() != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX &&
+                        !covers(overlapping, rec.getMateReferenceIndex(), rec.getMateAlignmentStart())) {
+                    mates.add(new QueryInterval(rec.getMateReferenceIndex(), rec.getMateAlignmentStart(), rec.getMateAlignmentStart()));
+                }
+            }
+        }
+        mates.addAll(Arrays.asList(overlapping));
+        final QueryInterval[] query = QueryInterval.optimizeIntervals(mates.toArray(new QueryInterval[0]));
+        log.info("Reading " + query.length + " regions of " + INPUT.getName() + " through its index.");
+        return new QueryThenUnmappedIterator(reader, query);
+    }
+
+    /** Whether a position is within one of the optimized intervals. */
+    private static boolean covers(final QueryInterval[] intervals, final int referenceIndex, final int position) {
+        int low = 0;
+        int high = intervals.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final QueryInterval interval = intervals[mid];
+            if (interval.referenceIndex < referenceIndex ||
+                    (interval.referenceIndex == referenceIndex && interval.end > 0 && interval.end < position)) {
+                low = mid + 1;
+            } else if (interval.referenceIndex > referenceIndex || interval.start > position) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The records overlapping the query intervals, followed by the records with no position. */
+    private static final class QueryThenUnmappedIterator implements CloseableIterator<SAMRecord> {
+        private final SamReader reader;
+        private SAMRecordIterator iterator;
+        private boolean unmapped = false;
+
+        private QueryThenUnmappedIterator(final SamReader reader, final QueryInterval[] intervals) {
+            this.reader = reader;
+            this.iterator = reader.queryOverlapping(intervals);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!iterator.hasNext() && !unmapped) {
+                // a reader can only have one iterator open at a time
+                iterator.close();
+                iterator = reader.queryUnmapped();
+                unmapped = true;
+            }
+            return iterator.hasNext();
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            iterator.close();
+        }
+    }
+
     @Override
     protected int doWork() {
 
@@ -322,11 +414,11 @@ public class FilterSamReads extends CommandLineProgram {
                     break;
                 case includeReadList:
                     filteringIterator = new FilteringSamIterator(samReader.iterator(),
-                            new ReadNameFilter(READ_LIST_FILE, true));
+                            new ReadNameHashFilter(READ_LIST_FILE, true));
                     break;
                 case excludeReadList:
                     filteringIterator = new FilteringSamIterator(samReader.iterator(),
-                            new ReadNameFilter(READ_LIST_FILE, false));
+                            new ReadNameHashFilter(READ_LIST_FILE, false));
                     break;
                 case includeJavascript:
                     filteringIterator = new FilteringSamIterator(samReader.iterator(),
@@ -335,8 +427,12 @@ public class FilterSamReads extends CommandLineProgram {
                                     samReader.getFileHeader()));
                     break;
                 case includePairedIntervals:
-                    filteringIterator = new FilteringSamIterator(samReader.iterator(),
-                            new IntervalKeepPairFilter(getIntervalList(INTERVAL_LIST)));
+                    final List<Interval> intervals = getIntervalList(INTERVAL_LIST);
+                    final boolean indexed = samReader.hasIndex() &&
+                            samReader.getFileHeader().getSortOrder() == SAMFileHeader.SortOrder.coordinate;
+                    filteringIterator = new FilteringSamIterator(
+                            indexed ? queryPairedIntervals(samReader, intervals) : samReader.iterator(),
+                            new IntervalKeepPairFilter(intervals));
                     break;
                 case includeTagValues:
                     filteringIterator = new FilteringSamIterator(samReader.iterator(),
@@ -288,6 +288,11 @@ public class MergeBamAlignment extends CommandLineProgram {
             "the result will be an invalid record. To force no change use the DO_NOT_CHANGE_INVALID strategy.", optional = true)
     public AbstractAlignmentMerger.UnmappingReadStrategy UNMAPPED_READ_STRATEGY = AbstractAlignmentMerger.UnmappingReadStrategy.DO_NOT_CHANGE;
 
+    @Argument(doc = "The number of threads to use.  With more than one, reads are paired with their alignments on one thread while the " +
+            "others transfer the alignment information, clip the reads and, for coordinate sorted output, recompute the NM, MD and UQ tags. " +
+            "The output does not depend on the number of threads.", optional = true)
+    public int THREADS = 1;
+
     @Override
     protected boolean requiresReference() {
         return true;
@@ -365,6 +370,7 @@ public class MergeBamAlignment extends CommandLineProgram {
         merger.setAttributesToReverse(ATTRIBUTES_TO_REVERSE);
         merger.setAttributesToReverseComplement(ATTRIBUTES_TO_REVERSE_COMPLEMENT);
         merger.setAddPGTagToReads(pgTagArgumentCollection.ADD_PG_TAG_TO_READS);
+        merger.setThreads(THREADS);
         merger.mergeAlignment(referenceSequence.getReferenceFile());
         merger.close();
 
@@ -402,6 +408,9 @@ public class MergeBamAlignment extends CommandLineProgram {
             return new String[]{"Either ALIGNED_BAM or the combination of " +
                     "READ1_ALIGNED_BAM and READ2_ALIGNED_BAM must be supplied."};
         }
+        if (THREADS < 1) {
+            return new String[]{"THREADS must be at least 1."};
+        }
 
         return null;
     }
@@ -34,6 +34,7 @@ import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
 import picard.sam.markduplicates.MarkDuplicates;
+import picard.sam.util.ContigShards;
 import picard.sam.util.PhysicalLocationInt;
 import picard.sam.util.ReadNameParser;
 
@@ -190,6 +191,11 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
     @Argument(doc = "Allow downsampling again despite this being a bad idea with possibly unexpected results.", optional = true)
     public boolean ALLOW_MULTIPLE_DOWNSAMPLING_DESPITE_WARNINGS = false;
 
+    @Argument(doc = "The number of threads to downsample on.  With more than one, an indexed coordinate-sorted input downsampled " +
+            "to a BAM output without STOP_AFTER is read one contig at a time on this many threads, in both passes, giving " +
+            "the same records as downsampling it on one.  Other inputs are downsampled on one thread.", optional = true)
+    public int THREADS = 1;
+
     private final Log log = Log.getInstance(PositionBasedDownsampleSam.class);
 
     private ReadNameParser readNameParser;
@@ -218,6 +224,10 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
             errors.add("FRACTION must be a value between 0 and 1, found: " + FRACTION);
         }
 
+        if (THREADS < 1) {
+            errors.add("THREADS must be at least 1.");
+        }
+
         if (!errors.isEmpty())
             return errors.toArray(new String[errors.size()]);
 
@@ -234,13 +244,22 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
         checkProgramRecords();
 
         readNameParser = new ReadNameParser(READ_NAME_REGEX);
+        final ContigShards shards = THREADS > 1 ? makeContigShards() : null;
 
         log.info("Starting first pass. Examining read distribution in tiles.");
-        fillTileMinMaxCoord();
+        if (shards != null) {
+            fillTileMinMaxCoord(shards);
+        } else {
+            fillTileMinMaxCoord();
+        }
         log.info("First pass done.");
 
         log.info("Starting second pass. Outputting reads.");
-        outputSamRecords();
+        if (shards != null) {
+            outputSamRecords(shards);
+        } else {
+            outputSamRecords();
+        }
         log.info("Second pass done.");
 
         final double finalP = kept / (double) total;
@@ -252,11 +271,28 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
         return 0;
     }
 
-    private void outputSamRecords() {
-
-        final ProgressLogger progress = new ProgressLogger(log, (int) 1e7);
-        final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+    /**
+     * Returns the shards to read the input in, or null if it must be read from start to end: whether a read is kept
+     * depends only on its position in its tile once the extent of every tile is known, so each contig can be read on
+     * its own unless reading stops after STOP_AFTER reads.  The shards are concatenated block by block, so the output
+     * must also be a BAM.
+     */
+    private ContigShards makeContigShards() {
+        final SamReaderFactory readerFactory = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE);
+        final SamReader in = readerFactory.open(INPUT);
+        try {
+            if (STOP_AFTER != null || !ContigShards.canShard(in) || !BamFileIoUtils.isBamFile(OUTPUT)) {
+                log.warn("Downsampling on one thread: THREADS only applies to indexed coordinate-sorted inputs downsampled " +
+                        "to a BAM output without STOP_AFTER.");
+                return null;
+            }
+            return new ContigShards(() -> readerFactory.open(INPUT), in.getFileHeader(), THREADS);
+        } finally {
+            CloserUtil.close(in);
+        }
+    }
 
+    private SAMFileHeader makeOutputHeader(final SamReader in) {
         final SAMFileHeader header = in.getFileHeader().clone();
         final SAMFileHeader.PgIdGenerator pgIdGenerator = new SAMFileHeader.PgIdGenerator(header);
         final SAMProgramRecord programRecord = new SAMProgramRecord(pgIdGenerator.getNonCollidingId(PG_PROGRAM_NAME));
@@ -265,6 +301,47 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
         programRecord.setCommandLine(getCommandLine());
         programRecord.setProgramVersion(getVersion());
         header.addProgramRecord(programRecord);
+        return header;
+    }
+
+    private void outputSamRecords(final ContigShards shards) {
+        final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+        final SAMFileHeader header = makeOutputHeader(in);
+        CloserUtil.close(in);
+
+        final CircleSelector selector = new CircleSelector(FRACTION);
+
+        final List<long[]> counts = shards.write(header, OUTPUT, TMP_DIR.get(0), CREATE_INDEX, CREATE_MD5_FILE, (records, out) -> {
+            // Read name parsers cache the last name parsed, and progress loggers are not thread safe, so each shard needs its own
+            final ReadNameParser parser = new ReadNameParser(READ_NAME_REGEX);
+            final ProgressLogger progress = new ProgressLogger(log, (int) 1e7);
+            final long[] shardCounts = new long[2];
+            while (records.hasNext()) {
+                final SAMRecord rec = records.next();
+                shardCounts[0]++;
+                // Every tile was seen in the first pass, so this only reads from tileCoord
+                final PhysicalLocationInt pos = getSamRecordLocation(rec, parser);
+                if (selector.select(pos, tileCoord.get(pos.getTile()))) {
+                    if (REMOVE_DUPLICATE_INFORMATION) rec.setDuplicateReadFlag(false);
+                    out.addAlignment(rec);
+                    shardCounts[1]++;
+                }
+                progress.record(rec);
+            }
+            return shardCounts;
+        });
+        for (final long[] shardCounts : counts) {
+            total += shardCounts[0];
+            kept += shardCounts[1];
+        }
+    }
+
+    private void outputSamRecords() {
+
+        final ProgressLogger progress = new ProgressLogger(log, (int) 1e7);
+        final SamReader in = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
+
+        final SAMFileHeader header = makeOutputHeader(in);
 
         final SAMFileWriter out = new SAMFileWriterFactory().makeWriter(header, true, OUTPUT, REFERENCE_SEQUENCE);
 
@@ -351,6 +428,47 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
 
         }
 
+        padTileMinMaxCoord();
+
+        CloserUtil.close(in);
+    }
+
+    // as above, but reading each contig of the input on its own and then combining what was found in each
+    private void fillTileMinMaxCoord(final ContigShards shards) {
+        final List<Map<Short, Coord>> shardTileCoords = shards.map(records -> {
+            final ReadNameParser parser = new ReadNameParser(READ_NAME_REGEX);
+            final ProgressLogger progress = new ProgressLogger(log, (int) 1e7, "Read");
+            final Map<Short, Coord> shardTileCoord = new CollectionUtil.DefaultingMap<>(defaultingMapFactory, true);
+            while (records.hasNext()) {
+                final SAMRecord rec = records.next();
+                progress.record(rec);
+                final PhysicalLocationInt location = getSamRecordLocation(rec, parser);
+                final Coord pos = shardTileCoord.get(location.getTile());
+                pos.maxX = Math.max(pos.maxX, location.getX());
+                pos.minX = Math.min(pos.minX, location.getX());
+                pos.maxY = Math.max(pos.maxY, location.getY());
+                pos.minY = Math.min(pos.minY, location.getY());
+                pos.count++;
+            }
+            return shardTileCoord;
+        });
+
+        for (final Map<Short, Coord> shardTileCoord : shardTileCoords) {
+            for (final Map.Entry<Short, Coord> entry : shardTileCoord.entrySet()) {
+                final Coord pos = tileCoord.get(entry.getKey());
+                final Coord shardPos = entry.getValue();
+                pos.maxX = Math.max(pos.maxX, shardPos.maxX);
+                pos.minX = Math.min(pos.minX, shardPos.minX);
+                pos.maxY = Math.max(pos.maxY, shardPos.maxY);
+                pos.minY = Math.min(pos.minY, shardPos.minY);
+                pos.count += shardPos.count;
+            }
+        }
+
+        padTileMinMaxCoord();
+    }
+
+    private void padTileMinMaxCoord() {
         // now that we know what the maximal/minimal numbers were, we should increase/decrease them a little, to account for sampling error
         for (final Coord coord : tileCoord.values()) {
 
@@ -363,13 +481,15 @@ public class PositionBasedDownsampleSam extends CommandLineProgram {
             coord.maxY += diffY / coord.count;
             coord.minY -= diffY / coord.count;
         }
-
-        CloserUtil.close(in);
     }
 
     private PhysicalLocationInt getSamRecordLocation(final SAMRecord rec) {
+        return getSamRecordLocation(rec, readNameParser);
+    }
+
+    private static PhysicalLocationInt getSamRecordLocation(final SAMRecord rec, final ReadNameParser parser) {
         final PhysicalLocationInt pos = new PhysicalLocationInt();
-        readNameParser.addLocationInformation(rec.getReadName(), pos);
+        parser.addLocationInformation(rec.getReadName(), pos);
         return pos;
     }
 
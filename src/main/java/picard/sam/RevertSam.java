@@ -58,6 +58,7 @@ import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
 import picard.util.TabbedTextFileWithHeaderParser;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.File;
 import java.io.IOException;
@@ -67,6 +68,9 @@ import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Reverts a SAM file by optionally restoring original quality scores and by removing
@@ -229,6 +233,11 @@ public class RevertSam extends CommandLineProgram {
             "same library name.", shortName = StandardOptionDefinitions.LIBRARY_NAME_SHORT_NAME, optional = true)
     public String LIBRARY_NAME;
 
+    @Argument(doc = "The number of read groups to sort, sanitize and write concurrently when SANITIZE=true and " +
+            "OUTPUT_BY_READGROUP=true.  With more than one thread each read group gets an equal share of " +
+            "MAX_RECORDS_IN_RAM.  The output does not depend on the number of threads.", optional = true)
+    public int THREADS = 1;
+
     private final static Log log = Log.getInstance(RevertSam.class);
 
     /**
@@ -241,6 +250,10 @@ public class RevertSam extends CommandLineProgram {
         ValidationUtil.validateOutputParams(OUTPUT_BY_READGROUP, OUTPUT, OUTPUT_MAP, errors);
 
         if (!SANITIZE && KEEP_FIRST_DUPLICATE) errors.add("KEEP_FIRST_DUPLICATE cannot be used without SANITIZE");
+        if (THREADS < 1) errors.add("THREADS must be at least 1.");
+        if (THREADS > 1 && !(SANITIZE && OUTPUT_BY_READGROUP)) {
+            errors.add("THREADS greater than 1 can only be used with SANITIZE=true and OUTPUT_BY_READGROUP=true.");
+        }
 
         if (!errors.isEmpty()) {
             return errors.toArray(new String[errors.size()]);
@@ -299,9 +312,13 @@ public class RevertSam extends CommandLineProgram {
         // Build a sorting collection to use if we are sanitizing
         ////////////////////////////////////////////////////////////////////////////
         final RevertSamSorter sorter;
-        if (sanitizing)
-            sorter = new RevertSamSorter(OUTPUT_BY_READGROUP, headerMap, singleOutHeader, MAX_RECORDS_IN_RAM);
-        else sorter = null;
+        if (sanitizing) {
+            // When read groups are sanitized concurrently their sorters are all in memory at once, so they split the budget
+            final int maxRecordsInRam = THREADS > 1 ? Math.max(1, MAX_RECORDS_IN_RAM / headerMap.size()) : MAX_RECORDS_IN_RAM;
+            sorter = new RevertSamSorter(OUTPUT_BY_READGROUP, headerMap, singleOutHeader, maxRecordsInRam);
+        } else {
+            sorter = null;
+        }
 
         final ProgressLogger progress = new ProgressLogger(log, 1000000, "Reverted");
         for (final SAMRecord rec : in) {
@@ -333,7 +350,9 @@ public class RevertSam extends CommandLineProgram {
                 return -1;
             }
 
-            final long[] sanitizeResults = sanitize(readGroupToFormat, sorter, out);
+            final long[] sanitizeResults = THREADS > 1 ?
+                    sanitizeConcurrently(readGroupToFormat, sorter, out) :
+                    sanitize(readGroupToFormat, sorter, out);
             final long discarded = sanitizeResults[0];
             final long total = sanitizeResults[1];
             out.close();
@@ -431,86 +450,149 @@ public class RevertSam extends CommandLineProgram {
         final List<PeekableIterator<SAMRecord>> iterators = sorter.iterators();
 
         for (final PeekableIterator<SAMRecord> iterator : iterators) {
-            readNameLoop:
-            while (iterator.hasNext()) {
-                List<SAMRecord> recs = fetchByReadName(iterator);
-                total += recs.size();
-
-                // Check that all the reads have bases and qualities of the same length
-                for (final SAMRecord rec : recs) {
-                    if (rec.getReadBases().length != rec.getBaseQualities().length) {
-                        log.debug("Discarding ", recs.size(), " reads with name ", rec.getReadName(), " for mismatching bases and quals length.");
-                        discarded += recs.size();
-                        continue readNameLoop;
+            final long[] results = sanitize(readGroupToFormat, iterator, out, sanitizerProgress);
+            discarded += results[0];
+            total += results[1];
+        }
+        return new long[]{discarded, total};
+    }
+
+    /**
+     * Sanitizes each read group on its own thread, THREADS at a time.  The records have already been added to the
+     * read groups' sorters on the reading thread; each task merges its sorter's spilled runs, sanitizes the records
+     * and writes them out.  Every read group has its own sorter, writer and progress logger, so the threads share
+     * no mutable state.
+     */
+    private long[] sanitizeConcurrently(final Map<SAMReadGroupRecord, FastqQualityFormat> readGroupToFormat, final RevertSamSorter sorter, final RevertSamWriter out) {
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(THREADS);
+        try {
+            final List<Future<long[]>> futures = new ArrayList<>();
+            for (final SortingCollection<SAMRecord> readGroupSorter : sorter.sorters()) {
+                futures.add(executor.submit(() -> {
+                    // ProgressLogger is not thread safe, so each task logs its own progress
+                    final ProgressLogger sanitizerProgress = new ProgressLogger(log, 1000000, "Sanitized");
+                    final PeekableIterator<SAMRecord> iterator = new PeekableIterator<>(readGroupSorter.iterator());
+                    try {
+                        return sanitize(readGroupToFormat, iterator, out, sanitizerProgress);
+                    } finally {
+                        iterator.close();
+                        readGroupSorter.cleanup();
                     }
+                }));
+            }
+
+            long total = 0, discarded = 0;
+            for (final Future<long[]> future : futures) {
+                final long[] results = getResult(future);
+                discarded += results[0];
+                total += results[1];
+            }
+            return new long[]{discarded, total};
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Waits for the result of a task, rethrowing whatever it threw. */
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new PicardException("Error sanitizing reads", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while sanitizing reads", e);
+        }
+    }
+
+    /**
+     * Sanitizes the records of a single queryname sorted iterator, writing the ones that are kept to the output.
+     * Returns the number of records discarded and the total number of records seen.
+     */
+    private long[] sanitize(final Map<SAMReadGroupRecord, FastqQualityFormat> readGroupToFormat, final PeekableIterator<SAMRecord> iterator,
+                            final RevertSamWriter out, final ProgressLogger sanitizerProgress) {
+        long total = 0, discarded = 0;
+        readNameLoop:
+        while (iterator.hasNext()) {
+            List<SAMRecord> recs = fetchByReadName(iterator);
+            total += recs.size();
+
+            // Check that all the reads have bases and qualities of the same length
+            for (final SAMRecord rec : recs) {
+                if (rec.getReadBases().length != rec.getBaseQualities().length) {
+                    log.debug("Discarding ", recs.size(), " reads with name ", rec.getReadName(), " for mismatching bases and quals length.");
+                    discarded += recs.size();
+                    continue readNameLoop;
                 }
+            }
 
-                // Get the number of R1s, R2s, and unpaired reads respectively.
-                int firsts = 0, seconds = 0, unpaired = 0;
-                SAMRecord firstRecord = null, secondRecord = null, unpairedRecord = null;
-                for (final SAMRecord rec : recs) {
-                    if (!rec.getReadPairedFlag()) {
-                        if (unpairedRecord == null) {
-                            unpairedRecord = rec;
-                        }
-                        ++unpaired;
-                    } else {
-                        if (rec.getFirstOfPairFlag()) {
-                            if (firstRecord == null) {
-                                firstRecord = rec;
-                            }
-                            ++firsts;
-                        }
-                        if (rec.getSecondOfPairFlag()) {
-                            if (secondRecord == null) {
-                                secondRecord = rec;
-                            }
-                            ++seconds;
+            // Get the number of R1s, R2s, and unpaired reads respectively.
+            int firsts = 0, seconds = 0, unpaired = 0;
+            SAMRecord firstRecord = null, secondRecord = null, unpairedRecord = null;
+            for (final SAMRecord rec : recs) {
+                if (!rec.getReadPairedFlag()) {
+                    if (unpairedRecord == null) {
+                        unpairedRecord = rec;
+                    }
+                    ++unpaired;
+                } else {
+                    if (rec.getFirstOfPairFlag()) {
+                        if (firstRecord == null) {
+                            firstRecord = rec;
                         }
+                        ++firsts;
                     }
-                }
-
-                // If we have paired reads, then check that there is exactly one first of pair and one second of pair.
-                // Otherwise, check that we have only one unpaired read.
-                if (firsts > 0 || seconds > 0) { // if we have any paired reads
-                    if (firsts != 1 || seconds != 1) { // if we do not have exactly one R1 and one R2
-                        if (KEEP_FIRST_DUPLICATE && firsts >= 1 && seconds >= 1) { // if we have at least one R1 and one R2, we can discard all but the first encountered
-                            discarded += recs.size() - 2;
-                            recs = Arrays.asList(firstRecord, secondRecord);
-                        }  else {
-                            log.debug("Discarding ", recs.size(), " reads with name ", recs.get(0).getReadName(), " because  we found ", firsts, " R1s ", seconds, " R2s and ", unpaired, " unpaired reads.");
-                            discarded += recs.size();
-                            continue readNameLoop;
+                    if (rec.getSecondOfPairFlag()) {
+                        if (secondRecord == null) {
+                            secondRecord = rec;
                         }
-
+                        ++seconds;
                     }
                 }
-                else if (unpaired > 1) { // only unpaired reads, and we have too many
-                    if (KEEP_FIRST_DUPLICATE) {
-                        discarded += recs.size() - 1;
-                        recs = Collections.singletonList(unpairedRecord);
-                    }
-                    else {
-                        log.debug("Discarding ", recs.size(), " reads with name ", recs.get(0).getReadName(), " because we found ", unpaired, " unpaired reads.");
+            }
+
+            // If we have paired reads, then check that there is exactly one first of pair and one second of pair.
+            // Otherwise, check that we have only one unpaired read.
+            if (firsts > 0 || seconds > 0) { // if we have any paired reads
+                if (firsts != 1 || seconds != 1) { // if we do not have exactly one R1 and one R2
+                    if (KEEP_FIRST_DUPLICATE && firsts >= 1 && seconds >= 1) { // if we have at least one R1 and one R2, we can discard all but the first encountered
+                        discarded += recs.size() - 2;
+                        recs = Arrays.asList(firstRecord, secondRecord);
+                    }  else {
+                        log.debug("Discarding ", recs.size(), " reads with name ", recs.get(0).getReadName(), " because  we found ", firsts, " R1s ", seconds, " R2s and ", unpaired, " unpaired reads.");
                         discarded += recs.size();
                         continue readNameLoop;
                     }
+
+                }
+            }
+            else if (unpaired > 1) { // only unpaired reads, and we have too many
+                if (KEEP_FIRST_DUPLICATE) {
+                    discarded += recs.size() - 1;
+                    recs = Collections.singletonList(unpairedRecord);
                 }
+                else {
+                    log.debug("Discarding ", recs.size(), " reads with name ", recs.get(0).getReadName(), " because we found ", unpaired, " unpaired reads.");
+                    discarded += recs.size();
+                    continue readNameLoop;
+                }
+            }
 
-                // If we've made it this far spit the records into the output!
-                for (final SAMRecord rec : recs) {
-                    // The only valid quality score encoding scheme is standard; if it's not standard, change it.
-                    final FastqQualityFormat recordFormat = readGroupToFormat.get(rec.getReadGroup());
-                    if (recordFormat != null && !recordFormat.equals(FastqQualityFormat.Standard)) {
-                        final byte[] quals = rec.getBaseQualities();
-                        for (int i = 0; i < quals.length; i++) {
-                            quals[i] -= SolexaQualityConverter.ILLUMINA_TO_PHRED_SUBTRAHEND;
-                        }
-                        rec.setBaseQualities(quals);
+            // If we've made it this far spit the records into the output!
+            for (final SAMRecord rec : recs) {
+                // The only valid quality score encoding scheme is standard; if it's not standard, change it.
+                final FastqQualityFormat recordFormat = readGroupToFormat.get(rec.getReadGroup());
+                if (recordFormat != null && !recordFormat.equals(FastqQualityFormat.Standard)) {
+                    final byte[] quals = rec.getBaseQualities();
+                    for (int i = 0; i < quals.length; i++) {
+                        quals[i] -= SolexaQualityConverter.ILLUMINA_TO_PHRED_SUBTRAHEND;
                     }
-                    out.addAlignment(rec);
-                    sanitizerProgress.record(rec);
+                    rec.setBaseQualities(quals);
                 }
+                out.addAlignment(rec);
+                sanitizerProgress.record(rec);
             }
         }
         return new long[]{discarded, total};
@@ -761,6 +843,11 @@ public class RevertSam extends CommandLineProgram {
             }
             return iterators;
         }
+
+        /** The per-read-group sorters when OUTPUT_BY_READGROUP=true, otherwise the single sorter. */
+        Collection<SortingCollection<SAMRecord>> sorters() {
+            return outputByReadGroup ? sorterMap.values() : Collections.singletonList(singleSorter);
+        }
     }
 
     /**
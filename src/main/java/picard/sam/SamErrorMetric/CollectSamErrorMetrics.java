@@ -55,6 +55,7 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.DiagnosticsAndQCProgramGroup;
+import picard.reference.ReferenceCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -366,11 +367,15 @@ public class CollectSamErrorMetrics extends CommandLineProgram {
     }
 
     private int processData() {
+        // loci are visited in coordinate order and need whole contigs, so the cache is walked like the FASTA but without parsing it
+        final ReferenceCache referenceCache = ReferenceCache.forReference(REFERENCE_SEQUENCE);
         try (
                 final SamReader sam = SamReaderFactory.makeDefault()
                         .referenceSequence(REFERENCE_SEQUENCE)
                         .open(IOUtil.getPath(INPUT));
-                final ReferenceSequenceFileWalker referenceSequenceFileWalker = new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE)
+                final ReferenceSequenceFileWalker referenceSequenceFileWalker = referenceCache == null ?
+                        new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE) :
+                        new ReferenceSequenceFileWalker(referenceCache.newReferenceSequenceFile())
         ) {
             // Initialize our variants:
             initializeVcfDataSource();
@@ -23,6 +23,11 @@
  */
 package picard.sam;
 
+import htsjdk.io.AsyncWriterPool;
+import htsjdk.io.Writer;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.CoordinateSortedPairInfoMap;
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMUtils;
@@ -37,6 +42,7 @@ import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Lazy;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
+import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
 import htsjdk.samtools.util.TrimmingUtil;
@@ -49,6 +55,10 @@ import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,6 +66,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * <p> Extracts read sequences and qualities from the input SAM/BAM file and writes them into
@@ -177,18 +188,39 @@ public class SamToFastq extends CommandLineProgram {
             "is not comprehensive, so there may be exceptions if this is set to true and there are paired reads with non-primary alignments.")
     public boolean INCLUDE_NON_PRIMARY_ALIGNMENTS = false;
 
+    @Argument(doc = "The number of threads to use for writing.  With more than one, the FASTQ files are formatted and compressed " +
+            "on a pool of this many threads, so that for example the outputs of different read groups are compressed in parallel.",
+            optional = true)
+    public int THREADS = 1;
+
+    @Argument(shortName = "MAX_FILE_HANDLES", doc = "Maximum number of file handles to keep open when spilling reads whose " +
+            "mates have not yet been seen to disk, which is done for coordinate sorted input.  Set this number a little lower " +
+            "than the per-process maximum number of file that may be open.")
+    public int MAX_FILE_HANDLES_FOR_MATE_MAP = 1000;
+
     private static final String CLIP_TRIM = "X";
     private static final String CLIP_TO_N = "N";
 
     private final Log log = Log.getInstance(SamToFastq.class);
 
+    /** Pool that writes the fastqs when THREADS > 1, otherwise null. */
+    private AsyncWriterPool writerPool;
+    private int pooledQueueSize;
+
     protected int doWork() {
         IOUtil.assertFileIsReadable(INPUT);
         final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
-        final Map<String, SAMRecord> firstSeenMates = new HashMap<>();
+        final MatePairer firstSeenMates = makeMatePairer(reader.getFileHeader());
         final FastqWriterFactory factory = new FastqWriterFactory();
         factory.setCreateMd5(CREATE_MD5_FILE);
 
+        if (THREADS > 1) {
+            writerPool = new AsyncWriterPool(THREADS);
+            // Up to two fastqs per read group share half of the records in RAM
+            final int outputs = 2 * Math.max(1, reader.getFileHeader().getReadGroups().size());
+            pooledQueueSize = Math.max(2, MAX_RECORDS_IN_RAM / 2 / (OUTPUT_PER_RG ? outputs : 3));
+        }
+
         initializeAdditionalWriters();
         final Map<SAMReadGroupRecord, FastqWriters> writers = generateWriters(reader.getFileHeader().getReadGroups(),
                 factory);
@@ -209,8 +241,16 @@ public class SamToFastq extends CommandLineProgram {
         CloserUtil.close(reader);
 
         // Close all the fastq writers being careful to close each one only once!
-        for (final FastqWriters writerMapping : new HashSet<>(writers.values())) {
-            writerMapping.closeAll();
+        if (writerPool != null) {
+            try {
+                writerPool.close();
+            } catch (final IOException e) {
+                throw new RuntimeIOException("Error closing fastq writers", e);
+            }
+        } else {
+            for (final FastqWriters writerMapping : new HashSet<>(writers.values())) {
+                writerMapping.closeAll();
+            }
         }
 
         // close all `additionalWriters` only once
@@ -220,14 +260,29 @@ public class SamToFastq extends CommandLineProgram {
             fastqWriter.close();
         }
 
-        if (!firstSeenMates.isEmpty()) {
+        if (firstSeenMates.unpairedCount() > 0) {
             SAMUtils.processValidationError(new SAMValidationError(SAMValidationError.Type.MATE_NOT_FOUND,
-                    "Found " + firstSeenMates.size() + " unpaired mates", null), VALIDATION_STRINGENCY);
+                    "Found " + firstSeenMates.unpairedCount() + " unpaired mates", null), VALIDATION_STRINGENCY);
         }
 
         return 0;
     }
 
+    /**
+     * Picks the cheapest way to pair mates for the input's sort order.  Mates are adjacent in queryname sorted input.  In
+     * coordinate sorted input, reads waiting for a mate on a later sequence are spilled to disk.  Non-primary alignments
+     * do not carry the position of the read they pair with, so including them needs the in-memory map.
+     */
+    private MatePairer makeMatePairer(final SAMFileHeader header) {
+        if (header.getSortOrder() == SAMFileHeader.SortOrder.queryname) {
+            return new AdjacentMatePairer();
+        } else if (header.getSortOrder() == SAMFileHeader.SortOrder.coordinate && !INCLUDE_NON_PRIMARY_ALIGNMENTS) {
+            return new CoordinateMatePairer(header, MAX_FILE_HANDLES_FOR_MATE_MAP);
+        } else {
+            return new HashMatePairer();
+        }
+    }
+
     /**
      * Generates the writers for the given read groups or, if we are not emitting per-read-group, just returns the single set of writers.
      */
@@ -239,14 +294,14 @@ public class SamToFastq extends CommandLineProgram {
         final FastqWriters fastqWriters;
         if (!OUTPUT_PER_RG) {
             IOUtil.assertFileIsWritable(FASTQ);
-            final FastqWriter firstOfPairWriter = factory.newWriter(FASTQ);
+            final FastqWriter firstOfPairWriter = newWriter(factory, FASTQ);
 
             final FastqWriter secondOfPairWriter;
             if (INTERLEAVE) {
                 secondOfPairWriter = firstOfPairWriter;
             } else if (SECOND_END_FASTQ != null) {
                 IOUtil.assertFileIsWritable(SECOND_END_FASTQ);
-                secondOfPairWriter = factory.newWriter(SECOND_END_FASTQ);
+                secondOfPairWriter = newWriter(factory, SECOND_END_FASTQ);
             } else {
                 secondOfPairWriter = null;
             }
@@ -254,7 +309,7 @@ public class SamToFastq extends CommandLineProgram {
             /* Prepare the writer that will accept unpaired reads.  If we're emitting a single fastq - and assuming single-ended reads -
              * then this is simply that one fastq writer.  Otherwise, if we're doing paired-end, we emit to a third new writer, since
              * the other two fastqs are accepting only paired end reads. */
-            final FastqWriter unpairedWriter = UNPAIRED_FASTQ == null ? firstOfPairWriter : factory.newWriter(UNPAIRED_FASTQ);
+            final FastqWriter unpairedWriter = UNPAIRED_FASTQ == null ? firstOfPairWriter : newWriter(factory, UNPAIRED_FASTQ);
 
             fastqWriters = new FastqWriters(firstOfPairWriter, secondOfPairWriter, unpairedWriter);
 
@@ -266,10 +321,10 @@ public class SamToFastq extends CommandLineProgram {
         } else {
             // When we're creating a fastq-group per readgroup, by convention we do not emit a special fastq for unpaired reads.
             for (final SAMReadGroupRecord rg : samReadGroupRecords) {
-                final FastqWriter firstOfPairWriter = factory.newWriter(makeReadGroupFile(rg, "_1"));
+                final FastqWriter firstOfPairWriter = newWriter(factory, makeReadGroupFile(rg, "_1"));
                 // Create this writer on-the-fly; if we find no second-of-pair reads, don't bother making a writer (or delegating,
                 // if we're interleaving).
-                final Lazy<FastqWriter> lazySecondOfPairWriter = new Lazy<>(() -> INTERLEAVE ? firstOfPairWriter : factory.newWriter(makeReadGroupFile(rg, "_2")));
+                final Lazy<FastqWriter> lazySecondOfPairWriter = new Lazy<>(() -> INTERLEAVE ? firstOfPairWriter : newWriter(factory, makeReadGroupFile(rg, "_2")));
 
                 writerMap.put(rg, new FastqWriters(firstOfPairWriter, lazySecondOfPairWriter, firstOfPairWriter));
             }
@@ -277,6 +332,26 @@ public class SamToFastq extends CommandLineProgram {
         return writerMap;
     }
 
+    /**
+     * Makes a writer for the given fastq.  When THREADS > 1 the writer hands its records to the writer pool, which formats
+     * and compresses them on one of its threads, in order.
+     */
+    private FastqWriter newWriter(final FastqWriterFactory factory, final File file) {
+        final FastqWriter writer = factory.newWriter(file);
+        if (writerPool == null) return writer;
+        return new PooledFastqWriter(writerPool.pool(new Writer<FastqRecord>() {
+            @Override
+            public void write(final FastqRecord rec) {
+                writer.write(rec);
+            }
+
+            @Override
+            public void close() {
+                writer.close();
+            }
+        }, new LinkedBlockingQueue<>(pooledQueueSize), pooledQueueSize / 2));
+    }
+
     protected void initializeAdditionalWriters() {
     }
 
@@ -287,7 +362,7 @@ public class SamToFastq extends CommandLineProgram {
 
     private void handleRecord(final SAMRecord currentRecord, final Map<SAMReadGroupRecord, FastqWriters> writers,
                               final Map<SAMReadGroupRecord, List<FastqWriter>> additionalWriters,
-                              final Map<String, SAMRecord> firstSeenMates) {
+                              final MatePairer firstSeenMates) {
         if (currentRecord.isSecondaryOrSupplementary() && !INCLUDE_NON_PRIMARY_ALIGNMENTS) {
             return;
         }
@@ -301,11 +376,8 @@ public class SamToFastq extends CommandLineProgram {
         SAMRecord read1 = null;
         SAMRecord read2 = null;
         if (currentRecord.getReadPairedFlag()) {
-            final String currentReadName = currentRecord.getReadName();
-            final SAMRecord firstRecord = firstSeenMates.remove(currentReadName);
-            if (firstRecord == null) {
-                firstSeenMates.put(currentReadName, currentRecord);
-            } else {
+            final SAMRecord firstRecord = firstSeenMates.pair(currentRecord);
+            if (firstRecord != null) {
                 assertPairedMates(firstRecord, currentRecord);
 
                 read1 = currentRecord.getFirstOfPairFlag() ? currentRecord : firstRecord;
@@ -487,6 +559,10 @@ public class SamToFastq extends CommandLineProgram {
             }
         }
 
+        if (THREADS < 1) {
+            errors.add("THREADS must be at least 1.");
+        }
+
         return errors.isEmpty() ? super.customCommandLineValidation() : errors.toArray(new String[errors.size()]);
     }
 
@@ -541,4 +617,160 @@ public class SamToFastq extends CommandLineProgram {
             }
         }
     }
+
+    /**
+     * Finds the mate of each paired read as the reads go by, holding on to every read whose mate has not yet been seen.
+     */
+    private interface MatePairer {
+        /**
+         * Returns the previously seen mate of the given record, or null after holding on to the record if its mate
+         * has not been seen yet.
+         */
+        SAMRecord pair(final SAMRecord rec);
+
+        /** The number of reads being held whose mates were never found. */
+        int unpairedCount();
+    }
+
+    /** Pairs mates in any order by holding unpaired reads in a map keyed by read name. */
+    private static final class HashMatePairer implements MatePairer {
+        private final Map<String, SAMRecord> firstSeenMates = new HashMap<>();
+
+        @Override
+        public SAMRecord pair(final SAMRecord rec) {
+            final SAMRecord firstRecord = firstSeenMates.remove(rec.getReadName());
+            if (firstRecord == null) {
+                firstSeenMates.put(rec.getReadName(), rec);
+            }
+            return firstRecord;
+        }
+
+        @Override
+        public int unpairedCount() {
+            return firstSeenMates.size();
+        }
+    }
+
+    /**
+     * Pairs mates in queryname sorted input, where mates are adjacent once filtered reads are skipped, so only the
+     * last unpaired read needs to be held.  Gives the same pairs as {@link HashMatePairer} for such input.
+     */
+    private static final class AdjacentMatePairer implements MatePairer {
+        private SAMRecord pending;
+        private int orphans = 0;
+
+        @Override
+        public SAMRecord pair(final SAMRecord rec) {
+            if (pending != null && pending.getReadName().equals(rec.getReadName())) {
+                final SAMRecord firstRecord = pending;
+                pending = null;
+                return firstRecord;
+            }
+            if (pending != null) ++orphans;
+            pending = rec;
+            return null;
+        }
+
+        @Override
+        public int unpairedCount() {
+            return orphans + (pending == null ? 0 : 1);
+        }
+    }
+
+    /**
+     * Pairs mates in coordinate sorted input in the way that {@link picard.sam.markduplicates.util.DiskBasedReadEndsForMarkDuplicatesMap}
+     * pairs read ends.  A read whose mate has not been seen is stored under its mate's sequence.  Reads waiting on the
+     * sequence currently being read are held in RAM; those waiting on a later sequence are appended to a file for that
+     * sequence in BAM record form, and read back when that sequence is reached.  Unmapped reads without a position sort
+     * last, so they are treated as being on one more sequence past the end of the dictionary.
+     */
+    private static final class CoordinateMatePairer implements MatePairer {
+        private final CoordinateSortedPairInfoMap<String, SAMRecord> pendingMates;
+        private final int unplacedSequenceIndex;
+
+        private CoordinateMatePairer(final SAMFileHeader header, final int maxOpenFiles) {
+            this.pendingMates = new CoordinateSortedPairInfoMap<>(maxOpenFiles, new PendingMateCodec(header));
+            this.unplacedSequenceIndex = header.getSequenceDictionary().size();
+        }
+
+        @Override
+        public SAMRecord pair(final SAMRecord rec) {
+            final int sequenceIndex = sequenceIndex(rec.getReferenceIndex());
+            final SAMRecord firstRecord = pendingMates.remove(sequenceIndex, rec.getReadName());
+            if (firstRecord == null) {
+                // If the mate claims to be on an earlier sequence it was never seen, so just hold the read with the current ones
+                pendingMates.put(Math.max(sequenceIndex, sequenceIndex(rec.getMateReferenceIndex())), rec.getReadName(), rec);
+            }
+            return firstRecord;
+        }
+
+        @Override
+        public int unpairedCount() {
+            return pendingMates.size();
+        }
+
+        private int sequenceIndex(final int referenceIndex) {
+            return referenceIndex == SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX ? unplacedSequenceIndex : referenceIndex;
+        }
+    }
+
+    /** Spills pending mates in BAM record form.  The key is the read name, which the record already holds. */
+    private static final class PendingMateCodec implements CoordinateSortedPairInfoMap.Codec<String, SAMRecord> {
+        private final BAMRecordCodec bamRecordCodec;
+
+        private PendingMateCodec(final SAMFileHeader header) {
+            this.bamRecordCodec = new BAMRecordCodec(header);
+        }
+
+        @Override
+        public void setInputStream(final InputStream is) {
+            bamRecordCodec.setInputStream(is);
+        }
+
+        @Override
+        public void setOutputStream(final OutputStream os) {
+            bamRecordCodec.setOutputStream(os);
+        }
+
+        @Override
+        public Map.Entry<String, SAMRecord> decode() {
+            final SAMRecord rec = bamRecordCodec.decode();
+            if (rec == null) {
+                throw new PicardException("Unexpected end of file while loading pending mates from disk.");
+            }
+            return new AbstractMap.SimpleEntry<>(rec.getReadName(), rec);
+        }
+
+        @Override
+        public void encode(final String key, final SAMRecord rec) {
+            bamRecordCodec.encode(rec);
+        }
+    }
+
+    /** A {@link FastqWriter} that hands its records to a writer from an {@link AsyncWriterPool}. */
+    private static final class PooledFastqWriter implements FastqWriter {
+        private final Writer<FastqRecord> writer;
+
+        private PooledFastqWriter(final Writer<FastqRecord> writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void write(final FastqRecord rec) {
+            try {
+                writer.write(rec);
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                throw new RuntimeIOException(e);
+            }
+        }
+    }
 }
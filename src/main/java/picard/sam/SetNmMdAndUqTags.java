@@ -35,6 +35,7 @@ import picard.cmdline.CommandLineProgram;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.ReadDataManipulationProgramGroup;
+import picard.reference.ReferenceCache;
 
 import java.io.File;
 import java.util.stream.StreamSupport;
@@ -46,7 +47,8 @@ import java.util.stream.StreamSupport;
  * tags by comparing with the reference. </p>
  *
  * <p>This may be needed when MergeBamAlignment was run with SORT_ORDER other than 'coordinate'
- * and thus could not fix these tags then. The input must be coordinate sorted in order to run.
+ * and thus could not fix these tags then. The input must be coordinate sorted in order to run, unless the reference
+ * has an up to date cache built by CreateReferenceCache, from which the bases of each read are looked up directly.
  * If specified, the MD and NM tags can be ignored and only the UQ tag be set.</p>
  *
  * <h3>Inputs</h3>
@@ -86,7 +88,8 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
             "the NM, MD, and UQ tags by comparing with the reference."+
             "<br />" +
             "This may be needed when MergeBamAlignment was run with SORT_ORDER other than 'coordinate' and thus"+
-            "could not fix these tags then. The input must be coordinate sorted in order to run. If specified,"+
+            "could not fix these tags then. The input must be coordinate sorted in order to run, unless the reference has an"+
+            " up to date cache built by CreateReferenceCache, from which the bases of each read are looked up directly. If specified,"+
             "the MD and NM tags can be ignored and only the UQ tag be set."+
             "<br />"+
             "<h4>Usage example:</h4>" +
@@ -121,7 +124,9 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
         IOUtil.assertFileIsWritable(OUTPUT);
         final SamReader reader = SamReaderFactory.makeDefault().referenceSequence(REFERENCE_SEQUENCE).open(INPUT);
 
-        if (reader.getFileHeader().getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
+        // the reference cache is read at random, so only walking the reference needs the reads in order
+        final ReferenceCache referenceCache = ReferenceCache.forReference(REFERENCE_SEQUENCE);
+        if (referenceCache == null && reader.getFileHeader().getSortOrder() != SAMFileHeader.SortOrder.coordinate) {
             throw new SAMException("Input must be coordinate-sorted for this program to run. Found: " + reader.getFileHeader().getSortOrder());
         }
 
@@ -129,18 +134,25 @@ public class SetNmMdAndUqTags extends CommandLineProgram {
         writer.setProgressLogger(
                 new ProgressLogger(log, (int) 1e7, "Wrote", "records"));
 
-        final ReferenceSequenceFileWalker refSeqWalker = new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE);
+        final ReferenceSequenceFileWalker refSeqWalker = referenceCache == null ? new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE) : null;
 
         StreamSupport.stream(reader.spliterator(), false)
-                .peek(rec -> fixRecord(rec, refSeqWalker))
+                .peek(rec -> fixRecord(rec, referenceCache, refSeqWalker))
                 .forEach(writer::addAlignment);
+        CloserUtil.close(refSeqWalker);
         CloserUtil.close(reader);
         writer.close();
         return 0;
     }
 
-    private void fixRecord(SAMRecord record, ReferenceSequenceFileWalker refSeqWalker){
-        if (!record.getReadUnmappedFlag()) {
+    private void fixRecord(SAMRecord record, ReferenceCache referenceCache, ReferenceSequenceFileWalker refSeqWalker){
+        if (!record.getReadUnmappedFlag() && referenceCache != null) {
+            if (SET_ONLY_UQ) {
+                AbstractAlignmentMerger.fixUq(record, referenceCache, IS_BISULFITE_SEQUENCE);
+            } else {
+                AbstractAlignmentMerger.fixNmMdAndUq(record, referenceCache, IS_BISULFITE_SEQUENCE);
+            }
+        } else if (!record.getReadUnmappedFlag()) {
             if (SET_ONLY_UQ) {
                 AbstractAlignmentMerger.fixUq(record, refSeqWalker, IS_BISULFITE_SEQUENCE);
             } else {
@@ -25,13 +25,17 @@
 package picard.sam;
 
 import htsjdk.samtools.BamIndexValidator.IndexValidationStringency;
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMValidationError;
 import htsjdk.samtools.SamFileValidator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.metrics.MetricBase;
+import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.Histogram;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import org.broadinstitute.barclay.argparser.Argument;
@@ -41,10 +45,13 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.DiagnosticsAndQCProgramGroup;
+import picard.sam.util.ShardedMateValidator;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -121,6 +128,10 @@ public class ValidateSamFile extends CommandLineProgram {
 
     public enum Mode {VERBOSE, SUMMARY}
 
+    // What SamFileValidator writes when it finds nothing, and when it stops at MAX_OUTPUT.
+    private static final String NO_ERRORS_FOUND = "No errors found";
+    private static final String MAX_OUTPUT_REACHED = "Maximum output of [";
+
     @Argument(shortName = StandardOptionDefinitions.INPUT_SHORT_NAME,
             doc = "Input SAM/BAM/CRAM file")
     public File INPUT;
@@ -173,6 +184,12 @@ public class ValidateSamFile extends CommandLineProgram {
             "large amounts of memory to run, so this flag allows you to forego that check.")
     public boolean SKIP_MATE_VALIDATION = false;
 
+    @Argument(doc = "The number of threads to validate on.  With more than one, and an indexed coordinate-sorted input, mate " +
+            "information is validated one contig at a time on this many threads, alongside the validation of the records " +
+            "themselves, rather than by spilling pending mates to disk.  Mates on different contigs are paired up once " +
+            "every contig is done.", optional = true)
+    public int THREADS = 1;
+
     /**
      * Return types for doWork()
      */
@@ -238,9 +255,22 @@ public class ValidateSamFile extends CommandLineProgram {
             factory.setOption(SamReaderFactory.Option.CACHE_FILE_BASED_INDEXES, VALIDATE_INDEX);
             factory.reapplyOptions(samReader);
 
-            final SamFileValidator validator = new SamFileValidator(out, MAX_OPEN_TEMP_FILES);
+            // Mate information of indexed coordinate sorted inputs can be validated contig by contig in the background,
+            // in which case the validator's own output is held back to be merged with what that finds.
+            final ShardedMateValidator mateValidator;
+            if (THREADS > 1 && !SKIP_MATE_VALIDATION && samReader.hasIndex() &&
+                    samReader.getFileHeader().getSortOrder() == SAMFileHeader.SortOrder.coordinate) {
+                mateValidator = new ShardedMateValidator(() -> factory.open(INPUT),
+                        samReader.getFileHeader().getSequenceDictionary().getSequences(), THREADS, IGNORE, IGNORE_WARNINGS,
+                        MODE == Mode.VERBOSE ? MAX_OUTPUT + 1 : 0);
+            } else {
+                mateValidator = null;
+            }
+            final StringWriter validatorOutput = new StringWriter();
+
+            final SamFileValidator validator = new SamFileValidator(mateValidator == null ? out : new PrintWriter(validatorOutput), MAX_OPEN_TEMP_FILES);
             validator.setErrorsToIgnore(IGNORE);
-            validator.setSkipMateValidation(SKIP_MATE_VALIDATION);
+            validator.setSkipMateValidation(SKIP_MATE_VALIDATION || mateValidator != null);
             validator.setBisulfiteSequenced(IS_BISULFITE_SEQUENCED);
             validator.setIgnoreWarnings(IGNORE_WARNINGS);
 
@@ -259,28 +289,57 @@ public class ValidateSamFile extends CommandLineProgram {
 
             result = false;
 
-            switch (MODE) {
-                case SUMMARY:
-                    result = validator.validateSamFileSummary(samReader, reference);
-                    break;
-                case VERBOSE:
-                    result = validator.validateSamFileVerbose(samReader, reference);
-                    break;
+            long numErrors;
+            long numWarnings;
+            try {
+                if (mateValidator != null) {
+                    mateValidator.start();
+                }
+                switch (MODE) {
+                    case SUMMARY:
+                        result = validator.validateSamFileSummary(samReader, reference);
+                        break;
+                    case VERBOSE:
+                        result = validator.validateSamFileVerbose(samReader, reference);
+                        break;
+                }
+
+                numErrors = validator.getNumErrors();
+                numWarnings = validator.getNumWarnings();
+                if (mateValidator != null) {
+                    mateValidator.finish();
+                    final Histogram<SAMValidationError.Type> mateErrorsByType = mateValidator.getErrorsByType();
+                    for (final Histogram.Bin<SAMValidationError.Type> bin : mateErrorsByType.values()) {
+                        if (bin.getId().severity == SAMValidationError.Severity.ERROR) {
+                            numErrors += (long) bin.getValue();
+                        } else {
+                            numWarnings += (long) bin.getValue();
+                        }
+                    }
+                    result &= mateErrorsByType.isEmpty();
+                    writeWithMateErrors(validatorOutput.toString(), validator.getNumErrors() + validator.getNumWarnings(),
+                            mateValidator, out);
+                }
+            } finally {
+                // the validator may throw before the mate validation has finished, leaving its threads running
+                if (mateValidator != null) {
+                    mateValidator.close();
+                }
             }
             out.flush();
 
             if (result) {
                 return ReturnTypes.SUCCESSFUL.value();  // ran successfully with no warnings or errors
             } else {
-                if (validator.getNumErrors() == 0) {
-                    if (validator.getNumWarnings() > 0) {
+                if (numErrors == 0) {
+                    if (numWarnings > 0) {
                         return ReturnTypes.WARNINGS.value();   // warnings but no errors
                     } else {
                         log.error("SAM file validation fails without warnings or errors.");
                         return ReturnTypes.FAILED.value();
                     }
                 } else {
-                    if (validator.getNumWarnings() > 0) {
+                    if (numWarnings > 0) {
                         return ReturnTypes.ERRORS_WARNINGS.value();   // errors and warnings
                     } else {
                         return ReturnTypes.ERRORS.value();  // errors but no warnings
@@ -293,8 +352,57 @@ public class ValidateSamFile extends CommandLineProgram {
         }
     }
 
+    /**
+     * Writes what the validator wrote, merged with the errors found by the mate validator: in verbose mode the mate
+     * errors follow the validator's, up to MAX_OUTPUT in all, and in summary mode they are added to its histogram.
+     */
+    private void writeWithMateErrors(final String validatorOutput, final long validatorErrorCount,
+                                     final ShardedMateValidator mateValidator, final PrintWriter out) {
+        final boolean noValidatorErrors = validatorOutput.trim().equals(NO_ERRORS_FOUND);
+        if (mateValidator.getErrorsByType().isEmpty()) {
+            out.print(validatorOutput);
+            return;
+        }
+
+        if (MODE == Mode.VERBOSE) {
+            if (!noValidatorErrors) {
+                out.print(validatorOutput);
+            }
+            if (validatorOutput.contains(MAX_OUTPUT_REACHED)) {
+                return;
+            }
+            long written = validatorErrorCount;
+            for (final SAMValidationError error : mateValidator.getErrors()) {
+                if (written++ >= MAX_OUTPUT) {
+                    out.println(MAX_OUTPUT_REACHED + MAX_OUTPUT + "] errors reached.");
+                    return;
+                }
+                out.println(error);
+            }
+        } else {
+            // Same layout as the validator's own summary, with WARNING: or ERROR: prepended to the error type.
+            final Histogram<String> errorsAndWarningsByType = new Histogram<>("Error Type", "Count");
+            if (!noValidatorErrors) {
+                final MetricsFile<MetricBase, String> validatorSummary = new MetricsFile<>();
+                validatorSummary.read(new StringReader(validatorOutput));
+                for (final Histogram.Bin<String> bin : validatorSummary.getHistogram().values()) {
+                    errorsAndWarningsByType.increment(bin.getId(), bin.getValue());
+                }
+            }
+            for (final Histogram.Bin<SAMValidationError.Type> bin : mateValidator.getErrorsByType().values()) {
+                errorsAndWarningsByType.increment(bin.getId().getHistogramString(), bin.getValue());
+            }
+            final MetricsFile<MetricBase, String> summary = new MetricsFile<>();
+            summary.setHistogram(errorsAndWarningsByType);
+            summary.write(out);
+        }
+    }
+
     @Override
     protected String[] customCommandLineValidation() {
+        if (THREADS < 1) {
+            return new String[]{"THREADS must be at least 1."};
+        }
         if ((!VALIDATE_INDEX && INDEX_VALIDATION_STRINGENCY != IndexValidationStringency.NONE) ||
             (VALIDATE_INDEX && INDEX_VALIDATION_STRINGENCY == IndexValidationStringency.NONE)) {
             return new String[]{"VALIDATE_INDEX and INDEX_VALIDATION_STRINGENCY must be consistent: " +
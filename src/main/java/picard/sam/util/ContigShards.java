@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.sam.util;
+
+import htsjdk.samtools.BamFileIoUtils;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import picard.PicardException;
+import picard.util.ThreadPoolExecutorWithExceptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Processes an indexed, coordinate sorted SAM/BAM/CRAM one contig at a time on a pool of threads.  The shards are the
+ * contigs of the sequence dictionary followed by the reads with no position, which is the order of the records in the
+ * file, so that a tool which decides what to do with each record on its own can produce the same output as it would
+ * reading the file from start to end.
+ *
+ * Output written by the shards goes to temporary BAMs, which are then concatenated into the output by copying their
+ * compressed blocks, without decoding them again.
+ */
+public final class ContigShards {
+    private static final Log log = Log.getInstance(ContigShards.class);
+
+    private final Supplier<SamReader> readerOpener;
+    private final List<String> contigs = new ArrayList<>();
+    private final int threads;
+
+    /**
+     * @param readerOpener opens a new reader on the input; each shard reads through one of its own
+     * @param header       the header of the input
+     * @param threads      the number of shards processed at once
+     */
+    public ContigShards(final Supplier<SamReader> readerOpener, final SAMFileHeader header, final int threads) {
+        this.readerOpener = readerOpener;
+        this.threads = threads;
+        for (final SAMSequenceRecord sequence : header.getSequenceDictionary().getSequences()) {
+            contigs.add(sequence.getSequenceName());
+        }
+    }
+
+    /** Whether the reader's input can be processed in contig shards: it must be coordinate sorted and indexed. */
+    public static boolean canShard(final SamReader reader) {
+        return reader.getFileHeader().getSortOrder() == SAMFileHeader.SortOrder.coordinate && reader.hasIndex();
+    }
+
+    /** Runs the task on the records of each shard, returning what it returned for each shard in shard order. */
+    public <T> List<T> map(final Function<SAMRecordIterator, T> task) {
+        return mapShards((shard, iterator) -> task.apply(iterator));
+    }
+
+    /** As above, also giving the task the index of the shard. */
+    private <T> List<T> mapShards(final BiFunction<Integer, SAMRecordIterator, T> task) {
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(threads);
+        try {
+            final List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i <= contigs.size(); ++i) {
+                final int shard = i;
+                final String contig = i < contigs.size() ? contigs.get(i) : null;
+                futures.add(executor.submit(() -> {
+                    final SamReader reader = readerOpener.get();
+                    try (final SAMRecordIterator iterator = contig == null ? reader.queryUnmapped() : reader.query(contig, 0, 0, false)) {
+                        return task.apply(shard, iterator);
+                    } finally {
+                        CloserUtil.close(reader);
+                    }
+                }));
+            }
+            final List<T> results = new ArrayList<>(futures.size());
+            for (final Future<T> future : futures) {
+                results.add(getResult(future));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the task on the records of each shard, giving it a writer to a temporary BAM of its own with the given
+     * header, then concatenates those BAMs, in shard order, into the output BAM.  Returns what the task returned for
+     * each shard in shard order.
+     */
+    public <T> List<T> write(final SAMFileHeader header, final File output, final File tmpDir,
+                             final boolean createIndex, final boolean createMd5,
+                             final BiFunction<SAMRecordIterator, SAMFileWriter, T> task) {
+        final List<File> shardOutputs = new ArrayList<>();
+        try {
+            for (int i = 0; i <= contigs.size(); ++i) {
+                final File shardOutput = File.createTempFile("shard" + i + ".", BamFileIoUtils.BAM_FILE_EXTENSION, tmpDir);
+                shardOutput.deleteOnExit();
+                shardOutputs.add(shardOutput);
+            }
+        } catch (final IOException e) {
+            IOUtil.deleteFiles(shardOutputs);
+            throw new PicardException("Error creating temporary files in " + tmpDir.getAbsolutePath(), e);
+        }
+
+        try {
+            final List<T> results = mapShards((shard, iterator) -> {
+                final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(false).setCreateMd5File(false)
+                        .makeBAMWriter(header, true, shardOutputs.get(shard));
+                try {
+                    return task.apply(iterator, writer);
+                } finally {
+                    writer.close();
+                }
+            });
+            log.info("Concatenating " + shardOutputs.size() + " shards into " + output.getAbsolutePath());
+            BamFileIoUtils.gatherWithBlockCopying(shardOutputs, output, createIndex, createMd5);
+            return results;
+        } finally {
+            IOUtil.deleteFiles(shardOutputs);
+        }
+    }
+
+    /** Waits for the result of a task, rethrowing whatever it threw. */
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new PicardException("Error processing shard", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while processing shards", e);
+        }
+    }
+}
@@ -3,15 +3,21 @@ package picard.sam.util;
 import htsjdk.samtools.*;
 import htsjdk.samtools.metrics.Header;
 import htsjdk.samtools.metrics.MetricsFile;
+import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.Histogram;
 import htsjdk.samtools.util.IterableAdapter;
 import htsjdk.samtools.util.SortingCollection;
 import picard.PicardException;
 import picard.sam.SamComparisonMetric;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -21,9 +27,17 @@ import java.util.stream.Collectors;
  * summarised in an output metrics file.
  */
 public final class SamComparison {
+    /** The length of the contig ranges compared in parallel, when comparing coordinate sorted inputs in shards. */
+    private static final int SHARD_LENGTH = 10_000_000;
+
     private final SamReader leftReader;
     private final SamReader rightReader;
 
+    // For comparing indexed coordinate sorted inputs in shards; each shard opens its own readers.
+    private final Supplier<SamReader> leftReopener;
+    private final Supplier<SamReader> rightReopener;
+    private final int threads;
+
     private boolean sequenceDictionariesDiffer;
 
     private final SamComparisonMetric comparisonMetric = new SamComparisonMetric();
@@ -37,6 +51,12 @@ public final class SamComparison {
     private SortingCollection<SAMRecord> markDuplicatesCheckLeft;
     private SortingCollection<SAMRecord> markDuplicatesCheckRight;
 
+    private final AlignmentTally alignmentTally = new AlignmentTally(comparisonMetric, mappingQualityHistogram,
+            (left, right) -> {
+                markDuplicatesCheckLeft.add(left);
+                markDuplicatesCheckRight.add(right);
+            });
+
     public enum AlignmentComparison {
         UNMAPPED_BOTH, UNMAPPED_LEFT, UNMAPPED_RIGHT, MAPPINGS_DIFFER, MAPPINGS_MATCH
     }
@@ -49,8 +69,22 @@ public final class SamComparison {
     }
 
     public SamComparison(final SamReader leftReader, final SamReader rightReader, final String leftName, final String rightName, final SAMComparisonArgumentCollection samComparisonArgumentCollection) {
+        this(leftReader, rightReader, leftName, rightName, samComparisonArgumentCollection, null, null, 1);
+    }
+
+    /**
+     * As above, but when both inputs are coordinate sorted and indexed, and threads is more than one, compares the
+     * alignments in shards on that many threads.  Each shard reads the inputs through readers of its own, opened with
+     * leftReopener and rightReopener and closed once the shard is done.
+     */
+    public SamComparison(final SamReader leftReader, final SamReader rightReader, final String leftName, final String rightName,
+                         final SAMComparisonArgumentCollection samComparisonArgumentCollection,
+                         final Supplier<SamReader> leftReopener, final Supplier<SamReader> rightReopener, final int threads) {
         this.leftReader = leftReader;
         this.rightReader = rightReader;
+        this.leftReopener = leftReopener;
+        this.rightReopener = rightReopener;
+        this.threads = threads;
         this.samComparisonArgumentCollection = samComparisonArgumentCollection;
         comparisonMetric.LEFT_FILE = leftName;
         comparisonMetric.RIGHT_FILE = rightName;
@@ -184,29 +218,51 @@ public final class SamComparison {
     }
 
     private boolean compareCoordinateSortedAlignments() {
-        final SecondaryOrSupplementarySkippingIterator itLeft =
-                new SecondaryOrSupplementarySkippingIterator(leftReader.iterator());
-        final SecondaryOrSupplementarySkippingIterator itRight =
-                new SecondaryOrSupplementarySkippingIterator(rightReader.iterator());
-
         // Save any reads which haven't been matched during in-order scan.
         final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched = new LinkedHashMap<>();
         final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched = new LinkedHashMap<>();
 
+        if (canCompareInShards()) {
+            compareShards(leftUnmatched, rightUnmatched);
+        } else {
+            compareCoordinateSortedAlignments(new SecondaryOrSupplementarySkippingIterator(leftReader.iterator()),
+                    new SecondaryOrSupplementarySkippingIterator(rightReader.iterator()),
+                    alignmentTally, leftUnmatched, rightUnmatched);
+        }
+
+        // Look up reads that were unmatched from left, and see if they are in rightUnmatched.
+        // If found, remove from rightUnmatched and tally.
+        for (final Map.Entry<PrimaryAlignmentKey, SAMRecord> leftEntry : leftUnmatched.entrySet()) {
+            final PrimaryAlignmentKey leftKey = leftEntry.getKey();
+            final SAMRecord left = leftEntry.getValue();
+            final SAMRecord right = rightUnmatched.remove(leftKey);
+            if (right == null) {
+                ++comparisonMetric.MISSING_RIGHT;
+                continue;
+            }
+            tallyAlignmentRecords(left, right);
+        }
+
+        // Any elements remaining in rightUnmatched are guaranteed not to be in leftUnmatched.
+        comparisonMetric.MISSING_LEFT += rightUnmatched.size();
+
+        return comparisonMetric.allVisitedAlignmentsEqual();
+    }
+
+    /**
+     * Scans two coordinate sorted iterators in step, tallying the reads found at the same coordinate in both.  Reads
+     * which could not be matched that way are saved in leftUnmatched and rightUnmatched, to be matched up by the caller
+     * once every read has been seen.
+     */
+    private void compareCoordinateSortedAlignments(final SecondaryOrSupplementarySkippingIterator itLeft,
+                                                   final SecondaryOrSupplementarySkippingIterator itRight,
+                                                   final AlignmentTally tally,
+                                                   final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched,
+                                                   final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched) {
         while (itLeft.hasCurrent()) {
             if (!itRight.hasCurrent()) {
-                // Exhausted right side.  See if any of the remaining left reads match
-                // any of the saved right reads.
-                for (; itLeft.hasCurrent(); itLeft.advance()) {
-                    final SAMRecord left = itLeft.getCurrent();
-                    final PrimaryAlignmentKey leftKey = new PrimaryAlignmentKey(left);
-                    final SAMRecord right = rightUnmatched.remove(leftKey);
-                    if (right == null) {
-                        ++comparisonMetric.MISSING_RIGHT;
-                    } else {
-                        tallyAlignmentRecords(left, right);
-                    }
-                }
+                // Exhausted right side.  Save the remaining left reads to be matched against the saved right reads.
+                consumeAll(itLeft, (record, key) -> leftUnmatched.put(key, record));
                 break;
             }
             // Don't assume stability of order beyond the coordinate.  Therefore grab all the
@@ -239,7 +295,7 @@ public final class SamComparison {
                 final PrimaryAlignmentKey rightKey = new PrimaryAlignmentKey(right);
                 final SAMRecord matchingLeft = leftCurrentCoordinate.remove(rightKey);
                 if (matchingLeft != null) {
-                    tallyAlignmentRecords(matchingLeft, right);
+                    tallyAlignmentRecords(matchingLeft, right, tally);
                 } else {
                     rightUnmatched.put(rightKey, right);
                 }
@@ -251,27 +307,140 @@ public final class SamComparison {
                 leftUnmatched.put(recordKey, samRecord);
             }
         }
-        // The left iterator has been exhausted.  See if any of the remaining right reads
-        // match any of the saved left reads.
-        consumeUnmatchedRights(itRight, leftUnmatched);
+        // The left iterator has been exhausted.  Save the remaining right reads to be matched against the saved left reads.
+        consumeAll(itRight, (record, key) -> rightUnmatched.put(key, record));
+    }
 
-        // Look up reads that were unmatched from left, and see if they are in rightUnmatched.
-        // If found, remove from rightUnmatched and tally.
-        for (final Map.Entry<PrimaryAlignmentKey, SAMRecord> leftEntry : leftUnmatched.entrySet()) {
-            final PrimaryAlignmentKey leftKey = leftEntry.getKey();
-            final SAMRecord left = leftEntry.getValue();
-            final SAMRecord right = rightUnmatched.remove(leftKey);
-            if (right == null) {
-                ++comparisonMetric.MISSING_RIGHT;
-                continue;
+    /**
+     * Whether the alignments can be compared a shard at a time on several threads: that needs both inputs to be
+     * indexed, and a way of opening further readers on them.  Only called for coordinate sorted inputs with the same
+     * sequence dictionary.
+     */
+    private boolean canCompareInShards() {
+        return threads > 1 && leftReopener != null && rightReopener != null && leftReader.hasIndex() && rightReader.hasIndex();
+    }
+
+    /**
+     * Compares the alignments shard by shard, each shard being a range of a contig or the reads with no position, on
+     * a pool of threads.  Each shard first compares digests of its reads in the two inputs; where those agree the
+     * shard is counted as matching without pairing up its reads.  The counts of each shard are merged, in order, into
+     * the comparison as a whole, and the reads which moved between shards, or which are in only one input, are left in
+     * leftUnmatched and rightUnmatched.
+     */
+    private void compareShards(final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched,
+                               final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched) {
+        final List<Shard> shards = new ArrayList<>();
+        for (final SAMSequenceRecord sequence : leftReader.getFileHeader().getSequenceDictionary().getSequences()) {
+            for (int start = 1; start <= sequence.getSequenceLength(); start += SHARD_LENGTH) {
+                // The last shard of a contig is left open ended, so that it also holds any read starting past its end.
+                final int end = start + SHARD_LENGTH > sequence.getSequenceLength() ? 0 : start + SHARD_LENGTH - 1;
+                shards.add(new Shard(sequence.getSequenceName(), start, end));
             }
-            tallyAlignmentRecords(left, right);
         }
+        shards.add(new Shard(null, 0, 0));
 
-        // Any elements remaining in rightUnmatched are guaranteed not to be in leftUnmatched.
-        comparisonMetric.MISSING_LEFT += rightUnmatched.size();
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(threads);
+        try {
+            final Deque<Future<ShardResult>> pending = new ArrayDeque<>();
+            for (final Shard shard : shards) {
+                if (pending.size() >= 2 * threads) {
+                    mergeShard(getResult(pending.poll()), leftUnmatched, rightUnmatched);
+                }
+                pending.add(executor.submit(() -> compareShard(shard)));
+            }
+            while (!pending.isEmpty()) {
+                mergeShard(getResult(pending.poll()), leftUnmatched, rightUnmatched);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ShardResult compareShard(final Shard shard) {
+        final ShardResult result = new ShardResult();
+        final SamReader left = leftReopener.get();
+        final SamReader right = rightReopener.get();
+        try {
+            final ShardDigest leftDigest = new ShardDigest();
+            final ShardDigest rightDigest = new ShardDigest();
+            try (final SAMRecordIterator leftIterator = shard.query(left);
+                 final SAMRecordIterator rightIterator = shard.query(right)) {
+                consumeAll(shard.skipEarlierReads(leftIterator), (record, key) -> leftDigest.add(record));
+                consumeAll(shard.skipEarlierReads(rightIterator), (record, key) -> rightDigest.add(record));
+            }
 
-        return comparisonMetric.allVisitedAlignmentsEqual();
+            if (leftDigest.matches(rightDigest)) {
+                // Every read is in both inputs with the same alignment, so there is nothing to pair up.
+                result.tally.metric.UNMAPPED_BOTH += leftDigest.unmapped;
+                result.tally.metric.MAPPINGS_MATCH += leftDigest.records - leftDigest.unmapped;
+                if (samComparisonArgumentCollection.COMPARE_MQ) {
+                    for (int mq = 0; mq < leftDigest.mappingQualityCounts.length; ++mq) {
+                        if (leftDigest.mappingQualityCounts[mq] > 0) {
+                            result.tally.mappingQualityHistogram.increment(String.format("%d,%d", mq, mq), leftDigest.mappingQualityCounts[mq]);
+                        }
+                    }
+                }
+            } else {
+                try (final SAMRecordIterator leftIterator = shard.query(left);
+                     final SAMRecordIterator rightIterator = shard.query(right)) {
+                    compareCoordinateSortedAlignments(shard.skipEarlierReads(leftIterator), shard.skipEarlierReads(rightIterator),
+                            result.tally, result.leftUnmatched, result.rightUnmatched);
+                }
+                pairUpUnmatched(result);
+            }
+        } finally {
+            CloserUtil.close(left);
+            CloserUtil.close(right);
+        }
+        return result;
+    }
+
+    /**
+     * Tallies the reads that were not matched by the in-order scan of a shard but are in both inputs within it, i.e. that
+     * moved within the shard, so that only the reads that moved out of it are held until every shard is done.  Each read
+     * is in exactly one shard, so this pairs up the same reads as matching them once every shard is done would.
+     */
+    private void pairUpUnmatched(final ShardResult result) {
+        final Iterator<Map.Entry<PrimaryAlignmentKey, SAMRecord>> leftIterator = result.leftUnmatched.entrySet().iterator();
+        while (leftIterator.hasNext()) {
+            final Map.Entry<PrimaryAlignmentKey, SAMRecord> leftEntry = leftIterator.next();
+            final SAMRecord right = result.rightUnmatched.remove(leftEntry.getKey());
+            if (right != null) {
+                tallyAlignmentRecords(leftEntry.getValue(), right, result.tally);
+                leftIterator.remove();
+            }
+        }
+    }
+
+    private void mergeShard(final ShardResult result,
+                            final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched,
+                            final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched) {
+        final SamComparisonMetric shardMetric = result.tally.metric;
+        comparisonMetric.MAPPINGS_MATCH += shardMetric.MAPPINGS_MATCH;
+        comparisonMetric.MAPPINGS_DIFFER += shardMetric.MAPPINGS_DIFFER;
+        comparisonMetric.UNMAPPED_BOTH += shardMetric.UNMAPPED_BOTH;
+        comparisonMetric.UNMAPPED_LEFT += shardMetric.UNMAPPED_LEFT;
+        comparisonMetric.UNMAPPED_RIGHT += shardMetric.UNMAPPED_RIGHT;
+        comparisonMetric.DUPLICATE_MARKINGS_DIFFER += shardMetric.DUPLICATE_MARKINGS_DIFFER;
+        mappingQualityHistogram.addHistogram(result.tally.mappingQualityHistogram);
+        result.leftDuplicateDifferences.forEach(markDuplicatesCheckLeft::add);
+        result.rightDuplicateDifferences.forEach(markDuplicatesCheckRight::add);
+        leftUnmatched.putAll(result.leftUnmatched);
+        rightUnmatched.putAll(result.rightUnmatched);
+    }
+
+    /** Waits for the result of a task, rethrowing whatever it threw. */
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new PicardException("Error comparing alignments", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while comparing alignments", e);
+        }
     }
 
     private int compareAlignmentCoordinates(final SAMRecord left, final SAMRecord right) {
@@ -405,36 +574,39 @@ public final class SamComparison {
                 (samComparisonArgumentCollection.LENIENT_UNKNOWN_MQ_ALIGNMENT && s1.getMappingQuality() == SAMRecord.UNKNOWN_MAPPING_QUALITY && s2.getMappingQuality() == SAMRecord.UNKNOWN_MAPPING_QUALITY));
     }
 
-    private void compareAndUpdateMappingQualityConcordance(final SAMRecord s1, final SAMRecord s2) {
-        mappingQualityHistogram.increment(String.format("%d,%d", s1.getMappingQuality(), s2.getMappingQuality()));
+    private void compareAndUpdateMappingQualityConcordance(final SAMRecord s1, final SAMRecord s2, final AlignmentTally tally) {
+        tally.mappingQualityHistogram.increment(String.format("%d,%d", s1.getMappingQuality(), s2.getMappingQuality()));
     }
 
     /**
      * Compare the mapping information for two SAMRecords.  Makes comparison of alignments, and also catalogs duplicate marking differences.
      */
     private void tallyAlignmentRecords(final SAMRecord s1, final SAMRecord s2) {
+        tallyAlignmentRecords(s1, s2, alignmentTally);
+    }
+
+    private void tallyAlignmentRecords(final SAMRecord s1, final SAMRecord s2, final AlignmentTally tally) {
         if (!s1.getReadName().equals(s2.getReadName())) {
             throw new PicardException("Read names do not match: " + s1.getReadName() + " : " + s2.getReadName());
         }
-        catalogDuplicateDifferences(s1, s2);
+        catalogDuplicateDifferences(s1, s2, tally);
         final AlignmentComparison comp = compareAlignmentRecords(s1, s2);
-        comparisonMetric.updateMetric(comp);
+        tally.metric.updateMetric(comp);
 
         if (samComparisonArgumentCollection.COMPARE_MQ) {
-            compareAndUpdateMappingQualityConcordance(s1, s2);
+            compareAndUpdateMappingQualityConcordance(s1, s2, tally);
         }
     }
 
-    private void catalogDuplicateDifferences(final SAMRecord s1, final SAMRecord s2) {
+    private void catalogDuplicateDifferences(final SAMRecord s1, final SAMRecord s2, final AlignmentTally tally) {
         // if strict, reads with differing duplicate marking are counted by DUPLICATE_MARKINGS_DIFFER.
         // if lenient, reads with differing duplicate marking are added to markDuplicatesCheckLeft/Right
         // to later be counted while allowing for swaps withing duplicate sets by updateLenientDuplicateMarkingDifferences
         if (s1.getDuplicateReadFlag() != s2.getDuplicateReadFlag()) {
             if (samComparisonArgumentCollection.LENIENT_DUP) {
-                markDuplicatesCheckLeft.add(s1);
-                markDuplicatesCheckRight.add(s2);
+                tally.duplicateDifferences.accept(s1, s2);
             } else {
-                comparisonMetric.DUPLICATE_MARKINGS_DIFFER++;
+                tally.metric.DUPLICATE_MARKINGS_DIFFER++;
             }
         }
     }
@@ -615,4 +787,112 @@ public final class SamComparison {
     public boolean areEqual() {
         return comparisonMetric.ARE_EQUAL;
     }
+
+    /**
+     * Where the outcomes of comparing primary alignments are counted.  The comparison as a whole counts straight into
+     * its metric; each shard of a sharded comparison counts into its own, merged once the shard is done.
+     */
+    private static final class AlignmentTally {
+        private final SamComparisonMetric metric;
+        private final Histogram<String> mappingQualityHistogram;
+        /** Receives the pairs of records with different duplicate marks, when checking duplicates leniently. */
+        private final BiConsumer<SAMRecord, SAMRecord> duplicateDifferences;
+
+        private AlignmentTally(final SamComparisonMetric metric, final Histogram<String> mappingQualityHistogram,
+                               final BiConsumer<SAMRecord, SAMRecord> duplicateDifferences) {
+            this.metric = metric;
+            this.mappingQualityHistogram = mappingQualityHistogram;
+            this.duplicateDifferences = duplicateDifferences;
+        }
+    }
+
+    /** A range of a contig, or when contig is null the reads with no position, compared as a unit. */
+    private static final class Shard {
+        private final String contig;
+        private final int start;
+        /** Zero for the last shard of a contig, which runs to its end. */
+        private final int end;
+
+        private Shard(final String contig, final int start, final int end) {
+            this.contig = contig;
+            this.start = start;
+            this.end = end;
+        }
+
+        private SAMRecordIterator query(final SamReader reader) {
+            return contig == null ? reader.queryUnmapped() : reader.query(contig, start, end, false);
+        }
+
+        /** Skips the primary reads which overlap the shard but start before it, so that each read is in exactly one shard. */
+        private SecondaryOrSupplementarySkippingIterator skipEarlierReads(final SAMRecordIterator iterator) {
+            final SecondaryOrSupplementarySkippingIterator it = new SecondaryOrSupplementarySkippingIterator(iterator);
+            while (contig != null && it.hasCurrent() && it.getCurrent().getAlignmentStart() < start) {
+                it.advance();
+            }
+            return it;
+        }
+    }
+
+    /** What comparing one shard leaves to be merged into the comparison as a whole. */
+    private static final class ShardResult {
+        private final List<SAMRecord> leftDuplicateDifferences = new ArrayList<>();
+        private final List<SAMRecord> rightDuplicateDifferences = new ArrayList<>();
+        private final AlignmentTally tally = new AlignmentTally(new SamComparisonMetric(), new Histogram<>(),
+                (left, right) -> {
+                    leftDuplicateDifferences.add(left);
+                    rightDuplicateDifferences.add(right);
+                });
+        private final Map<PrimaryAlignmentKey, SAMRecord> leftUnmatched = new LinkedHashMap<>();
+        private final Map<PrimaryAlignmentKey, SAMRecord> rightUnmatched = new LinkedHashMap<>();
+    }
+
+    /**
+     * An order-independent digest of the primary reads of a shard: two sums of independent 64-bit hashes of everything
+     * the comparison of a read looks at (its name, flags, contig, start and mapping quality), and the number of reads.
+     * Two shards with matching digests hold, barring a hash collision, the same reads with the same alignments.  Also
+     * keeps the counts needed to tally such a shard without pairing up its reads.
+     */
+    private static final class ShardDigest {
+        private static final long FIRST_SEED = 0xcbf29ce484222325L;
+        private static final long SECOND_SEED = 0x9e3779b97f4a7c15L;
+
+        private long firstSum;
+        private long secondSum;
+        private long records;
+        private long unmapped;
+        private final long[] mappingQualityCounts = new long[256];
+
+        private void add(final SAMRecord record) {
+            firstSum += hash(record, FIRST_SEED);
+            secondSum += hash(record, SECOND_SEED);
+            ++records;
+            if (record.getReadUnmappedFlag()) {
+                ++unmapped;
+            }
+            ++mappingQualityCounts[record.getMappingQuality() & 0xff];
+        }
+
+        private boolean matches(final ShardDigest other) {
+            return records == other.records && firstSum == other.firstSum && secondSum == other.secondSum;
+        }
+
+        private static long hash(final SAMRecord record, final long seed) {
+            long h = seed;
+            final String name = record.getReadName();
+            for (int i = 0; i < name.length(); ++i) {
+                h = (h ^ name.charAt(i)) * 0x100000001b3L;
+            }
+            h = mix(h ^ record.getFlags());
+            h = mix(h ^ record.getReferenceIndex());
+            h = mix(h ^ record.getAlignmentStart());
+            return mix(h ^ record.getMappingQuality());
+        }
+
+        /** The SplitMix64 finalizer, so that every input bit affects every output bit. */
+        private static long mix(long h) {
+            h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+            h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+            return h ^ (h >>> 31);
+        }
+    }
 }
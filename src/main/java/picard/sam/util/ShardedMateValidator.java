@@ -0,0 +1,282 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2021 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.sam.util;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SAMValidationError;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.Histogram;
+import picard.PicardException;
+import picard.util.ThreadPoolExecutorWithExceptions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Validates the mate information of the primary paired reads of an indexed, coordinate sorted SAM/BAM/CRAM, one contig
+ * at a time on a pool of threads, in the background of whatever else the caller is doing.  Each contig, and the reads
+ * with no position, are a shard whose reads are paired up with a map of their own.  Only the reads whose mates are in
+ * another shard, typically those of chimeric pairs, are kept once the shard is done, as a compact signature of the read
+ * and of what it says about its mate, and are paired up once every shard has finished.
+ *
+ * The checks, and the error types they report, are those of the mate validation in {@link htsjdk.samtools.SamFileValidator},
+ * which can then be run with mate validation turned off.  Errors are reported in shard order, followed by those found
+ * when pairing up reads across shards.
+ *
+ * The threads are started by {@link #start()} and stopped by {@link #finish()}; callers that may give up before
+ * finishing must {@link #close()} the validator to stop them.
+ */
+public final class ShardedMateValidator implements AutoCloseable {
+    private final Supplier<SamReader> readerOpener;
+    private final List<SAMSequenceRecord> sequences;
+    private final Set<SAMValidationError.Type> errorsToIgnore;
+    private final boolean ignoreWarnings;
+    private final int maxErrorsKept;
+    private final int threads;
+    private ExecutorService executor;
+    private final List<Future<ShardResult>> shards = new ArrayList<>();
+
+    private final Histogram<SAMValidationError.Type> errorsByType = new Histogram<>();
+    private final List<SAMValidationError> errors = new ArrayList<>();
+
+    /**
+     * @param readerOpener   opens a new reader on the input; each shard reads through one of its own
+     * @param sequences      the sequence dictionary of the input
+     * @param threads        the number of shards validated at once
+     * @param errorsToIgnore error types that are neither counted nor kept
+     * @param ignoreWarnings whether to neither count nor keep warnings
+     * @param maxErrorsKept  how many of the errors found to keep, the rest only being counted
+     */
+    public ShardedMateValidator(final Supplier<SamReader> readerOpener, final List<SAMSequenceRecord> sequences, final int threads,
+                                final Collection<SAMValidationError.Type> errorsToIgnore, final boolean ignoreWarnings,
+                                final int maxErrorsKept) {
+        this.readerOpener = readerOpener;
+        this.sequences = sequences;
+        this.errorsToIgnore = new HashSet<>(errorsToIgnore);
+        this.ignoreWarnings = ignoreWarnings;
+        this.maxErrorsKept = maxErrorsKept;
+        this.threads = threads;
+    }
+
+    /** Starts validating every shard in the background. */
+    public void start() {
+        if (executor != null) {
+            throw new IllegalStateException("Mate validation has already been started");
+        }
+        executor = new ThreadPoolExecutorWithExceptions(threads);
+        for (final SAMSequenceRecord sequence : sequences) {
+            shards.add(executor.submit(() -> validateShard(sequence.getSequenceName())));
+        }
+        shards.add(executor.submit(() -> validateShard(null)));
+    }
+
+    /**
+     * Waits for every shard to be validated, then pairs up the reads whose mates were in another shard.  Once this
+     * has returned, {@link #getErrorsByType()} and {@link #getErrors()} hold the outcome.
+     */
+    public void finish() {
+        if (executor == null) {
+            throw new IllegalStateException("Mate validation has not been started");
+        }
+        final ShardResult crossShard = new ShardResult();
+        try {
+            for (final Future<ShardResult> shard : shards) {
+                final ShardResult result = getResult(shard);
+                errorsByType.addHistogram(result.errorsByType);
+                keep(result.errors);
+                for (final Map.Entry<String, MateSignature> entry : result.unpaired.entrySet()) {
+                    crossShard.pair(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            close();
+        }
+        crossShard.reportMatesNotFound();
+        errorsByType.addHistogram(crossShard.errorsByType);
+        keep(crossShard.errors);
+    }
+
+    /** Stops any shards still being validated; does nothing if validation was never started or has finished. */
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /** The number of errors of each type found, once {@link #finish()} has returned. */
+    public Histogram<SAMValidationError.Type> getErrorsByType() {
+        return errorsByType;
+    }
+
+    /** Up to maxErrorsKept of the errors found, once {@link #finish()} has returned. */
+    public List<SAMValidationError> getErrors() {
+        return errors;
+    }
+
+    private void keep(final List<SAMValidationError> shardErrors) {
+        for (final SAMValidationError error : shardErrors) {
+            if (errors.size() >= maxErrorsKept) {
+                return;
+            }
+            errors.add(error);
+        }
+    }
+
+    /** Pairs up the primary paired reads of a contig, or of the reads with no position when contig is null. */
+    private ShardResult validateShard(final String contig) {
+        final ShardResult result = new ShardResult();
+        final SamReader reader = readerOpener.get();
+        try (final SAMRecordIterator iterator = contig == null ? reader.queryUnmapped() : reader.query(contig, 0, 0, false)) {
+            while (iterator.hasNext()) {
+                final SAMRecord record = iterator.next();
+                if (record.getReadPairedFlag() && !record.isSecondaryOrSupplementary()) {
+                    result.pair(record.getReadName(), new MateSignature(record));
+                }
+            }
+        } finally {
+            CloserUtil.close(reader);
+        }
+        return result;
+    }
+
+    /** Waits for the result of a task, rethrowing whatever it threw. */
+    private static <T> T getResult(final Future<T> future) {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new PicardException("Error validating mates", e.getCause());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while validating mates", e);
+        }
+    }
+
+    /** The reads of a shard which are still waiting for their mates, and the errors found pairing up the others. */
+    private final class ShardResult {
+        private final Map<String, MateSignature> unpaired = new LinkedHashMap<>();
+        private final Histogram<SAMValidationError.Type> errorsByType = new Histogram<>();
+        private final List<SAMValidationError> errors = new ArrayList<>();
+
+        /** Validates a read against its mate if that has already been seen, otherwise saves it until the mate turns up. */
+        private void pair(final String readName, final MateSignature read) {
+            final MateSignature mate = unpaired.remove(readName);
+            if (mate == null) {
+                unpaired.put(readName, read);
+                return;
+            }
+            validateMateFields(readName, read, mate);
+            validateMateFields(readName, mate, read);
+            if (read.firstOfPair == mate.firstOfPair) {
+                addError(SAMValidationError.Type.MATES_ARE_SAME_END, "Both mates are marked as " +
+                        (read.firstOfPair ? "first" : "second") + " of pair", readName);
+            }
+        }
+
+        private void validateMateFields(final String readName, final MateSignature read, final MateSignature mate) {
+            if (read.mateAlignmentStart != mate.alignmentStart) {
+                addError(SAMValidationError.Type.MISMATCH_MATE_ALIGNMENT_START,
+                        "Mate alignment does not match alignment start of mate", readName);
+            }
+            if (read.mateNegativeStrand != mate.negativeStrand) {
+                addError(SAMValidationError.Type.MISMATCH_FLAG_MATE_NEG_STRAND,
+                        "Mate negative strand flag does not match read negative strand flag of mate", readName);
+            }
+            if (read.mateReferenceIndex != mate.referenceIndex) {
+                addError(SAMValidationError.Type.MISMATCH_MATE_REF_INDEX,
+                        "Mate reference index (MRNM) does not match reference index of mate", readName);
+            }
+            if (read.mateUnmapped != mate.unmapped) {
+                addError(SAMValidationError.Type.MISMATCH_FLAG_MATE_UNMAPPED,
+                        "Mate unmapped flag does not match read unmapped flag of mate", readName);
+            }
+            if (read.mateCigar != null && !read.mateCigar.equals(mate.cigar)) {
+                addError(SAMValidationError.Type.MISMATCH_MATE_CIGAR_STRING,
+                        "Mate CIGAR string does not match CIGAR string of mate", readName);
+            }
+        }
+
+        private void reportMatesNotFound() {
+            for (final String readName : unpaired.keySet()) {
+                addError(SAMValidationError.Type.MATE_NOT_FOUND, "Mate not found for paired read", readName);
+            }
+            unpaired.clear();
+        }
+
+        private void addError(final SAMValidationError.Type type, final String message, final String readName) {
+            if (errorsToIgnore.contains(type) || (ignoreWarnings && type.severity == SAMValidationError.Severity.WARNING)) {
+                return;
+            }
+            errorsByType.increment(type);
+            if (errors.size() < maxErrorsKept) {
+                errors.add(new SAMValidationError(type, message, readName));
+            }
+        }
+    }
+
+    /** What a read says about itself and about its mate; all that mate validation looks at. */
+    private static final class MateSignature {
+        private final int referenceIndex;
+        private final int alignmentStart;
+        private final boolean negativeStrand;
+        private final boolean unmapped;
+        private final boolean firstOfPair;
+        private final String cigar;
+        private final int mateReferenceIndex;
+        private final int mateAlignmentStart;
+        private final boolean mateNegativeStrand;
+        private final boolean mateUnmapped;
+        private final String mateCigar;
+
+        private MateSignature(final SAMRecord record) {
+            referenceIndex = record.getReferenceIndex();
+            alignmentStart = record.getAlignmentStart();
+            negativeStrand = record.getReadNegativeStrandFlag();
+            unmapped = record.getReadUnmappedFlag();
+            firstOfPair = record.getFirstOfPairFlag();
+            cigar = record.getCigarString();
+            mateReferenceIndex = record.getMateReferenceIndex();
+            mateAlignmentStart = record.getMateAlignmentStart();
+            mateNegativeStrand = record.getMateNegativeStrandFlag();
+            mateUnmapped = record.getMateUnmappedFlag();
+            mateCigar = record.getStringAttribute(SAMTag.MC.name());
+        }
+    }
+}
@@ -24,22 +24,38 @@
 package picard.util;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IntervalList;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.ProgressLogger;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
+import picard.PicardException;
 import picard.nio.PicardHtsPath;
 import picard.vcf.ByIntervalListVariantContextIterator;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -47,11 +63,49 @@ import java.util.Set;
 /**
  * Utility class to use with DbSnp files to determine is a locus is
  * a dbSnp site.
+ *
+ * In place of a dbSNP VCF, every factory method and constructor also accepts a bitmask index written by
+ * {@link #writeIndex(Path, SAMSequenceDictionary, File, Optional)} (recognised by its {@link #INDEX_EXTENSION}
+ * extension). The bitmasks are then memory-mapped rather than parsed, so concurrent jobs share them through the
+ * page cache. An index covers the whole genome, so when intervals are given it also answers for sites outside
+ * them; callers only query loci inside their intervals, so the results are the same.
  */
 public class DbSnpBitSetUtil {
 
+    /** The extension that identifies a dbSNP bitmask index. */
+    public static final String INDEX_EXTENSION = ".dbsnp_bits";
+
+    private static final int INDEX_MAGIC = 0x44425342; // "DBSB"
+    private static final int INDEX_VERSION = 1;
+
+    /** The bitmasks held by an index, and the variant types each one was built from. */
+    private enum IndexedMask {
+        SNP(EnumSet.of(VariantType.SNP)),
+        INDEL(EnumSet.of(VariantType.insertion, VariantType.deletion)),
+        ALL(EnumSet.noneOf(VariantType.class));
+
+        private final Set<VariantType> variantTypes;
+
+        IndexedMask(final Set<VariantType> variantTypes) {
+            this.variantTypes = variantTypes;
+        }
+
+        /** The mask that answers for the given variant types, as they would be matched when loading the VCF. */
+        static IndexedMask forVariantTypes(final Collection<VariantType> variantsToMatch) {
+            if (variantsToMatch.isEmpty()) return ALL;
+            final boolean snp = variantsToMatch.contains(VariantType.SNP);
+            final boolean indel = variantsToMatch.contains(VariantType.insertion) || variantsToMatch.contains(VariantType.deletion);
+            if (snp && !indel) return SNP;
+            if (indel && !snp) return INDEL;
+            throw new PicardException("A dbSNP bitmask index does not hold a mask for variant types " + variantsToMatch);
+        }
+    }
+
     private final Map<String, BitSet> sequenceToBitSet = new HashMap<>();
 
+    /** Bitmasks mapped from an index, in BitSet word order, or null when loaded from a VCF. */
+    private Map<String, LongBuffer> sequenceToMappedBits = null;
+
     /** Little tuple class to contain one bitset for SNPs and another for Indels. */
     public static class DbSnpBitSets {
         public DbSnpBitSetUtil snps;
@@ -146,6 +200,10 @@ public class DbSnpBitSetUtil {
                            final Optional<Log> log) {
 
         if (dbSnpFile == null) throw new IllegalArgumentException("null dbSnpFile");
+        if (isIndex(dbSnpFile)) {
+            sequenceToMappedBits = readIndex(dbSnpFile, sequenceDictionary, log).get(IndexedMask.forVariantTypes(variantsToMatch));
+            return;
+        }
         final Map<DbSnpBitSetUtil, Set<VariantType>> tmp = new HashMap<>();
         tmp.put(this, EnumSet.copyOf(variantsToMatch));
         loadVcf(PicardHtsPath.fromPath(dbSnpFile), sequenceDictionary, tmp, intervals, log);
@@ -197,6 +255,13 @@ public class DbSnpBitSetUtil {
         sets.snps   = new DbSnpBitSetUtil();
         sets.indels = new DbSnpBitSetUtil();
 
+        if (isIndex(dbSnpFile.toPath())) {
+            final Map<IndexedMask, Map<String, LongBuffer>> masks = readIndex(dbSnpFile.toPath(), sequenceDictionary, log);
+            sets.snps.sequenceToMappedBits   = masks.get(IndexedMask.SNP);
+            sets.indels.sequenceToMappedBits = masks.get(IndexedMask.INDEL);
+            return sets;
+        }
+
         final Map<DbSnpBitSetUtil, Set<VariantType>> map = new HashMap<>();
         map.put(sets.snps,   EnumSet.of(VariantType.SNP));
         map.put(sets.indels, EnumSet.of(VariantType.insertion, VariantType.deletion));
@@ -204,6 +269,124 @@ public class DbSnpBitSetUtil {
         return sets;
     }
 
+    /** Returns true if the given file is a dbSNP bitmask index rather than a VCF. */
+    public static boolean isIndex(final Path dbSnpFile) {
+        return dbSnpFile.getFileName() != null && dbSnpFile.getFileName().toString().endsWith(INDEX_EXTENSION);
+    }
+
+    /**
+     * Reads the dbSNP VCF once and writes its SNP, indel and all-variant bitmasks, over every sequence of the
+     * dictionary, to a bitmask index. The index records the MD5 of the dbSNP file and the sequence dictionary
+     * it was built against.
+     */
+    public static void writeIndex(final Path dbSnpFile,
+                                  final SAMSequenceDictionary sequenceDictionary,
+                                  final File output,
+                                  final Optional<Log> log) {
+        final Map<IndexedMask, DbSnpBitSetUtil> masks = new LinkedHashMap<>();
+        final Map<DbSnpBitSetUtil, Set<VariantType>> map = new HashMap<>();
+        for (final IndexedMask mask : IndexedMask.values()) {
+            final DbSnpBitSetUtil bitSet = new DbSnpBitSetUtil();
+            masks.put(mask, bitSet);
+            map.put(bitSet, mask.variantTypes);
+        }
+        loadVcf(PicardHtsPath.fromPath(dbSnpFile), sequenceDictionary, map, null, log);
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(md5(dbSnpFile));
+            out.writeInt(sequenceDictionary.size());
+            for (final SAMSequenceRecord sequence : sequenceDictionary.getSequences()) {
+                out.writeUTF(sequence.getSequenceName());
+                out.writeInt(sequence.getSequenceLength());
+            }
+            out.writeInt(masks.size());
+            for (final Map.Entry<IndexedMask, DbSnpBitSetUtil> entry : masks.entrySet()) {
+                out.writeUTF(entry.getKey().name());
+                for (final SAMSequenceRecord sequence : sequenceDictionary.getSequences()) {
+                    final BitSet bits = entry.getValue().sequenceToBitSet.get(sequence.getSequenceName());
+                    final long[] words = bits == null ? new long[0] : bits.toLongArray();
+                    out.writeInt(words.length);
+                    for (final long word : words) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            throw new PicardException("Error writing dbSNP bitmask index " + output.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Maps every bitmask of an index. If a sequence dictionary is given, the lengths of the sequences it
+     * shares with the index must agree.
+     */
+    private static Map<IndexedMask, Map<String, LongBuffer>> readIndex(final Path indexFile,
+                                                                     final SAMSequenceDictionary sequenceDictionary,
+                                                                     final Optional<Log> log) {
+        final File file = indexFile.toFile();
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 8 || raf.readInt() != INDEX_MAGIC) {
+                throw new PicardException(file.getAbsolutePath() + " is not a dbSNP bitmask index.");
+            }
+            final int version = raf.readInt();
+            if (version != INDEX_VERSION) {
+                throw new PicardException("Unsupported dbSNP bitmask index version " + version + " in " + file.getAbsolutePath());
+            }
+            final String dbSnpMd5 = raf.readUTF();
+
+            final int nSequences = raf.readInt();
+            final String[] names = new String[nSequences];
+            for (int i = 0; i < nSequences; i++) {
+                names[i] = raf.readUTF();
+                final int length = raf.readInt();
+                final SAMSequenceRecord sequence = sequenceDictionary == null ? null : sequenceDictionary.getSequence(names[i]);
+                if (sequence != null && sequence.getSequenceLength() != length) {
+                    throw new PicardException("dbSNP bitmask index " + file.getAbsolutePath() + " has length " + length +
+                            " for sequence " + names[i] + " but the sequence dictionary has " + sequence.getSequenceLength() + ".");
+                }
+            }
+
+            final Map<IndexedMask, Map<String, LongBuffer>> masks = new HashMap<>();
+            final int nMasks = raf.readInt();
+            for (int m = 0; m < nMasks; m++) {
+                final IndexedMask mask = IndexedMask.valueOf(raf.readUTF());
+                final Map<String, LongBuffer> sequenceToBits = new HashMap<>();
+                for (final String name : names) {
+                    final int nWords = raf.readInt();
+                    final long offset = raf.getFilePointer();
+                    if (nWords > 0) {
+                        sequenceToBits.put(name, raf.getChannel().map(FileChannel.MapMode.READ_ONLY, offset, 8L * nWords).asLongBuffer());
+                    }
+                    raf.seek(offset + 8L * nWords);
+                }
+                masks.put(mask, sequenceToBits);
+            }
+            log.ifPresent(l -> l.info("Mapped dbSNP bitmask index " + file.getAbsolutePath() + " built from dbSNP with MD5 " + dbSnpMd5));
+            return masks;
+        } catch (final IOException e) {
+            throw new PicardException("Error reading dbSNP bitmask index " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /** The MD5 of the contents of a file, as a hex string. */
+    private static String md5(final Path file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new PicardException("MD5 algorithm not found", e);
+        }
+        try (final InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            final byte[] buffer = new byte[1 << 16];
+            while (in.read(buffer) != -1) {
+                // the digest is updated as the stream is read
+            }
+        }
+        return String.format("%032x", new BigInteger(1, digest.digest()));
+    }
+
     /** Private helper method to read through the VCF and create one or more bit sets. */
     private static void loadVcf(final PicardHtsPath dbSnpFile,
                                 final SAMSequenceDictionary sequenceDictionary,
@@ -254,6 +437,11 @@ public class DbSnpBitSetUtil {
      * Returns true if there is a dbSnp entry at pos in sequenceName, otherwise false
      */
     public boolean isDbSnpSite(final String sequenceName, final int pos) {
+        if (sequenceToMappedBits != null) {
+            final LongBuffer words = sequenceToMappedBits.get(sequenceName);
+            final int word = pos >>> 6;
+            return words != null && pos >= 0 && word < words.limit() && (words.get(word) & (1L << pos)) != 0;
+        }
         // When we have a dbSnpFile with no sequence dictionary, this line will be necessary
         return sequenceToBitSet.get(sequenceName) != null &&
                 pos <= sequenceToBitSet.get(sequenceName).length() &&
@@ -30,6 +30,7 @@ import htsjdk.samtools.util.ProgressLogger;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextUtils;
+import htsjdk.variant.vcf.VCFConstants;
 import htsjdk.variant.vcf.VCFHeader;
 import picard.util.DbSnpBitSetUtil;
 import picard.vcf.processor.VariantProcessor;
@@ -90,6 +91,13 @@ public class CallingMetricAccumulator implements VariantProcessor.Accumulator<Ca
     private static final Log LOG = Log.getInstance(CallingMetricAccumulator.class);
     private static final ProgressLogger progress = new ProgressLogger(LOG, 10000);
 
+    /** The only FORMAT fields read from genotypes by this accumulator; the others need not be decoded. */
+    public static final List<String> GENOTYPE_FIELDS_USED = CollectionUtil.makeList(
+            VCFConstants.GENOTYPE_KEY,
+            VCFConstants.GENOTYPE_QUALITY_KEY,
+            VCFConstants.DEPTH_KEY,
+            VCFConstants.GENOTYPE_ALLELE_DEPTHS);
+
     private final DbSnpBitSetUtil.DbSnpBitSets dbsnp;
     private final VariantCallingSummaryMetrics summaryMetric = new VariantCallingSummaryMetrics();
     /**
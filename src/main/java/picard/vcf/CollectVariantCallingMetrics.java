@@ -120,6 +120,7 @@ public class CollectVariantCallingMetrics extends CommandLineProgram {
                         })
                         .combiningResultsBy(CallingMetricAccumulator.Result::merge)
                         .withInput(INPUT)
+                        .decodingOnlyFormatFields(CallingMetricAccumulator.GENOTYPE_FIELDS_USED)
                         .multithreadingBy(THREAD_COUNT);
 
         if (targetIntervals != null) {
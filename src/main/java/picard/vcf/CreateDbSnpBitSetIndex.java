@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.vcf;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Log;
+import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import picard.PicardException;
+import picard.cmdline.CommandLineProgram;
+import picard.cmdline.StandardOptionDefinitions;
+import picard.cmdline.programgroups.VariantManipulationProgramGroup;
+import picard.nio.PicardHtsPath;
+import picard.util.DbSnpBitSetUtil;
+
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Writes the SNP, indel and all-variant bitmasks of a dbSNP VCF to an index that DbSnpBitSetUtil memory-maps
+ * in place of parsing the VCF.
+ *
+ * <h3>Usage example:</h3>
+ * <pre>
+ *     java -jar picard.jar CreateDbSnpBitSetIndex \
+ *      DBSNP=dbsnp.vcf.gz \
+ *      SEQUENCE_DICTIONARY=reference.dict \
+ *      OUTPUT=dbsnp.dbsnp_bits
+ * </pre>
+ */
+@CommandLineProgramProperties(
+        summary = CreateDbSnpBitSetIndex.USAGE_DETAILS,
+        oneLineSummary = CreateDbSnpBitSetIndex.USAGE_SUMMARY,
+        programGroup = VariantManipulationProgramGroup.class)
+@DocumentedFeature
+public class CreateDbSnpBitSetIndex extends CommandLineProgram {
+    static final String USAGE_SUMMARY = "Creates a memory-mappable bitmask index of the sites in a dbSNP file.";
+    static final String USAGE_DETAILS = "This tool reads a dbSNP VCF once and writes bitmasks of its SNP, indel and all " +
+            "variant sites over every sequence of the dictionary. The resulting " + DbSnpBitSetUtil.INDEX_EXTENSION +
+            " file can be given in place of the dbSNP VCF to CollectVariantCallingMetrics, CollectSequencingArtifactMetrics, " +
+            "CollectOxoGMetrics and the other tools that load dbSNP into memory; it is memory-mapped rather than parsed, so " +
+            "startup is fast and concurrent jobs share a single copy through the page cache. The index records the MD5 of " +
+            "the dbSNP file and is checked against the sequence dictionary of the job that loads it.<br /><br />" +
+            "<h4>Usage example:</h4>" +
+            "<pre>" +
+            "java -jar picard.jar CreateDbSnpBitSetIndex \\ <br />" +
+            "      DBSNP=dbsnp.vcf.gz \\ <br />" +
+            "      SEQUENCE_DICTIONARY=reference.dict \\ <br />" +
+            "      OUTPUT=dbsnp" + DbSnpBitSetUtil.INDEX_EXTENSION +
+            "</pre>";
+
+    @Argument(doc = "Reference dbSNP file in VCF format.")
+    public PicardHtsPath DBSNP;
+
+    @Argument(shortName = StandardOptionDefinitions.SEQUENCE_DICTIONARY_SHORT_NAME, optional = true,
+            doc = "The sequence dictionary to build the bitmasks over; if absent, the dictionary of the dbSNP file is used.")
+    public PicardHtsPath SEQUENCE_DICTIONARY = null;
+
+    @Argument(shortName = StandardOptionDefinitions.OUTPUT_SHORT_NAME,
+            doc = "The bitmask index to write. Must end in " + DbSnpBitSetUtil.INDEX_EXTENSION + ".")
+    public File OUTPUT;
+
+    private final Log log = Log.getInstance(CreateDbSnpBitSetIndex.class);
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (!OUTPUT.getName().endsWith(DbSnpBitSetUtil.INDEX_EXTENSION)) {
+            return new String[]{"OUTPUT must end in " + DbSnpBitSetUtil.INDEX_EXTENSION + " so that it is recognised as an index."};
+        }
+        return super.customCommandLineValidation();
+    }
+
+    @Override
+    protected int doWork() {
+        IOUtil.assertFileIsReadable(DBSNP.toPath());
+        IOUtil.assertFileIsWritable(OUTPUT);
+        if (SEQUENCE_DICTIONARY != null) {
+            IOUtil.assertFileIsReadable(SEQUENCE_DICTIONARY.toPath());
+        }
+
+        final SAMSequenceDictionary sequenceDictionary =
+                SAMSequenceDictionaryExtractor.extractDictionary(SEQUENCE_DICTIONARY == null ? DBSNP.toPath() : SEQUENCE_DICTIONARY.toPath());
+        if (sequenceDictionary == null || sequenceDictionary.isEmpty()) {
+            throw new PicardException("A sequence dictionary must be available, either in the dbSNP file or through SEQUENCE_DICTIONARY.");
+        }
+
+        log.info("Loading dbSNP file ...");
+        DbSnpBitSetUtil.writeIndex(DBSNP.toPath(), sequenceDictionary, OUTPUT, Optional.of(log));
+        return 0;
+    }
+}
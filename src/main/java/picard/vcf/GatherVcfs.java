@@ -4,6 +4,7 @@ import htsjdk.io.HtsPath;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.seekablestream.SeekablePathStream;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.BlockCompressedStreamConstants;
@@ -15,14 +16,21 @@ import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.PeekableIterator;
 import htsjdk.samtools.util.ProgressLogger;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.Feature;
+import htsjdk.tribble.SimpleFeature;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.tabix.TabixFormat;
+import htsjdk.tribble.index.tabix.TabixIndexCreator;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextComparator;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFCodec;
 import htsjdk.variant.vcf.VCFFileReader;
 import htsjdk.variant.vcf.VCFHeader;
 import htsjdk.variant.vcf.VCFHeaderLine;
+import htsjdk.variant.vcf.VCFHeaderVersion;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
@@ -30,18 +38,29 @@ import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.VariantManipulationProgramGroup;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -74,11 +93,21 @@ public class GatherVcfs extends CommandLineProgram {
             optional = true, shortName = "RI")
     public boolean  REORDER_INPUT_BY_FIRST_VARIANT = false;
 
+    @Argument(doc = "The number of threads used to read the input headers and, when all inputs and the output are block compressed, " +
+            "to check and copy the inputs. With more than one thread the inputs are copied concurrently straight into their " +
+            "final positions in the output, and the index (if CREATE_INDEX is true) is built from the input blocks rather than " +
+            "by re-reading the output.", optional = true)
+    public int THREADS = 1;
+
     private static final Log log = Log.getInstance(GatherVcfs.class);
 
+    /** Size of the chunks the data left in the block holding the end of a header is re-compressed in. */
+    private static final int REMAINDER_CHUNK_SIZE = 32 * 1024;
+
     /** class used to reorder input VCFs using the first variant */
     private static class FirstVariantInVcf {
         final Path vcfFile;
+        VCFHeader header = null;
         VariantContext firstVariant = null;   // may be null if the vcf is empty
         FirstVariantInVcf(final Path vcfFile) {
             this.vcfFile = vcfFile;
@@ -89,6 +118,14 @@ public class GatherVcfs extends CommandLineProgram {
         CREATE_INDEX = true;
     }
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (THREADS < 1) {
+            return new String[]{"THREADS must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
+
     @Override
     protected int doWork() {
         log.info("Checking inputs.");
@@ -109,10 +146,14 @@ public class GatherVcfs extends CommandLineProgram {
             unrolledPaths = assertSameSamplesAndValidOrdering(unrolledPaths);
             if (areAllBlockCompressed(unrolledPaths) && areAllBlockCompressed(Collections.singletonList(OUTPUT.toPath()))) {
                 log.info("Gathering by copying gzip blocks. Will not be able to validate position non-overlap of files.");
-                if (CREATE_INDEX) {
-                    log.warn("Index creation not currently supported when gathering block compressed VCFs.");
+                if (THREADS > 1) {
+                    gatherWithParallelBlockCopying(sequenceDictionary, CREATE_INDEX, unrolledPaths, OUTPUT, THREADS);
+                } else {
+                    if (CREATE_INDEX) {
+                        log.warn("Index creation not currently supported when gathering block compressed VCFs with a single thread.");
+                    }
+                    gatherWithBlockCopying(unrolledPaths, OUTPUT);
                 }
-                gatherWithBlockCopying(unrolledPaths, OUTPUT);
             } else {
                 log.info("Gathering by conventional means.");
                 gatherConventionally(sequenceDictionary, CREATE_INDEX, unrolledPaths, OUTPUT, COMMENT);
@@ -158,21 +199,12 @@ public class GatherVcfs extends CommandLineProgram {
         Path lastFile = null;
         VariantContext lastContext = null;
         
+        /* open each input file (concurrently if THREADS > 1) and get its header and first variant */
+        final List<FirstVariantInVcf> filesandvariants = inParallel(THREADS, inputFiles.stream()
+                .map(path -> (Callable<FirstVariantInVcf>) () -> readFirstVariant(path))
+                .collect(Collectors.toList()), "read input headers");
+
         if (REORDER_INPUT_BY_FIRST_VARIANT) {
-            final List<FirstVariantInVcf> filesandvariants = new ArrayList<>(inputFiles.size());
-            /* open each input file and get the first variant */
-            for (final Path path : inputFiles) {
-                final FirstVariantInVcf vcfcxt = new FirstVariantInVcf(path);
-                try (VCFFileReader in = new VCFFileReader(path, false)) {
-                    try (CloseableIterator<VariantContext> iter = in.iterator()) {
-                        vcfcxt.firstVariant = ( iter.hasNext() ? iter.next() : null );
-                        if (vcfcxt.firstVariant == null) {
-                            log.info("No variant in " + path);
-                         }
-                    }
-                }
-                filesandvariants.add(vcfcxt);
-            }
             /* order the files according to the position of their 1st variant */
             filesandvariants.sort((A, B) -> {
                 if (A.firstVariant == null) {
@@ -192,16 +224,16 @@ public class GatherVcfs extends CommandLineProgram {
             inputFiles.addAll(filesandvariants.stream().map(FV->FV.vcfFile).collect(Collectors.toList()));
         }
 
-        for (final Path path : inputFiles) {
-            final VCFFileReader in = new VCFFileReader(path, false);
+        for (final FirstVariantInVcf vcfcxt : filesandvariants) {
+            final Path path = vcfcxt.vcfFile;
             try {
-                dict.assertSameDictionary(in.getFileHeader().getSequenceDictionary());
+                dict.assertSameDictionary(vcfcxt.header.getSequenceDictionary());
             } catch (final AssertionError e) {
                 log.error("File #1: " + inputFiles.get(0));
                 log.error("File #2: " + path);
                 throw e;
             }
-            final List<String> theseSamples = in.getFileHeader().getGenotypeSamples();
+            final List<String> theseSamples = vcfcxt.header.getGenotypeSamples();
 
             if (!samples.equals(theseSamples)) {
                 final SortedSet<String> s1 = new TreeSet<>(samples);
@@ -213,9 +245,8 @@ public class GatherVcfs extends CommandLineProgram {
                         " Samples unique to first file: " + s1 + ". Samples unique to " + path.toAbsolutePath() + ": " + s2 + ".");
             }
 
-            final CloseableIterator<VariantContext> variantIterator = in.iterator();
-            if (variantIterator.hasNext()) {
-                final VariantContext currentContext = variantIterator.next();
+            if (vcfcxt.firstVariant != null) {
+                final VariantContext currentContext = vcfcxt.firstVariant;
                 if (lastContext != null && comparator.compare(lastContext, currentContext) >= 0) {
                     throw new IllegalArgumentException("First record in file " + path.toAbsolutePath() + " is not after first record in " +
                             "previous file " + lastFile.toAbsolutePath());
@@ -224,12 +255,63 @@ public class GatherVcfs extends CommandLineProgram {
                 lastContext = currentContext;
                 lastFile = path;
             }
-
-            CloserUtil.close(in);
         }
         return inputFiles;
     }
 
+    /** Reads the header and the first variant (if any) of a VCF. */
+    private static FirstVariantInVcf readFirstVariant(final Path path) {
+        final FirstVariantInVcf vcfcxt = new FirstVariantInVcf(path);
+        try (VCFFileReader in = new VCFFileReader(path, false)) {
+            vcfcxt.header = in.getFileHeader();
+            try (CloseableIterator<VariantContext> iter = in.iterator()) {
+                vcfcxt.firstVariant = ( iter.hasNext() ? iter.next() : null );
+                if (vcfcxt.firstVariant == null) {
+                    log.info("No variant in " + path);
+                }
+            }
+        }
+        return vcfcxt;
+    }
+
+    /**
+     * Runs the tasks on a pool of the given number of threads and returns their results in the order of the tasks.
+     */
+    private static <T> List<T> inParallel(final int threads, final List<Callable<T>> tasks, final String description) {
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(threads);
+        try {
+            final List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (final Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            final List<T> results = new ArrayList<>(tasks.size());
+            for (final Future<T> future : futures) {
+                results.add(getResult(future, description));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Waits for a task, rethrowing whatever it failed with. */
+    private static <T> T getResult(final Future<T> future, final String description) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicardException("Interrupted while waiting to " + description, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new PicardException("Failed to " + description, e.getCause());
+        }
+    }
+
     /**
      * Code for gathering multiple VCFs that works regardless of input format and output format, but can be slow.
      */
@@ -376,4 +458,240 @@ public class GatherVcfs extends CommandLineProgram {
             throw new RuntimeIOException(ioe);
         }
     }
+
+    /**
+     * Everything needed to copy one block compressed input into the output: the re-compressed data that followed the header
+     * in the block holding the end of the header, the range of the input that is copied verbatim, and where it all goes.
+     */
+    private static class BlockCopyShard {
+        final Path path;
+        /** Re-compressed non-header data from the block holding the end of the header (empty for the first file). */
+        byte[] remainder = new byte[0];
+        /** Offset within {@link #remainder} of each gzip block, one per {@link #REMAINDER_CHUNK_SIZE} bytes of data. */
+        long[] remainderBlockStarts = new long[0];
+        /** Address in the input of the block holding the end of the header, or -1 if that block is copied verbatim. */
+        long headerEndBlockAddress = -1;
+        /** Offset within that block of the first byte following the header. */
+        int firstNonHeaderByteIndex = 0;
+        long copyStart = 0;
+        long copyLength = 0;
+        long outputOffset = 0;
+
+        BlockCopyShard(final Path path) {
+            this.path = path;
+        }
+
+        long outputLength() {
+            return remainder.length + copyLength;
+        }
+
+        /** Translates a virtual file pointer to a record in the input to the pointer to the same record in the output. */
+        long toOutputFilePointer(final long inputFilePointer) {
+            final long blockAddress = BlockCompressedFilePointerUtil.getBlockAddress(inputFilePointer);
+            final int blockOffset = BlockCompressedFilePointerUtil.getBlockOffset(inputFilePointer);
+            if (blockAddress == headerEndBlockAddress) {
+                final int remainderOffset = blockOffset - firstNonHeaderByteIndex;
+                return BlockCompressedFilePointerUtil.makeFilePointer(
+                        outputOffset + remainderBlockStarts[remainderOffset / REMAINDER_CHUNK_SIZE],
+                        remainderOffset % REMAINDER_CHUNK_SIZE);
+            }
+            return BlockCompressedFilePointerUtil.makeFilePointer(blockAddress - copyStart + outputOffset + remainder.length, blockOffset);
+        }
+    }
+
+    /**
+     * Does the same as {@link #gatherWithBlockCopying(List, File)} but in three phases: the inputs' terminators are checked and
+     * the ends of their headers located concurrently; the offset of every input in the output is then computed; and finally the
+     * inputs are copied concurrently into their positions with positional writes.  If requested, the tabix index is built from
+     * the positions of the records in the inputs, translated to the output, so that the output never needs to be read back.
+     */
+    private static void gatherWithParallelBlockCopying(final SAMSequenceDictionary sequenceDictionary,
+                                                       final boolean createIndex,
+                                                       final List<Path> vcfs,
+                                                       final File output,
+                                                       final int threads) {
+        log.info("Checking " + vcfs.size() + " inputs using " + threads + " threads.");
+        final List<Callable<BlockCopyShard>> planning = new ArrayList<>(vcfs.size());
+        for (int i = 0; i < vcfs.size(); ++i) {
+            final Path path = vcfs.get(i);
+            final boolean isFirstFile = i == 0;
+            planning.add(() -> planBlockCopy(path, isFirstFile));
+        }
+        final List<BlockCopyShard> shards = inParallel(threads, planning, "check inputs");
+
+        long outputLength = 0;
+        for (final BlockCopyShard shard : shards) {
+            shard.outputOffset = outputLength;
+            outputLength += shard.outputLength();
+        }
+        final long terminatorOffset = outputLength;
+
+        final TabixIndexCreator indexCreator = createIndex ? new TabixIndexCreator(sequenceDictionary, TabixFormat.VCF) : null;
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(threads);
+        try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // Writing the terminator first sizes the file, so that the shards can be transferred to any position in it
+            writeFully(out, ByteBuffer.wrap(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK), terminatorOffset);
+
+            final List<Future<long[]>> copies = new ArrayList<>(shards.size());
+            for (final BlockCopyShard shard : shards) {
+                copies.add(executor.submit(() -> {
+                    copyShard(shard, out);
+                    return createIndex ? readRecordPositions(shard, sequenceDictionary) : null;
+                }));
+            }
+
+            for (int i = 0; i < shards.size(); ++i) {
+                final long[] records = getResult(copies.get(i), "copy " + shards.get(i).path.toAbsolutePath());
+                log.info("Gathered " + shards.get(i).path.toAbsolutePath());
+                if (indexCreator != null) {
+                    for (int r = 0; r < records.length; r += 3) {
+                        final String contig = sequenceDictionary.getSequence((int) (records[r] >>> 32)).getSequenceName();
+                        indexCreator.addFeature(new SimpleFeature(contig, (int) records[r], (int) records[r + 1]), records[r + 2]);
+                    }
+                }
+                copies.set(i, null);
+            }
+        } catch (final IOException ioe) {
+            throw new RuntimeIOException(ioe);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (indexCreator != null) {
+            final Index index = indexCreator.finalizeIndex(BlockCompressedFilePointerUtil.makeFilePointer(terminatorOffset, 0));
+            final Path indexPath = new File(output.getAbsolutePath() + FileExtensions.TABIX_INDEX).toPath();
+            try {
+                index.write(indexPath);
+            } catch (final IOException ioe) {
+                throw new RuntimeIOException("Error writing index " + indexPath.toAbsolutePath(), ioe);
+            }
+        }
+    }
+
+    /**
+     * Checks the terminator of a block compressed input and, unless it is the first file, finds the end of its header and
+     * re-compresses the data that follows it in the same block.
+     */
+    private static BlockCopyShard planBlockCopy(final Path path, final boolean isFirstFile) throws IOException {
+        final BlockCompressedInputStream.FileTermination term = BlockCompressedInputStream.checkTermination(path);
+        if (term == BlockCompressedInputStream.FileTermination.DEFECTIVE) {
+            throw new PicardException(path.toAbsolutePath() + " does not have a valid GZIP block at the end of the file.");
+        }
+
+        final BlockCopyShard shard = new BlockCopyShard(path);
+        if (!isFirstFile) {
+            try (SeekableStream seekableStream = new SeekablePathStream(path)) {
+                final BlockCompressedInputStream blockIn = new BlockCompressedInputStream(seekableStream, false);
+                boolean lastByteNewline = true;
+
+                while (blockIn.available() > 0) {
+                    final long blockAddress = BlockCompressedFilePointerUtil.getBlockAddress(blockIn.getFilePointer());
+                    final int blockLength = blockIn.available();
+                    final byte[] blockContents = new byte[blockLength];
+                    final int read = blockIn.read(blockContents);
+                    if (read != blockLength)
+                        throw new IllegalStateException("Could not read available bytes from BlockCompressedInputStream.");
+
+                    int firstNonHeaderByteIndex = -1;
+                    for (int i = 0; i < read; ++i) {
+                        final byte b = blockContents[i];
+                        final boolean thisByteNewline = (b == '\n' || b == '\r');
+
+                        if (lastByteNewline && !thisByteNewline && b != '#') {
+                            firstNonHeaderByteIndex = i;
+                            break;
+                        }
+
+                        lastByteNewline = thisByteNewline;
+                    }
+
+                    if (firstNonHeaderByteIndex >= 0) {
+                        // Compress the rest of the block in fixed size chunks, one gzip block each, so that the position of
+                        // any record in it can be translated to the output
+                        final ByteArrayOutputStream remainder = new ByteArrayOutputStream();
+                        final BlockCompressedOutputStream blockOut = new BlockCompressedOutputStream(remainder, (Path) null);
+                        final int nChunks = (read - firstNonHeaderByteIndex + REMAINDER_CHUNK_SIZE - 1) / REMAINDER_CHUNK_SIZE;
+                        shard.remainderBlockStarts = new long[nChunks];
+                        for (int chunk = 0; chunk < nChunks; ++chunk) {
+                            final int start = firstNonHeaderByteIndex + chunk * REMAINDER_CHUNK_SIZE;
+                            shard.remainderBlockStarts[chunk] = remainder.size();
+                            blockOut.write(blockContents, start, Math.min(REMAINDER_CHUNK_SIZE, read - start));
+                            blockOut.flush();
+                        }
+                        // Don't close blockOut as that would add a terminator block
+                        shard.remainder = remainder.toByteArray();
+                        shard.headerEndBlockAddress = blockAddress;
+                        shard.firstNonHeaderByteIndex = firstNonHeaderByteIndex;
+                        break;
+                    }
+                }
+                shard.copyStart = seekableStream.position();
+            }
+        }
+
+        final long skipLast = (term == BlockCompressedInputStream.FileTermination.HAS_TERMINATOR_BLOCK) ?
+                BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length : 0;
+        shard.copyLength = Math.max(0, Files.size(path) - skipLast - shard.copyStart);
+        return shard;
+    }
+
+    /** Writes the shard's re-compressed remainder and then transfers its blocks into place in the output. */
+    private static void copyShard(final BlockCopyShard shard, final FileChannel out) throws IOException {
+        writeFully(out, ByteBuffer.wrap(shard.remainder), shard.outputOffset);
+
+        try (SeekableByteChannel in = Files.newByteChannel(shard.path)) {
+            in.position(shard.copyStart);
+            final long position = shard.outputOffset + shard.remainder.length;
+            long transferred = 0;
+            while (transferred < shard.copyLength) {
+                final long n = out.transferFrom(in, position + transferred, shard.copyLength - transferred);
+                if (n <= 0) {
+                    throw new PicardException("Unexpected end of file while copying " + shard.path.toAbsolutePath());
+                }
+                transferred += n;
+            }
+        }
+    }
+
+    private static void writeFully(final FileChannel out, final ByteBuffer buffer, final long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += out.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Reads the records of a block compressed input and returns, for each one, three longs: the contig index (in the upper
+     * half) and start, the end, and the virtual file pointer of the record in the output.
+     */
+    private static long[] readRecordPositions(final BlockCopyShard shard, final SAMSequenceDictionary sequenceDictionary) throws IOException {
+        final VCFCodec codec = new VCFCodec();
+        try (VCFFileReader reader = new VCFFileReader(shard.path, false)) {
+            codec.setVCFHeader(reader.getFileHeader(), VCFHeaderVersion.VCF4_2);
+        }
+
+        long[] records = new long[3 * 1024];
+        int n = 0;
+        try (BlockCompressedInputStream blockIn = new BlockCompressedInputStream(new SeekablePathStream(shard.path))) {
+            while (true) {
+                final long filePointer = blockIn.getFilePointer();
+                final String line = blockIn.readLine();
+                if (line == null) break;
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                final Feature feature = codec.decodeLoc(line);
+                final int contigIndex = sequenceDictionary.getSequenceIndex(feature.getContig());
+                if (contigIndex < 0) {
+                    throw new PicardException("Contig " + feature.getContig() + " in " + shard.path.toAbsolutePath() +
+                            " is not in the sequence dictionary.");
+                }
+                if (n == records.length) records = Arrays.copyOf(records, records.length * 2);
+                records[n++] = ((long) contigIndex << 32) | feature.getStart();
+                records[n++] = feature.getEnd();
+                records[n++] = shard.toOutputFilePointer(filePointer);
+            }
+        }
+        return Arrays.copyOf(records, n);
+    }
 }
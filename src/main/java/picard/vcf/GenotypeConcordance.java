@@ -24,6 +24,7 @@
 package picard.vcf;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.FileExtensions;
@@ -56,6 +57,7 @@ import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.programgroups.VariantEvaluationProgramGroup;
 import picard.nio.PicardHtsPath;
+import picard.util.ThreadPoolExecutorWithExceptions;
 import picard.vcf.GenotypeConcordanceStates.CallState;
 import picard.vcf.GenotypeConcordanceStates.ContingencyState;
 import picard.vcf.GenotypeConcordanceStates.TruthAndCallStates;
@@ -63,6 +65,7 @@ import picard.vcf.GenotypeConcordanceStates.TruthState;
 import picard.vcf.PairedVariantSubContextIterator.VcfTuple;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -75,6 +78,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static htsjdk.variant.variantcontext.VariantContext.Type.INDEL;
 import static htsjdk.variant.variantcontext.VariantContext.Type.MIXED;
@@ -255,6 +261,15 @@ public class GenotypeConcordance extends CommandLineProgram {
     @Argument(doc="Default is false. If true, filter status of sites will be ignored so that we include filtered sites when calculating genotype concordance. ", optional = true)
     public boolean IGNORE_FILTER_STATUS = false;
 
+    @Argument(doc="A tab-separated file of truth sample and call sample names, one pair per line. If given, all pairs are evaluated " +
+            "in a single pass over the two VCFs and the metrics files hold the metrics of every pair, identified by their TRUTH_SAMPLE " +
+            "and CALL_SAMPLE columns. Cannot be used with TRUTH_SAMPLE, CALL_SAMPLE, OUTPUT_VCF or THREADS greater than one.", optional = true)
+    public PicardHtsPath SAMPLE_PAIRS = null;
+
+    @Argument(doc="The number of threads to use. If greater than one, the VCFs are compared one contig per thread, which " +
+            "requires them to be indexed, and the counts of all contigs are merged.", optional = true)
+    public int THREADS = 1;
+
     private final Log log = Log.getInstance(GenotypeConcordance.class);
     private final ProgressLogger progress = new ProgressLogger(log, 10000, "checked", "variants");
 
@@ -282,7 +297,21 @@ public class GenotypeConcordance extends CommandLineProgram {
 
         final boolean usingIntervals = this.INTERVALS != null && !this.INTERVALS.isEmpty();
         final List<String> errors = new ArrayList<>();
-        if (usingIntervals) {
+        if (THREADS < 1) {
+            errors.add("THREADS must be at least 1.");
+        }
+        if (SAMPLE_PAIRS != null) {
+            if (TRUTH_SAMPLE != null || CALL_SAMPLE != null) {
+                errors.add("SAMPLE_PAIRS cannot be used together with TRUTH_SAMPLE or CALL_SAMPLE.");
+            }
+            if (OUTPUT_VCF) {
+                errors.add("OUTPUT_VCF cannot be used with SAMPLE_PAIRS.");
+            }
+            if (THREADS > 1) {
+                errors.add("THREADS greater than one cannot be used with SAMPLE_PAIRS.");
+            }
+        }
+        if (usingIntervals || THREADS > 1) {
             USE_VCF_INDEX = true;
         }
         if (USE_VCF_INDEX) {
@@ -357,6 +386,14 @@ public class GenotypeConcordance extends CommandLineProgram {
         final VCFFileReader truthReader = new VCFFileReader(TRUTH_VCF.toPath(), USE_VCF_INDEX);
         final VCFFileReader callReader = new VCFFileReader(CALL_VCF.toPath(), USE_VCF_INDEX);
 
+        if (SAMPLE_PAIRS != null) {
+            compareSamplePairs(truthReader, callReader, intervals, intervalsSamSequenceDictionary, scheme,
+                    summaryMetricsFile, detailedMetricsFile, contingencyMetricsFile);
+            CloserUtil.close(callReader);
+            CloserUtil.close(truthReader);
+            return 0;
+        }
+
         if (TRUTH_SAMPLE == null) {
             if (truthReader.getFileHeader().getNGenotypeSamples() > 1) {
                 throw new PicardException("TRUTH_SAMPLE is required when the TRUTH_VCF has more than one sample");
@@ -389,9 +426,145 @@ public class GenotypeConcordance extends CommandLineProgram {
             SequenceUtil.assertSequenceDictionariesEqual(intervalsSamSequenceDictionary, truthReader.getFileHeader().getSequenceDictionary());
         }
 
-        // Build the pair of iterators over the regions of interest
+        snpCounter   = new GenotypeConcordanceCounts();
+        indelCounter = new GenotypeConcordanceCounts();
+
+        // A map to keep track of the count of Truth/Call States which we could not successfully classify
+        final Map<String, Integer> unClassifiedStatesMap = new HashMap<>();
+
+        if (THREADS > 1) {
+            addConcordanceByContig(intervals, getOutputVcfHeader(truthReader, callReader), truthReader.getFileHeader().getSequenceDictionary(),
+                    writer, scheme, unClassifiedStatesMap);
+        }
+        else {
+            // Build the pair of iterators over the regions of interest
+            final Iterator<VariantContext> truthIterator, callIterator;
+            if (usingIntervals) {
+                truthIterator = new ByIntervalListVariantContextIterator(truthReader, intervals);
+                callIterator = new ByIntervalListVariantContextIterator(callReader, intervals);
+            }
+            else {
+                truthIterator = truthReader.iterator();
+                callIterator = callReader.iterator();
+            }
+
+            // Now do the iteration and count things up
+            final PairedVariantSubContextIterator pairedIterator = new PairedVariantSubContextIterator(truthIterator, TRUTH_SAMPLE, callIterator, CALL_SAMPLE, truthReader.getFileHeader().getSequenceDictionary());
+            log.info("Starting iteration over variants.");
+            addConcordance(pairedIterator, snpCounter, indelCounter, unClassifiedStatesMap, writer, scheme, Optional.of(progress));
+        }
+
+        //snp counter add in X number of missing-missing hom ref's (truth and call state)
+        //missing missing is total interval size minus number of iterations in while loop
+        if (MISSING_SITES_HOM_REF) {
+            // need to know size of region called over (intervals or whole genome) to add missing-missing sites for NIST schema.
+            final long baseCount = (intervals != null) ? intervals.getBaseCount() : truthReader.getFileHeader().getSequenceDictionary().getReferenceLength();
+            addMissingTruthAndMissingCallStates(snpCounter.getCounterSize(), baseCount, snpCounter);
+            addMissingTruthAndMissingCallStates(indelCounter.getCounterSize(), baseCount, indelCounter);
+        }
+
+        final MetricsFile<GenotypeConcordanceSummaryMetrics,?> genotypeConcordanceSummaryMetricsFile = getMetricsFile();
+        final MetricsFile<GenotypeConcordanceDetailMetrics,?> genotypeConcordanceDetailMetrics = getMetricsFile();
+        final MetricsFile<GenotypeConcordanceContingencyMetrics,?> genotypeConcordanceContingencyMetricsFile = getMetricsFile();
+        addConcordanceMetrics(genotypeConcordanceSummaryMetricsFile, genotypeConcordanceDetailMetrics, genotypeConcordanceContingencyMetricsFile,
+                snpCounter, indelCounter, TRUTH_SAMPLE, CALL_SAMPLE);
+        genotypeConcordanceSummaryMetricsFile.write(summaryMetricsFile);
+        genotypeConcordanceDetailMetrics.write(detailedMetricsFile);
+        genotypeConcordanceContingencyMetricsFile.write(contingencyMetricsFile);
+
+        for (final String condition : unClassifiedStatesMap.keySet()) {
+            log.info("Uncovered truth/call Variant Context Type Counts: " + condition + " " + unClassifiedStatesMap.get(condition));
+        }
+
+        CloserUtil.close(callReader);
+        CloserUtil.close(truthReader);
+        writer.ifPresent(VariantContextWriter::close);
+
+        return 0;
+    }
+
+    /** Calculates the summary, detailed and contingency metrics of one truth/call sample pair, for both SNPs and indels. */
+    private void addConcordanceMetrics(final MetricsFile<GenotypeConcordanceSummaryMetrics,?> summaryMetricsFile,
+                                       final MetricsFile<GenotypeConcordanceDetailMetrics,?> detailMetricsFile,
+                                       final MetricsFile<GenotypeConcordanceContingencyMetrics,?> contingencyMetricsFile,
+                                       final GenotypeConcordanceCounts snpCounter,
+                                       final GenotypeConcordanceCounts indelCounter,
+                                       final String truthSample,
+                                       final String callSample) {
+        // Calculate and store the summary-level metrics
+        summaryMetricsFile.addMetric(new GenotypeConcordanceSummaryMetrics(SNP, snpCounter, truthSample, callSample, MISSING_SITES_HOM_REF));
+        summaryMetricsFile.addMetric(new GenotypeConcordanceSummaryMetrics(INDEL, indelCounter, truthSample, callSample, MISSING_SITES_HOM_REF));
+
+        // Calculate and store the detailed metrics for both SNP and indels
+        outputDetailMetricsFile(SNP, detailMetricsFile, snpCounter, truthSample, callSample, MISSING_SITES_HOM_REF, OUTPUT_ALL_ROWS);
+        outputDetailMetricsFile(INDEL, detailMetricsFile, indelCounter, truthSample, callSample, MISSING_SITES_HOM_REF, OUTPUT_ALL_ROWS);
+
+        // Calculate and score the contingency metrics
+        contingencyMetricsFile.addMetric(new GenotypeConcordanceContingencyMetrics(SNP, snpCounter, truthSample, callSample, MISSING_SITES_HOM_REF));
+        contingencyMetricsFile.addMetric(new GenotypeConcordanceContingencyMetrics(INDEL, indelCounter, truthSample, callSample, MISSING_SITES_HOM_REF));
+    }
+
+    /** A truth sample and a call sample to compare, and the counts of their comparison. */
+    private static class SamplePair {
+        final String truthSample;
+        final String callSample;
+        final GenotypeConcordanceCounts snpCounter = new GenotypeConcordanceCounts();
+        final GenotypeConcordanceCounts indelCounter = new GenotypeConcordanceCounts();
+
+        SamplePair(final String truthSample, final String callSample) {
+            this.truthSample = truthSample;
+            this.callSample = callSample;
+        }
+    }
+
+    /** Reads the truth/call sample pairs from SAMPLE_PAIRS, checking that each sample is present in its VCF. */
+    private List<SamplePair> readSamplePairs(final VCFHeader truthHeader, final VCFHeader callHeader) {
+        final List<SamplePair> pairs = new ArrayList<>();
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(SAMPLE_PAIRS.toPath());
+        } catch (final IOException e) {
+            throw new PicardException("Error reading SAMPLE_PAIRS file " + SAMPLE_PAIRS, e);
+        }
+        for (final String line : lines) {
+            if (line.trim().isEmpty()) continue;
+            final String[] fields = line.split("\t");
+            if (fields.length != 2) {
+                throw new PicardException("Expected a truth sample and a call sample separated by a tab in " + SAMPLE_PAIRS + " but found: " + line);
+            }
+            if (!truthHeader.getGenotypeSamples().contains(fields[0])) {
+                throw new PicardException("File " + TRUTH_VCF + " does not contain genotypes for sample " + fields[0]);
+            }
+            if (!callHeader.getGenotypeSamples().contains(fields[1])) {
+                throw new PicardException("File " + CALL_VCF + " does not contain genotypes for sample " + fields[1]);
+            }
+            pairs.add(new SamplePair(fields[0], fields[1]));
+        }
+        if (pairs.isEmpty()) {
+            throw new PicardException("No sample pairs found in " + SAMPLE_PAIRS);
+        }
+        return pairs;
+    }
+
+    /**
+     * Evaluates every pair of SAMPLE_PAIRS in a single pass over the two VCFs. Each variant context is decoded once
+     * and then subset to the samples of each pair, so every pair is counted exactly as in a run of its own.
+     */
+    private void compareSamplePairs(final VCFFileReader truthReader,
+                                    final VCFFileReader callReader,
+                                    final IntervalList intervals,
+                                    final SAMSequenceDictionary intervalsSamSequenceDictionary,
+                                    final GenotypeConcordanceScheme scheme,
+                                    final File summaryMetricsFile,
+                                    final File detailedMetricsFile,
+                                    final File contingencyMetricsFile) {
+        final List<SamplePair> pairs = readSamplePairs(truthReader.getFileHeader(), callReader.getFileHeader());
+        final SAMSequenceDictionary dictionary = truthReader.getFileHeader().getSequenceDictionary();
+        SequenceUtil.assertSequenceDictionariesEqual(dictionary, callReader.getFileHeader().getSequenceDictionary());
+
         final Iterator<VariantContext> truthIterator, callIterator;
-        if (usingIntervals) {
+        if (intervals != null) {
+            SequenceUtil.assertSequenceDictionariesEqual(intervalsSamSequenceDictionary, dictionary);
             truthIterator = new ByIntervalListVariantContextIterator(truthReader, intervals);
             callIterator = new ByIntervalListVariantContextIterator(callReader, intervals);
         }
@@ -400,15 +573,62 @@ public class GenotypeConcordance extends CommandLineProgram {
             callIterator = callReader.iterator();
         }
 
-        // Now do the iteration and count things up
-        final PairedVariantSubContextIterator pairedIterator = new PairedVariantSubContextIterator(truthIterator, TRUTH_SAMPLE, callIterator, CALL_SAMPLE, truthReader.getFileHeader().getSequenceDictionary());
-        snpCounter   = new GenotypeConcordanceCounts();
-        indelCounter = new GenotypeConcordanceCounts();
-
-        // A map to keep track of the count of Truth/Call States which we could not successfully classify
+        // Pairing depends only on the positions of the variants, so pair up the whole contexts once
+        final PairedVariantSubContextIterator pairedIterator = new PairedVariantSubContextIterator(truthIterator, null, callIterator, null, dictionary);
         final Map<String, Integer> unClassifiedStatesMap = new HashMap<>();
 
-        log.info("Starting iteration over variants.");
+        log.info("Starting iteration over variants for " + pairs.size() + " sample pairs.");
+        while (pairedIterator.hasNext()) {
+            final VcfTuple tuple = pairedIterator.next();
+            for (final SamplePair pair : pairs) {
+                final Optional<VariantContext> truthContext = tuple.leftVariantContext.map(vc -> vc.subContextFromSample(pair.truthSample));
+                final Optional<VariantContext> callContext = tuple.rightVariantContext.map(vc -> vc.subContextFromSample(pair.callSample));
+                final boolean stateClassified = classifyVariants(truthContext, pair.truthSample, callContext, pair.callSample,
+                        Optional.of(pair.snpCounter), Optional.of(pair.indelCounter), MIN_GQ, MIN_DP, IGNORE_FILTER_STATUS);
+
+                if (!stateClassified) {
+                    final String condition = truthContext.map(VariantContext::getType).orElse(NO_VARIATION) + " " +
+                            callContext.map(VariantContext::getType).orElse(NO_VARIATION);
+                    unClassifiedStatesMap.merge(condition, 1, Integer::sum);
+                }
+            }
+
+            final VariantContext variantContextForLogging = tuple.leftVariantContext.isPresent() ? tuple.leftVariantContext.get() : tuple.rightVariantContext.get();
+            progress.record(variantContextForLogging.getContig(), variantContextForLogging.getStart());
+        }
+
+        final MetricsFile<GenotypeConcordanceSummaryMetrics,?> genotypeConcordanceSummaryMetricsFile = getMetricsFile();
+        final MetricsFile<GenotypeConcordanceDetailMetrics,?> genotypeConcordanceDetailMetrics = getMetricsFile();
+        final MetricsFile<GenotypeConcordanceContingencyMetrics,?> genotypeConcordanceContingencyMetricsFile = getMetricsFile();
+        for (final SamplePair pair : pairs) {
+            if (MISSING_SITES_HOM_REF) {
+                final long baseCount = (intervals != null) ? intervals.getBaseCount() : dictionary.getReferenceLength();
+                addMissingTruthAndMissingCallStates(pair.snpCounter.getCounterSize(), baseCount, pair.snpCounter);
+                addMissingTruthAndMissingCallStates(pair.indelCounter.getCounterSize(), baseCount, pair.indelCounter);
+            }
+            addConcordanceMetrics(genotypeConcordanceSummaryMetricsFile, genotypeConcordanceDetailMetrics, genotypeConcordanceContingencyMetricsFile,
+                    pair.snpCounter, pair.indelCounter, pair.truthSample, pair.callSample);
+        }
+        genotypeConcordanceSummaryMetricsFile.write(summaryMetricsFile);
+        genotypeConcordanceDetailMetrics.write(detailedMetricsFile);
+        genotypeConcordanceContingencyMetricsFile.write(contingencyMetricsFile);
+
+        for (final String condition : unClassifiedStatesMap.keySet()) {
+            log.info("Uncovered truth/call Variant Context Type Counts over all sample pairs: " + condition + " " + unClassifiedStatesMap.get(condition));
+        }
+    }
+
+    /**
+     * Classifies every tuple of the paired iterator, adding to the given counters and unclassified states, and
+     * writes the annotated tuples to the writer if present.
+     */
+    private void addConcordance(final PairedVariantSubContextIterator pairedIterator,
+                                final GenotypeConcordanceCounts snpCounter,
+                                final GenotypeConcordanceCounts indelCounter,
+                                final Map<String, Integer> unClassifiedStatesMap,
+                                final Optional<VariantContextWriter> writer,
+                                final GenotypeConcordanceScheme scheme,
+                                final Optional<ProgressLogger> progress) {
         while (pairedIterator.hasNext()) {
             final VcfTuple tuple = pairedIterator.next();
             final VariantContext.Type truthVariantContextType = tuple.leftVariantContext.map(VariantContext::getType).orElse(NO_VARIATION);
@@ -428,51 +648,110 @@ public class GenotypeConcordance extends CommandLineProgram {
             // write to the output VCF
             writer.ifPresent(w -> writeVcfTuple(tuple, w, scheme));
 
-            //final VariantContext variantContextForLogging = tuple.leftVariantContext.orElseGet(tuple.rightVariantContext::get); // FIXME
             final VariantContext variantContextForLogging = tuple.leftVariantContext.isPresent() ? tuple.leftVariantContext.get() : tuple.rightVariantContext.get();
-            progress.record(variantContextForLogging.getContig(), variantContextForLogging.getStart());
+            progress.ifPresent(p -> p.record(variantContextForLogging.getContig(), variantContextForLogging.getStart()));
         }
+    }
 
-        //snp counter add in X number of missing-missing hom ref's (truth and call state)
-        //missing missing is total interval size minus number of iterations in while loop
-        if (MISSING_SITES_HOM_REF) {
-            // need to know size of region called over (intervals or whole genome) to add missing-missing sites for NIST schema.
-            final long baseCount = (intervals != null) ? intervals.getBaseCount() : truthReader.getFileHeader().getSequenceDictionary().getReferenceLength();
-            addMissingTruthAndMissingCallStates(snpCounter.getCounterSize(), baseCount, snpCounter);
-            addMissingTruthAndMissingCallStates(indelCounter.getCounterSize(), baseCount, indelCounter);
+    /** The counts, unclassified states and annotated variants of one contig. */
+    private static class ContigConcordance {
+        final GenotypeConcordanceCounts snpCounter = new GenotypeConcordanceCounts();
+        final GenotypeConcordanceCounts indelCounter = new GenotypeConcordanceCounts();
+        final Map<String, Integer> unClassifiedStatesMap = new HashMap<>();
+        File outputVcf = null;
+    }
+
+    /**
+     * Compares the VCFs one contig per thread, each with its own readers, then merges the counts and copies each
+     * contig's annotated variants to the writer in sequence dictionary order.
+     */
+    private void addConcordanceByContig(final IntervalList intervals,
+                                        final VCFHeader outputHeader,
+                                        final SAMSequenceDictionary dictionary,
+                                        final Optional<VariantContextWriter> writer,
+                                        final GenotypeConcordanceScheme scheme,
+                                        final Map<String, Integer> unClassifiedStatesMap) {
+        if (dictionary == null || dictionary.isEmpty()) {
+            throw new PicardException("THREADS greater than one requires the VCFs to have a sequence dictionary.");
         }
 
-        // Calculate and store the summary-level metrics
-        final MetricsFile<GenotypeConcordanceSummaryMetrics,?> genotypeConcordanceSummaryMetricsFile = getMetricsFile();
-        GenotypeConcordanceSummaryMetrics summaryMetrics = new GenotypeConcordanceSummaryMetrics(SNP, snpCounter, TRUTH_SAMPLE, CALL_SAMPLE, MISSING_SITES_HOM_REF);
-        genotypeConcordanceSummaryMetricsFile.addMetric(summaryMetrics);
-        summaryMetrics = new GenotypeConcordanceSummaryMetrics(INDEL, indelCounter, TRUTH_SAMPLE, CALL_SAMPLE, MISSING_SITES_HOM_REF);
-        genotypeConcordanceSummaryMetricsFile.addMetric(summaryMetrics);
-        genotypeConcordanceSummaryMetricsFile.write(summaryMetricsFile);
+        log.info("Starting iteration over variants, using " + THREADS + " threads.");
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(THREADS);
+        final List<Future<ContigConcordance>> contigs = new ArrayList<>();
+        for (final SAMSequenceRecord sequence : dictionary.getSequences()) {
+            final IntervalList contigIntervals;
+            if (intervals != null) {
+                contigIntervals = new IntervalList(intervals.getHeader());
+                intervals.getIntervals().stream().filter(i -> i.getContig().equals(sequence.getSequenceName())).forEach(contigIntervals::add);
+                if (contigIntervals.getIntervals().isEmpty()) continue;
+            } else {
+                contigIntervals = null;
+            }
+            contigs.add(executor.submit(() -> compareContig(sequence, contigIntervals, outputHeader, dictionary, writer.isPresent(), scheme)));
+        }
+        executor.shutdown();
+
+        for (final Future<ContigConcordance> future : contigs) {
+            final ContigConcordance contig;
+            try {
+                contig = future.get();
+            } catch (final InterruptedException | ExecutionException e) {
+                executor.shutdownNow();
+                throw new PicardException("Failed to compare genotypes", e);
+            }
+            snpCounter.add(contig.snpCounter);
+            indelCounter.add(contig.indelCounter);
+            contig.unClassifiedStatesMap.forEach((condition, count) -> unClassifiedStatesMap.merge(condition, count, Integer::sum));
+            if (contig.outputVcf != null) {
+                try (final VCFFileReader reader = new VCFFileReader(contig.outputVcf, false)) {
+                    for (final VariantContext vc : reader) {
+                        writer.get().add(vc);
+                        progress.record(vc.getContig(), vc.getStart());
+                    }
+                }
+                IOUtil.deleteFiles(contig.outputVcf);
+            }
+        }
+    }
 
-        // Calculate and store the detailed metrics for both SNP and indels
-        final MetricsFile<GenotypeConcordanceDetailMetrics,?> genotypeConcordanceDetailMetrics = getMetricsFile();
-        outputDetailMetricsFile(SNP, genotypeConcordanceDetailMetrics, snpCounter, TRUTH_SAMPLE, CALL_SAMPLE, MISSING_SITES_HOM_REF, OUTPUT_ALL_ROWS);
-        outputDetailMetricsFile(INDEL, genotypeConcordanceDetailMetrics, indelCounter, TRUTH_SAMPLE, CALL_SAMPLE, MISSING_SITES_HOM_REF, OUTPUT_ALL_ROWS);
-        genotypeConcordanceDetailMetrics.write(detailedMetricsFile);
+    /** Compares the variants of a single contig, optionally restricted to intervals, using readers of its own. */
+    private ContigConcordance compareContig(final SAMSequenceRecord sequence,
+                                            final IntervalList contigIntervals,
+                                            final VCFHeader outputHeader,
+                                            final SAMSequenceDictionary dictionary,
+                                            final boolean outputVcf,
+                                            final GenotypeConcordanceScheme scheme) throws IOException {
+        final ContigConcordance contig = new ContigConcordance();
+        try (final VCFFileReader truthReader = new VCFFileReader(TRUTH_VCF.toPath(), true);
+             final VCFFileReader callReader = new VCFFileReader(CALL_VCF.toPath(), true)) {
+            final Iterator<VariantContext> truthIterator, callIterator;
+            if (contigIntervals != null) {
+                truthIterator = new ByIntervalListVariantContextIterator(truthReader, contigIntervals);
+                callIterator = new ByIntervalListVariantContextIterator(callReader, contigIntervals);
+            } else {
+                truthIterator = truthReader.query(sequence.getSequenceName(), 1, sequence.getSequenceLength());
+                callIterator = callReader.query(sequence.getSequenceName(), 1, sequence.getSequenceLength());
+            }
 
-        // Calculate and score the contingency metrics
-        final MetricsFile<GenotypeConcordanceContingencyMetrics,?> genotypeConcordanceContingencyMetricsFile = getMetricsFile();
-        GenotypeConcordanceContingencyMetrics contingencyMetrics = new GenotypeConcordanceContingencyMetrics(SNP, snpCounter, TRUTH_SAMPLE, CALL_SAMPLE, MISSING_SITES_HOM_REF);
-        genotypeConcordanceContingencyMetricsFile.addMetric(contingencyMetrics);
-        contingencyMetrics = new GenotypeConcordanceContingencyMetrics(INDEL, indelCounter, TRUTH_SAMPLE, CALL_SAMPLE, MISSING_SITES_HOM_REF);
-        genotypeConcordanceContingencyMetricsFile.addMetric(contingencyMetrics);
-        genotypeConcordanceContingencyMetricsFile.write(contingencyMetricsFile);
+            Optional<VariantContextWriter> writer = Optional.empty();
+            if (outputVcf) {
+                contig.outputVcf = File.createTempFile("GenotypeConcordance." + sequence.getSequenceIndex() + ".", FileExtensions.COMPRESSED_VCF, TMP_DIR.get(0));
+                contig.outputVcf.deleteOnExit();
+                writer = Optional.of(new VariantContextWriterBuilder()
+                        .setOutputFile(contig.outputVcf)
+                        .setReferenceDictionary(dictionary)
+                        .setOption(Options.ALLOW_MISSING_FIELDS_IN_HEADER)
+                        .unsetOption(Options.INDEX_ON_THE_FLY)
+                        .build());
+                writer.get().writeHeader(outputHeader);
+            }
 
-        for (final String condition : unClassifiedStatesMap.keySet()) {
-            log.info("Uncovered truth/call Variant Context Type Counts: " + condition + " " + unClassifiedStatesMap.get(condition));
+            final PairedVariantSubContextIterator pairedIterator = new PairedVariantSubContextIterator(truthIterator, TRUTH_SAMPLE, callIterator, CALL_SAMPLE, dictionary);
+            addConcordance(pairedIterator, contig.snpCounter, contig.indelCounter, contig.unClassifiedStatesMap, writer, scheme, Optional.empty());
+            writer.ifPresent(VariantContextWriter::close);
         }
-
-        CloserUtil.close(callReader);
-        CloserUtil.close(truthReader);
-        writer.ifPresent(VariantContextWriter::close);
-
-        return 0;
+        log.info("Finished comparing " + sequence.getSequenceName());
+        return contig;
     }
 
     /** Gets the variant context writer if the output VCF is to be written, otherwise empty. */
@@ -485,14 +764,7 @@ public class GenotypeConcordance extends CommandLineProgram {
                     .setOption(Options.ALLOW_MISSING_FIELDS_IN_HEADER)
                     .setOption(Options.INDEX_ON_THE_FLY);
             final VariantContextWriter writer = builder.build();
-
-            // create the output header
-            final List<String> sampleNames = Arrays.asList(OUTPUT_VCF_CALL_SAMPLE_NAME, OUTPUT_VCF_TRUTH_SAMPLE_NAME);
-            final Set<VCFHeaderLine> headerLines = new HashSet<>();
-            headerLines.addAll(callReader.getFileHeader().getMetaDataInInputOrder());
-            headerLines.addAll(truthReader.getFileHeader().getMetaDataInInputOrder());
-            headerLines.add(CONTINGENCY_STATE_HEADER_LINE);
-            writer.writeHeader(new VCFHeader(headerLines, sampleNames));
+            writer.writeHeader(getOutputVcfHeader(truthReader, callReader));
             return Optional.of(writer);
         }
         else {
@@ -500,6 +772,16 @@ public class GenotypeConcordance extends CommandLineProgram {
         }
     }
 
+    /** Creates the header of the output VCF, holding the header lines of both VCFs and the concordance state. */
+    private VCFHeader getOutputVcfHeader(final VCFFileReader truthReader, final VCFFileReader callReader) {
+        final List<String> sampleNames = Arrays.asList(OUTPUT_VCF_CALL_SAMPLE_NAME, OUTPUT_VCF_TRUTH_SAMPLE_NAME);
+        final Set<VCFHeaderLine> headerLines = new HashSet<>();
+        headerLines.addAll(callReader.getFileHeader().getMetaDataInInputOrder());
+        headerLines.addAll(truthReader.getFileHeader().getMetaDataInInputOrder());
+        headerLines.add(CONTINGENCY_STATE_HEADER_LINE);
+        return new VCFHeader(headerLines, sampleNames);
+    }
+
     private void writeVcfTuple(final VcfTuple tuple, final VariantContextWriter writer, final GenotypeConcordanceScheme scheme) {
         VariantContext truthContext = null, callContext = null;
         final List<Genotype> genotypes = new ArrayList<>(2);
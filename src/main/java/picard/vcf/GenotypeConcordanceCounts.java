@@ -56,6 +56,13 @@ public class GenotypeConcordanceCounts {
         this.counter.increment(truthAndCallStates, count);
     }
 
+    /** Adds all the counts of another counter to this one, e.g. to merge counts made over separate regions. */
+    public void add(final GenotypeConcordanceCounts other) {
+        for (final Histogram.Bin<TruthAndCallStates> bin : other.counter.values()) {
+            this.counter.increment(bin.getId(), bin.getValue());
+        }
+    }
+
     public double getCounterSize() {
         return this.counter.getCount();
     }
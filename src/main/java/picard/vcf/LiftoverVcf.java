@@ -30,15 +30,18 @@ import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.liftover.LiftOver;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.CollectionUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.MergingIterator;
 import htsjdk.samtools.util.ProgressLogger;
 import htsjdk.samtools.util.SortingCollection;
 import htsjdk.samtools.util.StringUtil;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
 import htsjdk.variant.variantcontext.writer.Options;
@@ -55,24 +58,37 @@ import htsjdk.variant.vcf.VCFRecordCodec;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
 import org.broadinstitute.barclay.help.DocumentedFeature;
+import picard.PicardException;
 import picard.cmdline.CommandLineProgram;
 import picard.cmdline.StandardOptionDefinitions;
 import picard.cmdline.argumentcollections.ReferenceArgumentCollection;
 import picard.cmdline.programgroups.VariantManipulationProgramGroup;
+import picard.reference.ReferenceCache;
 import picard.util.LiftoverUtils;
+import picard.util.ThreadPoolExecutorWithExceptions;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -206,6 +222,11 @@ public class LiftoverVcf extends CommandLineProgram {
     @Argument(doc = "Output VCF file will be written on the fly but it won't be sorted and indexed.", optional = true)
     public boolean DISABLE_SORT = false;
 
+    @Argument(doc = "The number of threads used to lift variants over. With more than one thread, batches of variants are " +
+            "lifted over and checked against the target reference concurrently, and each thread sorts its own share of the " +
+            "lifted variants, which are merged when the output is written.", optional = true)
+    public int THREADS = 1;
+
     // When a contig used in the chain is not in the reference, exit with this value instead of 0.
     public static int EXIT_CODE_WHEN_CONTIG_NOT_IN_REFERENCE = 1;
 
@@ -281,6 +302,18 @@ public class LiftoverVcf extends CommandLineProgram {
     /** the Variant sorter, may be null if DISABLE_SORT = true */
     private SortingCollection<VariantContext> sorter;
 
+    /** The number of variants handed to a worker thread at a time when THREADS > 1. */
+    private static final int LIFTOVER_BATCH_SIZE = 1000;
+
+    /**
+     * The target reference, by contig.  Without a reference cache every contig is loaded up front; with one, a contig is copied out
+     * of the cache only once a reverse complemented variant needs it, and the bases checked against each lifted variant are read
+     * straight from the cache.  Shared by all threads.
+     */
+    private final Map<String, ReferenceSequence> refSeqs = new ConcurrentHashMap<>();
+    /** The cache of the target reference, or null if it has no up to date cache. */
+    private ReferenceCache referenceCache;
+
     private long failedLiftover = 0, failedAlleleCheck = 0, totalTrackedAsSwapRefAlt = 0;
     private final Map<String, Long> rejectsByContig = new TreeMap<>();
     private final Map<String, Long> liftedByDestContig = new TreeMap<>();
@@ -314,6 +347,10 @@ public class LiftoverVcf extends CommandLineProgram {
             log.error("CREATE_INDEX=true and DISABLE_SORT=true are mutually exclusive.");
             return 1;
         }
+        if (THREADS < 1) {
+            log.error("THREADS must be at least 1.");
+            return 1;
+        }
         ////////////////////////////////////////////////////////////////////////
         // Setup the inputs
         ////////////////////////////////////////////////////////////////////////
@@ -324,14 +361,16 @@ public class LiftoverVcf extends CommandLineProgram {
 
         log.info("Loading up the target reference genome.");
         final ReferenceSequenceFileWalker walker = new ReferenceSequenceFileWalker(REFERENCE_SEQUENCE);
-        final Map<String, ReferenceSequence> refSeqs = new HashMap<>();
         // check if sequence dictionary exists
         if (walker.getSequenceDictionary() == null) {
             log.error("Reference " + REFERENCE_SEQUENCE.getAbsolutePath() + " must have an associated Dictionary .dict file in the same directory.");
             return 1;
         }
-        for (final SAMSequenceRecord rec : walker.getSequenceDictionary().getSequences()) {
-            refSeqs.put(rec.getSequenceName(), walker.get(rec.getSequenceIndex()));
+        referenceCache = ReferenceCache.forReference(REFERENCE_SEQUENCE);
+        if (referenceCache == null) {
+            for (final SAMSequenceRecord rec : walker.getSequenceDictionary().getSequences()) {
+                refSeqs.put(rec.getSequenceName(), walker.get(rec.getSequenceIndex()));
+            }
         }
         CloserUtil.close(walker);
 
@@ -396,64 +435,32 @@ public class LiftoverVcf extends CommandLineProgram {
             
             sorter = null;
             }
-        else {
+        else if (THREADS == 1) {
             log.info("Lifting variants over and sorting (not yet writing the output file.)");
     
-            sorter = SortingCollection.newInstance(VariantContext.class,
-                    new VCFRecordCodec(outHeader, ALLOW_MISSING_FIELDS_IN_HEADER || VALIDATION_STRINGENCY != ValidationStringency.STRICT),
-                    outHeader.getVCFRecordComparator(),
-                    MAX_RECORDS_IN_RAM,
-                    TMP_DIR);
+            sorter = newSorter(outHeader, MAX_RECORDS_IN_RAM);
             }
 
         ProgressLogger progress = new ProgressLogger(log, 1000000, "read");
 
-        for (final VariantContext ctx : in) {
-            ++total;
-            final Interval source = new Interval(ctx.getContig(), ctx.getStart(), ctx.getEnd(), false, ctx.getContig() + ":" + ctx.getStart() + "-" + ctx.getEnd());
-            final Interval target = liftOver.liftOver(source, LIFTOVER_MIN_MATCH);
-
-            // target is null when there is no good liftover for the context. This happens either when it fall in a gap
-            // where there isn't a chain, or if a large enough proportion of it is diminished by the "deletion" at the
-            // end of each interval in a chain.
-            if (target == null) {
-                rejectVariant(ctx, FILTER_NO_TARGET);
-                continue;
-            }
-
-            // the target is the lifted-over interval comprised of the start/stop of the variant context,
-            // if the sizes of target and ctx do not match, it means that the interval grew or shrank during
-            // liftover which must be due to straddling multiple intervals in the liftover chain.
-            // This would invalidate the indel as it isn't clear what the resulting alleles should be.
-            if (ctx.getReference().length() != target.length()) {
-                rejectVariant(ctx, FILTER_INDEL_STRADDLES_TWO_INTERVALS);
-                continue;
-            }
-
-            final ReferenceSequence refSeq;
-
-            if (!refSeqs.containsKey(target.getContig())) {
-                rejectVariant(ctx, FILTER_NO_TARGET);
-
-                final String missingContigMessage = "Encountered a contig, " + target.getContig() + " that is not part of the target reference.";
-                if (WARN_ON_MISSING_CONTIG) {
-                    log.warn(missingContigMessage);
-                } else {
-                    log.error(missingContigMessage);
+        final List<SortingCollection<VariantContext>> sortedRuns;
+        if (THREADS == 1) {
+            sortedRuns = null;
+            for (final VariantContext ctx : in) {
+                ++total;
+                if (!applyLiftResult(liftVariant(ctx, liftOver), true)) {
                     return EXIT_CODE_WHEN_CONTIG_NOT_IN_REFERENCE;
                 }
-            } else {
-                refSeq = refSeqs.get(target.getContig());
-
-                final VariantContext liftedVC = LiftoverUtils.liftVariant(ctx, target, refSeq, WRITE_ORIGINAL_POSITION, WRITE_ORIGINAL_ALLELES);
-                // the liftedVC can be null if the liftover fails because of a problem with reverse complementing
-                if (liftedVC == null) {
-                    rejectVariant(ctx, FILTER_CANNOT_LIFTOVER_REV_COMP);
-                } else {
-                    tryToAddVariant(liftedVC, refSeq, ctx);
-                }
+                progress.record(ctx.getContig(), ctx.getStart());
             }
-            progress.record(ctx.getContig(), ctx.getStart());
+        } else {
+            log.info("Lifting variants over using " + THREADS + " threads.");
+            sortedRuns = Collections.synchronizedList(new ArrayList<>());
+            final Optional<Integer> exitCode = liftInParallel(in, outHeader, sortedRuns, progress);
+            if (exitCode.isPresent()) {
+                return exitCode.get();
+            }
+            total = progress.getCount();
         }
 
         final NumberFormat pfmt = new DecimalFormat("0.0000%");
@@ -493,7 +500,7 @@ public class LiftoverVcf extends CommandLineProgram {
         rejectedRecords.close();
         in.close();
 
-        if (!DISABLE_SORT) { 
+        if (!DISABLE_SORT && sortedRuns == null) { 
             ////////////////////////////////////////////////////////////////////////
             // Write the sorted outputs to the final output file
             ////////////////////////////////////////////////////////////////////////
@@ -507,6 +514,26 @@ public class LiftoverVcf extends CommandLineProgram {
             }
     
             sorter.cleanup();
+        } else if (!DISABLE_SORT && !sortedRuns.isEmpty()) {
+            ////////////////////////////////////////////////////////////////////////
+            // Merge the per-thread sorted runs into the final output file
+            ////////////////////////////////////////////////////////////////////////
+            progress = new ProgressLogger(log, 1000000, "written");
+            log.info("Merging " + sortedRuns.size() + " sorted runs into the final VCF.");
+
+            final List<CloseableIterator<VariantContext>> runIterators = new ArrayList<>(sortedRuns.size());
+            for (final SortingCollection<VariantContext> run : sortedRuns) {
+                run.doneAdding();
+                runIterators.add(run.iterator());
+            }
+            try (final MergingIterator<VariantContext> merged = new MergingIterator<>(outHeader.getVCFRecordComparator(), runIterators)) {
+                while (merged.hasNext()) {
+                    final VariantContext ctx = merged.next();
+                    this.acceptedRecords.add(ctx);
+                    progress.record(ctx.getContig(), ctx.getStart());
+                }
+            }
+            sortedRuns.forEach(SortingCollection::cleanup);
         }
 
         this.acceptedRecords.close();
@@ -514,10 +541,233 @@ public class LiftoverVcf extends CommandLineProgram {
         return 0;
     }
 
-    private void rejectVariant(final VariantContext ctx, final String reason) {
-        rejectedRecords.add(new VariantContextBuilder(ctx).filter(reason).make());
-        failedLiftover++;
-        trackLiftedVariantContig(rejectsByContig, ctx.getContig());
+    private SortingCollection<VariantContext> newSorter(final VCFHeader outHeader, final int maxRecordsInRam) {
+        return SortingCollection.newInstance(VariantContext.class,
+                new VCFRecordCodec(outHeader, ALLOW_MISSING_FIELDS_IN_HEADER || VALIDATION_STRINGENCY != ValidationStringency.STRICT),
+                outHeader.getVCFRecordComparator(),
+                maxRecordsInRam,
+                TMP_DIR);
+    }
+
+    /**
+     * Lifts the input over on THREADS worker threads.  Variants are read (and their genotypes decoded, since that uses the
+     * reader's codec) on this thread and handed out in batches; the results are applied to the counts and the rejects in
+     * input order.  Unless DISABLE_SORT is set, each worker adds the variants it lifted to its own sorted run, which is added
+     * to sortedRuns; otherwise the lifted variants are written out in input order.
+     *
+     * @return the exit code to return if the liftover had to be abandoned, in which case the sorted runs have been cleaned up
+     */
+    private Optional<Integer> liftInParallel(final VCFFileReader in, final VCFHeader outHeader,
+                                             final List<SortingCollection<VariantContext>> sortedRuns, final ProgressLogger progress) {
+        final ThreadLocal<LiftOver> liftOvers = ThreadLocal.withInitial(() -> {
+            final LiftOver liftOver = new LiftOver(CHAIN);
+            liftOver.setShouldLogFailedIntervalsBelowThreshold(LOG_FAILED_INTERVALS);
+            return liftOver;
+        });
+        final int maxRecordsPerRun = Math.max(1, MAX_RECORDS_IN_RAM / THREADS);
+        final ThreadLocal<SortingCollection<VariantContext>> runs = ThreadLocal.withInitial(() -> {
+            final SortingCollection<VariantContext> run = newSorter(outHeader, maxRecordsPerRun);
+            sortedRuns.add(run);
+            return run;
+        });
+
+        final ExecutorService executor = new ThreadPoolExecutorWithExceptions(THREADS);
+        final Deque<Future<List<LiftResult>>> pending = new ArrayDeque<>();
+        boolean completed = false;
+        try {
+            final Iterator<VariantContext> iterator = in.iterator();
+            while (iterator.hasNext() || !pending.isEmpty()) {
+                // Keep a bounded number of batches in flight, and apply the oldest when the queue is full or the input is done
+                if (iterator.hasNext() && pending.size() < 2 * THREADS) {
+                    final List<VariantContext> batch = new ArrayList<>(LIFTOVER_BATCH_SIZE);
+                    while (iterator.hasNext() && batch.size() < LIFTOVER_BATCH_SIZE) {
+                        final VariantContext ctx = iterator.next();
+                        if (ctx.getGenotypes() instanceof LazyGenotypesContext) {
+                            ((LazyGenotypesContext) ctx.getGenotypes()).decode();
+                        }
+                        batch.add(ctx);
+                    }
+                    pending.add(executor.submit(() -> {
+                        final LiftOver liftOver = liftOvers.get();
+                        final List<LiftResult> results = new ArrayList<>(batch.size());
+                        for (final VariantContext ctx : batch) {
+                            final LiftResult result = liftVariant(ctx, liftOver);
+                            if (!DISABLE_SORT && result.lifted != null) {
+                                runs.get().add(result.lifted);
+                            }
+                            results.add(result);
+                        }
+                        return results;
+                    }));
+                    continue;
+                }
+
+                for (final LiftResult result : pending.poll().get()) {
+                    if (!applyLiftResult(result, DISABLE_SORT)) {
+                        return Optional.of(EXIT_CODE_WHEN_CONTIG_NOT_IN_REFERENCE);
+                    }
+                    progress.record(result.source.getContig(), result.source.getStart());
+                }
+            }
+            completed = true;
+        } catch (final InterruptedException | ExecutionException e) {
+            throw new PicardException("Failed to lift variants over", e);
+        } finally {
+            executor.shutdownNow();
+            if (!completed) {
+                cleanupSortedRuns(executor, sortedRuns);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Once the workers have stopped adding to them, removes the temporary files of the sorted runs of an abandoned liftover. */
+    private void cleanupSortedRuns(final ExecutorService executor, final List<SortingCollection<VariantContext>> sortedRuns) {
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Worker threads did not stop; some temporary files of the sorted runs may be left behind.");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (sortedRuns) {
+            sortedRuns.forEach(SortingCollection::cleanup);
+            sortedRuns.clear();
+        }
+    }
+
+    /** The outcome of lifting over a single variant, worked out without touching the outputs or the counts. */
+    private static class LiftResult {
+        final VariantContext source;
+        /** The lifted variant, if it is to be written to the output. */
+        VariantContext lifted = null;
+        /** The filtered source variant, if it is to be written to the rejects. */
+        VariantContext rejected = null;
+        /** True if the variant was rejected because its lifted reference allele did not match the target reference. */
+        boolean failedAlleleCheck = false;
+        /** True if the lifted variant had its REF and ALT swapped with respect to the target reference. */
+        boolean swappedRefAlt = false;
+        /** The target contig, if it is not in the target reference. */
+        String missingContig = null;
+
+        LiftResult(final VariantContext source) {
+            this.source = source;
+        }
+
+        LiftResult reject(final String reason) {
+            rejected = new VariantContextBuilder(source).filter(reason).make();
+            return this;
+        }
+    }
+
+    /**
+     * Lifts a single variant over and checks it against the target reference.  Safe to call from several threads, as long
+     * as each uses its own LiftOver.
+     */
+    private LiftResult liftVariant(final VariantContext ctx, final LiftOver liftOver) {
+        final LiftResult result = new LiftResult(ctx);
+        final Interval source = new Interval(ctx.getContig(), ctx.getStart(), ctx.getEnd(), false, ctx.getContig() + ":" + ctx.getStart() + "-" + ctx.getEnd());
+        final Interval target = liftOver.liftOver(source, LIFTOVER_MIN_MATCH);
+
+        // target is null when there is no good liftover for the context. This happens either when it fall in a gap
+        // where there isn't a chain, or if a large enough proportion of it is diminished by the "deletion" at the
+        // end of each interval in a chain.
+        if (target == null) {
+            return result.reject(FILTER_NO_TARGET);
+        }
+
+        // the target is the lifted-over interval comprised of the start/stop of the variant context,
+        // if the sizes of target and ctx do not match, it means that the interval grew or shrank during
+        // liftover which must be due to straddling multiple intervals in the liftover chain.
+        // This would invalidate the indel as it isn't clear what the resulting alleles should be.
+        if (ctx.getReference().length() != target.length()) {
+            return result.reject(FILTER_INDEL_STRADDLES_TWO_INTERVALS);
+        }
+
+        final ReferenceSequence refSeq;
+        if (referenceCache == null) {
+            refSeq = refSeqs.get(target.getContig());
+        } else {
+            final SAMSequenceRecord contig = referenceCache.getSequenceDictionary().getSequence(target.getContig());
+            if (contig == null) {
+                refSeq = null;
+            } else if (target.isNegativeStrand()) {
+                // reverse complemented indels are left-aligned against the whole contig
+                refSeq = refSeqs.computeIfAbsent(contig.getSequenceName(), name -> referenceCache.getSequence(contig.getSequenceIndex()));
+            } else {
+                // other variants are lifted without reading the reference, and checked against bases read straight from the cache
+                refSeq = new ReferenceSequence(contig.getSequenceName(), contig.getSequenceIndex(), new byte[0]);
+            }
+        }
+        if (refSeq == null) {
+            result.missingContig = target.getContig();
+            return result.reject(FILTER_NO_TARGET);
+        }
+
+        final VariantContext liftedVC = LiftoverUtils.liftVariant(ctx, target, refSeq, WRITE_ORIGINAL_POSITION, WRITE_ORIGINAL_ALLELES);
+        // the liftedVC can be null if the liftover fails because of a problem with reverse complementing
+        if (liftedVC == null) {
+            return result.reject(FILTER_CANNOT_LIFTOVER_REV_COMP);
+        }
+
+        checkReferenceAllele(liftedVC, refSeq, result);
+        return result;
+    }
+
+    /** The bases of the target reference from start to end (1-based, inclusive) of the contig of refSeq, as a string. */
+    private String targetBases(final ReferenceSequence refSeq, final int start, final int end) {
+        if (referenceCache == null) {
+            return StringUtil.bytesToString(refSeq.getBases(), start - 1, end - start + 1);
+        }
+        final ByteBuffer window = referenceCache.getBases(refSeq.getContigIndex(), start, end);
+        final byte[] bases = new byte[window.remaining()];
+        window.get(bases);
+        return StringUtil.bytesToString(bases);
+    }
+
+    /**
+     * Applies the outcome of lifting a variant over to the rejects and the counts and, if addAccepted is true, writes a lifted
+     * variant to the output (or the sorter).
+     *
+     * @return false if the variant's target contig is missing from the reference and WARN_ON_MISSING_CONTIG is false
+     */
+    private boolean applyLiftResult(final LiftResult result, final boolean addAccepted) {
+        if (result.swappedRefAlt) {
+            totalTrackedAsSwapRefAlt++;
+        }
+
+        if (result.rejected != null) {
+            rejectedRecords.add(result.rejected);
+            if (result.failedAlleleCheck) {
+                failedAlleleCheck++;
+            } else {
+                failedLiftover++;
+            }
+            trackLiftedVariantContig(rejectsByContig, result.source.getContig());
+        }
+
+        if (result.missingContig != null) {
+            final String missingContigMessage = "Encountered a contig, " + result.missingContig + " that is not part of the target reference.";
+            if (WARN_ON_MISSING_CONTIG) {
+                log.warn(missingContigMessage);
+            } else {
+                log.error(missingContigMessage);
+                return false;
+            }
+        }
+
+        if (result.lifted != null) {
+            trackLiftedVariantContig(liftedBySourceContig, result.source.getContig());
+            trackLiftedVariantContig(liftedByDestContig, result.lifted.getContig());
+            if (addAccepted) {
+                if (!DISABLE_SORT) { //we're sorting the variants
+                    sorter.add(result.lifted);
+                } else {
+                    this.acceptedRecords.add(result.lifted);
+                }
+            }
+        }
+        return true;
     }
 
     private void trackLiftedVariantContig(final Map<String, Long> map, final String contig) {
@@ -529,24 +779,14 @@ public class LiftoverVcf extends CommandLineProgram {
         map.put(contig, ++val);
     }
 
-    private void addAndTrack(final VariantContext toAdd, final VariantContext source) {
-        trackLiftedVariantContig(liftedBySourceContig, source.getContig());
-        trackLiftedVariantContig(liftedByDestContig, toAdd.getContig());
-        if (!DISABLE_SORT) { //we're sorting the variants
-            sorter.add(toAdd);
-        } else {
-            this.acceptedRecords.add(toAdd);
-        }
-    }
-
     /**
-     *  utility function to attempt to add a variant. Checks that the reference allele still matches the reference (which may have changed)
+     *  utility function to check a lifted variant. Checks that the reference allele still matches the reference (which may have changed)
      *
      * @param vc new {@link VariantContext}
      * @param refSeq {@link ReferenceSequence} of new reference
-     * @param source the original {@link VariantContext} to use for putting the original location information into vc
+     * @param result the outcome for the original {@link VariantContext}, to which the accepted or rejected variant is recorded
      */
-    private void tryToAddVariant(final VariantContext vc, final ReferenceSequence refSeq, final VariantContext source) {
+    private void checkReferenceAllele(final VariantContext vc, final ReferenceSequence refSeq, final LiftResult result) {
         if (!refSeq.getName().equals(vc.getContig())) {
             throw new IllegalStateException("The contig of the VariantContext, " + vc.getContig() + ", doesnt match the ReferenceSequence: " + refSeq.getName());
         }
@@ -554,15 +794,14 @@ public class LiftoverVcf extends CommandLineProgram {
         // Check that the reference allele still agrees with the reference sequence
         final boolean mismatchesReference;
         final Allele allele = vc.getReference();
-        final byte[] ref = refSeq.getBases();
-        final String refString = StringUtil.bytesToString(ref, vc.getStart() - 1, vc.getEnd() - vc.getStart() + 1);
+        final String refString = targetBases(refSeq, vc.getStart(), vc.getEnd());
 
         if (!refString.equalsIgnoreCase(allele.getBaseString())) {
             // consider that the ref and the alt may have been swapped in a simple biallelic SNP
             if (vc.isBiallelic() && vc.isSNP() && refString.equalsIgnoreCase(vc.getAlternateAllele(0).getBaseString())) {
-                totalTrackedAsSwapRefAlt++;
+                result.swappedRefAlt = true;
                 if (RECOVER_SWAPPED_REF_ALT) {
-                    addAndTrack(LiftoverUtils.swapRefAlt(vc, TAGS_TO_REVERSE, TAGS_TO_DROP), source);
+                    result.lifted = LiftoverUtils.swapRefAlt(vc, TAGS_TO_REVERSE, TAGS_TO_DROP);
                     return;
                 }
             }
@@ -573,15 +812,14 @@ public class LiftoverVcf extends CommandLineProgram {
 
 
         if (mismatchesReference) {
-            rejectedRecords.add(new VariantContextBuilder(source)
+            result.rejected = new VariantContextBuilder(result.source)
                     .filter(FILTER_MISMATCHING_REF_ALLELE)
                     .attribute(ATTEMPTED_LOCUS, String.format("%s:%d-%d", vc.getContig(), vc.getStart(), vc.getEnd()))
                     .attribute(ATTEMPTED_ALLELES, vc.getReference().toString() + "->" + String.join(",", vc.getAlternateAlleles().stream().map(Allele::toString).collect(Collectors.toList())))
-                    .make());
-            failedAlleleCheck++;
-            trackLiftedVariantContig(rejectsByContig, source.getContig());
+                    .make();
+            result.failedAlleleCheck = true;
         } else {
-            addAndTrack(vc, source);
+            result.lifted = vc;
         }
     }
-}
\ No newline at end of file
+}
@@ -177,7 +177,8 @@ public class FindMendelianViolations extends CommandLineProgram {
     shortName = "PAR")
     public Set<String> PSEUDO_AUTOSOMAL_REGIONS = CollectionUtil.makeSet("X:60001-2699520", "X:154931044-155260560", "chrX:10001-2781479", "chrX:155701383-156030895");
 
-    @Argument(doc = "The number of threads that will be used to collect the metrics. ")
+    @Argument(doc = "The number of threads that will be used to collect the metrics. If 0 or less, one thread per family " +
+            "is used, up to the number of available processors.")
     public int THREAD_COUNT = 1;
 
     @Argument(doc = "If true then fields need to be delimited by a single tab. If false the delimiter is one or more whitespace characters." +
@@ -248,12 +249,17 @@ public class FindMendelianViolations extends CommandLineProgram {
 
         LOG.info("Loading and filtering trios.");
 
+        final int threads = THREAD_COUNT > 0 ? THREAD_COUNT :
+                Math.max(1, (int) Math.min(Runtime.getRuntime().availableProcessors(),
+                        pedFile.get().values().stream().map(PedFile.PedTrio::getFamilyId).distinct().count()));
+        LOG.info("Evaluating trios using " + threads + " thread(s).");
+
         final MendelianViolationDetector.Result result =
                 VariantProcessor.Builder
                         .generatingAccumulatorsBy(this::buildDetector)
                         .withInput(INPUT)
                         .combiningResultsBy(MendelianViolationDetector.Result::merge)
-                        .multithreadingBy(THREAD_COUNT)
+                        .multithreadingBy(threads)
                         .build()
                         .process();
 
@@ -304,6 +310,12 @@ public class FindMendelianViolations extends CommandLineProgram {
     }
 
     private MendelianViolationDetector buildDetector() {
+        final List<MendelianViolationMetrics> trios = generateTrioMetricsBase();
+        final Set<String> trioSamples = new HashSet<>();
+        for (final MendelianViolationMetrics trio : trios) {
+            Collections.addAll(trioSamples, trio.MOTHER, trio.FATHER, trio.OFFSPRING);
+        }
+
         return new MendelianViolationDetector(
                 ImmutableSet.copyOf(SKIP_CHROMS),
                 ImmutableSet.copyOf(MALE_CHROMS),
@@ -311,8 +323,9 @@ public class FindMendelianViolations extends CommandLineProgram {
                 MIN_HET_FRACTION,
                 MIN_GQ,
                 MIN_DP,
-                generateTrioMetricsBase(),
+                trios,
                 ImmutableList.copyOf(parIntervals.get()),
+                new TrioGenotypeDecoder(inputHeader.get(), trioSamples),
                 progressLogger
         );
     }
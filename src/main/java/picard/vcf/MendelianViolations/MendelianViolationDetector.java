@@ -55,12 +55,14 @@ class MendelianViolationDetector implements VariantProcessor.Accumulator<Mendeli
     private final double MIN_HET_FRACTION;
     private final int MIN_GQ;
     private final int MIN_DP;
+    private final TrioGenotypeDecoder genotypeDecoder;
     private final ProgressLogger logger;
     private final MendelianViolationsByFamily familyToViolations;
 
     MendelianViolationDetector(final Set<String> skip_chroms, final Set<String> male_chroms, final Set<String> female_chroms,
                                final double min_het_fraction, final int min_gq, final int min_dp, final List<MendelianViolationMetrics> trios,
-                               final List<Interval> parIntervals, final ProgressLogger logger) {
+                               final List<Interval> parIntervals, final TrioGenotypeDecoder genotypeDecoder,
+                               final ProgressLogger logger) {
         SKIP_CHROMS = skip_chroms;
         MALE_CHROMS = male_chroms;
         FEMALE_CHROMS = female_chroms;
@@ -69,6 +71,7 @@ class MendelianViolationDetector implements VariantProcessor.Accumulator<Mendeli
         MIN_DP = min_dp;
         this.trios = trios;
         this.parIntervals = parIntervals;
+        this.genotypeDecoder = genotypeDecoder;
         this.logger = logger;
         familyToViolations = new MendelianViolationsByFamily();
         }
@@ -100,17 +103,20 @@ class MendelianViolationDetector implements VariantProcessor.Accumulator<Mendeli
     public final static String ORIGINAL_AN = "AN_Orig";
 
     @Override
-    public void accumulate(final VariantContext ctx) {
-        logger.record(ctx.getContig(), ctx.getStart());
+    public void accumulate(final VariantContext fullCtx) {
+        logger.record(fullCtx.getContig(), fullCtx.getStart());
 
-        final String variantChrom = ctx.getContig();
-        final int variantPos = ctx.getStart();
+        final String variantChrom = fullCtx.getContig();
+        final int variantPos = fullCtx.getStart();
 
         // Skip anything a little too funky
-        if (ctx.isFiltered()) return;
-        if (!ctx.isVariant()) return;
+        if (fullCtx.isFiltered()) return;
+        if (!fullCtx.isVariant()) return;
         if (SKIP_CHROMS.contains(variantChrom)) return;
 
+        // Only the trio members' genotypes are ever looked at, so don't decode anyone else's
+        final VariantContext ctx = genotypeDecoder == null ? fullCtx : genotypeDecoder.restrict(fullCtx);
+
         for (final MendelianViolationMetrics trio : trios) {
             final Genotype momGt = ctx.getGenotype(trio.MOTHER);
             final Genotype dadGt = ctx.getGenotype(trio.FATHER);
@@ -0,0 +1,47 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package picard.vcf.MendelianViolations;
+
+import htsjdk.variant.vcf.VCFHeader;
+import picard.vcf.processor.util.RestrictedGenotypeDecoder;
+
+import java.util.Collection;
+
+/**
+ * Restricts genotype decoding of VCF records to the samples that belong to the trios being examined.
+ *
+ * For large cohorts with only a few trios nearly all of the work of decoding every sample's genotypes is wasted, so
+ * only the trio samples' columns are decoded; see {@link RestrictedGenotypeDecoder}.  Every FORMAT field of those
+ * samples is decoded.
+ *
+ * Instances hold a codec with per-record scratch state and must not be shared between threads.
+ */
+class TrioGenotypeDecoder extends RestrictedGenotypeDecoder {
+
+    TrioGenotypeDecoder(final VCFHeader header, final Collection<String> trioSamples) {
+        super(header, trioSamples, null);
+    }
+}
@@ -37,6 +37,9 @@ import java.util.Optional;
  * A tuple will be returned with variant contexts for both contexts if present.  Otherwise, the missing
  * context at that site will be empty.  The contexts will be returned in coordinate order.
  *
+ * Each context is subset to the given sample of its side; if the sample is null the context is returned whole,
+ * so that it can be subset to several samples by the caller.
+ *
  * */
 public class PairedVariantSubContextIterator implements Iterator<PairedVariantSubContextIterator.VcfTuple> {
     private final PeekableIterator<VariantContext> leftIterator;
@@ -72,23 +75,27 @@ public class PairedVariantSubContextIterator implements Iterator<PairedVariantSu
             throw new IllegalStateException("BUG: Both contexts empty.");
         }
         else if (!leftVariantContext.isPresent()) {
-            return new VcfTuple(Optional.empty(), this.rightIterator.next().subContextFromSample(rightSample));
+            return new VcfTuple(Optional.empty(), subContext(this.rightIterator.next(), rightSample));
         }
         else if (!rightVariantContext.isPresent()) {
-            return new VcfTuple(this.leftIterator.next().subContextFromSample(leftSample), Optional.empty());
+            return new VcfTuple(subContext(this.leftIterator.next(), leftSample), Optional.empty());
         }
         else { // Otherwise check the ordering and do the right thing
             final int ordering = this.comparator.compare(leftVariantContext.get(), rightVariantContext.get());
             if (ordering == 0) {
-                return new VcfTuple(this.leftIterator.next().subContextFromSample(leftSample), this.rightIterator.next().subContextFromSample(rightSample));
+                return new VcfTuple(subContext(this.leftIterator.next(), leftSample), subContext(this.rightIterator.next(), rightSample));
             } else if (ordering < 0) {
-                return new VcfTuple(this.leftIterator.next().subContextFromSample(leftSample), Optional.empty());
+                return new VcfTuple(subContext(this.leftIterator.next(), leftSample), Optional.empty());
             } else {
-                return new VcfTuple(Optional.empty(), this.rightIterator.next().subContextFromSample(rightSample));
+                return new VcfTuple(Optional.empty(), subContext(this.rightIterator.next(), rightSample));
             }
         }
     }
 
+    private static VariantContext subContext(final VariantContext context, final String sample) {
+        return sample == null ? context : context.subContextFromSample(sample);
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException();
@@ -3,12 +3,15 @@ package picard.vcf;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
+import htsjdk.samtools.util.MergingIterator;
 import htsjdk.samtools.util.ProgressLogger;
 import htsjdk.samtools.util.SortingCollection;
 import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextComparator;
 import htsjdk.variant.variantcontext.writer.Options;
 import htsjdk.variant.variantcontext.writer.VariantContextWriter;
 import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
@@ -26,6 +29,7 @@ import picard.cmdline.programgroups.VariantManipulationProgramGroup;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -45,7 +49,8 @@ public class SortVcf extends CommandLineProgram {
             "dictionary is supplied, the VCF file headers of multiple inputs must have the same sequence dictionaries." +
             "<br /><br />" +
             "If running on multiple inputs (originating from e.g. some scatter-gather runs), the input files must contain the same sample " +
-            "names in the same column order. " +
+            "names in the same column order. Inputs that are already sorted (those with an index, or found to be in order " +
+            "when scanned) are merged straight into the output; only the unsorted inputs are sorted through temporary files. " +
             "<br />" +
             "<h4>Usage example:</h4>" +
             "<pre>" +
@@ -64,6 +69,10 @@ public class SortVcf extends CommandLineProgram {
     @Argument(shortName = StandardOptionDefinitions.SEQUENCE_DICTIONARY_SHORT_NAME, optional = true)
     public File SEQUENCE_DICTIONARY;
 
+    @Argument(doc = "If true, inputs that are already sorted are merged directly into the output instead of being re-sorted. " +
+            "An input is taken to be sorted if a scan of it finds no records out of order.", optional = true)
+    public boolean MERGE_SORTED_INPUTS = true;
+
     private final Log log = Log.getInstance(SortVcf.class);
 
     private final List<VCFFileReader> inputReaders = new ArrayList<VCFFileReader>();
@@ -94,11 +103,30 @@ public class SortVcf extends CommandLineProgram {
         // Create the merged output header from the input headers
         final VCFHeader outputHeader = new VCFHeader(VCFUtils.smartMergeHeaders(inputHeaders, false), sampleList);
 
-        // Load entries into the sorting collection
-        final SortingCollection<VariantContext> sortedOutput = sortInputs(inputReaders, outputHeader);
+        // Sorted inputs are streamed as they are; the rest are loaded into the sorting collection
+        final VariantContextComparator comparator = outputHeader.getVCFRecordComparator();
+        final List<CloseableIterator<VariantContext>> sortedIterators = new ArrayList<>();
+        final List<VCFFileReader> sortedReaders = new ArrayList<>();
+        final List<VCFFileReader> unsortedReaders = new ArrayList<>();
+        for (int i = 0; i < inputReaders.size(); ++i) {
+            final VCFFileReader reader = inputReaders.get(i);
+            if (MERGE_SORTED_INPUTS && isSorted(reader, comparator)) {
+                log.info("Input file " + (i + 1) + " is already sorted and will be merged directly.");
+                sortedIterators.add(reader.iterator());
+                sortedReaders.add(reader);
+            } else {
+                unsortedReaders.add(reader);
+            }
+        }
+        if (!unsortedReaders.isEmpty()) {
+            sortedIterators.add(sortInputs(unsortedReaders, outputHeader).iterator());
+        }
 
-        // Output to the final file
-        writeSortedOutput(outputHeader, sortedOutput);
+        // Merge the sorted streams into the final file
+        try (final MergingIterator<VariantContext> sortedOutput = new MergingIterator<>(comparator, sortedIterators)) {
+            writeSortedOutput(outputHeader, sortedOutput);
+        }
+        CloserUtil.close(sortedReaders);
 
         return 0;
     }
@@ -137,11 +165,28 @@ public class SortVcf extends CommandLineProgram {
     }
 
     /**
-     * Merge the inputs and sort them by adding each input's content to a single SortingCollection.
-     * <p/>
-     * NB: It would be better to have a merging iterator as in MergeSamFiles, as this would perform better for pre-sorted inputs.
-     * Here, we are assuming inputs are unsorted, and so adding their VariantContexts iteratively is fine for now.
-     * MergeVcfs exists for simple merging of presorted inputs.
+     * Returns true if the records of the input are already in the order of the comparator, scanning them up to the first
+     * record out of order. An index is not enough to go by, since it only requires the records of each contig to be
+     * together, not the contigs to be in the order of the sequence dictionary, and may be stale. Genotypes are not
+     * decoded by the scan.
+     */
+    private boolean isSorted(final VCFFileReader reader, final VariantContextComparator comparator) {
+        try (final CloseableIterator<VariantContext> iterator = reader.iterator()) {
+            VariantContext last = null;
+            while (iterator.hasNext()) {
+                final VariantContext current = iterator.next();
+                if (last != null && comparator.compare(last, current) > 0) {
+                    return false;
+                }
+                last = current;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sort the inputs that are not already sorted by adding each input's content to a single SortingCollection, whose
+     * iterator is then merged with the sorted inputs.
      *
      * @param readers      - a list of VCFFileReaders, one for each input VCF
      * @param outputHeader - The merged header whose information we intend to use in the final output file
@@ -171,7 +216,7 @@ public class SortVcf extends CommandLineProgram {
         return sorter;
     }
 
-    private void writeSortedOutput(final VCFHeader outputHeader, final SortingCollection<VariantContext> sortedOutput) {
+    private void writeSortedOutput(final VCFHeader outputHeader, final Iterator<VariantContext> sortedOutput) {
         final ProgressLogger writeProgress = new ProgressLogger(log, 25000, "wrote", "records");
         final EnumSet<Options> options = CREATE_INDEX ? EnumSet.of(Options.INDEX_ON_THE_FLY) : EnumSet.noneOf(Options.class);
         final VariantContextWriter out = new VariantContextWriterBuilder().
@@ -179,7 +224,8 @@ public class SortVcf extends CommandLineProgram {
                 setOptions(options).
                 setOutputFile(OUTPUT).build();
         out.writeHeader(outputHeader);
-        for (final VariantContext variantContext : sortedOutput) {
+        while (sortedOutput.hasNext()) {
+            final VariantContext variantContext = sortedOutput.next();
             out.add(variantContext);
             writeProgress.record(variantContext.getContig(), variantContext.getStart());
         }
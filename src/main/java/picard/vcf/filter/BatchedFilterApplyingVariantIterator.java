@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package picard.vcf.filter;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import picard.PicardException;
+import picard.util.ThreadPoolExecutorWithExceptions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Iterator that applies the same filters as {@link FilterApplyingVariantIterator}, but to batches of records on a pool of
+ * worker threads.  Records are read, and their genotypes decoded, on the calling thread (the decoding uses the reader's
+ * codec, which cannot be shared), and are returned in the order of the underlying iterator.
+ *
+ * Variant filters may hold state (e.g. a script engine), so each worker thread gets its own set from the supplier;
+ * genotype filters are shared.
+ */
+public class BatchedFilterApplyingVariantIterator implements CloseableIterator<VariantContext> {
+    private final Iterator<VariantContext> iterator;
+    private final ThreadLocal<FilterApplyingVariantIterator> filterers;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+    private final ExecutorService executor;
+    private final Deque<Future<List<VariantContext>>> pending = new ArrayDeque<>();
+    private Iterator<VariantContext> current = Collections.emptyIterator();
+
+    /**
+     * @param iterator  the records to filter
+     * @param filters   called once by each worker thread for its own variant filters
+     * @param gtFilters the genotype filters, shared between threads
+     * @param threads   the number of worker threads
+     * @param batchSize the number of records handed to a worker at a time
+     */
+    public BatchedFilterApplyingVariantIterator(final Iterator<VariantContext> iterator,
+                                                final Supplier<Collection<VariantFilter>> filters,
+                                                final Collection<GenotypeFilter> gtFilters,
+                                                final int threads,
+                                                final int batchSize) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1.");
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be at least 1.");
+        this.iterator = iterator;
+        this.filterers = ThreadLocal.withInitial(() ->
+                new FilterApplyingVariantIterator(Collections.emptyIterator(), filters.get(), gtFilters));
+        this.batchSize = batchSize;
+        this.maxBatchesInFlight = 2 * threads;
+        this.executor = new ThreadPoolExecutorWithExceptions(threads);
+    }
+
+    /** Submits batches until enough are in flight or the underlying iterator is exhausted. */
+    private void fill() {
+        while (pending.size() < maxBatchesInFlight && iterator.hasNext()) {
+            final List<VariantContext> batch = new ArrayList<>(batchSize);
+            while (batch.size() < batchSize && iterator.hasNext()) {
+                final VariantContext ctx = iterator.next();
+                if (ctx.getGenotypes() instanceof LazyGenotypesContext) {
+                    ((LazyGenotypesContext) ctx.getGenotypes()).decode();
+                }
+                batch.add(ctx);
+            }
+            pending.add(executor.submit(() -> {
+                final FilterApplyingVariantIterator filterer = filterers.get();
+                final List<VariantContext> filtered = new ArrayList<>(batch.size());
+                for (final VariantContext ctx : batch) {
+                    filtered.add(filterer.applyFilters(ctx));
+                }
+                return filtered;
+            }));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            fill();
+            if (pending.isEmpty()) return false;
+            try {
+                current = pending.poll().get().iterator();
+            } catch (final InterruptedException | ExecutionException e) {
+                close();
+                throw new PicardException("Failed to apply filters", e);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public VariantContext next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        CloserUtil.close(this.iterator);
+    }
+
+    @Override public void remove() { throw new UnsupportedOperationException("remove() not supported by BatchedFilterApplyingVariantIterator."); }
+}
@@ -73,7 +73,11 @@ public class FilterApplyingVariantIterator implements CloseableIterator<VariantC
      */
     @Override
     public VariantContext next() {
-        final VariantContext ctx = this.iterator.next();
+        return applyFilters(this.iterator.next());
+    }
+
+    /** Returns a copy of the record with the filter strings generated by this iterator's filters applied. */
+    VariantContext applyFilters(final VariantContext ctx) {
         final Set<String> filterStrings = new HashSet<String>();
 
         // Collect variant level filters
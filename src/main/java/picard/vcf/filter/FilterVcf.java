@@ -87,6 +87,12 @@ public class FilterVcf extends CommandLineProgram {
             optional = true)
     public File JAVASCRIPT_FILE = null;
 
+    @Argument(doc = "The number of threads used to apply the filters. With more than one thread, records are read and decoded in " +
+            "batches that are filtered concurrently and written out in their original order.", optional = true)
+    public int THREADS = 1;
+
+    /** The number of records handed to a filtering thread at a time when THREADS > 1. */
+    private static final int FILTER_BATCH_SIZE = 1000;
 
     /** Constructor to default to having index creation on. */
     public FilterVcf() { this.CREATE_INDEX = true; }
@@ -94,6 +100,14 @@ public class FilterVcf extends CommandLineProgram {
     final private Log log = Log.getInstance(FilterVcf.class);
     final private ProgressLogger progress = new ProgressLogger(log, 100_000, "Processed", "Variants");
 
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (THREADS < 1) {
+            return new String[]{"THREADS must be at least 1."};
+        }
+        return super.customCommandLineValidation();
+    }
+
     @Override
     protected int doWork() {
         IOUtil.assertFileIsReadable(INPUT);
@@ -101,21 +115,18 @@ public class FilterVcf extends CommandLineProgram {
 
         VCFFileReader in = null;
         VariantContextWriter out = null;
-        try {// try/finally used to close 'in' and 'out'
+        CloseableIterator<VariantContext> iterator = null;
+        try {// try/finally used to close 'in', 'out' and the iterator, which may hold a pool of filtering threads
             in = new VCFFileReader(INPUT, false);
-            final List<VariantFilter> variantFilters = new ArrayList<>(4);
-            variantFilters.add(new AlleleBalanceFilter(MIN_AB));
-            variantFilters.add(new FisherStrandFilter(MAX_FS));
-            variantFilters.add(new QdFilter(MIN_QD));
-            if (JAVASCRIPT_FILE != null) {
-                try {
-                    variantFilters.add(new VariantContextJavascriptFilter(JAVASCRIPT_FILE, in.getFileHeader()));
-                } catch (final IOException error) {
-                    throw new PicardException("javascript-related error", error);
-                }
-            }
+            final VCFHeader inputHeader = in.getFileHeader();
+            final List<VariantFilter> variantFilters = makeVariantFilters(inputHeader);
             final List<GenotypeFilter> genotypeFilters = CollectionUtil.makeList(new GenotypeQualityFilter(MIN_GQ), new DepthFilter(MIN_DP));
-            final FilterApplyingVariantIterator iterator = new FilterApplyingVariantIterator(in.iterator(), variantFilters, genotypeFilters);
+            if (THREADS > 1) {
+                iterator = new BatchedFilterApplyingVariantIterator(in.iterator(), () -> makeVariantFilters(inputHeader),
+                        genotypeFilters, THREADS, FILTER_BATCH_SIZE);
+            } else {
+                iterator = new FilterApplyingVariantIterator(in.iterator(), variantFilters, genotypeFilters);
+            }
 
             final VCFHeader header = in.getFileHeader();
             // If the user is writing to a .bcf or .vcf, VariantContextBuilderWriter requires a Sequence Dictionary.  Make sure that the
@@ -144,11 +155,28 @@ public class FilterVcf extends CommandLineProgram {
             }
             return 0;
         } finally {
+            CloserUtil.close(iterator);
             CloserUtil.close(out);
             CloserUtil.close(in);
         }
     }
 
+    /** Creates the site level filters; called once per filtering thread since the javascript filter cannot be shared. */
+    private List<VariantFilter> makeVariantFilters(final VCFHeader header) {
+        final List<VariantFilter> variantFilters = new ArrayList<>(4);
+        variantFilters.add(new AlleleBalanceFilter(MIN_AB));
+        variantFilters.add(new FisherStrandFilter(MAX_FS));
+        variantFilters.add(new QdFilter(MIN_QD));
+        if (JAVASCRIPT_FILE != null) {
+            try {
+                variantFilters.add(new VariantContextJavascriptFilter(JAVASCRIPT_FILE, header));
+            } catch (final IOException error) {
+                throw new PicardException("javascript-related error", error);
+            }
+        }
+        return variantFilters;
+    }
+
     private boolean isVcfOrBcf(final File file) {
         final String fileName = file.getName();
         return fileName.endsWith(IOUtil.VCF_FILE_EXTENSION) || fileName.endsWith(IOUtil.BCF_FILE_EXTENSION);
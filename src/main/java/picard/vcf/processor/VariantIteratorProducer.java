@@ -36,6 +36,7 @@ import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
 import picard.nio.PicardHtsPath;
 import picard.vcf.processor.util.PredicateFilterDecoratingClosableIterator;
+import picard.vcf.processor.util.RestrictedGenotypeDecoder;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -44,6 +45,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -91,6 +93,27 @@ public abstract class VariantIteratorProducer {
         return new Threadsafe(VcfPathSegmentGenerator.byWholeContigSubdividingWithWidth(ONE_HUNDRED_MILLION), vcfs, null);
     }
 
+    /**
+     * Produces a chunking with segments of size 100 megabases (or less if a contig boundary is reached), filtering on-the-fly by the
+     * interval list if one is provided, whose {@link VariantContext}s only decode the given FORMAT fields of their genotypes.
+     */
+    public static VariantIteratorProducer byHundredMegabasePathChunksDecodingOnly(final List<PicardHtsPath> vcfs, final IntervalList intervalList,
+                                                                                  final Set<String> formatFieldsToDecode) {
+        return new Threadsafe(VcfPathSegmentGenerator.byWholeContigSubdividingWithWidth(ONE_HUNDRED_MILLION), vcfs, intervalList, formatFieldsToDecode);
+    }
+
+    /**
+     * Produces a chunking of each VCF into roughly the given number of segments of roughly equal size in the file, as determined from
+     * the VCF's index (VCFs without an index are chunked by 100 megabases).  The interval list and FORMAT fields to decode are optional,
+     * and behave as in {@link #byHundredMegabasePathChunksDecodingOnly(List, IntervalList, Set)}.
+     */
+    public static VariantIteratorProducer byIndexedSizePathChunks(final List<PicardHtsPath> vcfs, final int segmentsPerVcf,
+                                                                  final IntervalList intervalList, final Set<String> formatFieldsToDecode) {
+        return new Threadsafe(
+                VcfPathSegmentGenerator.byIndexedSize(segmentsPerVcf, VcfPathSegmentGenerator.byWholeContigSubdividingWithWidth(ONE_HUNDRED_MILLION)),
+                vcfs, intervalList, formatFieldsToDecode);
+    }
+
     /**
      * A {@link VariantIteratorProducer} that is based on a given {@link VcfPathSegmentGenerator} and a list of VCFs.  The chunks are ordered by VCF, and
      * then by whatever ordering of segments are produced by {@link VcfPathSegmentGenerator#forVcf(PicardHtsPath)} for each of those VCFs.
@@ -103,6 +126,9 @@ public abstract class VariantIteratorProducer {
      * This class maintains a {@link ThreadLocal} of {@link VCFFileReader} to ensure that each thread has its own, and at most one, reader per
      * VCF.  It also guarantees that, so long as a thread closes its "queried into" readers after expiring them, there is only one extant
      * "queried into" iterator per thread per VCF.
+     * <p/>
+     * If a set of FORMAT fields is provided, the produced {@link VariantContext}s only decode those fields of their genotypes (see
+     * {@link RestrictedGenotypeDecoder}); since the decoding is deferred, genotypes must be read on the thread that iterates.
      *
      * @author mccowan
      */
@@ -112,6 +138,8 @@ public abstract class VariantIteratorProducer {
         /** A list of the segments for which the corresponding {@link VariantContext}s will be produced. */
         final List<VcfPathSegment> segments;
         final OverlapDetector<Interval> intervalsOfInterestDetector;
+        /** The FORMAT fields to decode, or null to decode them all. */
+        final Set<String> formatFieldsToDecode;
 
         /** Maps directly to {@link #segments}; useful for determining if a given variant falls into multiple segments (don't double-count!). */
         final Map<PicardHtsPath, OverlapDetector<VcfPathSegment>> multiSegmentDetectorPerFile =
@@ -122,6 +150,12 @@ public abstract class VariantIteratorProducer {
         }
 
         Threadsafe(final VcfPathSegmentGenerator segmenter, final List<PicardHtsPath> vcfs, final IntervalList intervals) {
+            this(segmenter, vcfs, intervals, null);
+        }
+
+        Threadsafe(final VcfPathSegmentGenerator segmenter, final List<PicardHtsPath> vcfs, final IntervalList intervals,
+                   final Set<String> formatFieldsToDecode) {
+            this.formatFieldsToDecode = formatFieldsToDecode;
             if (intervals != null) {
                 final List<Interval> uniques = intervals.uniqued(false).getIntervals();
                 this.intervalsOfInterestDetector = new OverlapDetector<>(0, 0);
@@ -187,13 +221,17 @@ public abstract class VariantIteratorProducer {
 
         /**
          * Converts a {@link VcfPathSegment} into a {@link VariantContext} iterator.  Applies filtering via {@link #intervalsOfInterestDetector}
-         * if it is defined.
+         * if it is defined, and restricts genotype decoding to {@link #formatFieldsToDecode} if it is defined.
          */
         private CloseableIterator<VariantContext> iteratorForSegment(final VcfPathSegment segment) {
-            final CloseableIterator<VariantContext> query =
+            final VCFFileReader reader =
                     localVcfFileReaders.get() // Get the collection of VCF file readers local to this thread
-                            .get(segment.vcf()) // Get or generate the reader for this segment's VCF file
-                            .query(segment.contig(), segment.start(), segment.stop()); // Query the segment
+                            .get(segment.vcf()); // Get or generate the reader for this segment's VCF file
+            final CloseableIterator<VariantContext> segmentQuery = reader.query(segment.contig(), segment.start(), segment.stop());
+
+            // Defer genotype decoding to only the requested FORMAT fields; each segment gets its own decoder, as they are not thread-safe.
+            final CloseableIterator<VariantContext> query = formatFieldsToDecode == null ? segmentQuery :
+                    new RestrictedGenotypeDecoder(reader.getFileHeader(), null, formatFieldsToDecode).restrict(segmentQuery);
 
             // Then wrap the iterator in a on-the-fly interval-list based filter, if requested.
             final Collection<Predicate<VariantContext>> filters = new ArrayList<>();
@@ -32,7 +32,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -108,10 +110,14 @@ public class VariantProcessor<RESULT, ACCUMULATOR extends VariantProcessor.Accum
 
     /** Simple builder of {@link VariantProcessor}s. */
     public static class Builder<A extends Accumulator<R>, R> {
+        /** When multithreading, the number of segments to cut each VCF into per thread, to even out segments of differing density. */
+        static final int SEGMENTS_PER_THREAD = 4;
+
         final AccumulatorGenerator<A, R> accumulatorGenerator;
         ResultMerger<R> reducer = null;
         IntervalList intervals = null;
         final List<PicardHtsPath> inputs = new ArrayList<>();
+        Set<String> formatFieldsToDecode = null;
         int threadCount = 1;
 
         Builder(final AccumulatorGenerator<A, R> accumulatorGenerator) {
@@ -140,6 +146,16 @@ public class VariantProcessor<RESULT, ACCUMULATOR extends VariantProcessor.Accum
             return this;
         }
 
+        /**
+         * Restricts genotype decoding to the given FORMAT fields; the accumulators will see every sample, but no other genotype
+         * field.  The accumulators must read genotypes on the thread that calls them.
+         */
+        public Builder<A, R> decodingOnlyFormatFields(final Collection<String> formatFields) {
+            if (this.formatFieldsToDecode != null) throw new IllegalStateException("Already provided FORMAT fields to decode.");
+            this.formatFieldsToDecode = new HashSet<>(formatFields);
+            return this;
+        }
+
         public Builder<A, R> combiningResultsBy(final ResultMerger<R> reducer) {
             if (this.reducer != null) throw new IllegalStateException("Already provided a reducer.");
             this.reducer = reducer;
@@ -168,7 +184,12 @@ public class VariantProcessor<RESULT, ACCUMULATOR extends VariantProcessor.Accum
              * per tiny chunk, which is very non-performant due to some implementations of that method.
              */
             final VariantIteratorProducer ret;
-            if (intervals == null) {
+            if (threadCount > 1) {
+                // Balance segments by their size in the file so that every thread gets a similar share of the work.
+                ret = VariantIteratorProducer.byIndexedSizePathChunks(inputs, threadCount * SEGMENTS_PER_THREAD, intervals, formatFieldsToDecode);
+            } else if (formatFieldsToDecode != null) {
+                ret = VariantIteratorProducer.byHundredMegabasePathChunksDecodingOnly(inputs, intervals, formatFieldsToDecode);
+            } else if (intervals == null) {
                 ret = VariantIteratorProducer.byHundredMegabasePathChunks(inputs);
             } else {
                 ret = VariantIteratorProducer.byHundredMegabasePathChunksWithOnTheFlyFilteringByInterval(inputs, intervals);
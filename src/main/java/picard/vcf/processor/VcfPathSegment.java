@@ -47,6 +47,30 @@ public abstract class VcfPathSegment {
     static VcfPathSegment ofWholeSequence(final SAMSequenceRecord sequence, final PicardHtsPath vcf) {
         return new SequenceSizedChunk(sequence, vcf);
     }
+
+    static VcfPathSegment ofRange(final String contig, final int start, final int stop, final PicardHtsPath vcf) {
+        return new VcfPathSegment() {
+            @Override
+            public int start() {
+                return start;
+            }
+
+            @Override
+            public int stop() {
+                return stop;
+            }
+
+            @Override
+            public String contig() {
+                return contig;
+            }
+
+            @Override
+            public PicardHtsPath vcf() {
+                return vcf;
+            }
+        };
+    }
     
     static final class SequenceSizedChunk extends VcfPathSegment {
         final SAMSequenceRecord sequence;
@@ -26,14 +26,23 @@ package picard.vcf.processor;
 import com.google.common.primitives.Ints;
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.OverlapDetector;
+import htsjdk.tribble.Tribble;
+import htsjdk.tribble.index.Block;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
+import htsjdk.tribble.index.tabix.TabixIndex;
 import htsjdk.variant.vcf.VCFFileReader;
 import htsjdk.variant.vcf.VCFHeader;
 import picard.nio.PicardHtsPath;
 
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -52,6 +61,14 @@ public abstract class VcfPathSegmentGenerator {
         return WidthLimitingDecorator.wrapping(ByWholeContig.getInstance(), segmentWidth);
     }
 
+    /**
+     * Returns a {@link VcfPathSegmentGenerator} that uses the VCF's index to cut it into roughly the given number of segments of
+     * roughly equal (compressed) size, falling back to the provided generator for VCFs without a usable index.
+     */
+    public static VcfPathSegmentGenerator byIndexedSize(final int targetSegmentCount, final VcfPathSegmentGenerator fallback) {
+        return new ByIndexedSize(targetSegmentCount, fallback);
+    }
+
     /**
      * Returns a decorated {@link VcfPathSegmentGenerator} that filters out {@link VcfPathSegment}s that have no overlap with the provided
      * {@link OverlapDetector}.
@@ -95,7 +112,7 @@ public abstract class VcfPathSegmentGenerator {
             return samSequenceRecords.stream().map(samSequenceRecord -> VcfPathSegment.ofWholeSequence(samSequenceRecord, vcf)).collect(Collectors.toList());
         }
 
-        private static List<SAMSequenceRecord> readSequences(final Path vcf) {
+        static List<SAMSequenceRecord> readSequences(final Path vcf) {
             final VCFFileReader reader = new VCFFileReader(vcf);
             final VCFHeader header = reader.getFileHeader();
             final SAMSequenceDictionary dict = header.getSequenceDictionary();
@@ -187,4 +204,112 @@ public abstract class VcfPathSegmentGenerator {
         }
     }
 
+    /**
+     * A {@link VcfPathSegmentGenerator} that balances segments by the number of bytes of the VCF they cover rather than by their width
+     * in bases, so that small genomes, exomes and contigs of very different densities still split into enough evenly-sized pieces to
+     * keep every thread busy.  The file offset of any position is looked up in the VCF's Tribble or tabix index; each contig gets a
+     * number of segments proportional to its share of the file, and cut points are found by bisecting positions on that offset.
+     * Contigs without any records in the index produce no segments.
+     */
+    static final class ByIndexedSize extends VcfPathSegmentGenerator {
+        final int targetSegmentCount;
+        final VcfPathSegmentGenerator fallback;
+
+        ByIndexedSize(final int targetSegmentCount, final VcfPathSegmentGenerator fallback) {
+            if (targetSegmentCount < 1) throw new IllegalArgumentException("Target segment count must exceed 0.");
+            this.targetSegmentCount = targetSegmentCount;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public Iterable<VcfPathSegment> forVcf(final PicardHtsPath vcf) {
+            final Index index = loadIndex(vcf.toPath());
+            if (index == null) {
+                LOG.debug("No usable index for " + vcf + "; segmenting without it.");
+                return fallback.forVcf(vcf);
+            }
+
+            final List<SAMSequenceRecord> sequences = ByWholeContig.readSequences(vcf.toPath());
+            final long[] firstOffsets = new long[sequences.size()];
+            final long[] lastOffsets = new long[sequences.size()];
+            long totalSize = 0;
+            for (int i = 0; i < sequences.size(); ++i) {
+                final SAMSequenceRecord sequence = sequences.get(i);
+                final List<Block> blocks = index.containsChromosome(sequence.getSequenceName()) ?
+                        index.getBlocks(sequence.getSequenceName(), 1, sequence.getSequenceLength()) : null;
+                if (blocks == null || blocks.isEmpty()) {
+                    firstOffsets[i] = lastOffsets[i] = -1;
+                    continue;
+                }
+                firstOffsets[i] = fileOffset(index, blocks.get(0).getStartPosition());
+                lastOffsets[i] = fileOffset(index, blocks.get(blocks.size() - 1).getEndPosition());
+                totalSize += Math.max(1, lastOffsets[i] - firstOffsets[i]);
+            }
+
+            final List<VcfPathSegment> segments = new ArrayList<>();
+            for (int i = 0; i < sequences.size(); ++i) {
+                if (firstOffsets[i] < 0) continue;
+                final SAMSequenceRecord sequence = sequences.get(i);
+                final long size = Math.max(1, lastOffsets[i] - firstOffsets[i]);
+                final int pieces = (int) Math.max(1, Math.round((double) size * targetSegmentCount / totalSize));
+
+                int start = 1;
+                long startOffset = firstOffsets[i];
+                for (int piece = 1; piece < pieces; ++piece) {
+                    final long targetOffset = firstOffsets[i] + size * piece / pieces;
+                    if (targetOffset <= startOffset) continue; // a single dense stretch already covers this piece
+                    final int cut = firstPositionAtOrAfter(index, sequence, start + 1, targetOffset, lastOffsets[i]);
+                    if (cut > sequence.getSequenceLength()) break;
+                    segments.add(VcfPathSegment.ofRange(sequence.getSequenceName(), start, cut - 1, vcf));
+                    start = cut;
+                    startOffset = offsetAt(index, sequence, cut, lastOffsets[i]);
+                }
+                segments.add(VcfPathSegment.ofRange(sequence.getSequenceName(), start, sequence.getSequenceLength(), vcf));
+            }
+            LOG.debug(String.format("Cut %s into %d segments by indexed size.", vcf, segments.size()));
+            return segments;
+        }
+
+        /** Returns the first position at or after {@code from} whose records start at or beyond the target offset in the file. */
+        private static int firstPositionAtOrAfter(final Index index, final SAMSequenceRecord sequence, final int from,
+                                                  final long targetOffset, final long lastOffset) {
+            int lo = from;
+            int hi = sequence.getSequenceLength() + 1;
+            while (lo < hi) {
+                final int mid = lo + (hi - lo) / 2;
+                if (offsetAt(index, sequence, mid, lastOffset) >= targetOffset) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        /** The offset in the file of the first records at or after the given position, or the end of the contig if there are none. */
+        private static long offsetAt(final Index index, final SAMSequenceRecord sequence, final int position, final long lastOffset) {
+            final List<Block> blocks = index.getBlocks(sequence.getSequenceName(), position, sequence.getSequenceLength());
+            return blocks.isEmpty() ? lastOffset : fileOffset(index, blocks.get(0).getStartPosition());
+        }
+
+        /** Tabix indices hold BGZF virtual file pointers; count them by compressed offset so block sizes are comparable. */
+        private static long fileOffset(final Index index, final long position) {
+            return index instanceof TabixIndex ? BlockCompressedFilePointerUtil.getBlockAddress(position) : position;
+        }
+
+        /** Loads the Tribble or tabix index of a VCF on the default file system, or returns null if there is none. */
+        private static Index loadIndex(final Path vcf) {
+            if (vcf.getFileSystem() != FileSystems.getDefault()) return null;
+            for (final Path indexPath : new Path[]{Tribble.tabixIndexPath(vcf), Tribble.indexPath(vcf)}) {
+                if (Files.exists(indexPath)) {
+                    try {
+                        return IndexFactory.loadIndex(indexPath.toString());
+                    } catch (final RuntimeException e) {
+                        LOG.warn(e, "Could not load index " + indexPath + "; segmenting without it.");
+                    }
+                }
+            }
+            return null;
+        }
+    }
 }
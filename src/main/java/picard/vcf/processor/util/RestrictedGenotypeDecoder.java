@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.vcf.processor.util;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.GenotypesContext;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.variantcontext.VariantContextBuilder;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFConstants;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderVersion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Restricts the genotype decoding of VCF records to a subset of the samples and/or of the FORMAT fields.
+ *
+ * Records read from a text VCF carry their genotypes as a single unparsed string that is decoded, for every sample and every
+ * FORMAT field, the first time any genotype is requested.  When a consumer only looks at a few samples, or only at fields such
+ * as GT and GQ, most of that work (in particular parsing PL arrays) is wasted.  This class cuts the wanted columns and
+ * sub-fields out of the unparsed string and hands them to a codec whose header only lists the wanted samples, so that they
+ * are the only ones decoded.  Records whose genotypes have already been decoded, or that did not come from a text VCF, are
+ * returned as they are.
+ *
+ * Instances hold a codec with per-record scratch state and must not be shared between threads; genotypes must be accessed
+ * on the thread that restricted the record.
+ */
+public class RestrictedGenotypeDecoder {
+    /** Marks a FORMAT whose fields are all kept. */
+    private static final int[] ALL_FIELDS = new int[0];
+    /** Marks a FORMAT none of whose fields are kept. */
+    private static final int[] NO_FIELDS = new int[0];
+    private static final int MAX_CACHED_FORMATS = 1000;
+
+    private final VCFCodec codec = new VCFCodec();
+    /** Which columns of the genotype data (FORMAT first) to keep, or null to keep them all. */
+    private final boolean[] keepColumn;
+    private final int nColumns;
+    private final int nSamples;
+    /** The FORMAT fields to keep, or null to keep them all. */
+    private final Set<String> formatFields;
+    private final Map<String, int[]> keptFieldsByFormat = new HashMap<>();
+
+    /**
+     * @param header       the header of the VCF the records come from
+     * @param samples      the samples to decode, or null for all of them
+     * @param formatFields the FORMAT fields to decode, or null for all of them
+     */
+    public RestrictedGenotypeDecoder(final VCFHeader header, final Collection<String> samples, final Collection<String> formatFields) {
+        final List<String> keptSamples;
+        this.nColumns = header.getNGenotypeSamples() + 1;
+        if (samples == null) {
+            keptSamples = new ArrayList<>(header.getGenotypeSamples());
+            this.keepColumn = null;
+        } else {
+            final Set<String> wanted = new HashSet<>(samples);
+            // keep the samples in file order so that the retained columns line up with the restricted header
+            keptSamples = header.getGenotypeSamples().stream().filter(wanted::contains).collect(Collectors.toList());
+            this.keepColumn = new boolean[nColumns];
+            this.keepColumn[0] = true; // the FORMAT column
+            for (final String sample : keptSamples) {
+                keepColumn[header.getSampleNameToOffset().get(sample) + 1] = true;
+            }
+        }
+        this.nSamples = keptSamples.size();
+        this.formatFields = formatFields == null ? null : new HashSet<>(formatFields);
+
+        codec.setVCFHeader(new VCFHeader(header.getMetaDataInInputOrder(), keptSamples), VCFHeaderVersion.VCF4_2);
+    }
+
+    /** Returns a context whose genotypes, when requested, only decode the wanted samples and FORMAT fields. */
+    public VariantContext restrict(final VariantContext ctx) {
+        final GenotypesContext genotypes = ctx.getGenotypes();
+        if (!(genotypes instanceof LazyGenotypesContext)) return ctx;
+
+        final LazyGenotypesContext lazy = (LazyGenotypesContext) genotypes;
+        if (lazy.isLoaded() || !(lazy.getUnparsedGenotypeData() instanceof String)) return ctx;
+
+        final String data = (String) lazy.getUnparsedGenotypeData();
+        final String restricted = restrictGenotypeData(data);
+        if (restricted == null || restricted == data) return ctx;
+
+        final String contig = ctx.getContig();
+        final int start = ctx.getStart();
+        final LazyGenotypesContext restrictedGenotypes = new LazyGenotypesContext(
+                unparsed -> codec.createGenotypeMap((String) unparsed, ctx.getAlleles(), contig, start),
+                restricted, nSamples);
+
+        return new VariantContextBuilder(ctx).genotypesNoValidation(restrictedGenotypes).make();
+    }
+
+    /** Wraps an iterator so that every record it returns is restricted. */
+    public CloseableIterator<VariantContext> restrict(final CloseableIterator<VariantContext> iterator) {
+        return new CloseableIterator<VariantContext>() {
+            @Override public boolean hasNext() { return iterator.hasNext(); }
+            @Override public VariantContext next() { return restrict(iterator.next()); }
+            @Override public void close() { iterator.close(); }
+        };
+    }
+
+    /**
+     * Copies the wanted columns, and within them the wanted fields, of the unparsed genotype data.  Returns the data itself if
+     * nothing needs removing, or null if the data cannot be restricted (in which case the full decode should be used).
+     */
+    private String restrictGenotypeData(final String data) {
+        final StringBuilder builder = new StringBuilder();
+        int[] keptFields = ALL_FIELDS;
+        int column = 0;
+        int columnStart = 0;
+        for (int i = 0; i <= data.length(); ++i) {
+            if (i == data.length() || data.charAt(i) == VCFConstants.FIELD_SEPARATOR_CHAR) {
+                if (column >= nColumns) return null;
+                if (column == 0) {
+                    keptFields = keptFields(data.substring(0, i));
+                    if (keptFields == NO_FIELDS) return null;
+                    if (keptFields == ALL_FIELDS && keepColumn == null) return data;
+                    appendFields(builder, data, 0, i, keptFields);
+                } else if (keepColumn == null || keepColumn[column]) {
+                    builder.append(VCFConstants.FIELD_SEPARATOR_CHAR);
+                    appendFields(builder, data, columnStart, i, keptFields);
+                }
+                ++column;
+                columnStart = i + 1;
+            }
+        }
+        return column == nColumns ? builder.toString() : null;
+    }
+
+    /** Returns the indices of the wanted fields of the given FORMAT, or {@link #ALL_FIELDS} or {@link #NO_FIELDS}. */
+    private int[] keptFields(final String format) {
+        if (formatFields == null) return ALL_FIELDS;
+
+        int[] kept = keptFieldsByFormat.get(format);
+        if (kept == null) {
+            final String[] keys = format.split(String.valueOf(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR));
+            final List<Integer> indices = new ArrayList<>(keys.length);
+            for (int i = 0; i < keys.length; ++i) {
+                if (formatFields.contains(keys[i])) indices.add(i);
+            }
+            if (indices.isEmpty()) {
+                kept = NO_FIELDS;
+            } else if (indices.size() == keys.length) {
+                kept = ALL_FIELDS;
+            } else {
+                kept = indices.stream().mapToInt(Integer::intValue).toArray();
+            }
+            if (keptFieldsByFormat.size() >= MAX_CACHED_FORMATS) keptFieldsByFormat.clear();
+            keptFieldsByFormat.put(format, kept);
+        }
+        return kept;
+    }
+
+    /** Appends the kept ':'-separated fields of data[start, end), or "." if the column has none of them. */
+    private static void appendFields(final StringBuilder builder, final String data, final int start, final int end, final int[] keptFields) {
+        if (keptFields == ALL_FIELDS) {
+            builder.append(data, start, end);
+            return;
+        }
+
+        int field = 0;
+        int fieldStart = start;
+        int nextKept = 0;
+        for (int i = start; i <= end && nextKept < keptFields.length; ++i) {
+            if (i == end || data.charAt(i) == VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR) {
+                if (field == keptFields[nextKept]) {
+                    if (nextKept > 0) builder.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+                    builder.append(data, fieldStart, i);
+                    ++nextKept;
+                }
+                ++field;
+                fieldStart = i + 1;
+            }
+        }
+        if (nextKept == 0) builder.append(VCFConstants.MISSING_VALUE_v4);
+    }
+}
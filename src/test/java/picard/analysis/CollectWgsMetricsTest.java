@@ -34,6 +34,8 @@ import htsjdk.samtools.SAMRecordSetBuilder;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.Histogram;
+import htsjdk.samtools.util.Interval;
+import htsjdk.samtools.util.IntervalList;
 import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
 import org.testng.Assert;
@@ -48,6 +50,9 @@ import picard.vcf.VcfTestUtils;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 /**
@@ -542,4 +547,130 @@ public class CollectWgsMetricsTest extends CommandLineProgramTest {
         };
         Assert.assertEquals(runPicardCommandLine(args), 1);
     }
+
+    @DataProvider(name = "blockAlgorithmIntervals")
+    public Object[][] blockAlgorithmIntervals() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    @Test(dataProvider = "blockAlgorithmIntervals")
+    public void testBlockAlgorithmWithReadsLongerThanReadLength(final boolean useIntervals) throws IOException {
+        final File reference = CHR_M_REFERENCE;
+        final File testSamFile = VcfTestUtils.createTemporaryIndexedFile("testBlockAlgorithm", ".bam", getTempOutputDir());
+
+        // overlapping pairs of 250 base reads, some with a deletion, none hitting the coverage cap
+        final SAMRecordSetBuilder setBuilder = CollectWgsMetricsTestUtils.createTestSAMBuilder(reference, READ_GROUP_ID, SAMPLE, PLATFORM, LIBRARY);
+        setBuilder.setReadLength(250);
+        for (int i = 0; i < 5; i++) {
+            setBuilder.addPair("OverlappingPair:" + i, 0, 1 + 100 * i, 101 + 100 * i, false, false, "250M", "250M", false, true, 30);
+            setBuilder.addPair("DeletionPair:" + i, 0, 2000 + 300 * i, 2400 + 300 * i, false, false, "100M10D150M", "250M", false, true, 30);
+        }
+
+        try (SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(setBuilder.getHeader(), false, testSamFile)) {
+            for (final SAMRecord record : setBuilder) {
+                writer.addAlignment(record);
+            }
+        }
+
+        // intervals that start and end inside reads, so that only part of their bases are within them
+        File intervals = null;
+        if (useIntervals) {
+            final String contig = setBuilder.getHeader().getSequence(0).getSequenceName();
+            final IntervalList intervalList = new IntervalList(setBuilder.getHeader());
+            intervalList.add(new Interval(contig, 150, 320));
+            intervalList.add(new Interval(contig, 2100, 2650));
+            intervals = getTempOutputFile("testBlockAlgorithm", ".interval_list");
+            intervalList.write(intervals);
+        }
+
+        final MetricsFile<WgsMetrics, Integer> expected = runForBlockAlgorithmTest(testSamFile, false, intervals);
+        final MetricsFile<WgsMetrics, Integer> actual = runForBlockAlgorithmTest(testSamFile, true, intervals);
+
+        final WgsMetrics expectedMetrics = expected.getMetrics().get(0);
+        final WgsMetrics actualMetrics = actual.getMetrics().get(0);
+        Assert.assertEquals(actualMetrics.GENOME_TERRITORY, expectedMetrics.GENOME_TERRITORY);
+        Assert.assertEquals(actualMetrics.MEAN_COVERAGE, expectedMetrics.MEAN_COVERAGE);
+        Assert.assertEquals(actualMetrics.PCT_EXC_OVERLAP, expectedMetrics.PCT_EXC_OVERLAP);
+        Assert.assertEquals(actualMetrics.PCT_EXC_BASEQ, expectedMetrics.PCT_EXC_BASEQ);
+        Assert.assertEquals(actualMetrics.PCT_EXC_CAPPED, 0.0);
+        Assert.assertTrue(actualMetrics.PCT_EXC_OVERLAP > 0);
+        Assert.assertEquals(actualMetrics.HET_SNP_SENSITIVITY, expectedMetrics.HET_SNP_SENSITIVITY);
+        Assert.assertEquals(actual.getAllHistograms().size(), expected.getAllHistograms().size());
+        for (int i = 0; i < expected.getAllHistograms().size(); i++) {
+            Assert.assertEquals(actual.getAllHistograms().get(i), expected.getAllHistograms().get(i));
+        }
+    }
+
+    private MetricsFile<WgsMetrics, Integer> runForBlockAlgorithmTest(final File input, final boolean useBlockAlgorithm,
+                                                                      final File intervals) throws IOException {
+        final File outfile = getTempOutputFile("testBlockAlgorithm", ".wgs_metrics");
+        final List<String> args = new ArrayList<>(Arrays.asList(
+                "INPUT=" + input.getAbsolutePath(),
+                "OUTPUT=" + outfile.getAbsolutePath(),
+                "REFERENCE_SEQUENCE=" + CHR_M_REFERENCE.getAbsolutePath(),
+                "INCLUDE_BQ_HISTOGRAM=true",
+                "READ_LENGTH=10",
+                "USE_BLOCK_ALGORITHM=" + useBlockAlgorithm
+        ));
+        if (intervals != null) {
+            args.add("INTERVALS=" + intervals.getAbsolutePath());
+        }
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        final MetricsFile<WgsMetrics, Integer> output = new MetricsFile<>();
+        try (FileReader reader = new FileReader(outfile)) {
+            output.read(reader);
+        }
+        return output;
+    }
+
+    @Test(dataProvider = "wgsAlgorithm")
+    public void testAdditionalProfile(final String useFastAlgorithm) throws IOException {
+        final File input = new File(TEST_DIR, "forMetrics.sam");
+        final File ref = new File(TEST_DIR, "merger.fasta");
+
+        final File outfile = getTempOutputFile("testAdditionalProfile", ".wgs_metrics");
+        final File profileOutfile = getTempOutputFile("testAdditionalProfile", ".profile.wgs_metrics");
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "INPUT=" + input.getAbsolutePath(),
+                "OUTPUT=" + outfile.getAbsolutePath(),
+                "REFERENCE_SEQUENCE=" + ref.getAbsolutePath(),
+                "USE_FAST_ALGORITHM=" + useFastAlgorithm,
+                "ADDITIONAL_PROFILE=0,3,1000," + profileOutfile.getAbsolutePath()
+        }), 0);
+
+        final File expectedOutfile = getTempOutputFile("testAdditionalProfile", ".expected.wgs_metrics");
+        final File expectedProfileOutfile = getTempOutputFile("testAdditionalProfile", ".expected.profile.wgs_metrics");
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "INPUT=" + input.getAbsolutePath(),
+                "OUTPUT=" + expectedOutfile.getAbsolutePath(),
+                "REFERENCE_SEQUENCE=" + ref.getAbsolutePath(),
+                "USE_FAST_ALGORITHM=" + useFastAlgorithm
+        }), 0);
+        Assert.assertEquals(runPicardCommandLine(new String[]{
+                "INPUT=" + input.getAbsolutePath(),
+                "OUTPUT=" + expectedProfileOutfile.getAbsolutePath(),
+                "REFERENCE_SEQUENCE=" + ref.getAbsolutePath(),
+                "USE_FAST_ALGORITHM=" + useFastAlgorithm,
+                "MINIMUM_MAPPING_QUALITY=0",
+                "MINIMUM_BASE_QUALITY=3",
+                "COVERAGE_CAP=1000"
+        }), 0);
+
+        assertSameWgsMetrics(outfile, expectedOutfile);
+        assertSameWgsMetrics(profileOutfile, expectedProfileOutfile);
+    }
+
+    private void assertSameWgsMetrics(final File actualFile, final File expectedFile) throws IOException {
+        final MetricsFile<WgsMetrics, Integer> actual = new MetricsFile<>();
+        try (FileReader reader = new FileReader(actualFile)) {
+            actual.read(reader);
+        }
+        final MetricsFile<WgsMetrics, Integer> expected = new MetricsFile<>();
+        try (FileReader reader = new FileReader(expectedFile)) {
+            expected.read(reader);
+        }
+        Assert.assertEquals(actual.getMetrics(), expected.getMetrics());
+        Assert.assertEquals(actual.getAllHistograms(), expected.getAllHistograms());
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2015 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package picard.analysis;
+
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.StringUtil;
+import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import picard.PicardException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class GcWindowIndexTest {
+    private static final File REFERENCE = new File("testdata/picard/metrics/chrMNO.reference.fasta");
+    private static final File DICT = new File("testdata/picard/sam/CollectGcBiasMetrics/MNOheader.dict");
+    private static final int WINDOW_SIZE = 100;
+
+    private File buildIndex() throws IOException {
+        final File indexFile = File.createTempFile("GcWindowIndexTest", GcWindowIndex.FILE_EXTENSION);
+        indexFile.deleteOnExit();
+        GcWindowIndex.build(REFERENCE, WINDOW_SIZE, indexFile);
+        return indexFile;
+    }
+
+    @Test
+    public void testIndexMatchesCalculatedGc() throws IOException {
+        try (final GcWindowIndex index = GcWindowIndex.open(buildIndex())) {
+            Assert.assertEquals(index.getWindowSize(), WINDOW_SIZE);
+            Assert.assertEquals(index.getWindowsByGc(), GcBiasUtils.calculateRefWindowsByGc(101, REFERENCE, WINDOW_SIZE));
+
+            final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(REFERENCE);
+            ReferenceSequence ref;
+            while ((ref = refFile.nextSequence()) != null) {
+                final byte[] bases = ref.getBases();
+                StringUtil.toUpperCase(bases);
+                final ByteBuffer indexedGcs = index.getGcs(ref.getContigIndex());
+                final byte[] gcs = new byte[indexedGcs.remaining()];
+                indexedGcs.duplicate().get(gcs);
+                Assert.assertEquals(gcs, GcBiasUtils.calculateAllGcs(bases, bases.length - WINDOW_SIZE, WINDOW_SIZE));
+            }
+        }
+    }
+
+    @Test
+    public void testValidate() throws IOException {
+        try (final GcWindowIndex index = GcWindowIndex.open(buildIndex())) {
+            index.validate(SAMSequenceDictionaryExtractor.extractDictionary(DICT.toPath()), WINDOW_SIZE);
+        }
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testValidateWrongWindowSize() throws IOException {
+        try (final GcWindowIndex index = GcWindowIndex.open(buildIndex())) {
+            index.validate(SAMSequenceDictionaryExtractor.extractDictionary(DICT.toPath()), WINDOW_SIZE + 1);
+        }
+    }
+
+    @Test(expectedExceptions = PicardException.class)
+    public void testNotAnIndex() {
+        GcWindowIndex.open(DICT);
+    }
+}
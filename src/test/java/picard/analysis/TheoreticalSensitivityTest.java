@@ -297,6 +297,49 @@ public class TheoreticalSensitivityTest {
         Assert.assertEquals(result, expected, tolerance);
     }
 
+    @Test
+    public void testSensitivityIsMemoizedAndOrdered() throws Exception {
+        final File metricsFile = new File(TEST_DIR, "test_Solexa-332667.wgs_metrics");
+        final MetricsFile<?, Integer> metrics = new MetricsFile<>();
+        try (final FileReader metricsFileReader = new FileReader(metricsFile)) {
+            metrics.read(metricsFileReader);
+        }
+
+        final List<Histogram<Integer>> histograms = metrics.getAllHistograms();
+        final Histogram<Integer> depthHistogram = histograms.get(0);
+        final Histogram<Integer> qualityHistogram = histograms.get(1);
+
+        // Start from an empty memo so that nothing computed by other tests can be returned.
+        TheoreticalSensitivity.clearMemoizedSensitivities();
+        Assert.assertEquals(TheoreticalSensitivity.memoizedSensitivityCount(), 0);
+
+        // The memoized result must be what the simulation gives, and a histogram with the same content must hit it.
+        final Histogram<Integer> qualityHistogramCopy = new Histogram<>(qualityHistogram);
+        final double first = TheoreticalSensitivity.sensitivityAtConstantDepth(37, qualityHistogram, 3, 200, 0.3, 17);
+        Assert.assertEquals(first, TheoreticalSensitivity.simulateSensitivityAtConstantDepth(37, qualityHistogram, 3, 200, 0.3, 17));
+        Assert.assertEquals(TheoreticalSensitivity.memoizedSensitivityCount(), 1);
+        final double second = TheoreticalSensitivity.sensitivityAtConstantDepth(37, qualityHistogramCopy, 3, 200, 0.3, 17);
+        Assert.assertEquals(second, first);
+        Assert.assertEquals(TheoreticalSensitivity.memoizedSensitivityCount(), 1);
+
+        // Sensitivities over several allele fractions are computed in parallel but must come back in order, with the
+        // values computed one at a time, each from an empty memo.
+        final List<Double> alleleFractions = Arrays.asList(0.05, 0.1, 0.3, 0.5);
+        final List<Double> expected = new ArrayList<>();
+        for (final double alleleFraction : alleleFractions) {
+            TheoreticalSensitivity.clearMemoizedSensitivities();
+            expected.add(TheoreticalSensitivity.theoreticalSensitivity(depthHistogram, qualityHistogram, 100, 6.2, alleleFraction));
+        }
+        TheoreticalSensitivity.clearMemoizedSensitivities();
+        final List<TheoreticalSensitivityMetrics> sensitivities =
+                TheoreticalSensitivity.calculateSensitivities(100, depthHistogram, qualityHistogram, alleleFractions);
+        Assert.assertEquals(sensitivities.size(), alleleFractions.size());
+        for (int i = 0; i < alleleFractions.size(); i++) {
+            Assert.assertEquals(sensitivities.get(i).ALLELE_FRACTION, alleleFractions.get(i));
+            Assert.assertEquals(sensitivities.get(i).THEORETICAL_SENSITIVITY, expected.get(i));
+        }
+    }
+
     @DataProvider(name = "equivalanceHetVsArbitrary")
     public Object[][] equivalenceHetVsFull() {
         final File wgsMetricsFile = new File(TEST_DIR, "test_Solexa-332667.wgs_metrics");
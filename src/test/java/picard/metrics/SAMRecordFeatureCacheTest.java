@@ -0,0 +1,42 @@
+package picard.metrics;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.SamPairUtil;
+import htsjdk.samtools.util.SequenceUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SAMRecordFeatureCacheTest {
+
+    @Test
+    public void testFeaturesAreComputedOncePerRecord() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        final List<SAMRecord> pair = builder.addPair("pair", 0, 1, 101);
+        final SAMRecord first = pair.get(0);
+        final SAMRecord second = pair.get(1);
+        final byte[] refBases = new byte[200];
+        Arrays.fill(refBases, (byte) 'A');
+
+        final SAMRecordFeatureCache cache = new SAMRecordFeatureCache();
+
+        Assert.assertEquals(cache.getPairOrientation(first), SamPairUtil.getPairOrientation(first));
+        Assert.assertEquals(cache.getPairOrientation(first), SamPairUtil.getPairOrientation(first));
+        Assert.assertEquals(cache.getAlignmentBlocks(first), first.getAlignmentBlocks());
+        Assert.assertEquals(cache.getAlignedBaseCount(first), first.getReadLength());
+        Assert.assertEquals(cache.getMismatchCount(first, refBases, false), SequenceUtil.countMismatches(first, refBases, false));
+        Assert.assertEquals(cache.getMismatchCount(first, refBases, false), SequenceUtil.countMismatches(first, refBases, false));
+        Assert.assertEquals(cache.getIndelBaseCount(first), 0);
+        Assert.assertEquals(cache.getMisses(), 5);
+        Assert.assertEquals(cache.getHits(), 2);
+
+        // A different record starts from scratch
+        Assert.assertEquals(cache.getPairOrientation(second), SamPairUtil.getPairOrientation(second));
+        Assert.assertEquals(cache.getMisses(), 6);
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getHitRate(), 2 / 8.0);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2024 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package picard.reference;
+
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.reference.ReferenceSequenceFileWalker;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class ReferenceCacheTest {
+    private static final File TEST_DATA_DIR = new File("testdata/picard/sam");
+
+    /** Copies the test reference and its dictionary to a fresh directory, so that caches are not written into the test data. */
+    private static File copyReference() throws IOException {
+        final File dir = Files.createTempDirectory("ReferenceCacheTest").toFile();
+        IOUtil.deleteOnExit(dir.toPath());
+        final File fasta = new File(dir, "merger.fasta");
+        Files.copy(new File(TEST_DATA_DIR, "merger.fasta").toPath(), fasta.toPath());
+        Files.copy(new File(TEST_DATA_DIR, "merger.dict").toPath(), new File(dir, "merger.dict").toPath());
+        return fasta;
+    }
+
+    @Test
+    public void testCacheMatchesFasta() throws IOException {
+        final File fasta = copyReference();
+        Assert.assertNull(ReferenceCache.forReference(fasta));
+
+        Assert.assertEquals(new CreateReferenceCache().instanceMain(new String[]{"R=" + fasta.getAbsolutePath()}), 0);
+        Assert.assertTrue(ReferenceCache.cacheFileFor(fasta).exists());
+
+        final ReferenceCache cache = ReferenceCache.forReference(fasta);
+        Assert.assertNotNull(cache);
+        Assert.assertSame(ReferenceCache.forReference(fasta), cache);
+
+        try (final ReferenceSequenceFile refFile = ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta)) {
+            Assert.assertEquals(cache.getSequenceDictionary(), refFile.getSequenceDictionary());
+
+            ReferenceSequence ref;
+            int contigs = 0;
+            while ((ref = refFile.nextSequence()) != null) {
+                final ReferenceSequence cached = cache.getSequence(ref.getContigIndex());
+                Assert.assertEquals(cached.getName(), ref.getName());
+                Assert.assertEquals(cached.getBases(), ref.getBases());
+
+                final int stop = Math.min(ref.length(), 20);
+                final ByteBuffer view = cache.getBases(ref.getContigIndex(), 5, stop);
+                final byte[] viewed = new byte[view.remaining()];
+                view.get(viewed);
+                Assert.assertEquals(viewed, Arrays.copyOfRange(ref.getBases(), 4, stop));
+                contigs++;
+            }
+            Assert.assertEquals(contigs, cache.getSequenceDictionary().size());
+        }
+    }
+
+    @Test
+    public void testWalkerReadsFromCache() throws IOException {
+        final File fasta = copyReference();
+        ReferenceCache.build(fasta);
+
+        final ReferenceCache cache = ReferenceCache.forReference(fasta);
+        Assert.assertNotNull(cache);
+        try (final ReferenceSequenceFileWalker cached = new ReferenceSequenceFileWalker(cache.newReferenceSequenceFile());
+             final ReferenceSequenceFileWalker uncached = new ReferenceSequenceFileWalker(fasta)) {
+            for (int i = 0; i < uncached.getSequenceDictionary().size(); ++i) {
+                Assert.assertEquals(cached.get(i).getBases(), uncached.get(i).getBases());
+            }
+        }
+    }
+
+    @Test
+    public void testChangedFastaIgnoresCache() throws IOException {
+        final File fasta = copyReference();
+        ReferenceCache.build(fasta);
+        Assert.assertNotNull(ReferenceCache.forReference(fasta));
+
+        Assert.assertTrue(fasta.setLastModified(fasta.lastModified() - 60000));
+        Assert.assertNull(ReferenceCache.forReference(fasta));
+    }
+
+    @Test
+    public void testRewrittenFastaWithSameSizeAndTimeIgnoresCache() throws IOException {
+        final File fasta = copyReference();
+        ReferenceCache.build(fasta);
+        Assert.assertNotNull(ReferenceCache.forReference(fasta));
+
+        // swap two bases of the last line, keeping the size and modification time of the FASTA
+        final long lastModified = fasta.lastModified();
+        final byte[] contents = Files.readAllBytes(fasta.toPath());
+        int last = contents.length - 1;
+        while (contents[last] == '\n') last--;
+        int other = last - 1;
+        while (contents[other] == contents[last] || contents[other] == '\n') other--;
+        final byte base = contents[last];
+        contents[last] = contents[other];
+        contents[other] = base;
+        Files.write(fasta.toPath(), contents);
+        Assert.assertTrue(fasta.setLastModified(lastModified));
+
+        Assert.assertNull(ReferenceCache.forReference(fasta));
+    }
+
+    @Test
+    public void testRebuiltCacheIsReopened() throws IOException {
+        final File fasta = copyReference();
+        ReferenceCache.build(fasta);
+        final ReferenceCache cache = ReferenceCache.forReference(fasta);
+        Assert.assertNotNull(cache);
+
+        Assert.assertTrue(fasta.setLastModified(fasta.lastModified() - 60000));
+        Assert.assertNull(ReferenceCache.forReference(fasta));
+        ReferenceCache.build(fasta);
+
+        final ReferenceCache rebuilt = ReferenceCache.forReference(fasta);
+        Assert.assertNotNull(rebuilt);
+        Assert.assertNotSame(rebuilt, cache);
+        Assert.assertEquals(rebuilt.getSequence(0).getBases(), cache.getSequence(0).getBases());
+    }
+}
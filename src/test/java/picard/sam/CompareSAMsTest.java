@@ -23,8 +23,17 @@
  */
 package picard.sam;
 
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.Histogram;
+import htsjdk.samtools.util.StringUtil;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -33,8 +42,11 @@ import picard.cmdline.CommandLineProgramTest;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -194,4 +206,155 @@ public class CompareSAMsTest extends CommandLineProgramTest {
             Assert.assertEquals(mqConcordanceHistogram, expectedMQConcordanceHistogram);
         }
     }
+
+    @DataProvider(name="compareSamsSharded")
+    public Object[][] compareSamsShardedTestData() {
+        final List<String> lenientArgs = Arrays.asList("LENIENT_DUP=true", "LENIENT_LOW_MQ_ALIGNMENT=true");
+        return new Object[][] {
+                {"genomic_sorted.sam", "genomic_sorted.sam", Collections.emptyList()},
+                {"genomic_sorted_5.sam", "genomic_sorted_5_plus.sam", Collections.emptyList()},
+                {"group_same_coord.sam", "diff_coords.sam", Collections.emptyList()},
+                {"genomic_sorted.sam", "unmapped_first.sam", Collections.emptyList()},
+                {"unmapped_first.sam", "unmapped_second.sam", Collections.emptyList()},
+                {"duplicate_base.sam", "duplicate_four_mismatch_lenient.sam", lenientArgs},
+                {"duplicate_base.sam", "duplicate_four_mismatch_strict.sam", Collections.emptyList()},
+                {"mq0_1.sam", "mq0_2.sam", lenientArgs}
+        };
+    }
+
+    @Test(dataProvider = "compareSamsSharded")
+    public void testShardedMatchesUnsharded(final String f1, final String f2, final List<String> args) throws IOException {
+        final File tmpDir = Files.createTempDirectory("compareSamSharded").toFile();
+        tmpDir.deleteOnExit();
+        final File bam1 = toIndexedBam(new File(TEST_FILES_DIR, f1), new File(tmpDir, "1.bam"));
+        final File bam2 = toIndexedBam(new File(TEST_FILES_DIR, f2), new File(tmpDir, "2.bam"));
+
+        final File unsharded = new File(tmpDir, "unsharded.tsv");
+        final File sharded = new File(tmpDir, "sharded.tsv");
+        unsharded.deleteOnExit();
+        sharded.deleteOnExit();
+        final int unshardedResult = runCompareSams(bam1, bam2, unsharded, 1, args);
+        final int shardedResult = runCompareSams(bam1, bam2, sharded, 4, args);
+        Assert.assertEquals(shardedResult, unshardedResult);
+
+        final MetricsFile<SamComparisonMetric, String> unshardedMetrics = new MetricsFile<>();
+        unshardedMetrics.read(new FileReader(unsharded));
+        final MetricsFile<SamComparisonMetric, String> shardedMetrics = new MetricsFile<>();
+        shardedMetrics.read(new FileReader(sharded));
+        Assert.assertEquals(shardedMetrics.getMetrics(), unshardedMetrics.getMetrics());
+        Assert.assertEquals(shardedMetrics.getHistogram(), unshardedMetrics.getHistogram());
+    }
+
+    /**
+     * Places reads around the 10 Mb boundaries between the shards of a sharded comparison: reads which overlap the start
+     * of the next shard, reads which moved to another shard or contig, or within a shard, and reads which are unmapped or
+     * missing in the right input.
+     */
+    @Test
+    public void testShardedMatchesUnshardedAcrossShardBoundaries() throws IOException {
+        final File tmpDir = Files.createTempDirectory("compareSamShardBoundaries").toFile();
+        tmpDir.deleteOnExit();
+        final SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.coordinate);
+        header.setSequenceDictionary(new SAMSequenceDictionary(Arrays.asList(
+                new SAMSequenceRecord("chr1", 25_000_000), new SAMSequenceRecord("chr2", 25_000_000))));
+
+        final List<SAMRecord> left = new ArrayList<>();
+        final List<SAMRecord> right = new ArrayList<>();
+        for (final Object[] read : new Object[][] {
+                {"match", "chr1", 1_000},
+                {"straddle1", "chr1", 9_999_990},
+                {"match2", "chr1", 12_000_000},
+                {"straddle2", "chr1", 19_999_990},
+                {"lastShard", "chr1", 24_999_000},
+                {"straddle3", "chr2", 10_000_000}}) {
+            left.add(fragment(header, (String) read[0], (String) read[1], (Integer) read[2]));
+            right.add(fragment(header, (String) read[0], (String) read[1], (Integer) read[2]));
+        }
+        left.add(fragment(header, "movedShard", "chr1", 5_000_000));
+        right.add(fragment(header, "movedShard", "chr1", 15_000_000));
+        left.add(fragment(header, "movedContig", "chr1", 100));
+        right.add(fragment(header, "movedContig", "chr2", 100));
+        left.add(fragment(header, "movedWithinShard", "chr2", 1_000));
+        right.add(fragment(header, "movedWithinShard", "chr2", 2_000));
+        left.add(fragment(header, "unmappedRight", "chr1", 9_999_995));
+        right.add(fragment(header, "unmappedRight", null, 0));
+        left.add(fragment(header, "unmappedBoth", null, 0));
+        right.add(fragment(header, "unmappedBoth", null, 0));
+        left.add(fragment(header, "missingRight", "chr2", 10_000_005));
+
+        final File bam1 = writeIndexedBam(header, left, new File(tmpDir, "1.bam"));
+        final File bam2 = writeIndexedBam(header, right, new File(tmpDir, "2.bam"));
+        final File unsharded = new File(tmpDir, "unsharded.tsv");
+        final File sharded = new File(tmpDir, "sharded.tsv");
+        unsharded.deleteOnExit();
+        sharded.deleteOnExit();
+        final int unshardedResult = runCompareSams(bam1, bam2, unsharded, 1, Collections.emptyList());
+        final int shardedResult = runCompareSams(bam1, bam2, sharded, 4, Collections.emptyList());
+        Assert.assertEquals(shardedResult, unshardedResult);
+
+        final MetricsFile<SamComparisonMetric, String> unshardedMetrics = new MetricsFile<>();
+        unshardedMetrics.read(new FileReader(unsharded));
+        final MetricsFile<SamComparisonMetric, String> shardedMetrics = new MetricsFile<>();
+        shardedMetrics.read(new FileReader(sharded));
+        Assert.assertEquals(shardedMetrics.getMetrics(), unshardedMetrics.getMetrics());
+        Assert.assertEquals(shardedMetrics.getHistogram(), unshardedMetrics.getHistogram());
+
+        final SamComparisonMetric metric = shardedMetrics.getMetrics().get(0);
+        Assert.assertEquals(metric.MAPPINGS_MATCH, 6);
+        Assert.assertEquals(metric.MAPPINGS_DIFFER, 3);
+        Assert.assertEquals(metric.UNMAPPED_RIGHT, 1);
+        Assert.assertEquals(metric.UNMAPPED_BOTH, 1);
+        Assert.assertEquals(metric.MISSING_RIGHT, 1);
+        Assert.assertEquals(metric.MISSING_LEFT, 0);
+    }
+
+    /** A 36 base read aligned at the given start, or unmapped with no position when contig is null. */
+    private static SAMRecord fragment(final SAMFileHeader header, final String name, final String contig, final int start) {
+        final SAMRecord rec = new SAMRecord(header);
+        rec.setReadName(name);
+        if (contig == null) {
+            rec.setReadUnmappedFlag(true);
+        } else {
+            rec.setReferenceName(contig);
+            rec.setAlignmentStart(start);
+            rec.setCigarString("36M");
+            rec.setMappingQuality(30);
+        }
+        rec.setReadString(StringUtil.repeatCharNTimes('A', 36));
+        rec.setBaseQualityString(StringUtil.repeatCharNTimes('I', 36));
+        return rec;
+    }
+
+    private static File writeIndexedBam(final SAMFileHeader header, final List<SAMRecord> records, final File bam) {
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(header, false, bam)) {
+            records.forEach(writer::addAlignment);
+        }
+        bam.deleteOnExit();
+        new File(bam.getParentFile(), bam.getName().replaceAll("\\.bam$", ".bai")).deleteOnExit();
+        return bam;
+    }
+
+    private int runCompareSams(final File in1, final File in2, final File output, final int threads, final List<String> args) {
+        final List<String> commandArgs = new ArrayList<>(Arrays.asList(
+                in1.getAbsolutePath(),
+                in2.getAbsolutePath(),
+                "O=" + output,
+                "COMPARE_MQ=true",
+                "THREADS=" + threads));
+        commandArgs.addAll(args);
+        return runPicardCommandLine(commandArgs);
+    }
+
+    private static File toIndexedBam(final File sam, final File bam) throws IOException {
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(sam);
+             final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(reader.getFileHeader(), true, bam)) {
+            for (final SAMRecord rec : reader) {
+                writer.addAlignment(rec);
+            }
+        }
+        bam.deleteOnExit();
+        new File(bam.getParentFile(), bam.getName().replaceAll("\\.bam$", ".bai")).deleteOnExit();
+        return bam;
+    }
 }
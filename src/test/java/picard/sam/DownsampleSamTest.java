@@ -156,6 +156,42 @@ public class DownsampleSamTest extends CommandLineProgramTest {
         return downsampled;
     }
 
+    @DataProvider(name = "ShardedDownsamplingProvider")
+    public Object[][] shardedDownsamplingProvider() {
+        return new Object[][]{{0.3, 1}, {0.5, 42}, {0.9, 7}};
+    }
+
+    // downsampling an indexed bam contig by contig must keep the same reads, in the same order, as downsampling it whole
+    @Test(dataProvider = "ShardedDownsamplingProvider")
+    public void testShardedDownsamplingMatchesSingleThreaded(final double fraction, final int seed) throws IOException {
+        final List<String> singleThreaded = downsampleRecords(fraction, seed, 1);
+        final List<String> sharded = downsampleRecords(fraction, seed, 4);
+        Assert.assertFalse(singleThreaded.isEmpty());
+        Assert.assertEquals(sharded, singleThreaded);
+    }
+
+    private List<String> downsampleRecords(final double fraction, final int seed, final int threads) throws IOException {
+        final File downsampled = File.createTempFile("DownsampleSam", ".bam", tempDir);
+        final String[] args = new String[]{
+                "INPUT=" + tempSamFile.getAbsolutePath(),
+                "OUTPUT=" + downsampled.getAbsolutePath(),
+                "PROBABILITY=" + fraction,
+                "STRATEGY=" + ConstantMemory.name(),
+                "RANDOM_SEED=" + seed,
+                "THREADS=" + threads,
+                "CREATE_INDEX=true"
+        };
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(downsampled)) {
+            for (final SAMRecord record : reader) {
+                records.add(record.getSAMString());
+            }
+        }
+        return records;
+    }
+
     @DataProvider(name = "RepeatedDownsamplingProvider")
     public Object[][] repeatedDownsamplingProvider() {
         final List<Object[]> rets = new ArrayList<>();
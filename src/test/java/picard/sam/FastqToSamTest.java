@@ -24,6 +24,7 @@
 package picard.sam;
 
 import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
@@ -164,6 +165,33 @@ public class FastqToSamTest extends CommandLineProgramTest {
         convertFile(filename1, filename2, version);
     }
 
+    @Test(dataProvider = "okPairedFiles")
+    public void testThreadedPairedMatchesSingleThreaded(final String filename1, final String filename2, final FastqQualityFormat version) throws IOException {
+        Assert.assertEquals(readSamStrings(convertFile(filename1, filename2, version, false, false, 3)),
+                readSamStrings(convertFile(filename1, filename2, version, false, false, 1)));
+    }
+
+    @Test(dataProvider = "okVersionFiles")
+    public void testThreadedUnpairedMatchesSingleThreaded(final String fastqVersionFilename, final FastqQualityFormat version) throws IOException {
+        Assert.assertEquals(readSamStrings(convertFile(fastqVersionFilename, null, version, false, false, 3)),
+                readSamStrings(convertFile(fastqVersionFilename, null, version, false, false, 1)));
+    }
+
+    @Test(dataProvider = "badPairedFiles", expectedExceptions= PicardException.class)
+    public void testThreadedPairedBad(final String filename1, final String filename2) throws IOException {
+        convertFile(filename1, filename2, FastqQualityFormat.Standard, false, false, 3);
+    }
+
+    private static List<String> readSamStrings(final File samFile) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(samFile)) {
+            for (final SAMRecord rec : reader) {
+                records.add(rec.getSAMString());
+            }
+        }
+        return records;
+    }
+
     private File convertFile(final String filename, final FastqQualityFormat version) throws IOException {
         return convertFile(filename, null, version);
     }
@@ -181,6 +209,15 @@ public class FastqToSamTest extends CommandLineProgramTest {
                              final FastqQualityFormat version,
                              final boolean permissiveFormat,
                              final boolean useSequentialFastqs) throws IOException {
+        return convertFile(fastqFilename1, fastqFilename2, version, permissiveFormat, useSequentialFastqs, 1);
+    }
+
+    private File convertFile(final String fastqFilename1,
+                             final String fastqFilename2,
+                             final FastqQualityFormat version,
+                             final boolean permissiveFormat,
+                             final boolean useSequentialFastqs,
+                             final int threads) throws IOException {
         final File fastq1 = new File(TEST_DATA_DIR, fastqFilename1);
         final File fastq2 = (fastqFilename2 != null) ? new File(TEST_DATA_DIR, fastqFilename2) : null;
         final File samFile = newTempSamFile(fastq1.getName());
@@ -196,6 +233,7 @@ public class FastqToSamTest extends CommandLineProgramTest {
         if (fastqFilename2 != null) args.add("FASTQ2=" + fastq2.getAbsolutePath());
         if (permissiveFormat) args.add("ALLOW_AND_IGNORE_EMPTY_LINES=true");
         if (useSequentialFastqs) args.add("USE_SEQUENTIAL_FASTQS=true");
+        if (threads > 1) args.add("THREADS=" + threads);
 
         Assert.assertEquals(runPicardCommandLine(args), 0);
         return samFile ;
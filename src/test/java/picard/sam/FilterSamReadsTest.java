@@ -23,6 +23,7 @@
  */
 package picard.sam;
 
+import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMFileWriter;
 import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMRecord;
@@ -43,6 +44,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 
@@ -74,9 +76,18 @@ public class FilterSamReadsTest extends CommandLineProgramTest {
                 "prove_one_of_pair",
                 "one_of_pair");
 
+        // only the first word of a line is a read name, and names may be repeated
+        List<String> annotatedReads = Arrays.asList(
+                "mapped_pair_chr1\tsome comment",
+                "mapped_pair_chr1",
+                "",
+                "one_of_pair ");
+
         return new Object[][]{
                 {FilterSamReads.Filter.includeReadList, reads, 3 * 2},
-                {FilterSamReads.Filter.excludeReadList, reads, 1 * 2}
+                {FilterSamReads.Filter.excludeReadList, reads, 1 * 2},
+                {FilterSamReads.Filter.includeReadList, annotatedReads, 2 * 2},
+                {FilterSamReads.Filter.excludeReadList, annotatedReads, 2 * 2}
         };
     }
 
@@ -270,6 +281,45 @@ public class FilterSamReadsTest extends CommandLineProgramTest {
         Assert.assertEquals(count, expectNumber);
     }
 
+    /**
+     * filters an indexed BAM using an interval filter, which reads it through the index, and checks that the same
+     * reads are kept as when filtering the same reads from a SAM without an index
+     */
+    @Test(dataProvider = "dataTestPairedIntervalFilter")
+    public void testIndexedPairedIntervalFilter(final String intervalFilename, final int ignored) throws Exception {
+        final SAMRecordSetBuilder pairs = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        pairs.setReadLength(READ_LENGTH);
+        pairs.addPair("in_interval", 0, 1, 151);
+        pairs.addPair("mate_in_interval", 0, 1, 5000);
+        pairs.addPair("outside_interval", 0, 2000, 3000);
+        pairs.addPair("mate_on_other_contig", 0, 1, 100, 500, false, false, "151M", "151M", false, true, false, false, 30);
+        pairs.addPair("mate_on_first_contig", 1, 0, 700, 50, false, false, "151M", "151M", false, true, false, false, 30);
+        pairs.addPair("on_other_contig", 1, 100, 300);
+        pairs.addUnmappedPair("unmapped");
+
+        final File indexedBam = File.createTempFile("testSam", ".bam");
+        indexedBam.deleteOnExit();
+        final File bamIndex = new File(indexedBam.getParentFile(), IOUtil.basename(indexedBam) + ".bai");
+        bamIndex.deleteOnExit();
+        final File unindexedSam = File.createTempFile("testSam", ".sam");
+        unindexedSam.deleteOnExit();
+        try (final SAMFileWriter bamWriter = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(pairs.getHeader(), true, indexedBam);
+             final SAMFileWriter samWriter = new SAMFileWriterFactory().makeSAMWriter(pairs.getHeader(), true, unindexedSam)) {
+            for (final SAMRecord record : pairs) {
+                bamWriter.addAlignment(record);
+                samWriter.addAlignment(record);
+            }
+        }
+
+        final File intervalFile = new File(TEST_DIR, intervalFilename);
+        final FilterSamReads indexedFilter = setupProgram(intervalFile, indexedBam, FilterSamReads.Filter.includePairedIntervals);
+        Assert.assertEquals(indexedFilter.doWork(), 0);
+        final FilterSamReads unindexedFilter = setupProgram(intervalFile, unindexedSam, FilterSamReads.Filter.includePairedIntervals);
+        Assert.assertEquals(unindexedFilter.doWork(), 0);
+
+        Assert.assertEquals(getReads(indexedFilter), getReads(unindexedFilter));
+    }
+
     @DataProvider(name = "dataTestDebugOption")
     public Object[][] dataTestDebugOption() {
         return new Object[][]{
@@ -368,6 +418,14 @@ public class FilterSamReadsTest extends CommandLineProgramTest {
         return count;
     }
 
+    private List<String> getReads(final FilterSamReads filterTest) throws Exception {
+        try (final SamReader samReader = SamReaderFactory.makeDefault().open(filterTest.OUTPUT)) {
+            return StreamSupport.stream(samReader.spliterator(), false)
+                    .map(SAMRecord::getSAMString)
+                    .collect(Collectors.toList());
+        }
+    }
+
     private static String getFilenameExtension(String samFilename) {
         final String[] split = samFilename.split("\\.");
         return "." + split[split.length - 1];
@@ -2090,5 +2090,92 @@ public class MergeBamAlignmentTest extends CommandLineProgramTest {
             runPicardCommandLine(args);
         }
     }
-}
 
+    @DataProvider(name = "threadedMergeData")
+    public Object[][] threadedMergeData() {
+        return new Object[][]{
+                {unmappedBam, alignedBam, SAMFileHeader.SortOrder.coordinate},
+                {unmappedBam, alignedBam, SAMFileHeader.SortOrder.queryname},
+                {unmappedBam, supplementalReadAlignedBam, SAMFileHeader.SortOrder.coordinate},
+                {unmappedBam, alignedQuerynameSortedBam, SAMFileHeader.SortOrder.coordinate}
+        };
+    }
+
+    @Test(dataProvider = "threadedMergeData")
+    public void testThreadedMergeMatchesSingleThreaded(final File unmapped, final File aligned, final SAMFileHeader.SortOrder sortOrder) throws IOException {
+        final List<String> singleThreaded = mergeRecords(unmapped, aligned, sortOrder, 1);
+        Assert.assertFalse(singleThreaded.isEmpty());
+        Assert.assertEquals(mergeRecords(unmapped, aligned, sortOrder, 3), singleThreaded);
+    }
+
+    @DataProvider(name = "threadedMergeSortOrders")
+    public Object[][] threadedMergeSortOrders() {
+        return new Object[][]{
+                {SAMFileHeader.SortOrder.coordinate},
+                {SAMFileHeader.SortOrder.queryname}
+        };
+    }
+
+    // enough read pairs for several batches of AbstractAlignmentMerger.MERGE_BATCH_SIZE to be merged at once
+    @Test(dataProvider = "threadedMergeSortOrders")
+    public void testThreadedMergeOfManyBatchesMatchesSingleThreaded(final SAMFileHeader.SortOrder sortOrder) throws IOException {
+        final int pairs = 3 * AbstractAlignmentMerger.MERGE_BATCH_SIZE + 17;
+        final SAMRecordSetBuilder unmappedBuilder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.queryname);
+        unmappedBuilder.setRandomSeed(12345);
+        unmappedBuilder.getHeader().setSequenceDictionary(SAMSequenceDictionaryExtractor.extractDictionary(fasta.toPath()));
+        final SAMRecordSetBuilder alignedBuilder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.queryname);
+        alignedBuilder.setRandomSeed(12345);
+        alignedBuilder.getHeader().setSequenceDictionary(SAMSequenceDictionaryExtractor.extractDictionary(fasta.toPath()));
+
+        final int contig = alignedBuilder.getHeader().getSequenceIndex("chr7");
+        for (int i = 0; i < pairs; i++) {
+            final String readName = "pair" + i;
+            unmappedBuilder.addUnmappedPair(readName);
+            // leave some pairs without alignments, so that batches mix merged and unmerged reads
+            if (i % 11 != 0) {
+                alignedBuilder.addPair(readName, contig, 1 + i % 300, 1 + (7 * i) % 300);
+            }
+        }
+
+        final File unmappedSam = File.createTempFile("manyBatches.unmapped.", ".sam");
+        unmappedSam.deleteOnExit();
+        final File alignedSam = File.createTempFile("manyBatches.aligned.", ".sam");
+        alignedSam.deleteOnExit();
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory();
+        try (final SAMFileWriter unmappedWriter = factory.makeSAMWriter(unmappedBuilder.getHeader(), true, unmappedSam);
+             final SAMFileWriter alignedWriter = factory.makeSAMWriter(alignedBuilder.getHeader(), true, alignedSam)) {
+            for (final SAMRecord rec : unmappedBuilder) {
+                unmappedWriter.addAlignment(rec);
+            }
+            for (final SAMRecord rec : alignedBuilder) {
+                alignedWriter.addAlignment(rec);
+            }
+        }
+
+        final List<String> singleThreaded = mergeRecords(unmappedSam, alignedSam, sortOrder, 1);
+        Assert.assertEquals(singleThreaded.size(), 2 * pairs);
+        Assert.assertEquals(mergeRecords(unmappedSam, alignedSam, sortOrder, 3), singleThreaded);
+    }
+
+    private List<String> mergeRecords(final File unmapped, final File aligned, final SAMFileHeader.SortOrder sortOrder, final int threads) throws IOException {
+        final File output = File.createTempFile("threadedMerge", ".sam");
+        output.deleteOnExit();
+        final List<String> args = Arrays.asList(
+                "UNMAPPED_BAM=" + unmapped.getAbsolutePath(),
+                "ALIGNED_BAM=" + aligned.getAbsolutePath(),
+                "OUTPUT=" + output.getAbsolutePath(),
+                "REFERENCE_SEQUENCE=" + fasta.getAbsolutePath(),
+                "SORT_ORDER=" + sortOrder,
+                "THREADS=" + threads
+        );
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(output)) {
+            for (final SAMRecord rec : reader) {
+                records.add(rec.getSAMString());
+            }
+        }
+        return records;
+    }
+}
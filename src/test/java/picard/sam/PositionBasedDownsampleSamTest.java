@@ -7,6 +7,8 @@ import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordSetBuilder;
 import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.util.BufferedLineReader;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.utils.ValidationUtils;
@@ -135,6 +137,34 @@ public class PositionBasedDownsampleSamTest extends CommandLineProgramTest {
         testDownsampleWorker(tempSamFile, fraction);
     }
 
+    // downsampling an indexed bam contig by contig must keep the same reads, in the same order, as downsampling it whole
+    @Test(dataProvider = "ValidArgumentsTestProvider")
+    public void testShardedDownsamplingMatchesSingleThreaded(final double fraction) throws IOException {
+        final List<String> singleThreaded = downsampleRecords(fraction, 1);
+        final List<String> sharded = downsampleRecords(fraction, 4);
+        Assert.assertFalse(singleThreaded.isEmpty());
+        Assert.assertEquals(sharded, singleThreaded);
+    }
+
+    private List<String> downsampleRecords(final double fraction, final int threads) throws IOException {
+        final File downsampled = File.createTempFile("PositionalDownsampleSam", ".bam", tempDir);
+        final String[] args = new String[]{
+                "INPUT=" + tempSamFile.getAbsolutePath(),
+                "OUTPUT=" + downsampled.getAbsolutePath(),
+                "FRACTION=" + fraction,
+                "THREADS=" + threads
+        };
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(downsampled)) {
+            for (final SAMRecord record : reader) {
+                records.add(record.getSAMString());
+            }
+        }
+        return records;
+    }
+
     public void testDownsampleWorker(final File samFile, final double fraction) throws IOException {
 
         final File downsampled = File.createTempFile("PositionalDownsampleSam", ".bam", tempDir);
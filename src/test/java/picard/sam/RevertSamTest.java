@@ -209,6 +209,52 @@ public class RevertSamTest extends CommandLineProgramTest {
         Assert.assertEquals(runPicardCommandLine(args), 0, "Sanitation of single-end sample failed.");
     }
 
+    @Test
+    public void testConcurrentSanitizeByReadGroupMatchesSingleThreaded() throws Exception {
+        final File singleThreadedDir = Files.createTempDirectory("picardRevertSamTest").toFile();
+        final File multiThreadedDir = Files.createTempDirectory("picardRevertSamTest").toFile();
+        singleThreadedDir.deleteOnExit();
+        multiThreadedDir.deleteOnExit();
+
+        for (final File outputDir : Arrays.asList(singleThreadedDir, multiThreadedDir)) {
+            final String args[] = {
+                    "INPUT=" + basicSamToRevert,
+                    "OUTPUT=" + outputDir.getAbsolutePath(),
+                    "OUTPUT_BY_READGROUP=true",
+                    "SANITIZE=true",
+                    "MAX_RECORDS_IN_RAM=4",
+                    "THREADS=" + (outputDir == singleThreadedDir ? 1 : 3)
+            };
+            Assert.assertEquals(runPicardCommandLine(args), 0);
+        }
+
+        for (final String readGroupId : Arrays.asList("0", "1", "2", "3")) {
+            final File expected = new File(singleThreadedDir, readGroupId + ".sam");
+            final File actual = new File(multiThreadedDir, readGroupId + ".sam");
+            expected.deleteOnExit();
+            actual.deleteOnExit();
+            Assert.assertEquals(readSamStrings(actual), readSamStrings(expected), "Read group " + readGroupId);
+        }
+    }
+
+    @Test
+    public void testThreadsRequireSanitizeByReadGroup() throws Exception {
+        final File output = File.createTempFile("reverted", ".sam");
+        output.deleteOnExit();
+        final String args[] = { "INPUT=" + basicSamToRevert, "OUTPUT=" + output.getAbsolutePath(), "SANITIZE=true", "THREADS=2" };
+        Assert.assertEquals(runPicardCommandLine(args), 1);
+    }
+
+    private static List<String> readSamStrings(final File samFile) throws Exception {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(samFile)) {
+            for (final SAMRecord rec : reader) {
+                records.add(rec.getSAMString());
+            }
+        }
+        return records;
+    }
+
     private void verifyPositiveResults(
             final File outputFile,
             final RevertSam reverter,
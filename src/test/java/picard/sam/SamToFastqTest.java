@@ -24,8 +24,12 @@
 package picard.sam;
 
 import htsjdk.samtools.SAMException;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
 import htsjdk.samtools.SAMFormatException;
 import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordSetBuilder;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.fastq.FastqReader;
@@ -40,10 +44,13 @@ import picard.PicardException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -173,6 +180,93 @@ public class SamToFastqTest extends CommandLineProgramTest {
         }
     }
 
+    @Test(dataProvider = "okFiles")
+    public void testThreadedCompressedOutputMatchesSingleThreaded(final String samFilename) throws IOException {
+        final File samFile = new File(TEST_DATA_DIR, samFilename);
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final int threads : new int[]{1, 3}) {
+            final File pair1File = newTempFastqFile("pair1", ".fastq.gz");
+            final File pair2File = newTempFastqFile("pair2", ".fastq.gz");
+            convertFile(new String[]{
+                    "INPUT=" + samFile.getAbsolutePath(),
+                    "FASTQ=" + pair1File.getAbsolutePath(),
+                    "SECOND_END_FASTQ=" + pair2File.getAbsolutePath(),
+                    "THREADS=" + threads
+            });
+            verifyFileIsGzCompressed(pair1File);
+            verifyFileIsGzCompressed(pair2File);
+            final List<String> records = readFastqStrings(pair1File);
+            records.addAll(readFastqStrings(pair2File));
+            outputs.add(records);
+        }
+        Assert.assertEquals(outputs.get(1), outputs.get(0));
+    }
+
+    @Test(expectedExceptions = SAMFormatException.class)
+    public void testQuerynameSortedUnpairedMate() throws IOException {
+        // The same reads as bad/unpaired-mate.sam, but declared queryname sorted so that mates are paired by adjacency
+        final File samFile = File.createTempFile("unpaired-mate", ".sam");
+        samFile.deleteOnExit();
+        final List<String> lines = Files.readAllLines(new File(TEST_DATA_DIR, "bad/unpaired-mate.sam").toPath());
+        lines.set(0, "@HD\tVN:1.0\tSO:queryname");
+        Files.write(samFile.toPath(), lines);
+
+        convertFile(new String[]{
+                "INPUT=" + samFile.getAbsolutePath(),
+                "FASTQ=" + newTempFastqFile("pair1").getAbsolutePath(),
+                "SECOND_END_FASTQ=" + newTempFastqFile("pair2").getAbsolutePath()
+        });
+    }
+
+    @Test
+    public void testCoordinateSortedMatchesUnsorted() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 30; ++i) {
+            // Pairs on the same sequence and pairs split across sequences, so some mates are spilled to disk
+            builder.addPair("pair" + i, i % 3, (i * 7 + 1) % 3, 100 + 10 * i, 5000 - 10 * i,
+                    false, false, "36M", "36M", false, true, false, false, 30);
+        }
+        builder.addPair("halfMapped", 1, 1, 200, 200, false, true, "36M", null, false, false, false, false, 30);
+        builder.addUnmappedPair("unmapped");
+
+        final List<List<String>> outputs = new ArrayList<>();
+        for (final SAMFileHeader.SortOrder sortOrder : new SAMFileHeader.SortOrder[]{SAMFileHeader.SortOrder.unsorted, SAMFileHeader.SortOrder.coordinate}) {
+            final SAMFileHeader header = builder.getHeader().clone();
+            header.setSortOrder(sortOrder);
+            final File bam = File.createTempFile("samToFastq", ".bam");
+            bam.deleteOnExit();
+            try (final SAMFileWriter writer = new SAMFileWriterFactory().makeBAMWriter(header, true, bam)) {
+                for (final SAMRecord rec : builder) {
+                    writer.addAlignment(rec);
+                }
+            }
+
+            final File pair1File = newTempFastqFile("pair1");
+            final File pair2File = newTempFastqFile("pair2");
+            convertFile(new String[]{
+                    "INPUT=" + bam.getAbsolutePath(),
+                    "FASTQ=" + pair1File.getAbsolutePath(),
+                    "SECOND_END_FASTQ=" + pair2File.getAbsolutePath(),
+                    "MAX_FILE_HANDLES_FOR_MATE_MAP=2"
+            });
+            final List<String> records = readFastqStrings(pair1File);
+            records.addAll(readFastqStrings(pair2File));
+            outputs.add(records);
+        }
+        Assert.assertEquals(outputs.get(0).size(), 2 * 32);
+        Assert.assertEquals(outputs.get(1), outputs.get(0));
+    }
+
+    private static List<String> readFastqStrings(final File fastq) {
+        final List<String> records = new ArrayList<>();
+        try (final FastqReader reader = new FastqReader(fastq)) {
+            for (final FastqRecord rec : reader) {
+                records.add(rec.toFastQString());
+            }
+        }
+        return records;
+    }
+
     @Test (dataProvider = "badFiles", expectedExceptions= SAMFormatException.class)
     public void testBadFile(final String samFilename) throws IOException {
         final File samFile = new File(TEST_DATA_DIR,samFilename);
@@ -4,12 +4,18 @@ import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SAMRecordIterator;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import htsjdk.samtools.util.IOUtil;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
+import picard.reference.ReferenceCache;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 
 public class SetNmMdAndUqTagsTest {
 
@@ -51,6 +57,71 @@ public class SetNmMdAndUqTagsTest {
         validateUq(fixOutput, reference);
     }
 
+    @Test(dataProvider = "filesToFix")
+    public void testFixFromReferenceCacheMatchesFasta(final File input, final File reference) throws IOException {
+        final File sortOutput = File.createTempFile("Sort", ".bam");
+        sortOutput.deleteOnExit();
+        sort(input, sortOutput);
+        final File cachedReference = copyReferenceWithCache(reference);
+
+        final File fixOutput = File.createTempFile("Fix", ".sam");
+        fixOutput.deleteOnExit();
+        final File cachedFixOutput = File.createTempFile("CachedFix", ".sam");
+        cachedFixOutput.deleteOnExit();
+        fixFile(sortOutput, fixOutput, reference);
+        fixFile(sortOutput, cachedFixOutput, cachedReference);
+        Assert.assertEquals(readRecords(cachedFixOutput), readRecords(fixOutput));
+
+        setUqOnly(sortOutput, fixOutput, reference);
+        setUqOnly(sortOutput, cachedFixOutput, cachedReference);
+        Assert.assertEquals(readRecords(cachedFixOutput), readRecords(fixOutput));
+    }
+
+    @Test
+    public void testUnsortedInputWithReferenceCache() throws IOException {
+        final File input = new File("testdata/picard/sam/aligned_queryname_sorted.sam");
+        final File sortOutput = File.createTempFile("Sort", ".bam");
+        sortOutput.deleteOnExit();
+        sort(input, sortOutput);
+        final File fixOutput = File.createTempFile("Fix", ".sam");
+        fixOutput.deleteOnExit();
+        fixFile(sortOutput, fixOutput, fasta);
+
+        // the cache is read at random, so the reads need not be coordinate sorted
+        final File cachedFixOutput = File.createTempFile("CachedFix", ".sam");
+        cachedFixOutput.deleteOnExit();
+        fixFile(input, cachedFixOutput, copyReferenceWithCache(fasta));
+
+        final List<String> expected = readRecords(fixOutput);
+        final List<String> actual = readRecords(cachedFixOutput);
+        expected.sort(null);
+        actual.sort(null);
+        Assert.assertEquals(actual, expected);
+    }
+
+    /** Copies the reference and its dictionary to a fresh directory and builds a reference cache for the copy. */
+    private static File copyReferenceWithCache(final File reference) throws IOException {
+        final File dir = Files.createTempDirectory("SetNmMdAndUqTagsTest").toFile();
+        IOUtil.deleteOnExit(dir.toPath());
+        final File copy = new File(dir, reference.getName());
+        Files.copy(reference.toPath(), copy.toPath());
+        Files.copy(ReferenceSequenceFileFactory.getDefaultDictionaryForReferenceSequence(reference).toPath(),
+                ReferenceSequenceFileFactory.getDefaultDictionaryForReferenceSequence(copy).toPath());
+        ReferenceCache.build(copy);
+        Assert.assertNotNull(ReferenceCache.forReference(copy));
+        return copy;
+    }
+
+    private static List<String> readRecords(final File input) throws IOException {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            for (final SAMRecord rec : reader) {
+                records.add(rec.getSAMString());
+            }
+        }
+        return records;
+    }
+
     private void validate(final File input, final File output, final File reference) {
         final String[] args = {
                 "INPUT=" + input,
@@ -1,5 +1,12 @@
 package picard.sam;
 
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordSetBuilder;
+import htsjdk.samtools.metrics.MetricBase;
+import htsjdk.samtools.metrics.MetricsFile;
 import org.apache.commons.io.FileUtils;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -7,7 +14,11 @@ import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
 
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class ValidateSamFileTest extends CommandLineProgramTest {
 
@@ -63,4 +74,117 @@ public class ValidateSamFileTest extends CommandLineProgramTest {
         Assert.assertEquals(validateExitStatus, exitStatus);
         FileUtils.forceDeleteOnExit(bamFile);
     }
+
+    @Test
+    public void testShardedMateValidationMatchesSingleThreaded() throws IOException {
+        final File tmpDir = Files.createTempDirectory("validateSharded").toFile();
+        tmpDir.deleteOnExit();
+        final File bam = writeBamWithMateErrors(tmpDir, false);
+
+        final File singleThreaded = new File(tmpDir, "single.txt");
+        final File sharded = new File(tmpDir, "sharded.txt");
+        singleThreaded.deleteOnExit();
+        sharded.deleteOnExit();
+        final int singleThreadedStatus = runPicardCommandLine(new String[]{"I=" + bam.getAbsolutePath(), "O=" + singleThreaded.getAbsolutePath(),
+                "MODE=SUMMARY", "THREADS=1"});
+        final int shardedStatus = runPicardCommandLine(new String[]{"I=" + bam.getAbsolutePath(), "O=" + sharded.getAbsolutePath(),
+                "MODE=SUMMARY", "THREADS=4"});
+        Assert.assertEquals(shardedStatus, singleThreadedStatus);
+        Assert.assertNotEquals(shardedStatus, ValidateSamFile.ReturnTypes.SUCCESSFUL.value());
+
+        final MetricsFile<MetricBase, String> singleThreadedSummary = new MetricsFile<>();
+        singleThreadedSummary.read(new FileReader(singleThreaded));
+        final MetricsFile<MetricBase, String> shardedSummary = new MetricsFile<>();
+        shardedSummary.read(new FileReader(sharded));
+        Assert.assertEquals(shardedSummary.getHistogram(), singleThreadedSummary.getHistogram());
+    }
+
+    @DataProvider
+    public Object[][] shardedVerboseData() {
+        return new Object[][] {
+                {false, 1000}, // only mate errors, so the validator's own "No errors found" must not be written
+                {true, 1000},  // the mate errors follow the validator's own
+                {true, 6}      // MAX_OUTPUT is reached part way through the mate errors
+        };
+    }
+
+    @Test(dataProvider = "shardedVerboseData")
+    public void testShardedMateValidationVerboseMatchesSingleThreaded(final boolean withFlagErrors, final int maxOutput) throws IOException {
+        final File tmpDir = Files.createTempDirectory("validateShardedVerbose").toFile();
+        tmpDir.deleteOnExit();
+        final File bam = writeBamWithMateErrors(tmpDir, withFlagErrors);
+
+        final File singleThreaded = new File(tmpDir, "single.txt");
+        final File sharded = new File(tmpDir, "sharded.txt");
+        singleThreaded.deleteOnExit();
+        sharded.deleteOnExit();
+        final int singleThreadedStatus = runPicardCommandLine(new String[]{"I=" + bam.getAbsolutePath(), "O=" + singleThreaded.getAbsolutePath(),
+                "MODE=VERBOSE", "MAX_OUTPUT=1000", "THREADS=1"});
+        final int shardedStatus = runPicardCommandLine(new String[]{"I=" + bam.getAbsolutePath(), "O=" + sharded.getAbsolutePath(),
+                "MODE=VERBOSE", "MAX_OUTPUT=" + maxOutput, "THREADS=4"});
+        Assert.assertEquals(shardedStatus, singleThreadedStatus);
+        Assert.assertNotEquals(shardedStatus, ValidateSamFile.ReturnTypes.SUCCESSFUL.value());
+
+        final List<String> singleThreadedLines = readVerboseErrors(singleThreaded);
+        final List<String> shardedLines = readVerboseErrors(sharded);
+        Assert.assertFalse(shardedLines.stream().anyMatch(line -> line.contains("No errors found")));
+        if (maxOutput >= singleThreadedLines.size()) {
+            // mate errors are written after the validator's own rather than in record order
+            singleThreadedLines.sort(null);
+            shardedLines.sort(null);
+            Assert.assertEquals(shardedLines, singleThreadedLines);
+        } else {
+            Assert.assertEquals(shardedLines.size(), maxOutput + 1);
+            Assert.assertEquals(shardedLines.get(maxOutput), "Maximum output of [" + maxOutput + "] errors reached.");
+            Assert.assertTrue(singleThreadedLines.containsAll(shardedLines.subList(0, maxOutput)));
+        }
+    }
+
+    /**
+     * Reads the non-blank lines of a verbose validation report, without the record numbers, which the sharded mate
+     * validation does not know.
+     */
+    private static List<String> readVerboseErrors(final File report) throws IOException {
+        return Files.readAllLines(report.toPath()).stream()
+                .filter(line -> !line.trim().isEmpty())
+                .map(line -> line.replaceFirst("Record \\d+, ", ""))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes an indexed coordinate sorted BAM of pairs on three contigs, some with mismatched mate information and one
+     * with a missing mate, optionally along with fragments flagged as first of pair, which the validator reports itself.
+     */
+    private static File writeBamWithMateErrors(final File tmpDir, final boolean withFlagErrors) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        for (int i = 0; i < 20; ++i) {
+            final List<SAMRecord> pair = builder.addPair("pair" + i, i % 3, (i * 7 + 1) % 3, 100 + 10 * i, 5000 - 10 * i,
+                    false, false, "36M", "36M", false, true, false, false, 30);
+            if (i % 5 == 0) {
+                pair.get(0).setMateAlignmentStart(pair.get(1).getAlignmentStart() + 1);
+            }
+            if (i % 7 == 0) {
+                pair.get(1).setMateNegativeStrandFlag(true);
+            }
+        }
+        builder.addUnmappedPair("unmapped");
+        final List<SAMRecord> orphaned = builder.addPair("orphaned", 2, 0, 300, 400, false, false, "36M", "36M", false, true, false, false, 30);
+        if (withFlagErrors) {
+            for (int i = 0; i < 4; ++i) {
+                builder.addFrag("fragment" + i, i % 3, 200 + 100 * i, false, false, "36M", null, 30).setFirstOfPairFlag(true);
+            }
+        }
+
+        final File bam = new File(tmpDir, "input.bam");
+        try (final SAMFileWriter writer = new SAMFileWriterFactory().setCreateIndex(true).makeBAMWriter(builder.getHeader(), true, bam)) {
+            for (final SAMRecord rec : builder) {
+                if (rec != orphaned.get(1)) {
+                    writer.addAlignment(rec);
+                }
+            }
+        }
+        bam.deleteOnExit();
+        new File(tmpDir, "input.bai").deleteOnExit();
+        return bam;
+    }
 }
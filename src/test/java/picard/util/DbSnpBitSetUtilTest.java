@@ -0,0 +1,50 @@
+package picard.util;
+
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.Log;
+import htsjdk.variant.utils.SAMSequenceDictionaryExtractor;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import picard.nio.PicardHtsPath;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.Optional;
+
+public class DbSnpBitSetUtilTest {
+    private static final File DBSNP = new File("testdata/picard/vcf/mini.dbsnp.vcf");
+
+    @Test
+    public void testIndexMatchesVcf() throws IOException {
+        final SAMSequenceDictionary dictionary = SAMSequenceDictionaryExtractor.extractDictionary(DBSNP.toPath());
+        final File index = Files.createTempFile("DbSnpBitSetUtilTest.", DbSnpBitSetUtil.INDEX_EXTENSION).toFile();
+        index.deleteOnExit();
+        DbSnpBitSetUtil.writeIndex(DBSNP.toPath(), dictionary, index, Optional.of(Log.getInstance(DbSnpBitSetUtilTest.class)));
+
+        final DbSnpBitSetUtil.DbSnpBitSets fromVcf = DbSnpBitSetUtil.createSnpAndIndelBitSets(DBSNP, dictionary);
+        final DbSnpBitSetUtil.DbSnpBitSets fromIndex = DbSnpBitSetUtil.createSnpAndIndelBitSets(index, dictionary);
+        final DbSnpBitSetUtil allFromVcf = new DbSnpBitSetUtil(DBSNP, dictionary);
+        final DbSnpBitSetUtil allFromIndex = new DbSnpBitSetUtil(index, dictionary);
+        final DbSnpBitSetUtil snpsFromIndex = new DbSnpBitSetUtil(index, dictionary, EnumSet.of(VariantType.SNP));
+
+        int sites = 0;
+        try (final VCFFileReader reader = new VCFFileReader(DBSNP, false)) {
+            for (final VariantContext vc : reader) {
+                for (int pos = vc.getStart() - 2; pos <= vc.getEnd() + 2; pos++) {
+                    Assert.assertEquals(fromIndex.snps.isDbSnpSite(vc.getContig(), pos), fromVcf.snps.isDbSnpSite(vc.getContig(), pos));
+                    Assert.assertEquals(fromIndex.indels.isDbSnpSite(vc.getContig(), pos), fromVcf.indels.isDbSnpSite(vc.getContig(), pos));
+                    Assert.assertEquals(allFromIndex.isDbSnpSite(vc.getContig(), pos), allFromVcf.isDbSnpSite(vc.getContig(), pos));
+                    Assert.assertEquals(snpsFromIndex.isDbSnpSite(vc.getContig(), pos), fromVcf.snps.isDbSnpSite(vc.getContig(), pos));
+                }
+                Assert.assertTrue(allFromIndex.isDbSnpSite(vc.getContig(), vc.getStart()));
+                sites++;
+            }
+        }
+        Assert.assertTrue(sites > 0);
+        Assert.assertFalse(allFromIndex.isDbSnpSite("no_such_contig", 1));
+    }
+}
@@ -4,6 +4,7 @@ import htsjdk.samtools.SAMException;
 import htsjdk.samtools.liftover.LiftOver;
 import htsjdk.samtools.reference.FastaSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CollectionUtil;
 import htsjdk.samtools.util.IOUtil;
@@ -21,6 +22,7 @@ import org.testng.annotations.AfterClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.cmdline.CommandLineProgramTest;
+import picard.reference.ReferenceCache;
 import picard.vcf.LiftoverVcf;
 import picard.vcf.VcfTestUtils;
 
@@ -262,13 +264,15 @@ public class LiftoverVcfTest extends CommandLineProgramTest {
     @DataProvider(name = "dataTestSort")
     public Object[][] dataTestVcfSorted() {
         return new Object[][]{
-                {false},
-                {true}
+                {false, 1},
+                {true, 1},
+                {false, 3},
+                {true, 3}
         };
     }
 
     @Test(dataProvider = "dataTestSort")
-    public void testVcfSorted(final boolean disableSort) {
+    public void testVcfSorted(final boolean disableSort, final int threads) {
         final File liftOutputFile = new File(OUTPUT_DATA_PATH, "lift-delete-me.vcf");
         final File rejectOutputFile = new File(OUTPUT_DATA_PATH, "reject-delete-me.vcf");
         final File input = new File(TEST_DATA_PATH, "testLiftoverBiallelicIndels.vcf");
@@ -283,7 +287,8 @@ public class LiftoverVcfTest extends CommandLineProgramTest {
                 "CHAIN=" + CHAIN_FILE,
                 "REFERENCE_SEQUENCE=" + REFERENCE_FILE,
                 "CREATE_INDEX=" + (!disableSort),
-                "DISABLE_SORT=" + disableSort
+                "DISABLE_SORT=" + disableSort,
+                "THREADS=" + threads
         };
 
         Assert.assertEquals(runPicardCommandLine(args), 0);
@@ -302,6 +307,80 @@ public class LiftoverVcfTest extends CommandLineProgramTest {
         }
     }
 
+    @Test
+    public void testMultithreadedMatchesSingleThreaded() throws IOException {
+        // more variants than fit in one batch, lifted onto the reverse strand, with every seventh given a REF that does
+        // not match the target reference so that it is rejected
+        final byte[] target = new FastaSequenceFile(REFERENCE_FILE, false).nextSequence().getBases();
+        final List<String> lines = new ArrayList<>();
+        for (final String line : Files.readAllLines(new File(TEST_DATA_PATH, "testLiftoverBiallelicIndels.vcf").toPath())) {
+            if (line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        final String bases = "ACGT";
+        for (int i = 0; i < 2500; i++) {
+            final int position = 2 + i % (target.length - 2);
+            final char targetBase = (char) Character.toUpperCase(target[target.length - position]);
+            final char ref = i % 7 == 0 ? targetBase : bases.charAt(3 - bases.indexOf(targetBase));
+            final char alt = bases.charAt((bases.indexOf(ref) + 1 + i / target.length % 3) % 4);
+            lines.add(String.join("\t", "chr1", String.valueOf(position), "var" + i, String.valueOf(ref), String.valueOf(alt),
+                    "100", "PASS", ".", "GT", "0/1"));
+        }
+        final File input = new File(OUTPUT_DATA_PATH, "many-variants-delete-me.vcf");
+        input.deleteOnExit();
+        Files.write(input.toPath(), lines);
+
+        final List<String> singleThreadedLifted = new ArrayList<>();
+        final List<String> singleThreadedRejected = new ArrayList<>();
+        runLiftoverForThreadsTest(input, 1, singleThreadedLifted, singleThreadedRejected);
+        final List<String> multithreadedLifted = new ArrayList<>();
+        final List<String> multithreadedRejected = new ArrayList<>();
+        runLiftoverForThreadsTest(input, 4, multithreadedLifted, multithreadedRejected);
+
+        Assert.assertTrue(singleThreadedLifted.size() > 2000);
+        Assert.assertTrue(singleThreadedRejected.size() > 300);
+        // variants at the same position may come out in any order, so compare them as sets of lines
+        singleThreadedLifted.sort(null);
+        multithreadedLifted.sort(null);
+        Assert.assertEquals(multithreadedLifted, singleThreadedLifted);
+        Assert.assertEquals(multithreadedRejected, singleThreadedRejected);
+    }
+
+    /** Lifts the input over with a small MAX_RECORDS_IN_RAM, so that the sorted runs spill to disk, and checks the output is sorted. */
+    private void runLiftoverForThreadsTest(final File input, final int threads, final List<String> lifted, final List<String> rejected) throws IOException {
+        final File liftOutputFile = new File(OUTPUT_DATA_PATH, "lift-threads-" + threads + "-delete-me.vcf");
+        final File rejectOutputFile = new File(OUTPUT_DATA_PATH, "reject-threads-" + threads + "-delete-me.vcf");
+        liftOutputFile.deleteOnExit();
+        rejectOutputFile.deleteOnExit();
+
+        final String[] args = new String[]{
+                "INPUT=" + input.getAbsolutePath(),
+                "OUTPUT=" + liftOutputFile.getAbsolutePath(),
+                "REJECT=" + rejectOutputFile.getAbsolutePath(),
+                "CHAIN=" + CHAIN_FILE,
+                "REFERENCE_SEQUENCE=" + REFERENCE_FILE,
+                "CREATE_INDEX=false",
+                "MAX_RECORDS_IN_RAM=200",
+                "THREADS=" + threads
+        };
+        Assert.assertEquals(runPicardCommandLine(args), 0);
+
+        try (final VCFFileReader liftReader = new VCFFileReader(liftOutputFile, false)) {
+            int lastStart = 0;
+            for (final VariantContext ctx : liftReader) {
+                Assert.assertTrue(ctx.getStart() >= lastStart);
+                lastStart = ctx.getStart();
+            }
+        }
+        for (final String line : Files.readAllLines(liftOutputFile.toPath())) {
+            if (!line.startsWith("#")) lifted.add(line);
+        }
+        for (final String line : Files.readAllLines(rejectOutputFile.toPath())) {
+            if (!line.startsWith("#")) rejected.add(line);
+        }
+    }
+
     @DataProvider
     Iterator<Object[]> testWriteVcfData() {
 
@@ -369,6 +448,27 @@ public class LiftoverVcfTest extends CommandLineProgramTest {
         VcfTestUtils.assertVcfFilesAreEqual(rejectOutputFile, expectedRejectVcf);
     }
 
+    @Test(dataProvider = "testWriteVcfData")
+    public void testWriteVcfWithFlippedAllelesFromReferenceCache(
+            final File input,
+            final File expectedVcf,
+            final File expectedRejectVcf,
+            final File reference,
+            final File liftoverChain) throws IOException {
+
+        // a copy of the reference, so that its cache is not written into the test data
+        final File dir = Files.createTempDirectory("LiftoverVcfTest").toFile();
+        IOUtil.deleteOnExit(dir.toPath());
+        final File cachedReference = new File(dir, reference.getName());
+        Files.copy(reference.toPath(), cachedReference.toPath());
+        Files.copy(ReferenceSequenceFileFactory.getDefaultDictionaryForReferenceSequence(reference).toPath(),
+                ReferenceSequenceFileFactory.getDefaultDictionaryForReferenceSequence(cachedReference).toPath());
+        ReferenceCache.build(cachedReference);
+        Assert.assertNotNull(ReferenceCache.forReference(cachedReference));
+
+        testWriteVcfWithFlippedAlleles(input, expectedVcf, expectedRejectVcf, cachedReference, liftoverChain);
+    }
+
     @DataProvider(name = "indelFlipData")
     public Iterator<Object[]> indelFlipData() {
 
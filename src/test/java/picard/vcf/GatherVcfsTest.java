@@ -1,6 +1,8 @@
 package picard.vcf;
 
 import htsjdk.io.HtsPath;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
@@ -86,4 +88,30 @@ public class GatherVcfsTest extends CommandLineProgramTest {
             expectedReader.close();
         }
     }
+
+    @Test
+    public void testParallelBlockCopyGatherWithIndex() throws IOException {
+        final File output = VcfTestUtils.createTemporaryIndexedFile("result", ".vcf.gz");
+
+        final List<String> args = new ArrayList<>();
+        Arrays.asList(shard1_gz, shard2_gz, shard3_gz).forEach(f -> args.add("INPUT=" + f.getURI()));
+        args.add("OUTPUT=" + output.getAbsolutePath());
+        args.add("THREADS=3");
+        args.add("CREATE_INDEX=true");
+
+        Assert.assertEquals(runPicardCommandLine(args.toArray(new String[]{})), 0);
+
+        try (final VCFFileReader expectedReader = new VCFFileReader(vcf_gz, false);
+             final VCFFileReader outputReader = new VCFFileReader(output, true)) {
+            long expectedCount = 0;
+            for (final VariantContext expected : expectedReader) {
+                expectedCount++;
+                try (final CloseableIterator<VariantContext> found = outputReader.query(expected.getContig(), expected.getStart(), expected.getEnd())) {
+                    Assert.assertTrue(found.stream().anyMatch(vc -> vc.getStart() == expected.getStart() &&
+                            vc.getReference().equals(expected.getReference())), "Indexed query did not find " + expected);
+                }
+            }
+            Assert.assertEquals(outputReader.iterator().stream().count(), expectedCount, "The wrong number of variants was found.");
+        }
+    }
 }
@@ -24,6 +24,7 @@
 
 package picard.vcf;
 
+import htsjdk.samtools.metrics.MetricBase;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.BufferedLineReader;
 import htsjdk.samtools.util.IOUtil;
@@ -42,12 +43,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -175,29 +178,116 @@ public class GenotypeConcordanceTest {
             assertMetricsFileEqual(outputContingencyFile, new File(TEST_DATA_PATH_STRING, expectedOutputFileBaseName + GenotypeConcordance.CONTINGENCY_METRICS_FILE_EXTENSION));
 
             if (withVcf) {
-                // An ugly way to compare VCFs
-                final Path expectedVcf = Paths.get(TEST_DATA_PATH.toAbsolutePath().toString(), expectedOutputFileBaseName + ".vcf");
-                final BufferedLineReader reader = new BufferedLineReader(new GZIPInputStream(new FileInputStream(outputVcfFile.toFile())));
-                final Iterator<String> actualLines;
-                {
-                    final List<String> lines = new ArrayList<>();
-                    while (-1 != reader.peek()) {
-                        lines.add(reader.readLine());
-                    }
-                    reader.close();
-                    actualLines = lines.iterator();
-                }
+                assertVcfLinesEqual(outputVcfFile, Paths.get(TEST_DATA_PATH.toAbsolutePath().toString(), expectedOutputFileBaseName + ".vcf"));
+            }
+        }
+    }
 
-                final Iterator<String> expectedLines = Files.lines(expectedVcf).iterator();
-                while (actualLines.hasNext() && expectedLines.hasNext()) {
-                    final String actualLine = actualLines.next();
-                    final String expectedLine = expectedLines.next();
-                    Assert.assertEquals(actualLine, expectedLine);
-                }
-                Assert.assertFalse(actualLines.hasNext());
-                Assert.assertFalse(expectedLines.hasNext());
+    @DataProvider(name = "genotypeConcordanceThreadedTestFileData")
+    public Object[][] getGenotypeConcordanceThreadedTestFileData() {
+        return new Object[][]{
+                {CEU_TRIOS_SNPS_VCF, "NA12878", CEU_TRIOS_SNPS_VCF, "NA12891", false, CEU_TRIOS_SNPS_VS_CEU_TRIOS_SNPS_GC_MIN_GQ},
+                {NIST_MISSING_SITES_TRUTH_VCF, "NA12878", CEU_TRIOS_SNPS_VCF, "NA12878", true, NIST_TRUTH_SNPS_VS_CEU_TRIOS_SNPS_GC}
+        };
+    }
+
+    @Test(dataProvider = "genotypeConcordanceThreadedTestFileData")
+    public void testGenotypeConcordanceThreaded(final String vcf1, final String sample1, final String vcf2, final String sample2,
+                                                final boolean missingSitesFlag, final String expectedOutputFileBaseName) throws Exception {
+        final File outputBaseFileName = new File(OUTPUT_DATA_PATH, "actualThreadedGtConc");
+        final Path outputVcfFile      = Paths.get(outputBaseFileName.getAbsolutePath() + GenotypeConcordance.OUTPUT_VCF_FILE_EXTENSION);
+
+        final GenotypeConcordance genotypeConcordance = new GenotypeConcordance();
+        genotypeConcordance.TRUTH_VCF = new PicardHtsPath(vcf1);
+        genotypeConcordance.TRUTH_SAMPLE = sample1;
+        genotypeConcordance.CALL_VCF = new PicardHtsPath(vcf2);
+        genotypeConcordance.CALL_SAMPLE = sample2;
+        if (!missingSitesFlag) genotypeConcordance.MIN_GQ = 40;
+        genotypeConcordance.OUTPUT = outputBaseFileName;
+        genotypeConcordance.MISSING_SITES_HOM_REF = missingSitesFlag;
+        if (missingSitesFlag) {
+            genotypeConcordance.INTERVALS = Collections.singletonList(new PicardHtsPath(new File(TEST_DATA_PATH_STRING, "IntervalList1PerChrom.interval_list")));
+        }
+        genotypeConcordance.OUTPUT_VCF = true;
+        genotypeConcordance.THREADS = 3;
+
+        // The per-contig results must merge to exactly what a single-threaded run produces
+        Assert.assertEquals(genotypeConcordance.instanceMain(new String[0]), 0);
+        for (final String extension : Arrays.asList(GenotypeConcordance.SUMMARY_METRICS_FILE_EXTENSION,
+                GenotypeConcordance.DETAILED_METRICS_FILE_EXTENSION, GenotypeConcordance.CONTINGENCY_METRICS_FILE_EXTENSION)) {
+            assertMetricsFileEqual(new File(outputBaseFileName.getAbsolutePath() + extension), new File(TEST_DATA_PATH_STRING, expectedOutputFileBaseName + extension));
+        }
+        assertVcfLinesEqual(outputVcfFile, Paths.get(TEST_DATA_PATH.toAbsolutePath().toString(), expectedOutputFileBaseName + ".vcf"));
+    }
+
+    @Test
+    public void testSamplePairs() throws Exception {
+        final List<String> callSamples = Arrays.asList("NA12878", "NA12891", "NA12892");
+        final File samplePairs = new File(OUTPUT_DATA_PATH, "samplePairs.txt");
+        Files.write(samplePairs.toPath(), callSamples.stream().map(callSample -> "NA12878\t" + callSample).collect(Collectors.toList()));
+
+        final File outputBaseFileName = new File(OUTPUT_DATA_PATH, "actualPairsGtConc");
+        final GenotypeConcordance genotypeConcordance = new GenotypeConcordance();
+        genotypeConcordance.TRUTH_VCF = new PicardHtsPath(CEU_TRIOS_SNPS_VCF);
+        genotypeConcordance.CALL_VCF = new PicardHtsPath(CEU_TRIOS_SNPS_VCF);
+        genotypeConcordance.SAMPLE_PAIRS = new PicardHtsPath(samplePairs);
+        genotypeConcordance.MIN_GQ = 40;
+        genotypeConcordance.OUTPUT = outputBaseFileName;
+        Assert.assertEquals(genotypeConcordance.instanceMain(new String[0]), 0);
+
+        // Each pair must get exactly the metrics of a run of its own, in the order of the pairs
+        final List<String> extensions = Arrays.asList(GenotypeConcordance.SUMMARY_METRICS_FILE_EXTENSION,
+                GenotypeConcordance.DETAILED_METRICS_FILE_EXTENSION, GenotypeConcordance.CONTINGENCY_METRICS_FILE_EXTENSION);
+        final Map<String, List<MetricBase>> expectedMetrics = new HashMap<>();
+        for (int i = 0; i < callSamples.size(); i++) {
+            final File singleBaseFileName = new File(OUTPUT_DATA_PATH, "actualSingleGtConc" + i);
+            final GenotypeConcordance single = new GenotypeConcordance();
+            single.TRUTH_VCF = new PicardHtsPath(CEU_TRIOS_SNPS_VCF);
+            single.TRUTH_SAMPLE = "NA12878";
+            single.CALL_VCF = new PicardHtsPath(CEU_TRIOS_SNPS_VCF);
+            single.CALL_SAMPLE = callSamples.get(i);
+            single.MIN_GQ = 40;
+            single.OUTPUT = singleBaseFileName;
+            Assert.assertEquals(single.instanceMain(new String[0]), 0);
+
+            for (final String extension : extensions) {
+                final List<MetricBase> singleMetrics = readMetrics(new File(singleBaseFileName.getAbsolutePath() + extension));
+                Assert.assertFalse(singleMetrics.isEmpty(), extension);
+                expectedMetrics.computeIfAbsent(extension, e -> new ArrayList<>()).addAll(singleMetrics);
             }
         }
+        for (final String extension : extensions) {
+            Assert.assertEquals(readMetrics(new File(outputBaseFileName.getAbsolutePath() + extension)), expectedMetrics.get(extension), extension);
+        }
+    }
+
+    private List<MetricBase> readMetrics(final File metricsFile) throws FileNotFoundException {
+        final MetricsFile<MetricBase, Comparable<?>> metrics = new MetricsFile<>();
+        metrics.read(new FileReader(metricsFile));
+        return metrics.getMetrics();
+    }
+
+    private void assertVcfLinesEqual(final Path actualVcf, final Path expectedVcf) throws IOException {
+        // An ugly way to compare VCFs
+        final BufferedLineReader reader = new BufferedLineReader(new GZIPInputStream(new FileInputStream(actualVcf.toFile())));
+        final Iterator<String> actualLines;
+        {
+            final List<String> lines = new ArrayList<>();
+            while (-1 != reader.peek()) {
+                lines.add(reader.readLine());
+            }
+            reader.close();
+            actualLines = lines.iterator();
+        }
+
+        final Iterator<String> expectedLines = Files.lines(expectedVcf).iterator();
+        while (actualLines.hasNext() && expectedLines.hasNext()) {
+            final String actualLine = actualLines.next();
+            final String expectedLine = expectedLines.next();
+            Assert.assertEquals(actualLine, expectedLine);
+        }
+        Assert.assertFalse(actualLines.hasNext());
+        Assert.assertFalse(expectedLines.hasNext());
     }
 
     private void assertMetricsFileEqual(final File actualMetricsFile, final File expectedMetricsFile) throws FileNotFoundException {
@@ -6,14 +6,19 @@ import htsjdk.samtools.util.TestUtil;
 import htsjdk.tribble.index.IndexFactory;
 import htsjdk.tribble.readers.AsciiLineReader;
 import htsjdk.tribble.readers.LineIteratorImpl;
+import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFFileReader;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import picard.pedigree.Sex;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import static picard.vcf.MendelianViolations.MendelianViolationDetector.MendelianViolation.*;
@@ -25,8 +30,13 @@ public class FindMendelianViolationsTest {
 
     private static final File TEST_DATA_DIR = new File("testdata/picard/vcf");
 
-    @Test
-    public void testFindMedelianViolations() throws IOException {
+    @DataProvider
+    public Object[][] threadCounts() {
+        return new Object[][]{{1}, {0}, {3}};
+    }
+
+    @Test(dataProvider = "threadCounts")
+    public void testFindMedelianViolations(final int threadCount) throws IOException {
         final File vcfFile = new File(TEST_DATA_DIR, "CEUTrio_plus_FAKE.vcf");
 
         final File vcfIndexFile = new File(TEST_DATA_DIR, "CEUTrio_plus_FAKE.vcf.idx");
@@ -57,6 +67,7 @@ public class FindMendelianViolationsTest {
         program.OUTPUT = resultantMetrics;
         program.VCF_DIR = directoryForViolations;
         program.MIN_DP = 10;
+        program.THREAD_COUNT = threadCount;
 
         Assert.assertEquals(program.doWork(), 0);
 
@@ -131,6 +142,25 @@ public class FindMendelianViolationsTest {
         IOUtil.recursiveDelete(directoryForViolations.toPath());
     }
 
+    @Test
+    public void testTrioGenotypeDecoderMatchesFullDecode() {
+        final List<String> trio = Arrays.asList("NA12892", "NA12891", "NA12878");
+
+        try (final VCFFileReader reader = new VCFFileReader(new File(TEST_DATA_DIR, "CEUTrio_plus_FAKE.vcf"), false)) {
+            final TrioGenotypeDecoder decoder = new TrioGenotypeDecoder(reader.getFileHeader(), trio);
+            int records = 0;
+            for (final VariantContext ctx : reader) {
+                final VariantContext restricted = decoder.restrict(ctx);
+                Assert.assertEquals(restricted.getNSamples(), trio.size());
+                for (final String sample : trio) {
+                    Assert.assertEquals(restricted.getGenotype(sample).toString(), ctx.getGenotype(sample).toString());
+                }
+                records++;
+            }
+            Assert.assertTrue(records > 0);
+        }
+    }
+
     /** returns the number of lines in the file that contain a regular expression (decorated with "MV=" and
      * expected to be in an INFO field in a vcf)
      *
@@ -1,8 +1,12 @@
 package picard.vcf;
 
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.tribble.Tribble;
+import htsjdk.tribble.index.Index;
+import htsjdk.tribble.index.IndexFactory;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextComparator;
+import htsjdk.variant.vcf.VCFCodec;
 import htsjdk.variant.vcf.VCFFileReader;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -10,6 +14,9 @@ import picard.cmdline.CommandLineProgram;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -93,6 +100,63 @@ public class SortVcfsTest extends AbstractVcfMergingClpTester {
         validateSortingResults(output, numberOfVariantContexts);
     }
 
+    @Test
+    public void testUnindexedSortedAndScrambledFiles() throws IOException {
+        // A copy of a sorted input without its index, so that it has to be scanned to be found sorted
+        final File sortedInputFile = File.createTempFile("sort-unindexed-sorted-input.", ".vcf");
+        sortedInputFile.deleteOnExit();
+        Files.copy(new File(TEST_DATA_PATH, "CEUTrio-indels.vcf").toPath(), sortedInputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        final File scrambledInputFile = new File(TEST_DATA_PATH, "CEUTrio-snps-scrambled.1.vcf");
+        final File output = File.createTempFile("sort-unindexed-sorted-and-scrambled-test-output.", ".vcf");
+        final List<String> indexing = Arrays.asList("CREATE_INDEX=false");
+        output.deleteOnExit();
+
+        final int numberOfVariantContexts = loadContigPositions(sortedInputFile).size() + loadContigPositions(scrambledInputFile).size();
+
+        runClp(Arrays.asList(sortedInputFile, scrambledInputFile), output, indexing, 0);
+        validateSortingResults(output, numberOfVariantContexts);
+    }
+
+    @Test
+    public void testIndexedFileWithContigsOutOfOrder() throws IOException {
+        // The records of contig 2 moved ahead of those of contig 1: each contig is still contiguous, so the file can be
+        // indexed, but it is not in the order of the sequence dictionary
+        final List<String> lines = Files.readAllLines(new File(TEST_DATA_PATH, "CEUTrio-snps.vcf").toPath());
+        final List<String> reordered = new ArrayList<>();
+        final List<String> contig1 = new ArrayList<>();
+        for (final String line : lines) {
+            if (line.startsWith("#")) {
+                reordered.add(line);
+            } else if (line.startsWith("1\t")) {
+                contig1.add(line);
+            } else if (line.startsWith("2\t")) {
+                reordered.add(line);
+            }
+        }
+        reordered.addAll(contig1);
+        for (final String line : lines) {
+            if (!line.startsWith("#") && !line.startsWith("1\t") && !line.startsWith("2\t")) {
+                reordered.add(line);
+            }
+        }
+
+        final File indexedInputFile = File.createTempFile("sort-indexed-contigs-out-of-order-input.", ".vcf");
+        indexedInputFile.deleteOnExit();
+        Files.write(indexedInputFile.toPath(), reordered);
+        final File indexFile = Tribble.indexFile(indexedInputFile);
+        indexFile.deleteOnExit();
+        final Index index = IndexFactory.createDynamicIndex(indexedInputFile, new VCFCodec());
+        index.write(indexFile);
+
+        final File output = File.createTempFile("sort-indexed-contigs-out-of-order-test-output.", ".vcf");
+        final List<String> indexing = Arrays.asList("CREATE_INDEX=false");
+        output.deleteOnExit();
+
+        final int numberOfVariantContexts = loadContigPositions(indexedInputFile).size();
+
+        runClp(Arrays.asList(indexedInputFile), output, indexing, 0);
+        validateSortingResults(output, numberOfVariantContexts);
+    }
 
     /**
      * Checks the ordering and total number of variant context entries in the specified output VCF file.
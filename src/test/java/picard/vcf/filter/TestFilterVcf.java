@@ -36,6 +36,7 @@ import picard.vcf.VcfTestUtils;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.Iterator;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -192,10 +193,35 @@ public class TestFilterVcf {
         Assert.assertEquals(new TreeSet<String>(filters.keySet()), fails, "Failed sites did not match expected set of failed sites.");
     }
 
+    /**
+     * Tests that filtering on several threads gives the same records, in the same order, as filtering on one.
+     */
+    @Test
+    public void testThreadedFilteringMatchesSingleThreaded() throws Exception {
+        final File single = testFiltering(INPUT, ".vcf.gz", 0.4, 18, 22, 5.0d, 1);
+        final File threaded = testFiltering(INPUT, ".vcf.gz", 0.4, 18, 22, 5.0d, 3);
+
+        try (final VCFFileReader singleReader = new VCFFileReader(single, false);
+             final VCFFileReader threadedReader = new VCFFileReader(threaded, false)) {
+            final Iterator<VariantContext> singleIterator = singleReader.iterator();
+            final Iterator<VariantContext> threadedIterator = threadedReader.iterator();
+            while (singleIterator.hasNext()) {
+                Assert.assertTrue(threadedIterator.hasNext());
+                Assert.assertEquals(threadedIterator.next().toStringDecodeGenotypes(), singleIterator.next().toStringDecodeGenotypes());
+            }
+            Assert.assertFalse(threadedIterator.hasNext());
+        }
+    }
+
     /**
      * Utility method that takes a a VCF and a set of parameters and filters the VCF.
      */
     private File testFiltering(final File vcf, final String outputExtension, final double minAb, final int minDp, final int minGq, final double maxFs) throws Exception {
+        return testFiltering(vcf, outputExtension, minAb, minDp, minGq, maxFs, 1);
+    }
+
+    private File testFiltering(final File vcf, final String outputExtension, final double minAb, final int minDp, final int minGq,
+                               final double maxFs, final int threads) throws Exception {
         final File out = VcfTestUtils.createTemporaryIndexedFile("filterVcfTest.", outputExtension);
 
         final FilterVcf filterer = new FilterVcf();
@@ -206,6 +232,7 @@ public class TestFilterVcf {
         filterer.MIN_DP = minDp;
         filterer.MIN_GQ = minGq;
         filterer.MAX_FS = maxFs;
+        filterer.THREADS = threads;
 
         final int retval = filterer.doWork();
         if (retval != 0) {
@@ -235,6 +262,33 @@ public class TestFilterVcf {
         filterer.doWork();
     }
 
+    /**
+     * Tests that the threaded filtering path fails the same way, closing its pool of filtering threads
+     */
+    @Test(expectedExceptions = PicardException.class)
+    public void testThreadedFilteringToVcfWithNoSequenceDictionary() throws Exception {
+        final File out = File.createTempFile("filterVcfTest.", ".vcf");
+        out.deleteOnExit();
+
+        final FilterVcf filterer = new FilterVcf();
+        filterer.CREATE_INDEX = true;
+        filterer.INPUT = BAD_INPUT;
+        filterer.OUTPUT = out;
+        filterer.MIN_DP = 18;
+        filterer.THREADS = 2;
+
+        filterer.doWork();
+    }
+
+    @Test
+    public void testInvalidThreads() throws Exception {
+        final File out = File.createTempFile("filterVcfTest.", ".vcf.gz");
+        out.deleteOnExit();
+
+        final String[] args = {"INPUT=" + INPUT.getAbsolutePath(), "OUTPUT=" + out.getAbsolutePath(), "THREADS=0"};
+        Assert.assertNotEquals(new FilterVcf().instanceMain(args), 0);
+    }
+
     /**
      * Consumes a VCF and returns a ListMap where each they keys are the IDs of filtered out sites and the values are the set of filters.
      */
@@ -25,6 +25,7 @@ package picard.vcf.processor;
 
 import com.google.common.base.Joiner;
 import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
 import org.testng.Assert;
@@ -32,7 +33,9 @@ import org.testng.annotations.Test;
 import picard.nio.PicardHtsPath;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -93,4 +96,42 @@ public class ThreadsafeTest {
         Assert.assertEquals(actual, observedVcs);
     }
 
+    @Test
+    public void ensureRestrictedDecodingOnlyDecodesRequestedFormatFields() {
+        final PicardHtsPath vcf = new PicardHtsPath("testdata/picard/vcf/CEUTrio_plus_FAKE.vcf");
+        final VariantIteratorProducer.Threadsafe iteratorFactory =
+                new VariantIteratorProducer.Threadsafe(
+                        VcfPathSegmentGenerator.byWholeContigSubdividingWithWidth(TEN_MILLION),
+                        Arrays.asList(vcf),
+                        null,
+                        new HashSet<>(Arrays.asList("GT", "GQ"))
+                );
+        final Map<String, VariantContext> expected = new HashMap<>();
+        try (final VCFFileReader reader = new VCFFileReader(vcf.toPath())) {
+            for (final VariantContext vc : reader) {
+                vc.getGenotypes(); // force a full decode
+                expected.put(vc.getContig() + ":" + vc.getStart() + ":" + vc.getAlleles(), vc);
+            }
+        }
+
+        int observed = 0;
+        for (final CloseableIterator<VariantContext> i : iteratorFactory.iterators()) {
+            while (i.hasNext()) {
+                final VariantContext restricted = i.next();
+                final VariantContext full = expected.get(restricted.getContig() + ":" + restricted.getStart() + ":" + restricted.getAlleles());
+                Assert.assertNotNull(full);
+                Assert.assertEquals(restricted.getNSamples(), full.getNSamples());
+                for (final Genotype genotype : restricted.getGenotypes()) {
+                    final Genotype fullGenotype = full.getGenotype(genotype.getSampleName());
+                    Assert.assertEquals(genotype.getGenotypeString(), fullGenotype.getGenotypeString());
+                    Assert.assertEquals(genotype.getGQ(), fullGenotype.getGQ());
+                    Assert.assertFalse(genotype.hasPL());
+                    Assert.assertFalse(genotype.hasAD());
+                }
+                observed++;
+            }
+        }
+        iteratorFactory.close();
+        Assert.assertEquals(observed, expected.size());
+    }
 }
@@ -24,13 +24,23 @@
 package picard.vcf.processor;
 
 import com.google.common.collect.Iterables;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.Interval;
 import htsjdk.samtools.util.OverlapDetector;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFFileReader;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import picard.nio.PicardHtsPath;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 public class VcfPathSegmentGeneratorTest {
     final PicardHtsPath VCF_WITH_LOGS_OF_GAPS =  new PicardHtsPath(new File("testdata/picard/vcf/chunking/multi_allelic_at_10M.vcf"));
@@ -47,4 +57,60 @@ public class VcfPathSegmentGeneratorTest {
         final VcfPathSegmentGenerator allFiltered = VcfPathSegmentGenerator.excludingNonOverlaps(noFilter, oneTinyIntervalDetector);
         Assert.assertEquals(Iterables.size(allFiltered.forVcf(VCF_WITH_LOGS_OF_GAPS)), 1);
     }
+
+    @Test
+    public void ensureIndexedSizeSegmentsTileContigsAndCoverAllRecords() {
+        final VcfPathSegmentGenerator fallback = VcfPathSegmentGenerator.byWholeContigSubdividingWithWidth(TEN_MILLION);
+        final List<VcfPathSegment> segments = StreamSupport.stream(
+                VcfPathSegmentGenerator.byIndexedSize(8, fallback).forVcf(VCF_WITH_LOGS_OF_GAPS).spliterator(), false)
+                .collect(Collectors.toList());
+        Assert.assertFalse(segments.isEmpty());
+        // Contigs without records get no segments, so there are far fewer than the 382 cut by the fallback.
+        Assert.assertTrue(segments.size() < 382, "Got " + segments.size() + " segments");
+
+        for (int i = 1; i < segments.size(); ++i) {
+            final VcfPathSegment previous = segments.get(i - 1);
+            final VcfPathSegment segment = segments.get(i);
+            Assert.assertTrue(segment.start() <= segment.stop(), segment.toString());
+            if (previous.contig().equals(segment.contig())) {
+                Assert.assertEquals(segment.start(), previous.stop() + 1, segment.toString());
+            } else {
+                Assert.assertEquals(segment.start(), 1, segment.toString());
+            }
+        }
+
+        try (final VCFFileReader reader = new VCFFileReader(VCF_WITH_LOGS_OF_GAPS.toPath())) {
+            int expected = 0;
+            for (final VariantContext ignored : reader) expected++;
+
+            int observed = 0;
+            int mostInASegment = 0;
+            for (final VcfPathSegment segment : segments) {
+                int inSegment = 0;
+                try (final CloseableIterator<VariantContext> it = reader.query(segment.contig(), segment.start(), segment.stop())) {
+                    while (it.hasNext()) {
+                        if (it.next().getStart() >= segment.start()) inSegment++;
+                    }
+                }
+                observed += inSegment;
+                mostInASegment = Math.max(mostInASegment, inSegment);
+            }
+            Assert.assertEquals(observed, expected);
+
+            // No segment should hold much more than its share of the records.
+            final double meanInASegment = expected / (double) segments.size();
+            Assert.assertTrue(mostInASegment <= 4 * Math.ceil(meanInASegment),
+                    mostInASegment + " records in one segment, against a mean of " + meanInASegment);
+        }
+    }
+
+    @Test
+    public void ensureIndexedSizeFallsBackWithoutAnIndex() throws IOException {
+        final Path unindexed = Files.createTempFile("unindexed", ".vcf");
+        unindexed.toFile().deleteOnExit();
+        Files.copy(VCF_WITH_LOGS_OF_GAPS.toPath(), unindexed, StandardCopyOption.REPLACE_EXISTING);
+
+        final VcfPathSegmentGenerator fallback = VcfPathSegmentGenerator.byWholeContigSubdividingWithWidth(TEN_MILLION);
+        Assert.assertEquals(Iterables.size(VcfPathSegmentGenerator.byIndexedSize(8, fallback).forVcf(new PicardHtsPath(unindexed.toFile()))), 382);
+    }
 }